@@ -140,6 +140,29 @@ public abstract class CascadingUtils {
         return names;
     }
 
+    /**
+     * Resolves (once) the keys leading to each of the given fields inside the returned documents - the alias split into levels for
+     * ES 1.0 and higher, the full name for 0.90.x. Used by the sources to fill the tuples by position.
+     */
+    static String[][] fieldPaths(Settings settings, Fields fields) {
+        boolean isEs10 = SettingsUtils.isEs10(settings);
+        Collection<String> names = fieldToAlias(settings, fields);
+
+        String[][] paths = new String[names.size()][];
+        int index = 0;
+        for (String name : names) {
+            if (isEs10) {
+                // multi-level alias
+                List<String> levels = StringUtils.tokenize(name, ".");
+                paths[index++] = levels.toArray(new String[levels.size()]);
+            }
+            else {
+                paths[index++] = new String[] { name };
+            }
+        }
+        return paths;
+    }
+
     static Properties extractOriginalProperties(Properties copy) {
         Field field = ReflectionUtils.findField(Properties.class, "defaults", Properties.class);
         ReflectionUtils.makeAccessible(field);
@@ -38,8 +38,6 @@ import org.elasticsearch.hadoop.mr.EsOutputFormat;
 import org.elasticsearch.hadoop.mr.HadoopCfgUtils;
 import org.elasticsearch.hadoop.rest.InitializationUtils;
 import org.elasticsearch.hadoop.serialization.builder.JdkValueReader;
-import org.elasticsearch.hadoop.util.FieldAlias;
-import org.elasticsearch.hadoop.util.SettingsUtils;
 import org.elasticsearch.hadoop.util.StringUtils;
 
 import cascading.flow.FlowProcess;
@@ -64,7 +62,6 @@ class EsHadoopScheme extends Scheme<JobConf, RecordReader, OutputCollector, Obje
     private final String nodes;
     private final int port;
     private final Properties props;
-    private boolean IS_ES_10;
 
     private static Log log = LogFactory.getLog(EsHadoopScheme.class);
 
@@ -89,9 +86,16 @@ class EsHadoopScheme extends Scheme<JobConf, RecordReader, OutputCollector, Obje
         context[1] = sourceCall.getInput().createValue();
         // as the tuple _might_ vary (some objects might be missing), we use a map rather then a collection
         Settings settings = loadSettings(flowProcess.getConfigCopy(), true);
-        context[2] = CascadingUtils.alias(settings);
+        String[][] paths = CascadingUtils.fieldPaths(settings, getSourceFields());
+        Text[][] keys = new Text[paths.length][];
+        for (int index = 0; index < paths.length; index++) {
+            keys[index] = new Text[paths[index].length];
+            for (int level = 0; level < paths[index].length; level++) {
+                keys[index][level] = new Text(paths[index][level]);
+            }
+        }
+        context[2] = keys;
         sourceCall.setContext(context);
-        IS_ES_10 = SettingsUtils.isEs10(settings);
     }
 
     @Override
@@ -110,7 +114,6 @@ class EsHadoopScheme extends Scheme<JobConf, RecordReader, OutputCollector, Obje
         Settings settings = loadSettings(flowProcess.getConfigCopy(), false);
         context[0] = CascadingUtils.fieldToAlias(settings, getSinkFields());
         sinkCall.setContext(context);
-        IS_ES_10 = SettingsUtils.isEs10(settings);
     }
 
     public void sinkCleanup(FlowProcess<JobConf> flowProcess, SinkCall<Object[], OutputCollector> sinkCall) throws IOException {
@@ -171,29 +174,20 @@ class EsHadoopScheme extends Scheme<JobConf, RecordReader, OutputCollector, Obje
 
         TupleEntry entry = sourceCall.getIncomingEntry();
         Map data = (Map) context[1];
-        FieldAlias alias = (FieldAlias) context[2];
+        Text[][] keys = (Text[][]) context[2];
 
         if (entry.getFields().isDefined()) {
-            // lookup using writables
-            Text lookupKey = new Text();
-            // TODO: it's worth benchmarking whether using an index/offset yields significantly better performance
-            for (Comparable<?> field : entry.getFields()) {
-                if (IS_ES_10) {
-                    // check for multi-level alias
-                    Object result = data;
-                    for (String level : StringUtils.tokenize(alias.toES(field.toString()), ".")) {
-                        lookupKey.set(level);
-                        result = ((Map) result).get(lookupKey);
-                        if (result == null) {
-                            break;
-                        }
+            // lookup by position using writables, resolved in sourcePrepare
+            for (int index = 0; index < keys.length; index++) {
+                Object result = data;
+                for (Text level : keys[index]) {
+                    // a non-object value along the path means the field is missing
+                    result = (result instanceof Map ? ((Map) result).get(level) : null);
+                    if (result == null) {
+                        break;
                     }
-                    CascadingUtils.setObject(entry, field, result);
-                }
-                else {
-                    lookupKey.set(alias.toES(field.toString()));
-                    CascadingUtils.setObject(entry, field, data.get(lookupKey));
                 }
+                CascadingUtils.setObject(entry, index, result);
             }
         }
         else {
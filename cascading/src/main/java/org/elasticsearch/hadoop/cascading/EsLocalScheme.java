@@ -18,7 +18,9 @@
  */
 package org.elasticsearch.hadoop.cascading;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -31,9 +33,7 @@ import org.elasticsearch.hadoop.rest.InitializationUtils;
 import org.elasticsearch.hadoop.rest.RestRepository;
 import org.elasticsearch.hadoop.rest.ScrollQuery;
 import org.elasticsearch.hadoop.rest.stats.Stats;
-import org.elasticsearch.hadoop.util.FieldAlias;
-import org.elasticsearch.hadoop.util.SettingsUtils;
-import org.elasticsearch.hadoop.util.StringUtils;
+import org.elasticsearch.hadoop.rest.stats.StatsAware;
 
 import cascading.flow.FlowProcess;
 import cascading.scheme.Scheme;
@@ -47,7 +47,7 @@ import cascading.tuple.TupleEntry;
 /**
  * Cascading Scheme handling
  */
-class EsLocalScheme extends Scheme<Properties, ScrollQuery, Object, Object[], Object[]> {
+class EsLocalScheme extends Scheme<Properties, Iterator<Object>, Object, Object[], Object[]> {
 
     private static final long serialVersionUID = 979036202776892844L;
 
@@ -58,8 +58,6 @@ class EsLocalScheme extends Scheme<Properties, ScrollQuery, Object, Object[], Ob
     private final Properties props;
     private transient RestRepository client;
 
-    private boolean IS_ES_10;
-
     EsLocalScheme(String host, int port, String index, String query, Fields fields, Properties props) {
         this.resource = index;
         this.query = query;
@@ -73,22 +71,29 @@ class EsLocalScheme extends Scheme<Properties, ScrollQuery, Object, Object[], Ob
     }
 
     @Override
-    public void sourcePrepare(FlowProcess<Properties> flowProcess, SourceCall<Object[], ScrollQuery> sourceCall) throws IOException {
+    public void sourcePrepare(FlowProcess<Properties> flowProcess, SourceCall<Object[], Iterator<Object>> sourceCall) throws IOException {
         super.sourcePrepare(flowProcess, sourceCall);
 
         Object[] context = new Object[1];
         Settings settings = HadoopSettingsManager.loadFrom(flowProcess.getConfigCopy()).merge(props);
-        context[0] = CascadingUtils.alias(settings);
+        context[0] = CascadingUtils.fieldPaths(settings, getSourceFields());
         sourceCall.setContext(context);
-        IS_ES_10 = SettingsUtils.isEs10(settings);
     }
 
     @Override
-    public void sourceCleanup(FlowProcess<Properties> flowProcess, SourceCall<Object[], ScrollQuery> sourceCall) throws IOException {
+    public void sourceCleanup(FlowProcess<Properties> flowProcess, SourceCall<Object[], Iterator<Object>> sourceCall) throws IOException {
+        Iterator<Object> input = sourceCall.getInput();
         // in case of a source there's no local client so do all reporting here
-        report(sourceCall.getInput().stats(), flowProcess);
-        report(sourceCall.getInput().repository().stats(), flowProcess);
-        sourceCall.getInput().close();
+        if (input instanceof StatsAware) {
+            report(((StatsAware) input).stats(), flowProcess);
+        }
+        // the parallel reader already includes the stats of its clients
+        if (input instanceof ScrollQuery) {
+            report(((ScrollQuery) input).repository().stats(), flowProcess);
+        }
+        if (input instanceof Closeable) {
+            ((Closeable) input).close();
+        }
         sourceCall.setContext(null);
         // used for consistency
         cleanupClient(flowProcess);
@@ -125,12 +130,12 @@ class EsLocalScheme extends Scheme<Properties, ScrollQuery, Object, Object[], Ob
     }
 
     @Override
-    public void sourceConfInit(FlowProcess<Properties> flowProcess, Tap<Properties, ScrollQuery, Object> tap, Properties conf) {
+    public void sourceConfInit(FlowProcess<Properties> flowProcess, Tap<Properties, Iterator<Object>, Object> tap, Properties conf) {
         initClient(conf, true);
     }
 
     @Override
-    public void sinkConfInit(FlowProcess<Properties> flowProcess, Tap<Properties, ScrollQuery, Object> tap, Properties conf) {
+    public void sinkConfInit(FlowProcess<Properties> flowProcess, Tap<Properties, Iterator<Object>, Object> tap, Properties conf) {
         initClient(conf, false);
         InitializationUtils.checkIndexExistence(client);
     }
@@ -145,36 +150,30 @@ class EsLocalScheme extends Scheme<Properties, ScrollQuery, Object, Object[], Ob
 
     @SuppressWarnings("unchecked")
     @Override
-    public boolean source(FlowProcess<Properties> flowProcess, SourceCall<Object[], ScrollQuery> sourceCall) throws IOException {
-        ScrollQuery query = sourceCall.getInput();
+    public boolean source(FlowProcess<Properties> flowProcess, SourceCall<Object[], Iterator<Object>> sourceCall) throws IOException {
+        Iterator<Object> input = sourceCall.getInput();
 
-        if (!query.hasNext()) {
+        if (!input.hasNext()) {
             return false;
         }
 
         TupleEntry entry = sourceCall.getIncomingEntry();
-        Map<String, ?> data = (Map<String, ?>) query.next()[1];
-        FieldAlias alias = (FieldAlias) sourceCall.getContext()[0];
+        Map<String, ?> data = (Map<String, ?>) ((Object[]) input.next())[1];
+        String[][] paths = (String[][]) sourceCall.getContext()[0];
 
         if (entry.getFields().isDefined()) {
-            // lookup using writables
-            // TODO: it's worth benchmarking whether using an index/offset yields significantly better performance
-            for (Comparable<?> field : entry.getFields()) {
-                if (IS_ES_10) {
-                    Object result = data;
-                    // check for multi-level alias
-                    for (String level : StringUtils.tokenize(alias.toES(field.toString()), ".")) {
-                        result = ((Map) result).get(level);
-                        if (result == null) {
-                            break;
-                        }
+            // lookup by position, using the paths resolved in sourcePrepare
+            for (int index = 0; index < paths.length; index++) {
+                Object result = data;
+                for (String level : paths[index]) {
+                    // a non-object value along the path means the field is missing
+                    result = (result instanceof Map ? ((Map) result).get(level) : null);
+                    if (result == null) {
+                        break;
                     }
-                    entry.setObject(field, result);
-                }
-                else {
-                    //NB: coercion should be applied automatically by the TupleEntry
-                    entry.setObject(field, data.get(alias.toES(field.toString())));
                 }
+                //NB: coercion should be applied automatically by the TupleEntry
+                entry.setObject(index, result);
             }
         }
         else {
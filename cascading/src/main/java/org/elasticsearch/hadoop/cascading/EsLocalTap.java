@@ -20,15 +20,20 @@ package org.elasticsearch.hadoop.cascading;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.elasticsearch.hadoop.cfg.FieldPresenceValidation;
+import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
 import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.rest.InitializationUtils;
 import org.elasticsearch.hadoop.rest.QueryBuilder;
 import org.elasticsearch.hadoop.rest.RestRepository;
-import org.elasticsearch.hadoop.rest.ScrollQuery;
+import org.elasticsearch.hadoop.rest.RestService;
+import org.elasticsearch.hadoop.rest.RestService.PartitionDefinition;
 import org.elasticsearch.hadoop.serialization.ScrollReader;
 import org.elasticsearch.hadoop.serialization.builder.JdkValueReader;
 import org.elasticsearch.hadoop.serialization.dto.mapping.Field;
@@ -47,7 +52,7 @@ import cascading.tuple.TupleEntrySchemeIterator;
 /**
  * Local Cascading Tap.
  */
-class EsLocalTap extends Tap<Properties, ScrollQuery, Object> {
+class EsLocalTap extends Tap<Properties, Iterator<Object>, Object> {
 
     private static final long serialVersionUID = 8644631529427137615L;
 
@@ -67,26 +72,38 @@ class EsLocalTap extends Tap<Properties, ScrollQuery, Object> {
     }
 
     @Override
-    public TupleEntryIterator openForRead(FlowProcess<Properties> flowProcess, ScrollQuery input) throws IOException {
+    public TupleEntryIterator openForRead(FlowProcess<Properties> flowProcess, Iterator<Object> input) throws IOException {
         if (input == null) {
             // get original copy
             Settings settings = CascadingUtils.addDefaultsToSettings(CascadingUtils.extractOriginalProperties(flowProcess.getConfigCopy()), tapProperties, log);
 
-            // will be closed by the query is finished
-            RestRepository client = new RestRepository(settings);
-            Field mapping = client.getMapping();
             Collection<String> fields = CascadingUtils.fieldToAlias(settings, getSourceFields());
 
-            // validate if possible
-            FieldPresenceValidation validation = settings.getFieldExistanceValidation();
-            if (validation.isRequired()) {
-                MappingUtils.validateMapping(fields, mapping, validation, log);
+            if (settings.getReadLocalThreads() > 1) {
+                // read each shard through its own scroll, in parallel
+                settings = settings.copy();
+                settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_TARGET_FIELDS, StringUtils.concatenateAndUriEncode(fields, ","));
+                InitializationUtils.setValueReaderIfNotSet(settings, JdkValueReader.class, log);
+                // validates the mapping as well
+                List<PartitionDefinition> partitions = RestService.findPartitions(settings, log);
+                input = RestService.parallelReader(settings, partitions, log);
+            }
+            else {
+                // will be closed by the query is finished
+                RestRepository client = new RestRepository(settings);
+                Field mapping = client.getMapping();
+
+                // validate if possible
+                FieldPresenceValidation validation = settings.getFieldExistanceValidation();
+                if (validation.isRequired()) {
+                    MappingUtils.validateMapping(fields, mapping, validation, log);
+                }
+
+                input = QueryBuilder.query(settings).fields(StringUtils.concatenateAndUriEncode(fields,  ",")).build(client,
+                        new ScrollReader(new JdkValueReader(), mapping, settings.getReadMetadata(), settings.getReadMetadataField(), settings.getOutputAsJson(), settings.getReadSourceLazy()));
             }
-
-            input = QueryBuilder.query(settings).fields(StringUtils.concatenateAndUriEncode(fields,  ",")).build(client,
-                          new ScrollReader(new JdkValueReader(), mapping, settings.getReadMetadata(), settings.getReadMetadataField(), settings.getOutputAsJson()));
         }
-        return new TupleEntrySchemeIterator<Properties, ScrollQuery>(flowProcess, getScheme(), input, getIdentifier());
+        return new TupleEntrySchemeIterator<Properties, Iterator<Object>>(flowProcess, getScheme(), input, getIdentifier());
     }
 
     @Override
@@ -0,0 +1,122 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.cascading;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.PropertiesSettings;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.junit.Test;
+
+import cascading.scheme.ConcreteCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+
+import static org.junit.Assert.*;
+
+public class EsLocalSchemeTest {
+
+    private static final Fields FIELDS = new Fields("name", "city", "zip", "missing");
+
+    @Test
+    public void testFieldPaths() throws Exception {
+        String[][] paths = CascadingUtils.fieldPaths(settings(null), FIELDS);
+        assertEquals(4, paths.length);
+        assertArrayEquals(new String[] { "name" }, paths[0]);
+        assertArrayEquals(new String[] { "address", "city" }, paths[1]);
+        assertArrayEquals(new String[] { "address", "zip" }, paths[2]);
+        assertArrayEquals(new String[] { "missing" }, paths[3]);
+    }
+
+    @Test
+    public void testFieldPathsEs090() throws Exception {
+        // 0.90.x returns the fields flat, under their full name
+        String[][] paths = CascadingUtils.fieldPaths(settings("0.90.5"), FIELDS);
+        assertArrayEquals(new String[] { "address.city" }, paths[1]);
+    }
+
+    @Test
+    public void testSourceByPosition() throws Exception {
+        Map<String, Object> address = new LinkedHashMap<String, Object>();
+        address.put("zip", "12345");
+        address.put("city", "Paris");
+        Map<String, Object> doc = new LinkedHashMap<String, Object>();
+        // declared in a different order than the fields
+        doc.put("address", address);
+        doc.put("name", "jim");
+
+        TupleEntry entry = source(doc);
+        assertEquals("jim", entry.getObject(0));
+        assertEquals("Paris", entry.getObject(1));
+        assertEquals("12345", entry.getObject(2));
+        assertNull(entry.getObject(3));
+    }
+
+    @Test
+    public void testSourceNonObjectLevel() throws Exception {
+        Map<String, Object> doc = new LinkedHashMap<String, Object>();
+        doc.put("name", "jim");
+        doc.put("address", "unknown");
+
+        TupleEntry entry = source(doc);
+        assertEquals("jim", entry.getObject(0));
+        assertNull(entry.getObject(1));
+        assertNull(entry.getObject(2));
+        assertNull(entry.getObject(3));
+    }
+
+    @Test
+    public void testSourceEmptyDocument() throws Exception {
+        TupleEntry entry = source(Collections.<String, Object> emptyMap());
+        assertEquals(4, entry.size());
+        for (int i = 0; i < entry.size(); i++) {
+            assertNull(entry.getObject(i));
+        }
+    }
+
+    private static Settings settings(String version) {
+        Properties props = new Properties();
+        props.setProperty("es.mapping.names", "city:address.city, zip:address.zip");
+        if (version != null) {
+            props.setProperty(InternalConfigurationOptions.INTERNAL_ES_VERSION, version);
+        }
+        return new PropertiesSettings(props);
+    }
+
+    private static TupleEntry source(Map<String, Object> doc) throws Exception {
+        EsLocalScheme scheme = new EsLocalScheme("localhost", 9200, "foo/bar", null, FIELDS, new Properties());
+
+        Iterator<Object> input = Arrays.<Object> asList(new Object[] { "1", doc }).iterator();
+        ConcreteCall<Object[], Iterator<Object>> call = new ConcreteCall<Object[], Iterator<Object>>();
+        call.setInput(input);
+        call.setContext(new Object[] { CascadingUtils.fieldPaths(settings(null), FIELDS) });
+        call.setIncomingEntry(new TupleEntry(FIELDS, Tuple.size(FIELDS.size())));
+
+        assertTrue(scheme.source(null, call));
+        assertFalse(scheme.source(null, call));
+        return call.getIncomingEntry();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hive.ql.exec.TableScanOperator;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.metadata.InputEstimator;
+import org.apache.hadoop.mapred.JobConf;
+import org.elasticsearch.hadoop.EsHadoopException;
+import org.elasticsearch.hadoop.cfg.HadoopSettingsManager;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.rest.InitializationUtils;
+import org.elasticsearch.hadoop.rest.QueryBuilder;
+import org.elasticsearch.hadoop.rest.RestRepository;
+
+/**
+ * {@link EsStorageHandler} that also reports the size of its input to Hive, through {@link InputEstimator}.
+ *
+ * Since the estimator is available only in Hive 0.13 or higher, it is kept in a separate class; on older Hive versions use
+ * {@link EsStorageHandler} instead.
+ */
+public class EsEstimatingStorageHandler extends EsStorageHandler implements InputEstimator {
+
+    private static Log log = LogFactory.getLog(EsEstimatingStorageHandler.class);
+    // length reported when the size cannot be estimated - large, yet leaving room for Hive to add up the other inputs
+    static final long UNKNOWN_LENGTH = Long.MAX_VALUE / 2;
+
+    @Override
+    public Estimation estimate(JobConf job, TableScanOperator ts, long remaining) throws HiveException {
+        // the table properties have already been copied to the job
+        Settings settings = HadoopSettingsManager.loadFrom(job).copy();
+        InitializationUtils.setValueReaderIfNotSet(settings, HiveValueReader.class, log);
+        settings.setResourceRead(settings.getResourceRead());
+
+        RestRepository repository = null;
+        try {
+            InitializationUtils.discoverEsVersion(settings, log);
+            // count only the documents matching the pushed down predicate (if any)
+            EsHiveInputFormat.pushDownFilter(settings, (ts != null ? ts.getConf().getFilterExpr() : null), log);
+
+            repository = new RestRepository(settings);
+            long rows = QueryBuilder.query(settings).count(repository);
+            // estimate the size based on the average document size
+            long[] size = repository.getReadIndexSize();
+            long length = (size[0] > 0 ? (long) ((double) size[1] / size[0] * rows) : 0);
+
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Estimated [%s] rows and [%s] bytes for resource [%s]", rows, length, settings.getResourceRead()));
+            }
+            return new Estimation((int) Math.min(rows, Integer.MAX_VALUE), length);
+        } catch (EsHadoopException ex) {
+            // an estimation is not worth failing the query however the table should not look small either (which would enable
+            // optimizations such as local mode or map joins)
+            log.warn(String.format("Cannot estimate the size of resource [%s]; assuming it is large", settings.getResourceRead()), ex);
+            return new Estimation(Integer.MAX_VALUE, UNKNOWN_LENGTH);
+        } finally {
+            if (repository != null) {
+                repository.close();
+            }
+        }
+    }
+}
@@ -25,6 +25,9 @@ import java.io.IOException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.Utilities;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.TableScanDesc;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.FileInputFormat;
@@ -64,8 +67,8 @@ public class EsHiveInputFormat extends EsInputFormat<Text, Writable> {
         }
 
         public long getLength() {
-            // TODO: can this be delegated?
-            return 1L;
+            // actual size for combined splits (so Hive can combine/sort them)
+            return ((ShardInputSplit) delegate).getLength();
         }
 
         public String[] getLocations() throws IOException {
@@ -102,9 +105,12 @@ public class EsHiveInputFormat extends EsInputFormat<Text, Writable> {
         Log log = LogFactory.getLog(getClass());
         // move on to initialization
         InitializationUtils.setValueReaderIfNotSet(settings, HiveValueReader.class, log);
-        settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_TARGET_FIELDS, StringUtils.concatenateAndUriEncode(HiveUtils.columnToAlias(settings), ","));
+        // fetch only the columns projected by the query (if any)
+        settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_TARGET_FIELDS,
+                StringUtils.concatenateAndUriEncode(HiveUtils.columnToAlias(settings, HiveUtils.projectedColumns(job)), ","));
         // set read resource
         settings.setResourceRead(settings.getResourceRead());
+        pushDownFilter(settings, job, log);
         HiveUtils.init(settings, log);
 
         // decorate original splits as FileSplit
@@ -117,9 +123,27 @@ public class EsHiveInputFormat extends EsInputFormat<Text, Writable> {
         return wrappers;
     }
 
+    // translates the predicate pushed by Hive (see EsStorageHandler#decomposePredicate) into an Elasticsearch filter
+    private static void pushDownFilter(Settings settings, JobConf job, Log log) {
+        String serialized = job.get(TableScanDesc.FILTER_EXPR_CONF_STR);
+        pushDownFilter(settings, (StringUtils.hasText(serialized) ? Utilities.deserializeExpression(serialized) : null), log);
+    }
+
+    static void pushDownFilter(Settings settings, ExprNodeDesc predicate, Log log) {
+        String filter = null;
+        if (settings.getReadPushdown() && predicate != null) {
+            filter = new HiveFilterTranslator(settings).toQueryDsl(predicate);
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Translated pushed down predicate [%s] into filter [%s]", predicate.getExprString(), filter));
+            }
+        }
+        // clear any filter left over by a different table
+        settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_QUERY_FILTER, (filter != null ? filter : ""));
+    }
+
     @SuppressWarnings({ "unchecked", "rawtypes" })
     @Override
-    public AbstractWritableShardRecordReader getRecordReader(InputSplit split, JobConf job, Reporter reporter) {
+    public ShardRecordReader getRecordReader(InputSplit split, JobConf job, Reporter reporter) {
         InputSplit delegate = ((EsHiveSplit) split).delegate;
         return isOutputAsJson(job) ? new JsonWritableShardRecordReader(delegate, job, reporter) : new WritableShardRecordReader(delegate, job, reporter);
     }
@@ -68,6 +68,12 @@ public class EsHiveOutputFormat extends EsOutputFormat implements HiveCompatOutp
             }
         }
 
+        @Override
+        protected boolean isBulkLoadManaged() {
+            // Hive does not reliably invoke the committer (depending on the execution engine)
+            return false;
+        }
+
         @Override
         public void close(boolean abort) throws IOException {
             // TODO: check whether a proper Reporter can be passed in
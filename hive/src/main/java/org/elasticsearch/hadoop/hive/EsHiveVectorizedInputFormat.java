@@ -0,0 +1,124 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import java.io.IOException;
+
+import org.apache.hadoop.hive.ql.exec.Utilities;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedInputFormatInterface;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatchCtx;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+
+/**
+ * Hive InputFormat able to return {@link VectorizedRowBatch}es. Used (through {@link EsStorageHandler}) when
+ * {@value HiveConstants#VECTORIZED} is enabled; the batches are created only when Hive actually vectorizes the query, otherwise
+ * the regular (row) reader is returned.
+ */
+// Hive looks for the interface on the class itself (not its parents)
+public class EsHiveVectorizedInputFormat extends EsHiveInputFormat implements VectorizedInputFormatInterface {
+
+    static class VectorizedShardRecordReader extends ShardRecordReader<NullWritable, VectorizedRowBatch> {
+
+        private final VectorizedRowBatchCtx ctx = new VectorizedRowBatchCtx();
+        private final HiveVectorizedScrollReader reader;
+        private boolean addPartitionCols = true;
+
+        VectorizedShardRecordReader(InputSplit split, JobConf job, Reporter reporter) {
+            super(((EsHiveSplit) split).delegate, job, reporter);
+
+            Settings settings = settings();
+            if (settings.getReadMetadata() || settings.getOutputAsJson()) {
+                throw new EsHadoopIllegalArgumentException(String.format("Vectorized reading does not support [%s] or [%s]; disable [%s]",
+                        ConfigurationOptions.ES_READ_METADATA, ConfigurationOptions.ES_OUTPUT_JSON, HiveConstants.VECTORIZED));
+            }
+
+            try {
+                ctx.init(job, (FileSplit) split);
+            } catch (Exception ex) {
+                throw new EsHadoopIllegalStateException("Cannot initialize vectorized row batch context", ex);
+            }
+
+            reader = new HiveVectorizedScrollReader(getScrollReader(), settings, HiveUtils.projectedColumns(job));
+            setScrollReader(reader);
+        }
+
+        @Override
+        public NullWritable createKey() {
+            return NullWritable.get();
+        }
+
+        @Override
+        public VectorizedRowBatch createValue() {
+            try {
+                return ctx.createVectorizedRowBatch();
+            } catch (HiveException ex) {
+                throw new EsHadoopIllegalStateException("Cannot create vectorized row batch", ex);
+            }
+        }
+
+        @Override
+        public boolean next(NullWritable key, VectorizedRowBatch batch) throws IOException {
+            reader.reset(batch);
+
+            if (addPartitionCols) {
+                try {
+                    ctx.addPartitionColsToBatch(batch);
+                } catch (HiveException ex) {
+                    throw new EsHadoopIllegalStateException("Cannot add partition columns to batch", ex);
+                }
+                addPartitionCols = false;
+            }
+
+            // each hit is copied into the batch by setCurrentValue
+            while (batch.size < batch.getMaxSize() && super.next(key, batch)) {
+            }
+            return batch.size > 0;
+        }
+
+        @Override
+        protected NullWritable setCurrentKey(NullWritable hadoopKey, Object object) {
+            return hadoopKey;
+        }
+
+        @Override
+        protected VectorizedRowBatch setCurrentValue(VectorizedRowBatch batch, Object object) {
+            reader.copy(object, batch, batch.size++);
+            return batch;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public ShardRecordReader getRecordReader(InputSplit split, JobConf job, Reporter reporter) {
+        if (!Utilities.isVectorMode(job)) {
+            return super.getRecordReader(split, job, reporter);
+        }
+        return new VectorizedShardRecordReader(split, job, reporter);
+    }
+}
@@ -18,8 +18,6 @@
  */
 package org.elasticsearch.hadoop.hive;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -33,12 +31,13 @@ import org.apache.hadoop.hive.serde2.SerDeException;
 import org.apache.hadoop.hive.serde2.SerDeStats;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
-import org.apache.hadoop.hive.serde2.typeinfo.ListTypeInfo;
-import org.apache.hadoop.hive.serde2.typeinfo.MapTypeInfo;
+import org.apache.hadoop.hive.serde2.io.ByteWritable;
+import org.apache.hadoop.hive.serde2.io.ShortWritable;
 import org.apache.hadoop.hive.serde2.typeinfo.StructTypeInfo;
-import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
-import org.apache.hadoop.io.ArrayWritable;
-import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
@@ -48,9 +47,7 @@ import org.elasticsearch.hadoop.rest.InitializationUtils;
 import org.elasticsearch.hadoop.serialization.bulk.BulkCommand;
 import org.elasticsearch.hadoop.serialization.bulk.BulkCommands;
 import org.elasticsearch.hadoop.util.BytesArray;
-import org.elasticsearch.hadoop.util.FieldAlias;
 import org.elasticsearch.hadoop.util.SettingsUtils;
-import org.elasticsearch.hadoop.util.StringUtils;
 
 public class EsSerDe extends AbstractSerDe {
 
@@ -66,12 +63,16 @@ public class EsSerDe extends AbstractSerDe {
     private final HiveType hiveType = new HiveType(null, null);
     private final HiveBytesArrayWritable result = new HiveBytesArrayWritable();
     private StructTypeInfo structTypeInfo;
-    private FieldAlias alias;
+    // columns read by the query (null if all)
+    private boolean[] projection;
+    // deserialization plan (created on first read)
+    private HiveStructConverter converter;
+    // last row read, as returned to Hive (for stats)
+    private Object lastRow;
+    private final SerDeStats stats = new SerDeStats();
     private BulkCommand command;
 
     private boolean writeInitialized = false;
-    private boolean readInitialized = false;
-    private boolean IS_ES_10 = true;
     private boolean trace = false;
 
 
@@ -83,7 +84,18 @@ public class EsSerDe extends AbstractSerDe {
         structTypeInfo = HiveUtils.typeInfo(inspector);
         cfg = conf;
         settings = (cfg != null ? HadoopSettingsManager.loadFrom(cfg).merge(tbl) : HadoopSettingsManager.loadFrom(tbl));
-        alias = HiveUtils.alias(settings);
+
+        projection = null;
+        converter = null;
+        List<Integer> projected = HiveUtils.projectedColumns(conf);
+        if (projected != null) {
+            projection = new boolean[structTypeInfo.getAllStructFieldNames().size()];
+            for (Integer index : projected) {
+                if (index < projection.length) {
+                    projection[index] = true;
+                }
+            }
+        }
 
         HiveUtils.fixHive13InvalidComments(settings, tbl);
         this.tableProperties = tbl;
@@ -97,17 +109,18 @@ public class EsSerDe extends AbstractSerDe {
         initialize(conf, tbl, new Properties());
     }
 
+    Settings settings() {
+        return settings;
+    }
+
     @Override
     public Object deserialize(Writable blob) throws SerDeException {
-        if (!readInitialized) {
-            readInitialized = true;
-            IS_ES_10 = SettingsUtils.isEs10(settings);
+        if (converter == null) {
+            // resolved lazily as the Elasticsearch version is known only once the data is read
+            converter = new HiveStructConverter(structTypeInfo, HiveUtils.alias(settings), SettingsUtils.isEs10(settings), projection);
         }
-
-        if (blob == null || blob instanceof NullWritable) {
-            return null;
-        }
-        Object des = hiveFromWritable(structTypeInfo, blob, alias, IS_ES_10);
+        Object des = converter.convert(blob);
+        lastRow = des;
 
         if (trace) {
             log.trace(String.format("Deserialized [%s] to [%s]", blob, des));
@@ -121,10 +134,50 @@ public class EsSerDe extends AbstractSerDe {
         return inspector;
     }
 
+    // called by Hive for each row (when gathering stats, such as through ANALYZE TABLE)
     @Override
     public SerDeStats getSerDeStats() {
-        // TODO: can compute serialize stats but not deserialized ones
-        return null;
+        stats.setRawDataSize(rawDataSize(lastRow));
+        return stats;
+    }
+
+    // estimates the in-memory size of the given (deserialized) value - only the columns read are counted, not their names
+    static long rawDataSize(Object data) {
+        if (data == null || data instanceof NullWritable) {
+            return 0;
+        }
+        // structs and arrays
+        if (data instanceof List) {
+            long size = 0;
+            for (Object element : (List<?>) data) {
+                size += rawDataSize(element);
+            }
+            return size;
+        }
+        if (data instanceof Map) {
+            long size = 0;
+            for (Entry<?, ?> entry : ((Map<?, ?>) data).entrySet()) {
+                size += rawDataSize(entry.getKey()) + rawDataSize(entry.getValue());
+            }
+            return size;
+        }
+        if (data instanceof Text) {
+            return ((Text) data).getLength();
+        }
+        if (data instanceof BytesWritable) {
+            return ((BytesWritable) data).getLength();
+        }
+        if (data instanceof BooleanWritable || data instanceof ByteWritable) {
+            return 1;
+        }
+        if (data instanceof ShortWritable) {
+            return 2;
+        }
+        if (data instanceof IntWritable || data instanceof FloatWritable) {
+            return 4;
+        }
+        // long, double, timestamp and the rest
+        return 8;
     }
 
     @Override
@@ -141,7 +194,7 @@ public class EsSerDe extends AbstractSerDe {
         hiveType.setObjectInspector(objInspector);
         hiveType.setObject(data);
 
-        command.write(hiveType).copyTo(scratchPad);
+        command.writeTo(hiveType, scratchPad);
         result.setContent(scratchPad);
         return result;
     }
@@ -158,82 +211,4 @@ public class EsSerDe extends AbstractSerDe {
         InitializationUtils.setBytesConverterIfNeeded(settings, HiveBytesConverter.class, log);
         this.command = BulkCommands.create(settings, null);
     }
-
-
-    @SuppressWarnings("unchecked")
-    static Object hiveFromWritable(TypeInfo type, Writable data, FieldAlias alias, boolean IS_ES_10) {
-        if (data == null || data instanceof NullWritable) {
-            return null;
-        }
-
-        switch (type.getCategory()) {
-        case LIST: {// or ARRAY
-            ListTypeInfo listType = (ListTypeInfo) type;
-            TypeInfo listElementType = listType.getListElementTypeInfo();
-
-            ArrayWritable aw = (ArrayWritable) data;
-
-            List<Object> list = new ArrayList<Object>();
-            for (Writable writable : aw.get()) {
-                list.add(hiveFromWritable(listElementType, writable, alias, IS_ES_10));
-            }
-
-            return list;
-        }
-
-        case MAP: {
-            MapTypeInfo mapType = (MapTypeInfo) type;
-            Map<Writable, Writable> mw = (Map<Writable, Writable>) data;
-
-            Map<Object, Object> map = new LinkedHashMap<Object, Object>();
-
-            for (Entry<Writable, Writable> entry : mw.entrySet()) {
-                map.put(hiveFromWritable(mapType.getMapKeyTypeInfo(), entry.getKey(), alias, IS_ES_10),
-                        hiveFromWritable(mapType.getMapValueTypeInfo(), entry.getValue(), alias, IS_ES_10));
-            }
-
-            return map;
-        }
-        case STRUCT: {
-            StructTypeInfo structType = (StructTypeInfo) type;
-            List<String> names = structType.getAllStructFieldNames();
-            List<TypeInfo> info = structType.getAllStructFieldTypeInfos();
-
-            // return just the values
-            List<Object> struct = new ArrayList<Object>();
-
-            MapWritable map = (MapWritable) data;
-            Text reuse = new Text();
-            for (int index = 0; index < names.size(); index++) {
-                String esAlias = alias.toES(names.get(index));
-                if (IS_ES_10) {
-                    // check for multi-level alias
-                    Writable result = map;
-                    for (String level : StringUtils.tokenize(esAlias, ".")) {
-                        reuse.set(level);
-                        result = ((MapWritable) result).get(reuse);
-                        if (result == null) {
-                            break;
-                        }
-                    }
-                    struct.add(hiveFromWritable(info.get(index), result, alias, IS_ES_10));
-                }
-                else {
-                    reuse.set(alias.toES(names.get(index)));
-                    struct.add(hiveFromWritable(info.get(index), map.get(reuse), alias, IS_ES_10));
-                }
-            }
-            return struct;
-        }
-
-        case UNION: {
-            throw new UnsupportedOperationException("union not yet supported");//break;
-        }
-
-        case PRIMITIVE:
-        default:
-            // return as is
-            return data;
-        }
-    }
-}
\ No newline at end of file
+}
@@ -26,15 +26,20 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.metastore.HiveMetaHook;
 import org.apache.hadoop.hive.ql.metadata.DefaultStorageHandler;
+import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
 import org.apache.hadoop.hive.ql.plan.TableDesc;
+import org.apache.hadoop.hive.serde2.Deserializer;
 import org.apache.hadoop.hive.serde2.SerDe;
 import org.apache.hadoop.mapred.InputFormat;
+import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.OutputFormat;
 import org.elasticsearch.hadoop.cfg.HadoopSettingsManager;
 import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.mr.EsOutputFormat;
 import org.elasticsearch.hadoop.mr.HadoopCfgUtils;
 import org.elasticsearch.hadoop.util.Assert;
+import org.elasticsearch.hadoop.util.unit.Booleans;
 
 import static org.elasticsearch.hadoop.hive.HiveConstants.COLUMNS;
 import static org.elasticsearch.hadoop.hive.HiveConstants.COLUMNS_TYPES;
@@ -47,12 +52,17 @@ import static org.elasticsearch.hadoop.hive.HiveConstants.TABLE_LOCATION;
  * or passed to {@link #EsStorageHandler} through Hive <tt>TBLPROPERTIES</tt>
  */
 @SuppressWarnings({ "deprecation", "rawtypes" })
-public class EsStorageHandler extends DefaultStorageHandler {
+public class EsStorageHandler extends DefaultStorageHandler implements HiveStoragePredicateHandler {
 
     private static Log log = LogFactory.getLog(EsStorageHandler.class);
 
     @Override
     public Class<? extends InputFormat> getInputFormatClass() {
+        // vectorization is opt-in (set at session level)
+        Configuration cfg = getConf();
+        if (cfg != null && Booleans.parseBoolean(cfg.get(HiveConstants.VECTORIZED))) {
+            return EsHiveVectorizedInputFormat.class;
+        }
         return EsHiveInputFormat.class;
     }
 
@@ -115,6 +125,23 @@ public class EsStorageHandler extends DefaultStorageHandler {
     }
 
 
+    @Override
+    public DecomposedPredicate decomposePredicate(JobConf jobConf, Deserializer deserializer, ExprNodeDesc predicate) {
+        // the table properties are available only through the SerDe
+        Settings settings = (deserializer instanceof EsSerDe ? ((EsSerDe) deserializer).settings() : HadoopSettingsManager.loadFrom(jobConf));
+        if (!settings.getReadPushdown()) {
+            return null;
+        }
+
+        DecomposedPredicate decomposed = new HiveFilterTranslator(settings).decompose(predicate);
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Pushing down predicate [%s]; residual predicate [%s]",
+                    (decomposed != null ? decomposed.pushedPredicate.getExprString() : null),
+                    (decomposed != null && decomposed.residualPredicate != null ? decomposed.residualPredicate.getExprString() : predicate.getExprString())));
+        }
+        return decomposed;
+    }
+
     @Override
     @Deprecated
     public void configureTableJobProperties(TableDesc tableDesc, Map<String, String> jobProperties) {
@@ -33,8 +33,14 @@ interface HiveConstants {
     String CHAR_WRITABLE = "org.apache.hadoop.hive.serde2.io.HiveCharWritable";
     String TABLE_LOCATION = "location";
 
+    // column pruning - read directly since ColumnProjectionUtils changed its API in 0.13
+    String READ_COLUMN_IDS = "hive.io.file.readcolumn.ids";
+    // available since Hive 0.13
+    String READ_ALL_COLUMNS = "hive.io.file.read.all.columns";
+
     String MAPPING_NAMES = "es.mapping.names";
     String COLUMN_COMMENTS = "columns.comments";
+    String VECTORIZED = "es.hive.vectorized";
 
     String INPUT_TBL_PROPERTIES = "es.internal.hive.input.tbl.properties";
     String OUTPUT_TBL_PROPERTIES = "es.internal.hive.output.tbl.properties";
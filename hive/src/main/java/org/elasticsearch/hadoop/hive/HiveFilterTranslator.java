@@ -0,0 +1,405 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.common.type.HiveVarchar;
+import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler.DecomposedPredicate;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDescUtils;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFBetween;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFBridge;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFIn;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPAnd;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNot;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNotEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNotNull;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNull;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPOr;
+import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.util.FieldAlias;
+
+/**
+ * Translates Hive predicates (as pushed by the optimizer) into Elasticsearch filters (query dsl).
+ *
+ * Each translated predicate is either <i>exact</i> (Elasticsearch returns exactly the rows the predicate accepts) or <i>lenient</i>
+ * (Elasticsearch returns a superset of them - e.g. string equality through a phrase match on analyzed fields or negations which include
+ * the missing/null values). Lenient predicates are pushed down but kept in the residual predicate as well, so Hive still evaluates them.
+ *
+ * In strict mode, string predicates are translated into term-level filters (exact matches on <tt>not_analyzed</tt> fields); otherwise
+ * only (phrase) equality is translated for strings.
+ */
+class HiveFilterTranslator {
+
+    private static final String LIKE_UDF = "org.apache.hadoop.hive.ql.udf.UDFLike";
+
+    private final FieldAlias alias;
+    private final boolean strict;
+
+    static class Translation {
+        final Map<String, Object> filter;
+        final boolean exact;
+
+        Translation(Map<String, Object> filter, boolean exact) {
+            this.filter = filter;
+            this.exact = exact;
+        }
+    }
+
+    HiveFilterTranslator(Settings settings) {
+        this.alias = HiveUtils.alias(settings);
+        this.strict = settings.getReadPushdownStrict();
+    }
+
+    /**
+     * Splits the given predicate into the conjuncts that can be executed by Elasticsearch and the rest (to be evaluated by Hive).
+     *
+     * @param predicate Hive predicate
+     * @return decomposed predicate or null if no part of the predicate can be pushed down
+     */
+    DecomposedPredicate decompose(ExprNodeDesc predicate) {
+        List<ExprNodeDesc> pushed = new ArrayList<ExprNodeDesc>();
+        List<ExprNodeDesc> residual = new ArrayList<ExprNodeDesc>();
+
+        for (ExprNodeDesc conjunct : ExprNodeDescUtils.split(predicate)) {
+            Translation translation = translate(conjunct);
+            if (translation != null) {
+                pushed.add(conjunct);
+            }
+            if (translation == null || !translation.exact) {
+                residual.add(conjunct);
+            }
+        }
+
+        if (pushed.isEmpty()) {
+            return null;
+        }
+
+        DecomposedPredicate decomposed = new DecomposedPredicate();
+        decomposed.pushedPredicate = (ExprNodeGenericFuncDesc) ExprNodeDescUtils.mergePredicates(pushed);
+        if (!residual.isEmpty()) {
+            ExprNodeDesc merged = ExprNodeDescUtils.mergePredicates(residual);
+            // a residual such as a boolean column cannot be expressed on its own - fall back to the whole predicate
+            decomposed.residualPredicate = (ExprNodeGenericFuncDesc) (merged instanceof ExprNodeGenericFuncDesc ? merged : predicate);
+        }
+        return decomposed;
+    }
+
+    /**
+     * Returns the Elasticsearch filter (as JSON) for the given (pushed) predicate. Conjuncts that cannot be translated are ignored
+     * (since they are evaluated by Hive anyway), the resulting filter accepting a superset of the rows.
+     *
+     * @param predicate Hive predicate
+     * @return filter as JSON or null if nothing can be translated
+     */
+    String toQueryDsl(ExprNodeDesc predicate) {
+        List<Object> filters = new ArrayList<Object>();
+        for (ExprNodeDesc conjunct : ExprNodeDescUtils.split(predicate)) {
+            Translation translation = translate(conjunct);
+            if (translation != null) {
+                filters.add(translation.filter);
+            }
+        }
+
+        if (filters.isEmpty()) {
+            return null;
+        }
+        Object filter = (filters.size() == 1 ? filters.get(0) : bool("must", filters));
+        try {
+            return new ObjectMapper().writeValueAsString(filter);
+        } catch (IOException ex) {
+            throw new EsHadoopIllegalStateException(String.format("Cannot serialize pushed down filter [%s]", filter), ex);
+        }
+    }
+
+    /**
+     * Translates the given expression.
+     *
+     * @param expr Hive expression
+     * @return translation or null if the expression cannot be translated
+     */
+    Translation translate(ExprNodeDesc expr) {
+        if (!(expr instanceof ExprNodeGenericFuncDesc)) {
+            return null;
+        }
+
+        ExprNodeGenericFuncDesc func = (ExprNodeGenericFuncDesc) expr;
+        GenericUDF udf = func.getGenericUDF();
+        List<ExprNodeDesc> args = func.getChildren();
+
+        if (udf instanceof GenericUDFOPAnd || udf instanceof GenericUDFOPOr) {
+            return junction(udf instanceof GenericUDFOPAnd, args);
+        }
+        if (udf instanceof GenericUDFOPNot) {
+            Translation child = (args.size() == 1 ? translate(args.get(0)) : null);
+            // the negation of a lenient filter would drop matching rows; the negation of an exact one includes the null values
+            return (child != null && child.exact ? new Translation(bool("must_not", child.filter), false) : null);
+        }
+        if (udf instanceof GenericUDFOPNull || udf instanceof GenericUDFOPNotNull) {
+            String field = (args.size() == 1 ? field(args.get(0)) : null);
+            if (field == null) {
+                return null;
+            }
+            return new Translation(clause(udf instanceof GenericUDFOPNull ? "missing" : "exists", Collections.singletonMap("field", field)), true);
+        }
+        if (udf instanceof GenericUDFIn) {
+            return in(args);
+        }
+        if (udf instanceof GenericUDFBetween) {
+            return between(args);
+        }
+        if (udf instanceof GenericUDFBridge && LIKE_UDF.equals(((GenericUDFBridge) udf).getUdfClassName())) {
+            return like(args);
+        }
+        return comparison(udf, args);
+    }
+
+    private Translation junction(boolean and, List<ExprNodeDesc> args) {
+        List<Object> filters = new ArrayList<Object>();
+        boolean exact = true;
+        for (ExprNodeDesc arg : args) {
+            Translation child = translate(arg);
+            if (child == null) {
+                return null;
+            }
+            filters.add(child.filter);
+            exact &= child.exact;
+        }
+        return new Translation(bool(and ? "must" : "should", filters), exact);
+    }
+
+    private Translation comparison(GenericUDF udf, List<ExprNodeDesc> args) {
+        if (args.size() != 2) {
+            return null;
+        }
+
+        // column <op> constant or constant <op> column
+        boolean flipped = !(args.get(0) instanceof ExprNodeColumnDesc);
+        ExprNodeDesc column = args.get(flipped ? 1 : 0);
+        ExprNodeDesc constant = args.get(flipped ? 0 : 1);
+
+        String field = field(column);
+        Object value = value(constant);
+        if (field == null || value == null) {
+            return null;
+        }
+
+        boolean string = isString(column.getTypeInfo());
+
+        if (udf instanceof GenericUDFOPEqual) {
+            return equal(field, value, string);
+        }
+        if (string && !strict) {
+            return null;
+        }
+        if (udf instanceof GenericUDFOPNotEqual) {
+            Map<String, Object> bool = new LinkedHashMap<String, Object>();
+            // exclude the missing values as well (as Hive does)
+            bool.put("must", clause("exists", Collections.singletonMap("field", field)));
+            bool.put("must_not", term(field, value));
+            return new Translation(clause("bool", bool), true);
+        }
+
+        String op = null;
+        if (udf instanceof GenericUDFOPLessThan) {
+            op = (flipped ? "gt" : "lt");
+        }
+        else if (udf instanceof GenericUDFOPEqualOrLessThan) {
+            op = (flipped ? "gte" : "lte");
+        }
+        else if (udf instanceof GenericUDFOPGreaterThan) {
+            op = (flipped ? "lt" : "gt");
+        }
+        else if (udf instanceof GenericUDFOPEqualOrGreaterThan) {
+            op = (flipped ? "lte" : "gte");
+        }
+
+        return (op != null ? new Translation(range(field, Collections.singletonMap(op, value)), true) : null);
+    }
+
+    private Translation equal(String field, Object value, boolean string) {
+        if (string && !strict) {
+            // analyzed fields do not match the terms as is
+            Map<String, Object> match = new LinkedHashMap<String, Object>();
+            match.put("query", value);
+            match.put("type", "phrase");
+            return new Translation(clause("query", clause("match", Collections.singletonMap(field, match))), false);
+        }
+        return new Translation(term(field, value), true);
+    }
+
+    private Translation in(List<ExprNodeDesc> args) {
+        if (args.size() < 2) {
+            return null;
+        }
+        ExprNodeDesc column = args.get(0);
+        String field = field(column);
+        if (field == null) {
+            return null;
+        }
+
+        boolean string = isString(column.getTypeInfo());
+        List<Object> values = new ArrayList<Object>();
+        List<Object> matches = new ArrayList<Object>();
+        for (ExprNodeDesc arg : args.subList(1, args.size())) {
+            Object value = value(arg);
+            if (value == null) {
+                return null;
+            }
+            values.add(value);
+            if (string && !strict) {
+                matches.add(equal(field, value, true).filter);
+            }
+        }
+
+        if (string && !strict) {
+            return new Translation(bool("should", matches), false);
+        }
+        return new Translation(clause("terms", Collections.singletonMap(field, values)), true);
+    }
+
+    private Translation between(List<ExprNodeDesc> args) {
+        // invert flag, column, lower and upper bound
+        if (args.size() != 4 || !Boolean.FALSE.equals(value(args.get(0)))) {
+            return null;
+        }
+        ExprNodeDesc column = args.get(1);
+        String field = field(column);
+        Object lower = value(args.get(2));
+        Object upper = value(args.get(3));
+        if (field == null || lower == null || upper == null || (isString(column.getTypeInfo()) && !strict)) {
+            return null;
+        }
+
+        Map<String, Object> bounds = new LinkedHashMap<String, Object>();
+        bounds.put("gte", lower);
+        bounds.put("lte", upper);
+        return new Translation(range(field, bounds), true);
+    }
+
+    private Translation like(List<ExprNodeDesc> args) {
+        if (!strict || args.size() != 2) {
+            return null;
+        }
+        String field = field(args.get(0));
+        Object pattern = value(args.get(1));
+        if (field == null || !(pattern instanceof String)) {
+            return null;
+        }
+
+        // only 'prefix%' patterns (no other wildcards or escapes)
+        String prefix = (String) pattern;
+        if (!prefix.endsWith("%")) {
+            return null;
+        }
+        prefix = prefix.substring(0, prefix.length() - 1);
+        if (prefix.length() == 0 || prefix.indexOf('%') >= 0 || prefix.indexOf('_') >= 0 || prefix.indexOf('\\') >= 0) {
+            return null;
+        }
+        return new Translation(clause("prefix", Collections.singletonMap(field, prefix)), true);
+    }
+
+    // returns the Elasticsearch field for the given (primitive) column
+    private String field(ExprNodeDesc expr) {
+        if (!(expr instanceof ExprNodeColumnDesc)) {
+            return null;
+        }
+        ExprNodeColumnDesc column = (ExprNodeColumnDesc) expr;
+        if (!(column.getTypeInfo() instanceof PrimitiveTypeInfo) || Arrays.asList(HiveConstants.VIRTUAL_COLUMNS).contains(column.getColumn())) {
+            return null;
+        }
+        switch (((PrimitiveTypeInfo) column.getTypeInfo()).getPrimitiveCategory()) {
+        case BOOLEAN:
+        case BYTE:
+        case SHORT:
+        case INT:
+        case LONG:
+        case FLOAT:
+        case DOUBLE:
+        case DECIMAL:
+        case STRING:
+        case VARCHAR:
+            return alias.toES(column.getColumn());
+        default:
+            // dates, timestamps, chars (padded) or binary have no direct query dsl equivalent
+            return null;
+        }
+    }
+
+    private static boolean isString(TypeInfo type) {
+        switch (((PrimitiveTypeInfo) type).getPrimitiveCategory()) {
+        case STRING:
+        case VARCHAR:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static Object value(ExprNodeDesc expr) {
+        if (!(expr instanceof ExprNodeConstantDesc)) {
+            return null;
+        }
+        Object value = ((ExprNodeConstantDesc) expr).getValue();
+        if (value instanceof HiveDecimal) {
+            return ((HiveDecimal) value).bigDecimalValue();
+        }
+        if (value instanceof HiveVarchar) {
+            return ((HiveVarchar) value).getValue();
+        }
+        return (value instanceof Number || value instanceof String || value instanceof Boolean ? value : null);
+    }
+
+    private static Map<String, Object> term(String field, Object value) {
+        return clause("term", Collections.singletonMap(field, value));
+    }
+
+    private static Map<String, Object> range(String field, Map<String, Object> bounds) {
+        return clause("range", Collections.singletonMap(field, bounds));
+    }
+
+    private static Map<String, Object> bool(String occur, Object filters) {
+        return clause("bool", Collections.singletonMap(occur, filters));
+    }
+
+    private static Map<String, Object> clause(String name, Object body) {
+        return Collections.singletonMap(name, body);
+    }
+}
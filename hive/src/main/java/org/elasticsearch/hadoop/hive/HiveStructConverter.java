@@ -0,0 +1,247 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.hadoop.hive.serde2.typeinfo.ListTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.MapTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.StructTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.io.ArrayWritable;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.elasticsearch.hadoop.util.FieldAlias;
+import org.elasticsearch.hadoop.util.StringUtils;
+
+/**
+ * Converts the documents returned by Elasticsearch (as {@link Writable}s) into Hive structs. The table type and its aliases are compiled
+ * once into a tree of converters (with the field paths already resolved) which is then applied to each row.
+ *
+ * The top-level struct and the containers outside lists or maps are reused between rows (as Hive consumes each row before
+ * asking for the next one).
+ */
+class HiveStructConverter {
+
+    private static abstract class Converter {
+        Object convert(Writable data) {
+            if (data == null || data instanceof NullWritable) {
+                return null;
+            }
+            return doConvert(data);
+        }
+
+        abstract Object doConvert(Writable data);
+    }
+
+    private static class PrimitiveConverter extends Converter {
+        @Override
+        Object doConvert(Writable data) {
+            // return as is
+            return data;
+        }
+    }
+
+    private static class ListConverter extends Converter {
+        private final Converter element;
+        private final List<Object> reuse;
+
+        ListConverter(Converter element, boolean reusable) {
+            this.element = element;
+            this.reuse = (reusable ? new ArrayList<Object>() : null);
+        }
+
+        @Override
+        Object doConvert(Writable data) {
+            Writable[] values = ((ArrayWritable) data).get();
+
+            List<Object> list;
+            if (reuse != null) {
+                list = reuse;
+                list.clear();
+            }
+            else {
+                list = new ArrayList<Object>(values.length);
+            }
+
+            for (Writable writable : values) {
+                list.add(element.convert(writable));
+            }
+            return list;
+        }
+    }
+
+    private static class MapConverter extends Converter {
+        private final Converter key;
+        private final Converter value;
+        private final Map<Object, Object> reuse;
+
+        MapConverter(Converter key, Converter value, boolean reusable) {
+            this.key = key;
+            this.value = value;
+            this.reuse = (reusable ? new LinkedHashMap<Object, Object>() : null);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        Object doConvert(Writable data) {
+            Map<Writable, Writable> mw = (Map<Writable, Writable>) data;
+
+            Map<Object, Object> map;
+            if (reuse != null) {
+                map = reuse;
+                map.clear();
+            }
+            else {
+                map = new LinkedHashMap<Object, Object>(mw.size() * 4 / 3 + 1);
+            }
+
+            for (Entry<Writable, Writable> entry : mw.entrySet()) {
+                map.put(key.convert(entry.getKey()), value.convert(entry.getValue()));
+            }
+            return map;
+        }
+    }
+
+    private static class StructConverter extends Converter {
+        // keys leading to each field (more than one for multi-level aliases)
+        private final Text[][] paths;
+        // null for fields not read
+        private final Converter[] fields;
+        private final List<Object> reuse;
+
+        StructConverter(Text[][] paths, Converter[] fields, boolean reusable) {
+            this.paths = paths;
+            this.fields = fields;
+            this.reuse = (reusable ? newStruct() : null);
+        }
+
+        private List<Object> newStruct() {
+            List<Object> struct = new ArrayList<Object>(fields.length);
+            for (int i = 0; i < fields.length; i++) {
+                struct.add(null);
+            }
+            return struct;
+        }
+
+        @Override
+        Object doConvert(Writable data) {
+            MapWritable map = (MapWritable) data;
+            List<Object> struct = (reuse != null ? reuse : newStruct());
+
+            for (int index = 0; index < fields.length; index++) {
+                Converter field = fields[index];
+                if (field == null) {
+                    struct.set(index, null);
+                    continue;
+                }
+
+                Writable value = map;
+                for (Text key : paths[index]) {
+                    value = (value instanceof MapWritable ? ((MapWritable) value).get(key) : null);
+                    if (value == null) {
+                        break;
+                    }
+                }
+                struct.set(index, field.convert(value));
+            }
+            return struct;
+        }
+    }
+
+    private final Converter root;
+
+    /**
+     * Compiles the converter for the given table.
+     *
+     * @param type table type
+     * @param alias Hive to Elasticsearch field names
+     * @param isEs10 whether nested fields are returned as objects (1.0 and higher) or under their full name
+     * @param projection columns read by the query (null for all)
+     */
+    HiveStructConverter(StructTypeInfo type, FieldAlias alias, boolean isEs10, boolean[] projection) {
+        root = struct(type, alias, isEs10, projection, true);
+    }
+
+    /**
+     * Converts the given document into a Hive struct (as a list of its values).
+     *
+     * @param data document
+     * @return Hive struct; the instance is reused for subsequent rows
+     */
+    Object convert(Writable data) {
+        return root.convert(data);
+    }
+
+    private static Converter converter(TypeInfo type, FieldAlias alias, boolean isEs10, boolean reusable) {
+        switch (type.getCategory()) {
+        case LIST: // or ARRAY
+            // the elements are held at the same time so they cannot share containers
+            return new ListConverter(converter(((ListTypeInfo) type).getListElementTypeInfo(), alias, isEs10, false), reusable);
+        case MAP:
+            MapTypeInfo mapType = (MapTypeInfo) type;
+            return new MapConverter(converter(mapType.getMapKeyTypeInfo(), alias, isEs10, false),
+                    converter(mapType.getMapValueTypeInfo(), alias, isEs10, false), reusable);
+        case STRUCT:
+            return struct((StructTypeInfo) type, alias, isEs10, null, reusable);
+        case UNION:
+            throw new UnsupportedOperationException("union not yet supported");
+        case PRIMITIVE:
+        default:
+            return new PrimitiveConverter();
+        }
+    }
+
+    private static Converter struct(StructTypeInfo type, FieldAlias alias, boolean isEs10, boolean[] projection, boolean reusable) {
+        List<String> names = type.getAllStructFieldNames();
+        List<TypeInfo> info = type.getAllStructFieldTypeInfos();
+
+        Text[][] paths = new Text[names.size()][];
+        Converter[] fields = new Converter[names.size()];
+
+        for (int index = 0; index < names.size(); index++) {
+            // the columns not read by the query are not fetched either
+            if (projection != null && (index >= projection.length || !projection[index])) {
+                continue;
+            }
+
+            String esAlias = alias.toES(names.get(index));
+            // check for multi-level alias
+            List<String> levels = (isEs10 ? StringUtils.tokenize(esAlias, ".") : null);
+            if (levels == null || levels.isEmpty()) {
+                paths[index] = new Text[] { new Text(esAlias) };
+            }
+            else {
+                paths[index] = new Text[levels.size()];
+                for (int level = 0; level < levels.size(); level++) {
+                    paths[index][level] = new Text(levels.get(level));
+                }
+            }
+            fields[index] = converter(info.get(index), alias, isEs10, reusable);
+        }
+
+        return new StructConverter(paths, fields, reusable);
+    }
+}
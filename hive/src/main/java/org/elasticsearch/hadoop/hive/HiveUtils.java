@@ -28,6 +28,7 @@ import java.util.Map.Entry;
 import java.util.Properties;
 
 import org.apache.commons.logging.Log;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.serde2.io.TimestampWritable;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
@@ -72,8 +73,23 @@ abstract class HiveUtils {
     }
 
     static Collection<String> columnToAlias(Settings settings) {
+        return columnToAlias(settings, null);
+    }
+
+    // returns the aliases of the given (projected) columns or of all the columns if the projection is null
+    static Collection<String> columnToAlias(Settings settings, List<Integer> projection) {
         FieldAlias fa = alias(settings);
         List<String> columnNames = StringUtils.tokenize(settings.getProperty(HiveConstants.COLUMNS), ",");
+
+        if (projection != null) {
+            List<String> projected = new ArrayList<String>(projection.size());
+            for (Integer index : projection) {
+                if (index < columnNames.size()) {
+                    projected.add(columnNames.get(index));
+                }
+            }
+            columnNames = projected;
+        }
         // eliminate virtual columns
         // we can't use virtual columns since some distro don't have this field...
         //        for (VirtualColumn vc : VirtualColumn.VIRTUAL_COLUMNS) {
@@ -94,6 +110,30 @@ abstract class HiveUtils {
         return columnNames;
     }
 
+    /**
+     * Returns the (ids of the) columns read by Hive, as pushed by its column pruning (see <tt>ColumnProjectionUtils</tt>).
+     * The configuration is read directly since the <tt>ColumnProjectionUtils</tt> methods are not binary compatible across Hive
+     * versions (and <tt>isReadAllColumns</tt> is available only in Hive 0.13 or higher).
+     *
+     * @param cfg job configuration
+     * @return ids of the projected columns or null if all the columns are read
+     */
+    static List<Integer> projectedColumns(Configuration cfg) {
+        // Hive 0.13+ marks reading all columns explicitly; older versions just leave the ids empty
+        if (cfg == null || Booleans.parseBoolean(cfg.get(HiveConstants.READ_ALL_COLUMNS))) {
+            return null;
+        }
+        List<String> tokens = StringUtils.tokenize(cfg.get(HiveConstants.READ_COLUMN_IDS), ",");
+        List<Integer> ids = new ArrayList<Integer>(tokens.size());
+        for (String token : tokens) {
+            if (!ids.contains(Integer.valueOf(token))) {
+                ids.add(Integer.valueOf(token));
+            }
+        }
+        // nothing in particular (such as count(*)) - stay on the safe side
+        return (ids.isEmpty() ? null : ids);
+    }
+
     static FieldAlias alias(Settings settings) {
         Map<String, String> aliasMap = SettingsUtils.aliases(settings.getProperty(HiveConstants.MAPPING_NAMES));
 
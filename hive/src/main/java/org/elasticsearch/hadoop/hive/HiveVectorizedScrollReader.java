@@ -0,0 +1,420 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorColumnAssign;
+import org.apache.hadoop.hive.ql.exec.vector.VectorColumnAssignFactory;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.serialization.EsHadoopSerializationException;
+import org.elasticsearch.hadoop.serialization.FieldType;
+import org.elasticsearch.hadoop.serialization.Parser;
+import org.elasticsearch.hadoop.serialization.Parser.Token;
+import org.elasticsearch.hadoop.serialization.ScrollReader;
+import org.elasticsearch.hadoop.util.FieldAlias;
+import org.elasticsearch.hadoop.util.SettingsUtils;
+import org.elasticsearch.hadoop.util.StringUtils;
+
+/**
+ * {@link ScrollReader} converting the documents of each page straight into columns (one per Hive column), ready to be copied into
+ * {@link VectorizedRowBatch}es. Scalar values of numeric, boolean and string columns are read directly from the parser tokens (as
+ * long, double or bytes); everything else (timestamps, decimals, multi-level aliases or values not matching the mapping) goes through
+ * the regular (row) conversion and is assigned to the batch through Hive.
+ */
+class HiveVectorizedScrollReader extends ScrollReader {
+
+    private static final byte NULL = 0;
+    private static final byte VALUE = 1;
+    private static final byte OBJECT = 2;
+
+    private enum Kind {
+        LONG, BOOLEAN, DOUBLE, BYTES, OBJECT
+    }
+
+    // values of one Hive column for the current page
+    private static class Column {
+        final int index;
+        final Kind kind;
+        final PrimitiveCategory category;
+        // path within the top-level field (for multi-level aliases)
+        final String[] path;
+
+        byte[] state = new byte[0];
+        long[] longs;
+        double[] doubles;
+        Object[] objects;
+
+        // assigns the values converted through the row path
+        VectorColumnAssign assign;
+        VectorizedRowBatch assignBatch;
+
+        Column(int index, PrimitiveCategory category, String[] path) {
+            this.index = index;
+            this.category = category;
+            this.path = path;
+            this.kind = kind(category);
+        }
+
+        void ensureCapacity(int rows) {
+            if (state.length >= rows) {
+                return;
+            }
+            int size = Math.max(rows, state.length << 1);
+            state = Arrays.copyOf(state, size);
+            objects = (objects == null ? new Object[size] : Arrays.copyOf(objects, size));
+            if (kind == Kind.LONG || kind == Kind.BOOLEAN) {
+                longs = (longs == null ? new long[size] : Arrays.copyOf(longs, size));
+            }
+            else if (kind == Kind.DOUBLE) {
+                doubles = (doubles == null ? new double[size] : Arrays.copyOf(doubles, size));
+            }
+        }
+
+        // whether the value can be read straight from the parser
+        boolean isDirect(Token token, FieldType esType) {
+            if (path != null || !token.isValue() || kind == Kind.OBJECT) {
+                return false;
+            }
+            if (token == Token.VALUE_NULL || esType == null) {
+                return true;
+            }
+            switch (esType) {
+            case BOOLEAN:
+            case BYTE:
+            case SHORT:
+            case INTEGER:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return kind != Kind.BYTES;
+            case STRING:
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        void read(Parser parser, int row) {
+            Token token = parser.currentToken();
+            if (token == Token.VALUE_NULL) {
+                state[row] = NULL;
+                return;
+            }
+
+            try {
+                switch (kind) {
+                case LONG:
+                    longs[row] = (token == Token.VALUE_NUMBER ? parser.longValue() : Long.parseLong(parser.text().trim()));
+                    break;
+                case BOOLEAN:
+                    if (token == Token.VALUE_BOOLEAN) {
+                        longs[row] = (parser.booleanValue() ? 1 : 0);
+                    }
+                    else {
+                        longs[row] = (token == Token.VALUE_NUMBER ? (parser.longValue() != 0 ? 1 : 0) : (Boolean.parseBoolean(parser.text().trim()) ? 1 : 0));
+                    }
+                    break;
+                case DOUBLE:
+                    doubles[row] = (token == Token.VALUE_NUMBER ? parser.doubleValue() : Double.parseDouble(parser.text().trim()));
+                    break;
+                default:
+                    objects[row] = StringUtils.toUTF(parser.text());
+                    break;
+                }
+            } catch (NumberFormatException ex) {
+                throw new EsHadoopSerializationException(String.format("Cannot convert value [%s] to Hive type [%s]", parser.text(), category), ex);
+            }
+            state[row] = VALUE;
+        }
+
+        void set(int row, Object value) {
+            if (value == null || value instanceof NullWritable) {
+                state[row] = NULL;
+            }
+            else {
+                objects[row] = value;
+                state[row] = OBJECT;
+            }
+        }
+
+        void copy(int row, VectorizedRowBatch batch, int target) {
+            ColumnVector vector = batch.cols[index];
+            if (vector == null) {
+                return;
+            }
+
+            switch (state[row]) {
+            case NULL:
+                vector.noNulls = false;
+                vector.isNull[target] = true;
+                if (vector instanceof LongColumnVector) {
+                    ((LongColumnVector) vector).vector[target] = LongColumnVector.NULL_VALUE;
+                }
+                else if (vector instanceof DoubleColumnVector) {
+                    ((DoubleColumnVector) vector).vector[target] = DoubleColumnVector.NULL_VALUE;
+                }
+                break;
+            case VALUE:
+                vector.isNull[target] = false;
+                switch (kind) {
+                case LONG:
+                case BOOLEAN:
+                    ((LongColumnVector) vector).vector[target] = longs[row];
+                    break;
+                case DOUBLE:
+                    ((DoubleColumnVector) vector).vector[target] = doubles[row];
+                    break;
+                default:
+                    byte[] bytes = (byte[]) objects[row];
+                    // the array belongs to this value only
+                    ((BytesColumnVector) vector).setRef(target, bytes, 0, bytes.length);
+                    break;
+                }
+                break;
+            default:
+                vector.isNull[target] = false;
+                try {
+                    if (assignBatch != batch) {
+                        assign = VectorColumnAssignFactory.buildObjectAssign(batch, index, category);
+                        assignBatch = batch;
+                    }
+                    assign.assignObjectValue(objects[row], target);
+                } catch (HiveException ex) {
+                    throw new EsHadoopIllegalStateException(String.format("Cannot assign value [%s] to Hive type [%s]", objects[row], category), ex);
+                }
+                break;
+            }
+            // release the page content
+            objects[row] = null;
+        }
+
+        private static Kind kind(PrimitiveCategory category) {
+            switch (category) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                return Kind.LONG;
+            case BOOLEAN:
+                return Kind.BOOLEAN;
+            case FLOAT:
+            case DOUBLE:
+                return Kind.DOUBLE;
+            case STRING:
+            case VARCHAR:
+            case CHAR:
+                return Kind.BYTES;
+            default:
+                return Kind.OBJECT;
+            }
+        }
+    }
+
+    // top-level field -> columns
+    private final Map<String, Column[]> fields = new LinkedHashMap<String, Column[]>();
+    private final Column[] columns;
+    private final Text reuse = new Text();
+    // rows of the current page
+    private int rows = 0;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param reader scroll reader (configured for the row path)
+     * @param settings settings
+     * @param projection ids of the columns to read (null for all)
+     */
+    HiveVectorizedScrollReader(ScrollReader reader, Settings settings, List<Integer> projection) {
+        super(reader);
+
+        List<String> names = StringUtils.tokenize(settings.getProperty(HiveConstants.COLUMNS), ",");
+        List<TypeInfo> types = TypeInfoUtils.getTypeInfosFromTypeString(settings.getProperty(HiveConstants.COLUMNS_TYPES));
+        FieldAlias alias = HiveUtils.alias(settings);
+        // before 1.0, fields are returned flat (under their full name)
+        boolean isEs10 = SettingsUtils.isEs10(settings);
+
+        Map<String, List<Column>> byField = new LinkedHashMap<String, List<Column>>();
+        List<Column> all = new ArrayList<Column>();
+
+        for (int index = 0; index < names.size() && index < types.size(); index++) {
+            // complex types cannot be vectorized in the first place
+            if ((projection != null && !projection.contains(index)) || !(types.get(index) instanceof PrimitiveTypeInfo)) {
+                continue;
+            }
+
+            String esAlias = alias.toES(names.get(index));
+            List<String> path = (isEs10 ? StringUtils.tokenize(esAlias, ".") : Collections.singletonList(esAlias));
+            String field = path.get(0);
+            Column column = new Column(index, ((PrimitiveTypeInfo) types.get(index)).getPrimitiveCategory(),
+                    (path.size() > 1 ? path.subList(1, path.size()).toArray(new String[path.size() - 1]) : null));
+
+            List<Column> list = byField.get(field);
+            if (list == null) {
+                list = new ArrayList<Column>(1);
+                byField.put(field, list);
+            }
+            list.add(column);
+            all.add(column);
+        }
+
+        for (Map.Entry<String, List<Column>> entry : byField.entrySet()) {
+            fields.put(entry.getKey(), entry.getValue().toArray(new Column[entry.getValue().size()]));
+        }
+        columns = all.toArray(new Column[all.size()]);
+    }
+
+    @Override
+    public List<Object[]> read(InputStream content, boolean smile) throws IOException {
+        // new page
+        rows = 0;
+        return super.read(content, smile);
+    }
+
+    @Override
+    protected Object map(String fieldMapping) {
+        // nested objects go through the row path
+        if (fieldMapping != null) {
+            return super.map(fieldMapping);
+        }
+
+        Parser parser = parser();
+        Token t = parser.currentToken();
+
+        if (t == null) {
+            t = parser.nextToken();
+        }
+        if (t == Token.START_OBJECT) {
+            t = parser.nextToken();
+        }
+
+        int row = rows++;
+        for (Column column : columns) {
+            column.ensureCapacity(rows);
+            column.state[row] = NULL;
+        }
+
+        for (; parser.currentToken() != Token.END_OBJECT;) {
+            String name = parser.currentName();
+            t = parser.nextToken();
+            Column[] targets = fields.get(name);
+
+            // not needed
+            if (targets == null) {
+                parser.skipChildren();
+                parser.nextToken();
+                continue;
+            }
+
+            if (targets.length == 1 && targets[0].isDirect(t, mapping(name))) {
+                targets[0].read(parser, row);
+                parser.nextToken();
+            }
+            else {
+                Object value = read(t, name);
+                for (Column column : targets) {
+                    column.set(row, navigate(value, column.path));
+                }
+            }
+        }
+
+        // eliminate END_OBJECT
+        parser.nextToken();
+        return Integer.valueOf(row);
+    }
+
+    private Object navigate(Object value, String[] path) {
+        if (path == null) {
+            return value;
+        }
+        for (String level : path) {
+            if (!(value instanceof MapWritable)) {
+                return null;
+            }
+            reuse.set(level);
+            value = ((MapWritable) value).get(reuse);
+        }
+        return value;
+    }
+
+    /**
+     * Copies the given row (as returned for each hit) of the current page into the given batch.
+     *
+     * @param row hit value
+     * @param batch target batch
+     * @param target row within the batch
+     */
+    void copy(Object row, VectorizedRowBatch batch, int target) {
+        // hits without any content
+        if (!(row instanceof Integer)) {
+            int index = rows;
+            for (Column column : columns) {
+                column.ensureCapacity(index + 1);
+                column.state[index] = NULL;
+                column.copy(index, batch, target);
+            }
+            return;
+        }
+
+        int index = ((Integer) row).intValue();
+        for (Column column : columns) {
+            column.copy(index, batch, target);
+        }
+    }
+
+    /**
+     * Resets the vectors filled by this reader.
+     *
+     * @param batch batch to reset
+     */
+    void reset(VectorizedRowBatch batch) {
+        for (Column column : columns) {
+            ColumnVector vector = batch.cols[column.index];
+            if (vector != null) {
+                vector.reset();
+                if (vector instanceof BytesColumnVector) {
+                    ((BytesColumnVector) vector).initBuffer();
+                }
+            }
+        }
+        batch.size = 0;
+        batch.selectedInUse = false;
+    }
+}
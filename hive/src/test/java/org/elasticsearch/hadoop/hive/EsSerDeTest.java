@@ -0,0 +1,94 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import java.util.Collections;
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
+import org.apache.hadoop.io.ArrayWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EsSerDeTest {
+
+    @Test
+    public void testSerDeStats() throws Exception {
+        Properties tableProperties = new Properties();
+        tableProperties.put(HiveConstants.COLUMNS, "id,tags");
+        tableProperties.put(HiveConstants.COLUMNS_TYPES, "int,array<string>");
+
+        EsSerDe serde = new EsSerDe();
+        serde.initialize(new Configuration(false), tableProperties);
+
+        MapWritable doc = new MapWritable();
+        doc.put(new Text("id"), new IntWritable(1));
+        doc.put(new Text("tags"), new ArrayWritable(Text.class, new Writable[] { new Text("foo"), new Text("ab") }));
+        serde.deserialize(doc);
+
+        // int (4) + strings (3 + 2)
+        assertEquals(9, serde.getSerDeStats().getRawDataSize());
+    }
+
+    @Test
+    public void testSerDeStatsProjection() throws Exception {
+        Properties tableProperties = new Properties();
+        tableProperties.put(HiveConstants.COLUMNS, "id,tags");
+        tableProperties.put(HiveConstants.COLUMNS_TYPES, "int,array<string>");
+
+        Configuration cfg = new Configuration(false);
+        ColumnProjectionUtils.appendReadColumns(cfg, Collections.singletonList(0));
+
+        EsSerDe serde = new EsSerDe();
+        serde.initialize(cfg, tableProperties);
+
+        MapWritable doc = new MapWritable();
+        doc.put(new Text("id"), new IntWritable(1));
+        doc.put(new Text("tags"), new ArrayWritable(Text.class, new Writable[] { new Text("foo"), new Text("ab") }));
+        doc.put(new Text("unmapped"), new Text("not part of the table"));
+        serde.deserialize(doc);
+
+        // only the column read
+        assertEquals(4, serde.getSerDeStats().getRawDataSize());
+    }
+
+    @Test
+    public void testVersionResolvedOnRead() throws Exception {
+        Properties tableProperties = new Properties();
+        tableProperties.put(HiveConstants.COLUMNS, "city");
+        tableProperties.put(HiveConstants.COLUMNS_TYPES, "string");
+        tableProperties.put(HiveConstants.MAPPING_NAMES, "city:address.city");
+
+        EsSerDe serde = new EsSerDe();
+        serde.initialize(new Configuration(false), tableProperties);
+        // version discovered after the SerDe initialization - pre 1.0 returns nested fields under their full name
+        serde.settings().setProperty(InternalConfigurationOptions.INTERNAL_ES_VERSION, "0.90.5");
+
+        MapWritable doc = new MapWritable();
+        doc.put(new Text("address.city"), new Text("London"));
+        assertEquals(Collections.singletonList(new Text("London")), serde.deserialize(doc));
+    }
+}
@@ -18,10 +18,13 @@
  */
 package org.elasticsearch.hadoop.hive;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Properties;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.elasticsearch.hadoop.cfg.PropertiesSettings;
 import org.elasticsearch.hadoop.util.FieldAlias;
 import org.junit.Test;
@@ -65,4 +68,31 @@ public class FieldAliasTest {
         assertEquals("123foo", iterator.next());
         assertEquals("&foo", iterator.next());
     }
+
+    @Test
+    public void testProjectedColumnToAlias() throws Exception {
+        Properties tableProperties = new Properties();
+        tableProperties.put(HiveConstants.MAPPING_NAMES, "timestamp:@timestamp , foo:123foo");
+        tableProperties.put(HiveConstants.COLUMNS, "id,name,timestamp,foo");
+
+        Configuration cfg = new Configuration(false);
+        assertNull(HiveUtils.projectedColumns(cfg));
+        ColumnProjectionUtils.appendReadColumns(cfg, Arrays.asList(2, 0));
+
+        Collection<String> columnToAlias = HiveUtils.columnToAlias(new PropertiesSettings(tableProperties), HiveUtils.projectedColumns(cfg));
+        assertEquals(Arrays.asList("@timestamp", "id"), columnToAlias);
+    }
+
+    @Test
+    public void testProjectedColumnsWithoutReadAllFlag() throws Exception {
+        // Hive versions before 0.13 only set the column ids
+        Configuration cfg = new Configuration(false);
+        cfg.set(HiveConstants.READ_COLUMN_IDS, "");
+        assertNull(HiveUtils.projectedColumns(cfg));
+        cfg.set(HiveConstants.READ_COLUMN_IDS, "2,0,2");
+        assertEquals(Arrays.asList(2, 0), HiveUtils.projectedColumns(cfg));
+
+        cfg.set(HiveConstants.READ_ALL_COLUMNS, "true");
+        assertNull(HiveUtils.projectedColumns(cfg));
+    }
 }
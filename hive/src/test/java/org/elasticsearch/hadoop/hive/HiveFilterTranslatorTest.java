@@ -0,0 +1,143 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler.DecomposedPredicate;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.udf.UDFLike;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFBridge;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFIn;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPAnd;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNot;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNull;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPOr;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.PropertiesSettings;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HiveFilterTranslatorTest {
+
+    private Settings settings;
+
+    @Before
+    public void before() {
+        Properties tableProperties = new Properties();
+        tableProperties.put(HiveConstants.MAPPING_NAMES, "date:@timestamp");
+        tableProperties.put(HiveConstants.COLUMNS, "age,name,date,tags");
+        settings = new PropertiesSettings(tableProperties);
+    }
+
+    @Test
+    public void testRangeAndNull() throws Exception {
+        ExprNodeDesc expr = func(new GenericUDFOPAnd(), func(new GenericUDFOPGreaterThan(), col("age", TypeInfoFactory.intTypeInfo), constant(21)),
+                func(new GenericUDFOPOr(), func(new GenericUDFOPLessThan(), constant(100L), col("date", TypeInfoFactory.longTypeInfo)),
+                        func(new GenericUDFOPNull(), col("date", TypeInfoFactory.longTypeInfo))));
+
+        DecomposedPredicate decomposed = translator().decompose(expr);
+        assertNotNull(decomposed.pushedPredicate);
+        assertNull(decomposed.residualPredicate);
+        assertEquals("{\"bool\":{\"must\":[{\"range\":{\"age\":{\"gt\":21}}},"
+                + "{\"bool\":{\"should\":[{\"range\":{\"@timestamp\":{\"gt\":100}}},{\"missing\":{\"field\":\"@timestamp\"}}]}}]}}",
+                translator().toQueryDsl(decomposed.pushedPredicate));
+    }
+
+    @Test
+    public void testStringEqualityKeptAsResidual() throws Exception {
+        ExprNodeDesc equal = func(new GenericUDFOPEqual(), col("name", TypeInfoFactory.stringTypeInfo), constant("John Smith"));
+        ExprNodeDesc in = func(new GenericUDFIn(), col("age", TypeInfoFactory.intTypeInfo), constant(1), constant(2));
+
+        DecomposedPredicate decomposed = translator().decompose(func(new GenericUDFOPAnd(), equal, in));
+        // the phrase match is a superset of the rows
+        assertEquals(equal.getExprString(), decomposed.residualPredicate.getExprString());
+        assertEquals("{\"bool\":{\"must\":[{\"query\":{\"match\":{\"name\":{\"query\":\"John Smith\",\"type\":\"phrase\"}}}},"
+                + "{\"terms\":{\"age\":[1,2]}}]}}", translator().toQueryDsl(decomposed.pushedPredicate));
+    }
+
+    @Test
+    public void testStrict() throws Exception {
+        settings.setProperty(ConfigurationOptions.ES_READ_PUSHDOWN_STRICT, "true");
+        ExprNodeDesc equal = func(new GenericUDFOPEqual(), col("name", TypeInfoFactory.stringTypeInfo), constant("John Smith"));
+        ExprNodeDesc like = like(col("tags", TypeInfoFactory.stringTypeInfo), constant("foo%"));
+
+        DecomposedPredicate decomposed = translator().decompose(func(new GenericUDFOPAnd(), equal, like));
+        assertNull(decomposed.residualPredicate);
+        assertEquals("{\"bool\":{\"must\":[{\"term\":{\"name\":\"John Smith\"}},{\"prefix\":{\"tags\":\"foo\"}}]}}",
+                translator().toQueryDsl(decomposed.pushedPredicate));
+    }
+
+    @Test
+    public void testUnsupported() throws Exception {
+        // LIKE is pushed only in strict mode, inner wildcards never
+        assertNull(translator().decompose(like(col("name", TypeInfoFactory.stringTypeInfo), constant("foo%"))));
+        settings.setProperty(ConfigurationOptions.ES_READ_PUSHDOWN_STRICT, "true");
+        assertNull(translator().decompose(like(col("name", TypeInfoFactory.stringTypeInfo), constant("f_o%"))));
+        // column to column comparison
+        assertNull(translator().decompose(func(new GenericUDFOPEqual(), col("age", TypeInfoFactory.intTypeInfo), col("date", TypeInfoFactory.intTypeInfo))));
+        // timestamps
+        assertNull(translator().decompose(func(new GenericUDFOPNull(), col("date", TypeInfoFactory.timestampTypeInfo))));
+    }
+
+    @Test
+    public void testNot() throws Exception {
+        ExprNodeDesc not = func(new GenericUDFOPNot(), func(new GenericUDFOPEqual(), col("age", TypeInfoFactory.intTypeInfo), constant(5)));
+        DecomposedPredicate decomposed = translator().decompose(not);
+        // missing values are returned by Elasticsearch but not by Hive
+        assertEquals(not.getExprString(), decomposed.residualPredicate.getExprString());
+        assertEquals("{\"bool\":{\"must_not\":{\"term\":{\"age\":5}}}}", translator().toQueryDsl(decomposed.pushedPredicate));
+
+        // the negation of a phrase match cannot be pushed
+        assertNull(translator().decompose(func(new GenericUDFOPNot(), func(new GenericUDFOPEqual(), col("name", TypeInfoFactory.stringTypeInfo), constant("foo")))));
+    }
+
+    private HiveFilterTranslator translator() {
+        return new HiveFilterTranslator(settings);
+    }
+
+    private static ExprNodeDesc col(String name, TypeInfo type) {
+        return new ExprNodeColumnDesc(type, name, "t", false);
+    }
+
+    private static ExprNodeDesc constant(Object value) {
+        return new ExprNodeConstantDesc(value);
+    }
+
+    private static ExprNodeGenericFuncDesc func(GenericUDF udf, ExprNodeDesc... children) {
+        return new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo, udf, Arrays.asList(children));
+    }
+
+    private static ExprNodeGenericFuncDesc like(ExprNodeDesc column, ExprNodeDesc pattern) {
+        return func(new GenericUDFBridge("like", true, UDFLike.class.getName()), column, pattern);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.hadoop.hive.serde2.typeinfo.StructTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.ArrayWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.elasticsearch.hadoop.cfg.PropertiesSettings;
+import org.elasticsearch.hadoop.util.FieldAlias;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HiveStructConverterTest {
+
+    private static final StructTypeInfo TYPE = (StructTypeInfo) TypeInfoUtils
+            .getTypeInfoFromTypeString("struct<id:int,city:string,tags:array<struct<name:string>>,attrs:map<string,int>>");
+
+    @Test
+    public void testConvert() throws Exception {
+        HiveStructConverter converter = new HiveStructConverter(TYPE, alias(), true, null);
+
+        List<?> struct = (List<?>) converter.convert(doc(1, "Paris", "a", "b"));
+        assertEquals(new IntWritable(1), struct.get(0));
+        // multi-level alias
+        assertEquals(new Text("Paris"), struct.get(1));
+        List<?> tags = (List<?>) struct.get(2);
+        assertEquals(2, tags.size());
+        assertEquals(Arrays.asList(new Text("a")), tags.get(0));
+        assertEquals(Arrays.asList(new Text("b")), tags.get(1));
+        assertEquals(new IntWritable(3), ((Map<?, ?>) struct.get(3)).get(new Text("size")));
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        HiveStructConverter converter = new HiveStructConverter(TYPE, alias(), true, null);
+
+        Object first = converter.convert(doc(1, "Paris", "a"));
+        MapWritable second = doc(2, "Rome");
+        second.remove(new Text("attrs"));
+        Object converted = converter.convert(second);
+
+        // same instance, updated values
+        assertSame(first, converted);
+        List<?> struct = (List<?>) converted;
+        assertEquals(new IntWritable(2), struct.get(0));
+        assertEquals(new Text("Rome"), struct.get(1));
+        assertTrue(((List<?>) struct.get(2)).isEmpty());
+        assertNull(struct.get(3));
+    }
+
+    @Test
+    public void testProjection() throws Exception {
+        HiveStructConverter converter = new HiveStructConverter(TYPE, alias(), true, new boolean[] { false, true, false, false });
+        assertEquals(Arrays.asList(null, new Text("Paris"), null, null), converter.convert(doc(1, "Paris", "a")));
+    }
+
+    @Test
+    public void testFlatFieldsBefore10() throws Exception {
+        HiveStructConverter converter = new HiveStructConverter(TYPE, alias(), false, null);
+        MapWritable doc = new MapWritable();
+        doc.put(new Text("address.city"), new Text("Paris"));
+        assertEquals(new Text("Paris"), ((List<?>) converter.convert(doc)).get(1));
+    }
+
+    private static FieldAlias alias() {
+        Properties tableProperties = new Properties();
+        tableProperties.put(HiveConstants.MAPPING_NAMES, "city:address.city");
+        return HiveUtils.alias(new PropertiesSettings(tableProperties));
+    }
+
+    private static MapWritable doc(int id, String city, String... tags) {
+        MapWritable doc = new MapWritable();
+        doc.put(new Text("id"), new IntWritable(id));
+
+        MapWritable address = new MapWritable();
+        address.put(new Text("city"), new Text(city));
+        doc.put(new Text("address"), address);
+
+        Writable[] array = new Writable[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+            MapWritable tag = new MapWritable();
+            tag.put(new Text("name"), new Text(tags[i]));
+            array[i] = tag;
+        }
+        doc.put(new Text("tags"), new ArrayWritable(MapWritable.class, array));
+
+        MapWritable attrs = new MapWritable();
+        attrs.put(new Text("size"), new IntWritable(3));
+        doc.put(new Text("attrs"), attrs);
+        return doc;
+    }
+}
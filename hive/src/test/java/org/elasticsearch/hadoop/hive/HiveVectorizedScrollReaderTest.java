@@ -0,0 +1,167 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.elasticsearch.hadoop.cfg.PropertiesSettings;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.serialization.ScrollReader;
+import org.elasticsearch.hadoop.serialization.dto.mapping.Field;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HiveVectorizedScrollReaderTest {
+
+    private Settings settings;
+
+    @Before
+    public void before() {
+        Properties tableProperties = new Properties();
+        tableProperties.put(HiveConstants.MAPPING_NAMES, "city:address.city");
+        tableProperties.put(HiveConstants.COLUMNS, "id,name,score,active,created,city");
+        tableProperties.put(HiveConstants.COLUMNS_TYPES, "int,string,double,boolean,timestamp,string");
+        settings = new PropertiesSettings(tableProperties);
+    }
+
+    @Test
+    public void testCopyPage() throws Exception {
+        HiveVectorizedScrollReader reader = reader(null);
+        VectorizedRowBatch batch = batch();
+        List<Object[]> hits = read(reader);
+        assertEquals(3, hits.size());
+
+        reader.reset(batch);
+        for (Object[] hit : hits) {
+            reader.copy(hit[1], batch, batch.size++);
+        }
+
+        LongColumnVector id = (LongColumnVector) batch.cols[0];
+        assertEquals(Arrays.asList(1L, 2L, 3L), Arrays.asList(id.vector[0], id.vector[1], id.vector[2]));
+        assertTrue(id.noNulls);
+
+        BytesColumnVector name = (BytesColumnVector) batch.cols[1];
+        assertEquals("John", string(name, 0));
+        assertTrue(name.isNull[1]);
+        assertEquals("Mary", string(name, 2));
+
+        DoubleColumnVector score = (DoubleColumnVector) batch.cols[2];
+        assertEquals(1.5, score.vector[0], 0.0);
+        assertTrue(score.isNull[1]);
+        assertEquals(7.0, score.vector[2], 0.0);
+
+        LongColumnVector active = (LongColumnVector) batch.cols[3];
+        assertEquals(1L, active.vector[0]);
+        assertEquals(0L, active.vector[1]);
+        assertTrue(active.isNull[2]);
+
+        // timestamps go through the row path (in nanos)
+        LongColumnVector created = (LongColumnVector) batch.cols[4];
+        assertEquals(1407239910771L * 1000000, created.vector[0]);
+        assertTrue(created.isNull[1]);
+
+        // multi-level alias
+        BytesColumnVector city = (BytesColumnVector) batch.cols[5];
+        assertEquals("Paris", string(city, 0));
+        assertTrue(city.isNull[1]);
+        assertTrue(city.isNull[2]);
+    }
+
+    @Test
+    public void testProjection() throws Exception {
+        HiveVectorizedScrollReader reader = reader(Arrays.asList(0, 5));
+        VectorizedRowBatch batch = batch();
+        // columns not read by the query
+        batch.cols[1] = null;
+
+        reader.reset(batch);
+        for (Object[] hit : read(reader)) {
+            reader.copy(hit[1], batch, batch.size++);
+        }
+
+        assertEquals(3, batch.size);
+        assertEquals(3L, ((LongColumnVector) batch.cols[0]).vector[2]);
+        assertEquals("Paris", string((BytesColumnVector) batch.cols[5], 0));
+        // not projected hence untouched
+        assertTrue(((DoubleColumnVector) batch.cols[2]).noNulls);
+        assertEquals(0.0, ((DoubleColumnVector) batch.cols[2]).vector[0], 0.0);
+    }
+
+    @Test
+    public void testLazySourceIgnored() throws Exception {
+        ScrollReader lazy = new ScrollReader(new HiveValueReader(), mapping("hive-vectorized.json"), false, "_mapping", false, true);
+        HiveVectorizedScrollReader reader = new HiveVectorizedScrollReader(lazy, settings, null);
+        VectorizedRowBatch batch = batch();
+
+        reader.reset(batch);
+        for (Object[] hit : read(reader)) {
+            reader.copy(hit[1], batch, batch.size++);
+        }
+
+        assertEquals(3, batch.size);
+        assertFalse(batch.cols[0].isNull[0]);
+        assertEquals(1L, ((LongColumnVector) batch.cols[0]).vector[0]);
+        assertEquals("Paris", string((BytesColumnVector) batch.cols[5], 0));
+    }
+
+    private HiveVectorizedScrollReader reader(List<Integer> projection) throws Exception {
+        ScrollReader reader = new ScrollReader(new HiveValueReader(), mapping("hive-vectorized.json"), false, "_mapping", false);
+        return new HiveVectorizedScrollReader(reader, settings, projection);
+    }
+
+    private List<Object[]> read(ScrollReader reader) throws Exception {
+        InputStream stream = getClass().getResourceAsStream("hive-vectorized-source.json");
+        try {
+            return reader.read(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static VectorizedRowBatch batch() {
+        VectorizedRowBatch batch = new VectorizedRowBatch(6);
+        batch.cols[0] = new LongColumnVector();
+        batch.cols[1] = new BytesColumnVector();
+        batch.cols[2] = new DoubleColumnVector();
+        batch.cols[3] = new LongColumnVector();
+        batch.cols[4] = new LongColumnVector();
+        batch.cols[5] = new BytesColumnVector();
+        return batch;
+    }
+
+    private static String string(BytesColumnVector vector, int row) {
+        return new String(vector.vector[row], vector.start[row], vector.length[row]);
+    }
+
+    private Field mapping(String resource) throws Exception {
+        InputStream stream = getClass().getResourceAsStream(resource);
+        return Field.parseField(new ObjectMapper().readValue(stream, Map.class));
+    }
+}
@@ -36,6 +36,12 @@ public interface ConfigurationOptions {
     String ES_NODES_DISCOVERY = "es.nodes.discovery";
     String ES_NODES_DISCOVERY_DEFAULT = "true";
 
+    /** Discovery snapshot - cluster information resolved once when the job is planned and shipped to the (writing) tasks */
+    String ES_NODES_DISCOVERY_SNAPSHOT = "es.nodes.discovery.snapshot";
+    String ES_NODES_DISCOVERY_SNAPSHOT_DEFAULT = "false";
+    String ES_NODES_DISCOVERY_SNAPSHOT_TTL = "es.nodes.discovery.snapshot.ttl";
+    String ES_NODES_DISCOVERY_SNAPSHOT_TTL_DEFAULT = "5m";
+
     /** Elasticsearch port **/
     String ES_PORT = "es.port";
     String ES_PORT_DEFAULT = "9200";
@@ -79,6 +85,30 @@ public interface ConfigurationOptions {
     String ES_BATCH_WRITE_RETRY_POLICY_SIMPLE = "simple";
     String ES_BATCH_WRITE_RETRY_POLICY_DEFAULT = ES_BATCH_WRITE_RETRY_POLICY_SIMPLE;
 
+    /** Local disk spool for bulk entries that cannot be written (cluster unavailable or rejecting) */
+    String ES_BATCH_WRITE_SPOOL = "es.batch.write.spool";
+    String ES_BATCH_WRITE_SPOOL_DEFAULT = "false";
+
+    String ES_BATCH_WRITE_SPOOL_DIR = "es.batch.write.spool.dir";
+
+    String ES_BATCH_WRITE_SPOOL_SIZE = "es.batch.write.spool.size";
+    String ES_BATCH_WRITE_SPOOL_SIZE_DEFAULT = "1gb";
+
+    String ES_BATCH_WRITE_SPOOL_DRAIN_TIMEOUT = "es.batch.write.spool.drain.timeout";
+    String ES_BATCH_WRITE_SPOOL_DRAIN_TIMEOUT_DEFAULT = "5m";
+
+    /** Number of threads serializing the records (0 means the records are serialized by the writing thread) */
+    String ES_BATCH_WRITE_SERIALIZER_THREADS = "es.batch.write.serializer.threads";
+    String ES_BATCH_WRITE_SERIALIZER_THREADS_DEFAULT = "0";
+
+    /** Shared (JVM-wide) bulk processor - aggregates the batches of concurrent writers into larger bulks */
+    String ES_BATCH_WRITE_SHARED = "es.batch.write.shared";
+    String ES_BATCH_WRITE_SHARED_DEFAULT = "false";
+    String ES_BATCH_WRITE_SHARED_THREADS = "es.batch.write.shared.threads";
+    String ES_BATCH_WRITE_SHARED_THREADS_DEFAULT = "2";
+    String ES_BATCH_WRITE_SHARED_SIZE = "es.batch.write.shared.size";
+    String ES_BATCH_WRITE_SHARED_SIZE_DEFAULT = "5mb";
+
     /** HTTP connection timeout */
     String ES_HTTP_TIMEOUT = "es.http.timeout";
     String ES_HTTP_TIMEOUT_DEFAULT = "1m";
@@ -94,6 +124,10 @@ public interface ConfigurationOptions {
     String ES_SCROLL_SIZE = "es.scroll.size";
     String ES_SCROLL_SIZE_DEFAULT = "50";
 
+    /** Scroll limit */
+    String ES_SCROLL_LIMIT = "es.scroll.limit";
+    String ES_SCROLL_LIMIT_DEFAULT = "-1";
+
     /** Scroll fields */
     String ES_SCROLL_FIELDS = "es.scroll.fields";
 
@@ -129,6 +163,12 @@ public interface ConfigurationOptions {
     String ES_INDEX_AUTO_CREATE = "es.index.auto.create";
     String ES_INDEX_AUTO_CREATE_DEFAULT = "yes";
 
+    /** Bulk-load mode - index tuned once per job (no refresh, no replicas) and refreshed when the job is committed */
+    String ES_INDEX_BULK_LOAD = "es.index.bulk.load";
+    String ES_INDEX_BULK_LOAD_DEFAULT = "false";
+    String ES_INDEX_BULK_LOAD_OPTIMIZE = "es.index.bulk.load.optimize";
+    String ES_INDEX_BULK_LOAD_OPTIMIZE_DEFAULT = "false";
+
     String ES_INDEX_READ_MISSING_AS_EMPTY = "es.index.read.missing.as.empty";
     String ES_INDEX_READ_MISSING_AS_EMPTY_DEFAULT = "false";
 
@@ -176,6 +216,28 @@ public interface ConfigurationOptions {
     String ES_READ_METADATA_FIELD_DEFAULT = "_metadata";
     String ES_READ_METADATA_VERSION = "es.read.metadata.version";
     String ES_READ_METADATA_VERSION_DEFAULT = "false";
+    String ES_READ_SOURCE_LAZY = "es.read.source.lazy";
+    String ES_READ_SOURCE_LAZY_DEFAULT = "false";
+    String ES_READ_OBJECT_REUSE = "es.read.object.reuse";
+    String ES_READ_OBJECT_REUSE_DEFAULT = "false";
+
+    /** Combined splits - shards on the same node grouped into one split */
+    String ES_READ_SPLIT_COMBINE = "es.read.split.combine";
+    String ES_READ_SPLIT_COMBINE_DEFAULT = "false";
+    String ES_READ_SPLIT_COMBINE_MAX_DOCS = "es.read.split.combine.max.docs";
+    String ES_READ_SPLIT_COMBINE_MAX_DOCS_DEFAULT = "1000000";
+    String ES_READ_SPLIT_COMBINE_MAX_SIZE = "es.read.split.combine.max.size";
+    String ES_READ_SPLIT_COMBINE_MAX_SIZE_DEFAULT = "1gb";
+
+    /** Predicate pushdown - filters translated into query dsl and executed by Elasticsearch */
+    String ES_READ_PUSHDOWN = "es.read.pushdown";
+    String ES_READ_PUSHDOWN_DEFAULT = "true";
+    String ES_READ_PUSHDOWN_STRICT = "es.read.pushdown.strict";
+    String ES_READ_PUSHDOWN_STRICT_DEFAULT = "false";
+
+    /** Local reads (outside Hadoop) - partitions read in parallel */
+    String ES_READ_LOCAL_THREADS = "es.read.local.threads";
+    String ES_READ_LOCAL_THREADS_DEFAULT = "4";
 
     /** Operation types */
     String ES_WRITE_OPERATION = "es.write.operation";
@@ -194,11 +256,19 @@ public interface ConfigurationOptions {
     String ES_UPDATE_SCRIPT_PARAMS = "es.update.script.params";
     String ES_UPDATE_SCRIPT_PARAMS_JSON = "es.update.script.params.json";
 
+    String ES_UPDATE_COALESCE = "es.update.coalesce";
+    String ES_UPDATE_COALESCE_DEFAULT = "false";
+
     /** Output options **/
     String ES_OUTPUT_JSON = "es.output.json";
     String ES_OUTPUT_JSON_DEFAULT = "no";
 
     /** Network options */
+    String ES_NET_CONTENT_TYPE = "es.net.content.type";
+    String ES_NET_CONTENT_TYPE_JSON = "json";
+    String ES_NET_CONTENT_TYPE_SMILE = "smile";
+    String ES_NET_CONTENT_TYPE_DEFAULT = ES_NET_CONTENT_TYPE_JSON;
+
     // SSL
     String ES_NET_USE_SSL = "es.net.ssl";
     String ES_NET_USE_SSL_DEFAULT = "false";
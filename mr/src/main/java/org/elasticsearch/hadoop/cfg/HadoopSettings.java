@@ -61,4 +61,9 @@ public class HadoopSettings extends Settings {
     protected Properties asProperties() {
         return HadoopCfgUtils.asProperties(cfg);
     }
+
+    @Override
+    protected Properties asProperties(String prefix) {
+        return HadoopCfgUtils.asProperties(cfg, prefix);
+    }
 }
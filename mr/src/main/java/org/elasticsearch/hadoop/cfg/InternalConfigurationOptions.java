@@ -30,4 +30,18 @@ public interface InternalConfigurationOptions extends ConfigurationOptions {
     String INTERNAL_ES_PINNED_NODE = "es.internal.pinned.node";
 
     String INTERNAL_ES_VERSION = "es.internal.es.version";
+
+    // discovery snapshot - creation time, target resource and nodes backing the (ordered) primary shards
+    String INTERNAL_ES_SNAPSHOT_TIME = "es.internal.snapshot.time";
+    String INTERNAL_ES_SNAPSHOT_RESOURCE = "es.internal.snapshot.resource";
+    String INTERNAL_ES_SNAPSHOT_SHARD_NODES = "es.internal.snapshot.shard.nodes";
+
+    // index settings in place before a bulk load
+    String INTERNAL_ES_BULK_LOAD_REFRESH_INTERVAL = "es.internal.bulk.load.refresh.interval";
+    String INTERNAL_ES_BULK_LOAD_REPLICAS = "es.internal.bulk.load.replicas";
+    // set by the writers whose job setup/completion is handled by the (MR) committer
+    String INTERNAL_ES_BULK_LOAD_MANAGED = "es.internal.bulk.load.managed";
+
+    // filter (query dsl) pushed down by the integration (from its own predicates) - combined with the user query
+    String INTERNAL_ES_QUERY_FILTER = "es.internal.query.filter";
 }
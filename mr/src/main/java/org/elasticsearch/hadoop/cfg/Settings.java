@@ -57,6 +57,14 @@ public abstract class Settings {
         return Booleans.parseBoolean(getProperty(ES_NODES_DISCOVERY, ES_NODES_DISCOVERY_DEFAULT));
     }
 
+    public boolean getNodesDiscoverySnapshot() {
+        return Booleans.parseBoolean(getProperty(ES_NODES_DISCOVERY_SNAPSHOT, ES_NODES_DISCOVERY_SNAPSHOT_DEFAULT));
+    }
+
+    public long getNodesDiscoverySnapshotTtl() {
+        return TimeValue.parseTimeValue(getProperty(ES_NODES_DISCOVERY_SNAPSHOT_TTL, ES_NODES_DISCOVERY_SNAPSHOT_TTL_DEFAULT)).getMillis();
+    }
+
     public boolean getNodesClientOnly() {
         return Booleans.parseBoolean(getProperty(ES_NODES_CLIENT_ONLY, ES_NODES_CLIENT_ONLY_DEFAULT));
     }
@@ -89,6 +97,38 @@ public abstract class Settings {
         return getProperty(ES_BATCH_WRITE_RETRY_POLICY, ES_BATCH_WRITE_RETRY_POLICY_DEFAULT);
     }
 
+    public boolean getBatchWriteSpool() {
+        return Booleans.parseBoolean(getProperty(ES_BATCH_WRITE_SPOOL, ES_BATCH_WRITE_SPOOL_DEFAULT));
+    }
+
+    public String getBatchWriteSpoolDir() {
+        return getProperty(ES_BATCH_WRITE_SPOOL_DIR, System.getProperty("java.io.tmpdir"));
+    }
+
+    public long getBatchWriteSpoolSize() {
+        return ByteSizeValue.parseBytesSizeValue(getProperty(ES_BATCH_WRITE_SPOOL_SIZE, ES_BATCH_WRITE_SPOOL_SIZE_DEFAULT)).bytes();
+    }
+
+    public long getBatchWriteSpoolDrainTimeout() {
+        return TimeValue.parseTimeValue(getProperty(ES_BATCH_WRITE_SPOOL_DRAIN_TIMEOUT, ES_BATCH_WRITE_SPOOL_DRAIN_TIMEOUT_DEFAULT)).getMillis();
+    }
+
+    public int getBatchWriteSerializerThreads() {
+        return Integer.parseInt(getProperty(ES_BATCH_WRITE_SERIALIZER_THREADS, ES_BATCH_WRITE_SERIALIZER_THREADS_DEFAULT));
+    }
+
+    public boolean getBatchWriteShared() {
+        return Booleans.parseBoolean(getProperty(ES_BATCH_WRITE_SHARED, ES_BATCH_WRITE_SHARED_DEFAULT));
+    }
+
+    public int getBatchWriteSharedThreads() {
+        return Integer.parseInt(getProperty(ES_BATCH_WRITE_SHARED_THREADS, ES_BATCH_WRITE_SHARED_THREADS_DEFAULT));
+    }
+
+    public int getBatchWriteSharedSize() {
+        return ByteSizeValue.parseBytesSizeValue(getProperty(ES_BATCH_WRITE_SHARED_SIZE, ES_BATCH_WRITE_SHARED_SIZE_DEFAULT)).bytesAsInt();
+    }
+
     public boolean getBatchRefreshAfterWrite() {
         return Booleans.parseBoolean(getProperty(ES_BATCH_WRITE_REFRESH, ES_BATCH_WRITE_REFRESH_DEFAULT));
     }
@@ -105,6 +145,10 @@ public abstract class Settings {
         return Long.valueOf(getProperty(ES_SCROLL_SIZE, ES_SCROLL_SIZE_DEFAULT));
     }
 
+    public long getScrollLimit() {
+        return Long.valueOf(getProperty(ES_SCROLL_LIMIT, ES_SCROLL_LIMIT_DEFAULT));
+    }
+
     public String getScrollFields() {
         String internalFields = getProperty(INTERNAL_ES_TARGET_FIELDS);
         return (StringUtils.hasText(internalFields) ? internalFields : getProperty(ES_SCROLL_FIELDS));
@@ -126,6 +170,14 @@ public abstract class Settings {
         return getProperty(ES_SERIALIZATION_READER_VALUE_CLASS);
     }
 
+    public boolean getIndexBulkLoad() {
+        return Booleans.parseBoolean(getProperty(ES_INDEX_BULK_LOAD, ES_INDEX_BULK_LOAD_DEFAULT));
+    }
+
+    public boolean getIndexBulkLoadOptimize() {
+        return Booleans.parseBoolean(getProperty(ES_INDEX_BULK_LOAD_OPTIMIZE, ES_INDEX_BULK_LOAD_OPTIMIZE_DEFAULT));
+    }
+
     public boolean getIndexAutoCreate() {
         return Booleans.parseBoolean(getProperty(ES_INDEX_AUTO_CREATE, ES_INDEX_AUTO_CREATE_DEFAULT));
     }
@@ -251,6 +303,10 @@ public abstract class Settings {
         return getProperty(ES_UPDATE_SCRIPT_PARAMS_JSON);
     }
 
+    public boolean getUpdateCoalesce() {
+        return Booleans.parseBoolean(getProperty(ES_UPDATE_COALESCE, ES_UPDATE_COALESCE_DEFAULT));
+    }
+
     public boolean hasUpdateScript() {
         String op = getOperation();
         return ((ConfigurationOptions.ES_OPERATION_UPDATE.equals(op) || ConfigurationOptions.ES_OPERATION_UPSERT.equals(op)) && StringUtils.hasText(getUpdateScript()));
@@ -277,6 +333,10 @@ public abstract class Settings {
     }
 
     // SSL
+    public String getNetContentType() {
+        return getProperty(ES_NET_CONTENT_TYPE, ES_NET_CONTENT_TYPE_DEFAULT).trim().toLowerCase(Locale.ENGLISH);
+    }
+
     public boolean getNetworkSSLEnabled() {
         return Booleans.parseBoolean(getProperty(ES_NET_USE_SSL, ES_NET_USE_SSL_DEFAULT));
     }
@@ -415,10 +475,52 @@ public abstract class Settings {
         return Booleans.parseBoolean(getProperty(ES_READ_METADATA_VERSION, ES_READ_METADATA_VERSION_DEFAULT));
     }
 
+    public boolean getReadSourceLazy() {
+        return Booleans.parseBoolean(getProperty(ES_READ_SOURCE_LAZY, ES_READ_SOURCE_LAZY_DEFAULT));
+    }
+
+    public boolean getReadObjectReuse() {
+        return Booleans.parseBoolean(getProperty(ES_READ_OBJECT_REUSE, ES_READ_OBJECT_REUSE_DEFAULT));
+    }
+
+    public boolean getReadSplitCombine() {
+        return Booleans.parseBoolean(getProperty(ES_READ_SPLIT_COMBINE, ES_READ_SPLIT_COMBINE_DEFAULT));
+    }
+
+    public long getReadSplitCombineMaxDocs() {
+        return Long.parseLong(getProperty(ES_READ_SPLIT_COMBINE_MAX_DOCS, ES_READ_SPLIT_COMBINE_MAX_DOCS_DEFAULT));
+    }
+
+    public long getReadSplitCombineMaxSize() {
+        return ByteSizeValue.parseBytesSizeValue(getProperty(ES_READ_SPLIT_COMBINE_MAX_SIZE, ES_READ_SPLIT_COMBINE_MAX_SIZE_DEFAULT)).getBytes();
+    }
+
+    public boolean getReadPushdown() {
+        return Booleans.parseBoolean(getProperty(ES_READ_PUSHDOWN, ES_READ_PUSHDOWN_DEFAULT));
+    }
+
+    public boolean getReadPushdownStrict() {
+        return Booleans.parseBoolean(getProperty(ES_READ_PUSHDOWN_STRICT, ES_READ_PUSHDOWN_STRICT_DEFAULT));
+    }
+
+    public int getReadLocalThreads() {
+        return Integer.valueOf(getProperty(ES_READ_LOCAL_THREADS, ES_READ_LOCAL_THREADS_DEFAULT));
+    }
+
     public abstract InputStream loadResource(String location);
 
     public abstract Settings copy();
 
+    /**
+     * Returns an immutable snapshot of these settings. Meant to be taken once initialization is done and passed to the components
+     * reading the settings repeatedly (or from multiple threads).
+     *
+     * @return settings snapshot
+     */
+    public Settings snapshot() {
+        return new SettingsSnapshot(this);
+    }
+
     protected String getProperty(String name, String defaultValue) {
         String value = getProperty(name);
         if (!StringUtils.hasText(value)) {
@@ -474,4 +576,21 @@ public abstract class Settings {
     }
 
     protected abstract Properties asProperties();
+
+    /**
+     * Returns the properties whose names start with the given prefix.
+     *
+     * @param prefix property name prefix
+     * @return matching properties
+     */
+    protected Properties asProperties(String prefix) {
+        Properties all = asProperties();
+        Properties props = new Properties();
+        for (String name : all.stringPropertyNames()) {
+            if (name.startsWith(prefix)) {
+                props.setProperty(name, all.getProperty(name));
+            }
+        }
+        return props;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.cfg;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable snapshot of a {@link Settings} instance. The connector (<code>es.</code>) properties are resolved (for Hadoop, including
+ * variable substitution) once, when the snapshot is taken, and afterwards are read from a plain map without any locking, making the
+ * snapshot cheap to query and safe to share across threads. Other properties (such as the rest of a Hadoop configuration) are not
+ * captured.
+ *
+ * The options read on the hot paths (per request, page or entry) are parsed once, on first use, and kept in their typed form. The
+ * property values are not validated upfront; as with any other {@link Settings}, an invalid value is reported when its getter is
+ * first called. Use {@link #copy()} to obtain a modifiable copy.
+ */
+public final class SettingsSnapshot extends Settings {
+
+    private static final String PREFIX = "es.";
+
+    private final Settings source;
+    private final Map<String, String> props;
+    // typed values of the hot options (parsed lazily, by option name)
+    private final ConcurrentMap<String, Object> parsed = new ConcurrentHashMap<String, Object>();
+
+    SettingsSnapshot(Settings source) {
+        this.source = source;
+
+        Properties properties = source.asProperties(PREFIX);
+        Map<String, String> map = new HashMap<String, String>(properties.size() * 4 / 3 + 1);
+        for (String name : properties.stringPropertyNames()) {
+            // go through the settings to get the resolved value
+            String value = source.getProperty(name);
+            if (value != null) {
+                map.put(name, value);
+            }
+        }
+        this.props = map;
+    }
+
+    @Override
+    public String getProperty(String name) {
+        return props.get(name);
+    }
+
+    private Object parsed(String name) {
+        return parsed.get(name);
+    }
+
+    private <T> T parsed(String name, T value) {
+        parsed.put(name, value);
+        return value;
+    }
+
+    @Override
+    public int getHttpRetries() {
+        Integer value = (Integer) parsed(ConfigurationOptions.ES_HTTP_RETRIES);
+        return (value != null ? value : parsed(ConfigurationOptions.ES_HTTP_RETRIES, super.getHttpRetries()));
+    }
+
+    @Override
+    public long getHttpTimeout() {
+        Long value = (Long) parsed(ConfigurationOptions.ES_HTTP_TIMEOUT);
+        return (value != null ? value : parsed(ConfigurationOptions.ES_HTTP_TIMEOUT, super.getHttpTimeout()));
+    }
+
+    @Override
+    public boolean getNetworkSSLEnabled() {
+        Boolean value = (Boolean) parsed(ConfigurationOptions.ES_NET_USE_SSL);
+        return (value != null ? value : parsed(ConfigurationOptions.ES_NET_USE_SSL, super.getNetworkSSLEnabled()));
+    }
+
+    @Override
+    public int getBatchSizeInBytes() {
+        Integer value = (Integer) parsed(ConfigurationOptions.ES_BATCH_SIZE_BYTES);
+        return (value != null ? value : parsed(ConfigurationOptions.ES_BATCH_SIZE_BYTES, super.getBatchSizeInBytes()));
+    }
+
+    @Override
+    public int getBatchSizeInEntries() {
+        Integer value = (Integer) parsed(ConfigurationOptions.ES_BATCH_SIZE_ENTRIES);
+        return (value != null ? value : parsed(ConfigurationOptions.ES_BATCH_SIZE_ENTRIES, super.getBatchSizeInEntries()));
+    }
+
+    @Override
+    public int getBatchWriteRetryCount() {
+        Integer value = (Integer) parsed(ConfigurationOptions.ES_BATCH_WRITE_RETRY_COUNT);
+        return (value != null ? value : parsed(ConfigurationOptions.ES_BATCH_WRITE_RETRY_COUNT, super.getBatchWriteRetryCount()));
+    }
+
+    @Override
+    public long getBatchWriteRetryWait() {
+        Long value = (Long) parsed(ConfigurationOptions.ES_BATCH_WRITE_RETRY_WAIT);
+        return (value != null ? value : parsed(ConfigurationOptions.ES_BATCH_WRITE_RETRY_WAIT, super.getBatchWriteRetryWait()));
+    }
+
+    @Override
+    public long getScrollKeepAlive() {
+        Long value = (Long) parsed(ConfigurationOptions.ES_SCROLL_KEEPALIVE);
+        return (value != null ? value : parsed(ConfigurationOptions.ES_SCROLL_KEEPALIVE, super.getScrollKeepAlive()));
+    }
+
+    @Override
+    public long getScrollSize() {
+        Long value = (Long) parsed(ConfigurationOptions.ES_SCROLL_SIZE);
+        return (value != null ? value : parsed(ConfigurationOptions.ES_SCROLL_SIZE, super.getScrollSize()));
+    }
+
+    @Override
+    public boolean getInputAsJson() {
+        Boolean value = (Boolean) parsed(ConfigurationOptions.ES_INPUT_JSON);
+        return (value != null ? value : parsed(ConfigurationOptions.ES_INPUT_JSON, super.getInputAsJson()));
+    }
+
+    @Override
+    public boolean getReadMetadata() {
+        Boolean value = (Boolean) parsed(ConfigurationOptions.ES_READ_METADATA);
+        return (value != null ? value : parsed(ConfigurationOptions.ES_READ_METADATA, super.getReadMetadata()));
+    }
+
+    @Override
+    public void setProperty(String name, String value) {
+        throw new UnsupportedOperationException(String.format("Cannot set [%s]; settings snapshot is read-only - use a copy instead", name));
+    }
+
+    @Override
+    public Settings snapshot() {
+        return this;
+    }
+
+    @Override
+    public Settings copy() {
+        return new SnapshotCopy(source, asProperties());
+    }
+
+    @Override
+    public InputStream loadResource(String location) {
+        return source.loadResource(location);
+    }
+
+    @Override
+    protected Properties asProperties() {
+        Properties properties = new Properties();
+        properties.putAll(props);
+        return properties;
+    }
+
+    // modifiable copy - resources are still loaded through the original settings
+    private static class SnapshotCopy extends PropertiesSettings {
+        private final Settings source;
+
+        SnapshotCopy(Settings source, Properties props) {
+            super(props);
+            this.source = source;
+        }
+
+        @Override
+        public Settings copy() {
+            return new SnapshotCopy(source, (Properties) props.clone());
+        }
+
+        @Override
+        public InputStream loadResource(String location) {
+            return source.loadResource(location);
+        }
+    }
+}
@@ -22,7 +22,6 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -49,10 +48,12 @@ import org.elasticsearch.hadoop.rest.QueryBuilder;
 import org.elasticsearch.hadoop.rest.RestRepository;
 import org.elasticsearch.hadoop.rest.RestService;
 import org.elasticsearch.hadoop.rest.RestService.PartitionDefinition;
+import org.elasticsearch.hadoop.rest.RestService.PartitionGroup;
 import org.elasticsearch.hadoop.rest.RestService.PartitionReader;
 import org.elasticsearch.hadoop.rest.ScrollQuery;
 import org.elasticsearch.hadoop.rest.stats.Stats;
 import org.elasticsearch.hadoop.serialization.ScrollReader;
+import org.elasticsearch.hadoop.util.Assert;
 import org.elasticsearch.hadoop.util.StringUtils;
 
 /**
@@ -71,7 +72,9 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
         private int httpPort;
         private String nodeId;
         private String nodeName;
-        private String shardId;
+        // multiple shards (on the same node) in case of a combined split
+        private String[] shardIds;
+        private long length;
         private String mapping;
         private String settings;
         private boolean onlyNode;
@@ -81,11 +84,17 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
         // this long constructor is required to avoid having the serialize PartitionDefinition
         public ShardInputSplit(String nodeIp, int httpPort, String nodeId, String nodeName, String shard,
                 boolean onlyNode, String mapping, String settings) {
+            this(nodeIp, httpPort, nodeId, nodeName, new String[] { shard }, 0, onlyNode, mapping, settings);
+        }
+
+        public ShardInputSplit(String nodeIp, int httpPort, String nodeId, String nodeName, String[] shards, long length,
+                boolean onlyNode, String mapping, String settings) {
             this.nodeIp = nodeIp;
             this.httpPort = httpPort;
             this.nodeId = nodeId;
             this.nodeName = nodeName;
-            this.shardId = shard;
+            this.shardIds = shards;
+            this.length = length;
             this.onlyNode = onlyNode;
             this.mapping = mapping;
             this.settings = settings;
@@ -93,8 +102,8 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
 
         @Override
         public long getLength() {
-            // TODO: can this be computed easily?
-            return 1l;
+            // size is known only for combined splits
+            return (length > 0 ? length : 1l);
         }
 
         @Override
@@ -109,7 +118,11 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
             out.writeInt(httpPort);
             out.writeUTF(nodeId);
             out.writeUTF(nodeName);
-            out.writeUTF(shardId);
+            out.writeInt(shardIds.length);
+            for (String shardId : shardIds) {
+                out.writeUTF(shardId);
+            }
+            out.writeLong(length);
             out.writeBoolean(onlyNode);
             // avoid using writeUTF since the mapping can be longer than 65K
             byte[] utf = StringUtils.toUTF(mapping);
@@ -127,7 +140,11 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
             httpPort = in.readInt();
             nodeId = in.readUTF();
             nodeName = in.readUTF();
-            shardId = in.readUTF();
+            shardIds = new String[in.readInt()];
+            for (int i = 0; i < shardIds.length; i++) {
+                shardIds[i] = in.readUTF();
+            }
+            length = in.readLong();
             onlyNode = in.readBoolean();
             int length = in.readInt();
             byte[] utf = new byte[length];
@@ -145,7 +162,7 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
             StringBuilder builder = new StringBuilder();
             builder.append("ShardInputSplit [node=[").append(nodeId).append("/").append(nodeName)
             .append("|").append(nodeIp).append(":").append(httpPort)
-            .append("],shard=").append(shardId).append("]");
+            .append("],shard=").append(StringUtils.concatenate(shardIds, ",")).append("]");
             return builder.toString();
         }
     }
@@ -155,15 +172,23 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
 
         private int read = 0;
         private ShardInputSplit esSplit;
+        private Settings settings;
         private ScrollReader scrollReader;
 
         private RestRepository client;
         private QueryBuilder queryBuilder;
         private ScrollQuery scrollQuery;
+        // shard currently read (out of the split ones)
+        private int shardIndex = 0;
+        private int readBeforeShard = 0;
+        // stats of the scrolls already completed
+        private final Stats scrollStats = new Stats();
 
         // reuse objects
         private K currentKey;
         private V currentValue;
+        // whether the objects are reused under the new API as well
+        private boolean reuseObjects = false;
 
         private long size = 0;
 
@@ -198,11 +223,13 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
             }
 
             this.esSplit = esSplit;
+            this.settings = settings;
 
             // initialize mapping/ scroll reader
             InitializationUtils.setValueReaderIfNotSet(settings, WritableValueReader.class, log);
 
-            PartitionDefinition part = new PartitionDefinition(esSplit.nodeIp, esSplit.httpPort, esSplit.nodeName, esSplit.nodeId, esSplit.shardId, esSplit.onlyNode, settings.save(), esSplit.mapping);
+            // the shards of a combined split are read in turn through the same client and scroll reader (and thus mapping)
+            PartitionDefinition part = new PartitionDefinition(esSplit.nodeIp, esSplit.httpPort, esSplit.nodeName, esSplit.nodeId, esSplit.shardIds[0], esSplit.onlyNode, settings.save(), esSplit.mapping);
             PartitionReader partitionReader = RestService.createReader(settings, part, log);
 
             this.scrollReader = partitionReader.scrollReader;
@@ -210,6 +237,7 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
             this.queryBuilder = partitionReader.queryBuilder;
 
             this.progressable = progressable;
+            this.reuseObjects = settings.getReadObjectReuse();
 
             // in Hadoop-like envs (Spark) the progressable might be null and thus the heart-beat is not needed
             if (progressable != null) {
@@ -221,13 +249,38 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
             }
         }
 
+        /**
+         * Returns the settings used for reading the split.
+         */
+        protected Settings settings() {
+            return settings;
+        }
+
+        protected ScrollReader getScrollReader() {
+            return scrollReader;
+        }
+
+        /**
+         * Replaces the reader converting the scroll results. Needs to be called before reading starts.
+         *
+         * @param scrollReader scroll reader
+         */
+        protected void setScrollReader(ScrollReader scrollReader) {
+            Assert.isTrue(scrollQuery == null, "Cannot replace the scroll reader once reading started");
+            this.scrollReader = scrollReader;
+        }
+
         @Override
         public boolean nextKeyValue() throws IOException {
             // new API call routed to old API
-            // under the new API always create new objects since consumers can (and sometimes will) modify them
+            // under the new API create new objects (unless told otherwise) since consumers can (and sometimes will) modify them
 
-            currentKey = createKey();
-            currentValue = createValue();
+            if (!reuseObjects || currentKey == null) {
+                currentKey = createKey();
+            }
+            if (!reuseObjects || currentValue == null) {
+                currentValue = createValue();
+            }
 
             return next(currentKey, currentValue);
         }
@@ -244,7 +297,9 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
 
         @Override
         public float getProgress() {
-            return size == 0 ? 0 : ((float) getPos()) / size;
+            float shardProgress = (size == 0 ? 0 : ((float) (read - readBeforeShard)) / size);
+            int shards = esSplit.shardIds.length;
+            return (shards == 1 ? shardProgress : (shardIndex + Math.min(shardProgress, 1f)) / shards);
         }
 
         @Override
@@ -267,7 +322,7 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
                 }
 
             } finally {
-                Stats stats = new Stats();
+                Stats stats = new Stats(scrollStats);
                 if (client != null) {
                     stats.aggregate(client.stats());
                     client = null;
@@ -297,6 +352,23 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
 
             boolean hasNext = scrollQuery.hasNext();
 
+            // move on to the next shard (if any)
+            while (!hasNext && shardIndex + 1 < esSplit.shardIds.length) {
+                scrollQuery.close();
+                scrollStats.aggregate(scrollQuery.stats());
+
+                shardIndex++;
+                queryBuilder.shard(esSplit.shardIds[shardIndex]);
+                scrollQuery = queryBuilder.build(client, scrollReader);
+                size = scrollQuery.getSize();
+                readBeforeShard = read;
+
+                if (log.isTraceEnabled()) {
+                    log.trace(String.format("Received scroll [%s],  size [%d] for query [%s]", scrollQuery, size, queryBuilder));
+                }
+                hasNext = scrollQuery.hasNext();
+            }
+
             if (!hasNext) {
                 return false;
             }
@@ -361,7 +433,13 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
         @Override
         protected Text setCurrentKey(Text hadoopKey, Object object) {
             if (hadoopKey != null) {
-                hadoopKey.set(object.toString());
+                if (object instanceof Text) {
+                    // avoid re-encoding
+                    hadoopKey.set((Text) object);
+                }
+                else {
+                    hadoopKey.set(object.toString());
+                }
             }
             return hadoopKey;
         }
@@ -454,7 +532,12 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
     public org.apache.hadoop.mapred.InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
 
         Settings settings = HadoopSettingsManager.loadFrom(job);
-        Collection<PartitionDefinition> partitions = RestService.findPartitions(settings, log);
+        List<PartitionDefinition> partitions = RestService.findPartitions(settings, log);
+
+        if (settings.getReadSplitCombine()) {
+            return combinedSplits(settings, partitions);
+        }
+
         ShardInputSplit[] splits = new ShardInputSplit[partitions.size()];
 
         int index = 0;
@@ -466,6 +549,24 @@ public class EsInputFormat<K, V> extends InputFormat<K, V> implements org.apache
         return splits;
     }
 
+    private ShardInputSplit[] combinedSplits(Settings settings, List<PartitionDefinition> partitions) {
+        List<PartitionGroup> groups = RestService.groupPartitions(settings, partitions, log);
+        ShardInputSplit[] splits = new ShardInputSplit[groups.size()];
+
+        int index = 0;
+        for (PartitionGroup group : groups) {
+            PartitionDefinition part = group.partitions.get(0);
+            String[] shards = new String[group.partitions.size()];
+            for (int i = 0; i < shards.length; i++) {
+                shards[i] = group.partitions.get(i).shardId;
+            }
+            splits[index++] = new ShardInputSplit(part.nodeIp, part.nodePort, part.nodeId, part.nodeName, shards, group.bytes,
+                    part.onlyNode, part.serializedMapping, part.serializedSettings);
+        }
+        log.info(String.format("Created [%d] combined shard-splits out of [%d] shards", splits.length, partitions.size()));
+        return splits;
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public ShardRecordReader<K, V> getRecordReader(org.apache.hadoop.mapred.InputSplit split, JobConf job, Reporter reporter) {
@@ -24,17 +24,24 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.mapred.TaskID;
 import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobStatus;
 import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.util.Progressable;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
 import org.elasticsearch.hadoop.cfg.HadoopSettingsManager;
+import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
 import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.mr.compat.CompatHandler;
+import org.elasticsearch.hadoop.rest.BulkLoad;
+import org.elasticsearch.hadoop.rest.BulkSerializerPool;
+import org.elasticsearch.hadoop.rest.DiscoverySnapshot;
 import org.elasticsearch.hadoop.rest.InitializationUtils;
 import org.elasticsearch.hadoop.rest.Resource;
 import org.elasticsearch.hadoop.rest.RestRepository;
@@ -43,6 +50,7 @@ import org.elasticsearch.hadoop.rest.RestService.PartitionWriter;
 import org.elasticsearch.hadoop.serialization.field.MapWritableFieldExtractor;
 import org.elasticsearch.hadoop.util.Assert;
 
+import static org.elasticsearch.hadoop.cfg.ConfigurationOptions.ES_INDEX_BULK_LOAD;
 import static org.elasticsearch.hadoop.cfg.ConfigurationOptions.ES_RESOURCE;
 
 /**
@@ -59,7 +67,33 @@ public class EsOutputFormat extends OutputFormat implements org.apache.hadoop.ma
     public static class EsOutputCommitter extends org.apache.hadoop.mapreduce.OutputCommitter {
 
         @Override
-        public void setupJob(JobContext jobContext) throws IOException {}
+        public void setupJob(JobContext jobContext) throws IOException {
+            Configuration cfg = CompatHandler.jobContext(jobContext).getConfiguration();
+            Settings settings = HadoopSettingsManager.loadFrom(cfg);
+            if (settings.getIndexBulkLoad()) {
+                setupBulkLoad(cfg, settings);
+            }
+        }
+
+        // not available in Hadoop 0.20.2
+        public void commitJob(JobContext jobContext) throws IOException {
+            Settings settings = settings(jobContext);
+            if (settings.getIndexBulkLoad()) {
+                BulkLoad.commit(settings);
+            }
+        }
+
+        // not available in Hadoop 0.20.2
+        public void abortJob(JobContext jobContext, JobStatus.State state) throws IOException {
+            Settings settings = settings(jobContext);
+            if (settings.getIndexBulkLoad()) {
+                BulkLoad.abort(settings);
+            }
+        }
+
+        private static Settings settings(JobContext jobContext) {
+            return HadoopSettingsManager.loadFrom(CompatHandler.jobContext(jobContext).getConfiguration());
+        }
 
         // compatibility check with Hadoop 0.20.2
         @Override
@@ -93,7 +127,26 @@ public class EsOutputFormat extends OutputFormat implements org.apache.hadoop.ma
 
         @Override
         public void setupJob(org.apache.hadoop.mapred.JobContext jobContext) throws IOException {
-            //no-op
+            Settings settings = HadoopSettingsManager.loadFrom(jobContext.getJobConf());
+            if (settings.getIndexBulkLoad()) {
+                setupBulkLoad(jobContext.getJobConf(), settings);
+            }
+        }
+
+        @Override
+        public void commitJob(org.apache.hadoop.mapred.JobContext jobContext) throws IOException {
+            Settings settings = HadoopSettingsManager.loadFrom(jobContext.getJobConf());
+            if (settings.getIndexBulkLoad()) {
+                BulkLoad.commit(settings);
+            }
+        }
+
+        @Override
+        public void abortJob(org.apache.hadoop.mapred.JobContext jobContext, int status) throws IOException {
+            Settings settings = HadoopSettingsManager.loadFrom(jobContext.getJobConf());
+            if (settings.getIndexBulkLoad()) {
+                BulkLoad.abort(settings);
+            }
         }
 
         @Override
@@ -125,12 +178,25 @@ public class EsOutputFormat extends OutputFormat implements org.apache.hadoop.ma
         }
     }
 
+    // the original index settings are saved in the job configuration which is only shared with the commit/abort phase when these run
+    // in the same process (YARN application master or local runner) - not when the job setup runs as a separate task (MR1)
+    static void setupBulkLoad(Configuration cfg, Settings settings) {
+        if (HadoopCfgUtils.getTaskID(cfg) != null) {
+            throw new EsHadoopIllegalStateException(String.format(
+                    "Job setup runs inside a separate task hence the index settings cannot be restored after the job; disable '%s'",
+                    ES_INDEX_BULK_LOAD));
+        }
+        BulkLoad.setup(settings);
+    }
+
     protected static class EsRecordWriter extends RecordWriter implements org.apache.hadoop.mapred.RecordWriter {
 
         protected final Configuration cfg;
         protected boolean initialized = false;
 
         protected RestRepository repository;
+        // serializes Writable records in parallel (optional)
+        private BulkSerializerPool serializer;
         private String uri;
         private Resource resource;
 
@@ -148,7 +214,17 @@ public class EsOutputFormat extends OutputFormat implements org.apache.hadoop.ma
                 initialized = true;
                 init();
             }
-            repository.writeToIndex(value);
+            if (serializer != null && value instanceof Writable) {
+                // the pool captures the record so the caller can reuse it
+                serializer.write(value);
+            }
+            else {
+                if (serializer != null) {
+                    // preserve the ordering
+                    serializer.drain();
+                }
+                repository.writeToIndex(value);
+            }
         }
 
         protected void init() throws IOException {
@@ -169,17 +245,35 @@ public class EsOutputFormat extends OutputFormat implements org.apache.hadoop.ma
             InitializationUtils.setValueWriterIfNotSet(settings, WritableValueWriter.class, log);
             InitializationUtils.setBytesConverterIfNeeded(settings, WritableBytesConverter.class, log);
             InitializationUtils.setFieldExtractorIfNotSet(settings, MapWritableFieldExtractor.class, log);
+            if (isBulkLoadManaged()) {
+                settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_BULK_LOAD_MANAGED, Boolean.TRUE.toString());
+            }
 
             PartitionWriter pw = RestService.createWriter(settings, currentInstance, -1, log);
 
             this.repository = pw.repository;
 
+            int serializerThreads = settings.getBatchWriteSerializerThreads();
+            if (serializerThreads > 0) {
+                this.serializer = new WritableSerializerPool(settings, repository, serializerThreads, cfg);
+            }
+
             if (progressable != null) {
                 this.beat = new HeartBeat(progressable, cfg, settings.getHeartBeatLead(), log);
                 this.beat.start();
             }
         }
 
+        /**
+         * Indicates whether the job setup and completion are handled by the {@link EsOutputCommitter}/{@link EsOldAPIOutputCommitter}
+         * (required for bulk loads).
+         *
+         * @return true if the job lifecycle goes through the committer, false otherwise
+         */
+        protected boolean isBulkLoadManaged() {
+            return true;
+        }
+
         private int detectCurrentInstance(Configuration conf) {
             TaskID taskID = HadoopCfgUtils.getTaskID(conf);
 
@@ -210,12 +304,18 @@ public class EsOutputFormat extends OutputFormat implements org.apache.hadoop.ma
                 beat.stop();
             }
 
-            if (repository != null) {
-                repository.close();
-                ReportingUtils.report(progressable, repository.stats());
+            try {
+                if (serializer != null) {
+                    serializer.close();
+                }
+            } finally {
+                serializer = null;
+                if (repository != null) {
+                    repository.close();
+                    ReportingUtils.report(progressable, repository.stats());
+                }
+                initialized = false;
             }
-
-            initialized = false;
         }
     }
 
@@ -261,6 +361,8 @@ public class EsOutputFormat extends OutputFormat implements org.apache.hadoop.ma
 
         InitializationUtils.checkIdForOperation(settings);
         InitializationUtils.checkIndexExistence(settings, client);
+        // resolve the cluster information once for all tasks (effective only with the new API)
+        DiscoverySnapshot.createIfNeeded(settings, log);
 
         if (HadoopCfgUtils.getReduceTasks(cfg) != null) {
             if (HadoopCfgUtils.getSpeculativeReduce(cfg)) {
@@ -101,11 +101,20 @@ public abstract class HadoopCfgUtils {
     }
 
     public static Properties asProperties(Configuration cfg) {
+        return asProperties(cfg, null);
+    }
+
+    /**
+     * Returns the (raw) entries of the given configuration whose names start with the given prefix (or all of them if the prefix is null).
+     */
+    public static Properties asProperties(Configuration cfg, String prefix) {
         Properties props = new Properties();
 
         if (cfg != null) {
             for (Map.Entry<String, String> entry : cfg) {
-                props.setProperty(entry.getKey(), entry.getValue());
+                if (prefix == null || entry.getKey().startsWith(prefix)) {
+                    props.setProperty(entry.getKey(), entry.getValue());
+                }
             }
         }
 
@@ -0,0 +1,92 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.mr;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.rest.BulkSerializerPool;
+import org.elasticsearch.hadoop.rest.RestRepository;
+import org.elasticsearch.hadoop.serialization.EsHadoopSerializationException;
+
+/**
+ * {@link BulkSerializerPool} for {@link Writable}s, which Hadoop typically reuses between records. Instead of cloning each record,
+ * the writing thread only writes it (in its binary form) into a buffer owned by the record slot; the serializer thread reads it back
+ * into an instance owned by the same slot. Thus the records can be reused by the caller and no objects are allocated per record.
+ */
+class WritableSerializerPool extends BulkSerializerPool {
+
+    private final Configuration cfg;
+    private final DataOutputBuffer[] buffers;
+    private final DataInputBuffer[] inputs;
+    private final Writable[] copies;
+
+    WritableSerializerPool(Settings settings, RestRepository repository, int threads, Configuration cfg) {
+        super(settings, repository, threads);
+        this.cfg = cfg;
+        this.buffers = new DataOutputBuffer[slots()];
+        this.inputs = new DataInputBuffer[slots()];
+        this.copies = new Writable[slots()];
+    }
+
+    @Override
+    protected Object handOff(Object record, int slot) {
+        Writable writable = (Writable) record;
+        DataOutputBuffer buffer = buffers[slot];
+        if (buffer == null) {
+            buffer = new DataOutputBuffer();
+            buffers[slot] = buffer;
+        }
+        buffer.reset();
+        try {
+            writable.write(buffer);
+        } catch (IOException ex) {
+            throw new EsHadoopSerializationException(String.format("Cannot copy record [%s]", writable), ex);
+        }
+        return writable.getClass();
+    }
+
+    @Override
+    protected Object takeOver(Object handle, int slot) {
+        Class<?> type = (Class<?>) handle;
+        Writable copy = copies[slot];
+        if (copy == null || copy.getClass() != type) {
+            copy = (Writable) ReflectionUtils.newInstance(type, cfg);
+            copies[slot] = copy;
+        }
+        DataOutputBuffer buffer = buffers[slot];
+        DataInputBuffer in = inputs[slot];
+        if (in == null) {
+            in = new DataInputBuffer();
+            inputs[slot] = in;
+        }
+        in.reset(buffer.getData(), buffer.getLength());
+        try {
+            copy.readFields(in);
+        } catch (IOException ex) {
+            throw new EsHadoopSerializationException(String.format("Cannot read back record of type [%s]", type.getName()), ex);
+        }
+        return copy;
+    }
+}
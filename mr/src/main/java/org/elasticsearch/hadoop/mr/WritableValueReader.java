@@ -18,6 +18,9 @@
  */
 package org.elasticsearch.hadoop.mr;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -32,14 +35,139 @@ import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
+import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.serialization.FieldType;
 import org.elasticsearch.hadoop.serialization.builder.JdkValueReader;
+import org.elasticsearch.hadoop.serialization.builder.RecyclingValueReader;
 
-public class WritableValueReader extends JdkValueReader {
+public class WritableValueReader extends JdkValueReader implements RecyclingValueReader {
+
+    // upper bound for the field names dictionary (in case of highly dynamic mappings)
+    static final int MAX_FIELD_NAMES = 4096;
+
+    /**
+     * Hands out objects allocated for a previous page of results before allocating new ones.
+     */
+    private static abstract class Arena<T> {
+        private final List<T> objects = new ArrayList<T>();
+        private int next = 0;
+
+        T get() {
+            if (next < objects.size()) {
+                return objects.get(next++);
+            }
+            T object = create();
+            objects.add(object);
+            next++;
+            return object;
+        }
+
+        void reset() {
+            next = 0;
+        }
+
+        abstract T create();
+    }
+
+    private boolean reuse = false;
+
+    private final Map<String, Text> fieldNames = new HashMap<String, Text>();
+    private List<Arena<?>> arenas;
+    private Arena<LinkedMapWritable> maps;
+    private Arena<Text> texts;
+    private Arena<IntWritable> ints;
+    private Arena<LongWritable> longs;
+    private Arena<FloatWritable> floats;
+    private Arena<DoubleWritable> doubles;
+    private Arena<BooleanWritable> booleans;
+
+    @Override
+    public void setSettings(Settings settings) {
+        super.setSettings(settings);
+        reuse = settings.getReadObjectReuse();
+        if (reuse) {
+            initArenas();
+        }
+    }
+
+    private void initArenas() {
+        maps = new Arena<LinkedMapWritable>() {
+            @Override
+            LinkedMapWritable create() {
+                return new LinkedMapWritable();
+            }
+        };
+        texts = new Arena<Text>() {
+            @Override
+            Text create() {
+                return new Text();
+            }
+        };
+        ints = new Arena<IntWritable>() {
+            @Override
+            IntWritable create() {
+                return new IntWritable();
+            }
+        };
+        longs = new Arena<LongWritable>() {
+            @Override
+            LongWritable create() {
+                return new LongWritable();
+            }
+        };
+        floats = new Arena<FloatWritable>() {
+            @Override
+            FloatWritable create() {
+                return new FloatWritable();
+            }
+        };
+        doubles = new Arena<DoubleWritable>() {
+            @Override
+            DoubleWritable create() {
+                return new DoubleWritable();
+            }
+        };
+        booleans = new Arena<BooleanWritable>() {
+            @Override
+            BooleanWritable create() {
+                return new BooleanWritable();
+            }
+        };
+        arenas = Arrays.<Arena<?>> asList(maps, texts, ints, longs, floats, doubles, booleans);
+    }
+
+    @Override
+    public Object fieldName(String name) {
+        if (!reuse) {
+            return textValue(name);
+        }
+        Text text = fieldNames.get(name);
+        if (text == null) {
+            text = new Text(name);
+            if (fieldNames.size() < MAX_FIELD_NAMES) {
+                fieldNames.put(name, text);
+            }
+        }
+        return text;
+    }
+
+    @Override
+    public void recycle() {
+        if (reuse) {
+            for (Arena<?> arena : arenas) {
+                arena.reset();
+            }
+        }
+    }
 
     @SuppressWarnings("rawtypes")
     @Override
     public Map createMap() {
+        if (reuse) {
+            LinkedMapWritable map = maps.get();
+            map.clear();
+            return map;
+        }
         return new LinkedMapWritable();
     }
 
@@ -123,31 +251,56 @@ public class WritableValueReader extends JdkValueReader {
 
     @Override
     protected Object processBoolean(Boolean value) {
+        if (reuse) {
+            BooleanWritable writable = booleans.get();
+            writable.set(value);
+            return writable;
+        }
         return new BooleanWritable(value);
     }
 
     @Override
     protected Object parseDate(Long value) {
-        return new LongWritable(value);
+        return processLong(value);
     }
 
     @Override
     protected Object processDouble(Double value) {
+        if (reuse) {
+            DoubleWritable writable = doubles.get();
+            writable.set(value);
+            return writable;
+        }
         return new DoubleWritable(value);
     }
 
     @Override
     protected Object processFloat(Float value) {
+        if (reuse) {
+            FloatWritable writable = floats.get();
+            writable.set(value);
+            return writable;
+        }
         return new FloatWritable(value);
     }
 
     @Override
     protected Object processLong(Long value) {
+        if (reuse) {
+            LongWritable writable = longs.get();
+            writable.set(value);
+            return writable;
+        }
         return new LongWritable(value);
     }
 
     @Override
     protected Object processInteger(Integer value) {
+        if (reuse) {
+            IntWritable writable = ints.get();
+            writable.set(value);
+            return writable;
+        }
         return new IntWritable(value);
     }
 
@@ -163,6 +316,11 @@ public class WritableValueReader extends JdkValueReader {
 
     @Override
     protected Object parseString(String value) {
+        if (reuse) {
+            Text text = texts.get();
+            text.set(value);
+            return text;
+        }
         return new Text(value);
     }
 
@@ -0,0 +1,183 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.util.StringUtils;
+import org.elasticsearch.hadoop.util.unit.TimeValue;
+
+/**
+ * Job-level index tuning for bulk loads. Before the job starts, the target index is created and its periodic refresh and replicas are
+ * disabled; once the job completes (successfully or not) the original settings are restored and, on success, the index is refreshed
+ * (and optionally optimized) once.
+ *
+ * The original settings are saved in the job settings hence the setup and completion need to share the same job configuration (as
+ * is the case with the YARN application master or the local runner). Rather than guessing, the completion fails (or on abort, reports
+ * an error) if the original settings are not available, leaving the index to be restored manually.
+ */
+public abstract class BulkLoad {
+
+    private static Log log = LogFactory.getLog(BulkLoad.class);
+
+    static final String REFRESH_INTERVAL = "index.refresh_interval";
+    static final String REPLICAS = "index.number_of_replicas";
+
+    static final String DEFAULT_REFRESH_INTERVAL = "1s";
+    static final String DEFAULT_REPLICAS = "1";
+
+    private static final String DISABLED_REFRESH_INTERVAL = "-1";
+    private static final String DISABLED_REPLICAS = "0";
+
+    /**
+     * Prepares the target index for a bulk load.
+     *
+     * @param settings job settings (in which the original index settings are saved)
+     * @return true if the index has been tuned, false otherwise
+     */
+    public static boolean setup(Settings settings) {
+        String index = index(settings);
+        if (index == null) {
+            return false;
+        }
+
+        RestClient client = new RestClient(settings);
+        try {
+            if (settings.getIndexAutoCreate()) {
+                if (client.touch(index) && client.health(index, RestClient.HEALTH.YELLOW, TimeValue.timeValueSeconds(10))) {
+                    log.warn(String.format("Timed out waiting for index [%s] to reach yellow health", index));
+                }
+            }
+            else if (!client.exists(index)) {
+                // tasks report the missing index
+                return false;
+            }
+
+            Map<String, Object> current = client.getIndexSettings(index);
+            settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_BULK_LOAD_REFRESH_INTERVAL,
+                    valueOf(current.get(REFRESH_INTERVAL), DEFAULT_REFRESH_INTERVAL));
+            settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_BULK_LOAD_REPLICAS,
+                    valueOf(current.get(REPLICAS), DEFAULT_REPLICAS));
+
+            client.updateIndexSettings(index, indexSettings(DISABLED_REFRESH_INTERVAL, DISABLED_REPLICAS));
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Bulk load - disabled refresh and replicas for index [%s]", index));
+            }
+            return true;
+        } finally {
+            client.close();
+        }
+    }
+
+    /**
+     * Restores the original settings of the target index and refreshes (and if configured, optimizes) it.
+     *
+     * @param settings job settings
+     * @throws EsHadoopIllegalStateException if the original settings are not available
+     */
+    public static void commit(Settings settings) {
+        complete(settings, true);
+    }
+
+    /**
+     * Restores the original settings of the target index. Does not fail (so the job failure is not masked) however if the original
+     * settings are not available, an error is reported and the index is left untouched.
+     *
+     * @param settings job settings
+     */
+    public static void abort(Settings settings) {
+        complete(settings, false);
+    }
+
+    private static void complete(Settings settings, boolean success) {
+        String index = index(settings);
+        if (index == null) {
+            return;
+        }
+
+        RestClient client = new RestClient(settings);
+        try {
+            if (!client.exists(index)) {
+                return;
+            }
+            Map<String, String> original = originalSettings(settings);
+            if (original == null) {
+                String message = String.format(
+                        "Original settings for index [%s] unavailable; its refresh and replicas remain disabled and need to be restored manually",
+                        index);
+                if (success) {
+                    throw new EsHadoopIllegalStateException(message);
+                }
+                log.error(message);
+                return;
+            }
+            client.updateIndexSettings(index, original);
+            if (success) {
+                client.refresh(new Resource(settings, false));
+                if (settings.getIndexBulkLoadOptimize()) {
+                    client.optimize(index);
+                }
+            }
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Bulk load - restored settings for index [%s]", index));
+            }
+        } finally {
+            client.close();
+        }
+    }
+
+    // returns the settings saved during setup or null if these are not available
+    static Map<String, String> originalSettings(Settings settings) {
+        String refresh = settings.getProperty(InternalConfigurationOptions.INTERNAL_ES_BULK_LOAD_REFRESH_INTERVAL);
+        String replicas = settings.getProperty(InternalConfigurationOptions.INTERNAL_ES_BULK_LOAD_REPLICAS);
+        if (!StringUtils.hasText(refresh) || !StringUtils.hasText(replicas)) {
+            return null;
+        }
+        return indexSettings(refresh, replicas);
+    }
+
+    // returns the target index or null if the index is not known upfront (pattern)
+    static String index(Settings settings) {
+        Resource resource = new Resource(settings, false);
+        String index = resource.index();
+        if (index.contains("{")) {
+            log.warn(String.format("Index pattern [%s] detected; ignoring [%s]", index, ConfigurationOptions.ES_INDEX_BULK_LOAD));
+            return null;
+        }
+        return index;
+    }
+
+    private static Map<String, String> indexSettings(String refresh, String replicas) {
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        map.put(REFRESH_INTERVAL, refresh);
+        map.put(REPLICAS, replicas);
+        return map;
+    }
+
+    private static String valueOf(Object value, String defaultValue) {
+        return (value != null ? value.toString() : defaultValue);
+    }
+}
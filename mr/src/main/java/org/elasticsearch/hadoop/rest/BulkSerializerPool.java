@@ -0,0 +1,299 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.io.Closeable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.elasticsearch.hadoop.EsHadoopException;
+import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.serialization.bulk.BulkCommand;
+import org.elasticsearch.hadoop.serialization.bulk.BulkCommands;
+import org.elasticsearch.hadoop.serialization.bulk.MetadataExtractor;
+import org.elasticsearch.hadoop.serialization.bulk.PerEntityPoolingMetadataExtractor;
+import org.elasticsearch.hadoop.util.Assert;
+import org.elasticsearch.hadoop.util.BytesArray;
+
+/**
+ * Serializes records into bulk entries through a pool of threads (each with its own {@link BulkCommand}) while preserving their order.
+ * Records are placed into a bounded ring of slots; the serializer threads fill each slot with its bulk entry while the writing thread
+ * hands over the completed slots, in order, to the {@link RestRepository}. As such the repository is only accessed by the writing thread.
+ *
+ * The records are serialized asynchronously hence by default the caller must not modify (or reuse) them after calling
+ * {@link #write(Object)}; implementations can instead capture the record upfront through {@link #handOff(Object, int)}.
+ * The runtime metadata extractor of the repository (if any) is shared by the serializer threads and thus has to be thread-safe and
+ * resolve the metadata from the record itself.
+ * Not thread-safe - meant to be used by a single writing thread.
+ */
+public class BulkSerializerPool implements Closeable {
+
+    static final int SLOTS_PER_THREAD = 64;
+
+    private static class Slot {
+        final int index;
+        Object record;
+        final BytesArray entry = new BytesArray(256);
+        volatile boolean done;
+        RuntimeException error;
+
+        Slot(int index) {
+            this.index = index;
+        }
+    }
+
+    // signals the serializer threads to stop
+    private static final Slot STOP = new Slot(-1);
+
+    private final RestRepository repository;
+    private final BulkCommand[] commands;
+    private final Slot[] ring;
+    private final BlockingQueue<Slot> work = new LinkedBlockingQueue<Slot>();
+    private Thread[] threads;
+
+    // next slot to be written to the repository
+    private long head = 0;
+    // next slot to be filled
+    private long tail = 0;
+    private boolean closed = false;
+
+    public BulkSerializerPool(Settings settings, RestRepository repository, int threads) {
+        this(settings, repository, repository.getRuntimeFieldExtractor(), threads, threads * SLOTS_PER_THREAD);
+    }
+
+    protected BulkSerializerPool(Settings settings, RestRepository repository, MetadataExtractor metaExtractor, int threads, int slots) {
+        Assert.isTrue(threads > 0, "Invalid number of serializer threads " + threads);
+        Assert.isTrue(slots > 0, "Invalid number of slots " + slots);
+        if (metaExtractor instanceof PerEntityPoolingMetadataExtractor) {
+            throw new EsHadoopIllegalArgumentException(String.format(
+                    "Metadata extractor [%s] is bound to the current record hence cannot be used by multiple threads; disable '%s'",
+                    metaExtractor.getClass().getName(), ConfigurationOptions.ES_BATCH_WRITE_SERIALIZER_THREADS));
+        }
+        this.repository = repository;
+
+        // create the commands upfront on the calling thread
+        commands = new BulkCommand[threads];
+        for (int i = 0; i < threads; i++) {
+            commands[i] = BulkCommands.create(settings, metaExtractor);
+        }
+
+        ring = new Slot[slots];
+        for (int i = 0; i < slots; i++) {
+            ring[i] = new Slot(i);
+        }
+    }
+
+    /**
+     * Returns the number of slots - records can be scheduled ahead of their serialization by at most this amount.
+     *
+     * @return number of slots
+     */
+    protected int slots() {
+        return ring.length;
+    }
+
+    /**
+     * Schedules the given record for serialization. Blocks if all the slots are in use.
+     *
+     * @param record record to serialize - see {@link #handOff(Object, int)}
+     */
+    public void write(Object record) {
+        if (closed) {
+            throw new EsHadoopIllegalStateException("Serializer pool already closed");
+        }
+        if (threads == null) {
+            start();
+        }
+
+        boolean failed = true;
+        try {
+            // ring full - wait for the oldest entry
+            if (tail - head == ring.length) {
+                writeHead(true);
+            }
+
+            Slot slot = ring[(int) (tail % ring.length)];
+            slot.record = handOff(record, slot.index);
+            slot.entry.reset();
+            slot.error = null;
+            slot.done = false;
+            tail++;
+            work.add(slot);
+
+            // hand over whatever has been serialized already
+            while (head < tail) {
+                if (!writeHead(false)) {
+                    break;
+                }
+            }
+            failed = false;
+        } finally {
+            // the task is likely to fail - do not rely on close() being called
+            if (failed) {
+                stop();
+            }
+        }
+    }
+
+    /**
+     * Waits for all the scheduled records to be serialized and written to the repository.
+     */
+    public void drain() {
+        boolean failed = true;
+        try {
+            while (head < tail) {
+                writeHead(true);
+            }
+            failed = false;
+        } finally {
+            if (failed) {
+                stop();
+            }
+        }
+    }
+
+    /**
+     * Takes over the given record on the writing thread, before it is scheduled. By default the record itself is passed on, hence
+     * the caller must not modify it afterwards; implementations can copy (the relevant state of) the record instead.
+     *
+     * @param record record
+     * @param slot slot (index) the record is placed into; it is not reused until the record has been serialized
+     * @return the object passed to {@link #takeOver(Object, int)}
+     */
+    protected Object handOff(Object record, int slot) {
+        return record;
+    }
+
+    /**
+     * Returns the record to serialize, on the serializer thread, from the object returned by {@link #handOff(Object, int)}.
+     *
+     * @param handle handed over object
+     * @param slot slot (index) the record is placed into
+     * @return the record to serialize
+     */
+    protected Object takeOver(Object handle, int slot) {
+        return handle;
+    }
+
+    private boolean writeHead(boolean wait) {
+        Slot slot = ring[(int) (head % ring.length)];
+        if (!slot.done) {
+            if (!wait) {
+                return false;
+            }
+            synchronized (slot) {
+                while (!slot.done) {
+                    try {
+                        slot.wait();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new EsHadoopException("Interrupted while waiting for records to be serialized", ex);
+                    }
+                }
+            }
+        }
+
+        head++;
+        slot.record = null;
+        if (slot.error != null) {
+            throw slot.error;
+        }
+        write(slot.entry);
+        return true;
+    }
+
+    /**
+     * Writes the given (serialized) entry.
+     *
+     * @param entry bulk entry
+     */
+    protected void write(BytesArray entry) {
+        repository.writeProcessedToIndex(entry);
+    }
+
+    private void start() {
+        threads = new Thread[commands.length];
+        for (int i = 0; i < commands.length; i++) {
+            final BulkCommand command = commands[i];
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    serialize(command);
+                }
+            }, "es-hadoop-serializer-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    private void serialize(BulkCommand command) {
+        while (true) {
+            Slot slot;
+            try {
+                slot = work.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            if (slot == STOP) {
+                return;
+            }
+
+            try {
+                command.writeTo(takeOver(slot.record, slot.index), slot.entry);
+            } catch (RuntimeException ex) {
+                slot.error = ex;
+            }
+
+            synchronized (slot) {
+                slot.done = true;
+                slot.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes the pending records and stops the serializer threads.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            drain();
+        } finally {
+            stop();
+        }
+    }
+
+    private void stop() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (threads != null) {
+            for (int i = 0; i < threads.length; i++) {
+                work.add(STOP);
+            }
+        }
+    }
+}
@@ -0,0 +1,508 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.hadoop.EsHadoopException;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.rest.stats.Stats;
+import org.elasticsearch.hadoop.rest.stats.StatsAware;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.IOUtils;
+import org.elasticsearch.hadoop.util.ReflectionUtils;
+import org.elasticsearch.hadoop.util.TrackingBytesArray;
+
+/**
+ * Write-behind spool for bulk entries that cannot be written to Elasticsearch (cluster unavailable or rejecting them).
+ * Entries are appended (in order) to memory-mapped segment files on local disk and replayed by a background thread, through its own
+ * {@link RestClient}, once the cluster recovers. Fully replayed segments are deleted.
+ *
+ * Replay failures caused by the network are retried (after {@link Settings#getBatchWriteRetryWait()}); any other failure stops the replay
+ * and is reported to the writer through {@link #checkFailure()}.
+ *
+ * The replay client is owned (created and closed) by the replay thread. Closing the spool waits for the thread to stop; if it is
+ * stuck in a request, the segments are released by the thread itself once the request returns.
+ */
+class BulkSpool implements Closeable, StatsAware {
+
+    private static Log log = LogFactory.getLog(BulkSpool.class);
+
+    static final int SEGMENT_SIZE = 32 * 1024 * 1024;
+    // length prefix of each entry
+    private static final int HEADER = 4;
+
+    static class Segment {
+        final File file;
+        final MappedByteBuffer buffer;
+        int writePosition = 0;
+        int readPosition = 0;
+
+        Segment(File file, int size) throws IOException {
+            this.file = file;
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                // the mapping remains valid after the channel is closed
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } finally {
+                IOUtils.close(raf);
+            }
+        }
+
+        boolean fits(int length) {
+            return buffer.capacity() - writePosition >= HEADER + length;
+        }
+
+        void write(byte[] bytes, int offset, int length) {
+            buffer.putInt(writePosition, length);
+            ByteBuffer view = buffer.duplicate();
+            view.position(writePosition + HEADER);
+            view.put(bytes, offset, length);
+            writePosition += HEADER + length;
+        }
+
+        boolean hasUnread() {
+            return readPosition < writePosition;
+        }
+
+        // releases the mapping right away instead of waiting for the buffer to be garbage collected (which also keeps the file
+        // from being deleted on some platforms); best effort since it relies on the JDK internals
+        boolean unmap() {
+            try {
+                if (INVOKE_CLEANER != null) {
+                    // Java 9+
+                    INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                    return true;
+                }
+                Method cleanerMethod = ReflectionUtils.findMethod(buffer.getClass(), "cleaner");
+                if (cleanerMethod != null) {
+                    ReflectionUtils.makeAccessible(cleanerMethod);
+                    Object cleaner = cleanerMethod.invoke(buffer);
+                    if (cleaner != null) {
+                        Method clean = ReflectionUtils.findMethod(cleaner.getClass(), "clean");
+                        ReflectionUtils.makeAccessible(clean);
+                        clean.invoke(cleaner);
+                        return true;
+                    }
+                }
+                unmapFailed(null);
+            } catch (Exception ex) {
+                unmapFailed(ex);
+            }
+            return false;
+        }
+
+        private void unmapFailed(Exception ex) {
+            String message = String.format("Cannot unmap spool segment [%s]; its memory (and on some platforms the file) is released "
+                    + "once garbage collected", file);
+            // warn once per JVM
+            if (!UNMAP_WARNED) {
+                UNMAP_WARNED = true;
+                log.warn(message, ex);
+            }
+            else if (log.isDebugEnabled()) {
+                log.debug(message, ex);
+            }
+        }
+    }
+
+    // sun.misc.Unsafe#invokeCleaner - Java 9+ (the buffer cleaner is no longer accessible)
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    private static volatile boolean UNMAP_WARNED = false;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> clazz = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = clazz.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = ReflectionUtils.findField(clazz, "theUnsafe");
+            ReflectionUtils.makeAccessible(field);
+            unsafe = ReflectionUtils.getField(field, null);
+        } catch (Exception ex) {
+            // pre Java 9 - use the buffer cleaner
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = (unsafe != null ? invokeCleaner : null);
+    }
+
+    private final Settings settings;
+    private final Resource resource;
+    private final long maxSize;
+    private final int batchBytes;
+    private final int batchEntries;
+    private final long retryWait;
+    private final int segmentSize;
+    private final File dir;
+
+    // oldest first
+    private final LinkedList<Segment> segments = new LinkedList<Segment>();
+    private int segmentCount = 0;
+    private long pendingBytes = 0;
+    private int pendingEntries = 0;
+    // whether a batch is being replayed (its entries are still pending)
+    private boolean inFlight = false;
+    private boolean stopped = false;
+    // whether the segments still need to be released (by the replay thread, once done)
+    private boolean releasePending = false;
+    private volatile EsHadoopException failure;
+
+    private Thread replayer;
+    // used only by the replay thread (guarded by the spool for the stats)
+    private RestClient client;
+    private final Stats stats = new Stats();
+
+    BulkSpool(Settings settings, Resource resource) {
+        this(settings, resource, SEGMENT_SIZE);
+    }
+
+    BulkSpool(Settings settings, Resource resource, int segmentSize) {
+        this.settings = settings;
+        this.segmentSize = segmentSize;
+        this.resource = resource;
+        this.maxSize = settings.getBatchWriteSpoolSize();
+        this.batchBytes = settings.getBatchSizeInBytes();
+        this.batchEntries = settings.getBatchSizeInEntries();
+        this.retryWait = settings.getBatchWriteRetryWait();
+
+        try {
+            File file = File.createTempFile("es-hadoop-spool-", "", new File(settings.getBatchWriteSpoolDir()));
+            if (!file.delete() || !file.mkdirs()) {
+                throw new IOException("Cannot create directory " + file);
+            }
+            this.dir = file;
+        } catch (IOException ex) {
+            throw new EsHadoopIllegalStateException("Cannot create bulk spool", ex);
+        }
+    }
+
+    /**
+     * Appends the tracked entries to the spool. Either all entries are spooled or none.
+     *
+     * @param data entries to spool
+     * @param ba bulk buffer backing the entries
+     * @return true if the entries were spooled, false if the spool is full
+     */
+    synchronized boolean append(TrackingBytesArray data, BytesArray ba) {
+        checkFailure();
+        if (stopped) {
+            throw new EsHadoopIllegalStateException("Spool already closed");
+        }
+
+        int entries = data.entries();
+        long size = (long) data.length() + entries * HEADER;
+        if (pendingBytes + size > maxSize) {
+            log.warn(String.format("Bulk spool full [%s bytes]; cannot spool [%s] more entries", pendingBytes, entries));
+            return false;
+        }
+
+        try {
+            for (int i = 0; i < entries; i++) {
+                int length = data.length(i);
+                Segment segment = (segments.isEmpty() ? null : segments.getLast());
+                if (segment == null || !segment.fits(length)) {
+                    segment = new Segment(new File(dir, "segment-" + (segmentCount++)), Math.max(segmentSize, HEADER + length));
+                    segments.add(segment);
+                }
+                segment.write(ba.bytes(), data.offset(i), length);
+                pendingBytes += HEADER + length;
+                pendingEntries++;
+            }
+        } catch (IOException ex) {
+            throw new EsHadoopIllegalStateException("Cannot write to bulk spool " + dir, ex);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Spooled [%s] entries; [%s] entries/[%s] bytes pending", entries, pendingEntries, pendingBytes));
+        }
+
+        if (replayer == null) {
+            replayer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    replay();
+                }
+            }, "es-hadoop-bulk-spool");
+            replayer.setDaemon(true);
+            replayer.start();
+        }
+
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Returns true if there are no spooled entries waiting to be written.
+     */
+    synchronized boolean isEmpty() {
+        return pendingEntries == 0 && !inFlight;
+    }
+
+    synchronized int pendingEntries() {
+        return pendingEntries;
+    }
+
+    /**
+     * Waits (at most the given time) for the spooled entries to be written.
+     *
+     * @param timeout maximum time to wait (in millis)
+     * @return true if the spool is empty, false otherwise
+     */
+    synchronized boolean awaitDrain(long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        long remaining = timeout;
+        while (!isEmpty() && failure == null && remaining > 0) {
+            try {
+                wait(remaining);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            remaining = deadline - System.currentTimeMillis();
+        }
+        checkFailure();
+        return isEmpty();
+    }
+
+    void checkFailure() {
+        EsHadoopException ex = failure;
+        if (ex != null) {
+            throw ex;
+        }
+    }
+
+    private void replay() {
+        try {
+            replayBatches();
+        } finally {
+            synchronized (this) {
+                closeClient();
+                if (releasePending) {
+                    release();
+                }
+            }
+        }
+    }
+
+    private void replayBatches() {
+        try {
+            while (true) {
+                TrackingBytesArray batch;
+                synchronized (this) {
+                    while (pendingEntries == 0 && !stopped) {
+                        wait();
+                    }
+                    if (stopped) {
+                        return;
+                    }
+                    inFlight = true;
+                    batch = peek();
+                }
+
+                int entries = batch.entries();
+                boolean sent = false;
+                try {
+                    sent = send(batch);
+                } catch (RuntimeException ex) {
+                    failure = (ex instanceof EsHadoopException ? (EsHadoopException) ex : new EsHadoopException(ex));
+                    log.error("Cannot replay spooled bulk entries; bailing out", ex);
+                }
+
+                synchronized (this) {
+                    if (sent && !releasePending) {
+                        consume(entries);
+                    }
+                    inFlight = false;
+                    notifyAll();
+                    if (!sent) {
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            // stopped
+        }
+    }
+
+    // copies the oldest entries (up to a batch) - the entries are consumed only once sent
+    private TrackingBytesArray peek() {
+        BytesArray bytes = new BytesArray(batchBytes);
+        TrackingBytesArray batch = new TrackingBytesArray(bytes);
+
+        int count = 0;
+        for (Segment segment : segments) {
+            int position = segment.readPosition;
+            while (position < segment.writePosition) {
+                int length = segment.buffer.getInt(position);
+                if (count > 0 && (bytes.length() + length > batchBytes || (batchEntries > 0 && count >= batchEntries))) {
+                    return batch;
+                }
+                int start = bytes.length();
+                // copy straight from the mapped segment
+                ByteBuffer view = segment.buffer.duplicate();
+                view.position(position + HEADER);
+                bytes.add(view, length);
+                batch.track(start);
+                position += HEADER + length;
+                count++;
+            }
+        }
+        return batch;
+    }
+
+    private void consume(int entries) {
+        while (entries > 0) {
+            Segment segment = segments.getFirst();
+            int length = segment.buffer.getInt(segment.readPosition);
+            segment.readPosition += HEADER + length;
+            pendingBytes -= HEADER + length;
+            pendingEntries--;
+            entries--;
+
+            // discard the segment once fully read (unless it is still being written)
+            if (!segment.hasUnread() && segments.size() > 1) {
+                segments.removeFirst();
+                segment.unmap();
+                delete(segment.file);
+            }
+        }
+    }
+
+    /**
+     * Sends the given batch, retrying (until stopped) while the cluster is unavailable.
+     *
+     * @return true if the batch was written, false if the spool was stopped
+     */
+    protected boolean send(TrackingBytesArray batch) throws InterruptedException {
+        while (true) {
+            try {
+                RestClient current;
+                synchronized (this) {
+                    if (client == null) {
+                        client = new RestClient(settings);
+                    }
+                    current = client;
+                }
+                current.bulk(resource, batch);
+                if (batch.length() == 0) {
+                    return true;
+                }
+                log.warn(String.format("Replaying spooled bulk entries; [%s] entries still rejected - retrying in [%s]ms", batch.entries(), retryWait));
+            } catch (EsHadoopTransportException ex) {
+                log.warn(String.format("Replaying spooled bulk entries failed (%s) - retrying in [%s]ms", ex.getMessage(), retryWait));
+                // the client discards the unreachable nodes - start from scratch
+                synchronized (this) {
+                    closeClient();
+                }
+            }
+
+            synchronized (this) {
+                if (!stopped) {
+                    wait(Math.max(retryWait, 1));
+                }
+                if (stopped) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    // invoked while holding the lock
+    private void closeClient() {
+        if (client != null) {
+            client.close();
+            stats.aggregate(client.stats());
+            client = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            stopped = true;
+            thread = replayer;
+            notifyAll();
+        }
+
+        if (thread != null) {
+            try {
+                // the replayer stops at its next wait - unless it is in the middle of a request
+                thread.join(Math.max(retryWait, 1000));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this) {
+            if (pendingEntries > 0) {
+                log.warn(String.format("Discarding [%s] spooled entries not written to Elasticsearch", pendingEntries));
+            }
+            if (thread != null && thread.isAlive()) {
+                // the replayer still uses the client and the segments - let it release them once done
+                releasePending = true;
+            }
+            else {
+                release();
+            }
+        }
+    }
+
+    // invoked while holding the lock
+    private void release() {
+        releasePending = false;
+        for (Segment segment : segments) {
+            segment.unmap();
+            delete(segment.file);
+        }
+        segments.clear();
+        pendingEntries = 0;
+        pendingBytes = 0;
+        delete(dir);
+    }
+
+    private static void delete(File file) {
+        if (!file.delete() && file.exists()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Override
+    public synchronized Stats stats() {
+        Stats copy = new Stats(stats);
+        if (client != null) {
+            copy.aggregate(client.stats());
+        }
+        return copy;
+    }
+}
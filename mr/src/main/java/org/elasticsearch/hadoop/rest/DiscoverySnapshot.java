@@ -0,0 +1,144 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.serialization.dto.Node;
+import org.elasticsearch.hadoop.serialization.dto.Shard;
+import org.elasticsearch.hadoop.serialization.field.IndexExtractor;
+import org.elasticsearch.hadoop.util.Assert;
+import org.elasticsearch.hadoop.util.ObjectUtils;
+import org.elasticsearch.hadoop.util.StringUtils;
+
+/**
+ * Cluster information required by the writing tasks (nodes, version, target index and its primary shards layout), resolved once when the
+ * job is planned and saved into the job settings. Tasks use the snapshot (as long as it is fresh) instead of querying the cluster
+ * themselves.
+ */
+public abstract class DiscoverySnapshot {
+
+    /**
+     * Resolves the cluster information and saves it into the given settings, if the snapshot is enabled.
+     *
+     * @param settings job settings
+     * @param log logger
+     * @return true if a snapshot was created, false otherwise
+     */
+    public static boolean createIfNeeded(Settings settings, Log log) {
+        if (!settings.getNodesDiscoverySnapshot()) {
+            return false;
+        }
+
+        InitializationUtils.discoverNodesIfNeeded(settings, log);
+        InitializationUtils.filterNonClientNodesIfNeeded(settings, log);
+        InitializationUtils.discoverEsVersion(settings, log);
+
+        Resource resource = new Resource(settings, false);
+        IndexExtractor iformat = ObjectUtils.instantiate(settings.getMappingIndexExtractorClassName(), settings);
+        iformat.compile(resource.toString());
+
+        List<String> shardNodes = Collections.emptyList();
+        // the target index is known only for single index writes; with bulk loads, the index is created only once the job is set up
+        // (after planning) so its layout is left for the tasks to resolve
+        if (!iformat.hasPattern() && !settings.getIndexBulkLoad()) {
+            RestRepository repository = new RestRepository(settings);
+            try {
+                if (repository.touch()) {
+                    if (repository.waitForYellow()) {
+                        log.warn(String.format("Timed out waiting for index [%s] to reach yellow health", resource));
+                    }
+                }
+                if (!settings.getNodesClientOnly()) {
+                    shardNodes = shardNodes(repository.getWriteTargetPrimaryShards(false));
+                    Assert.isTrue(!shardNodes.isEmpty(),
+                            String.format("Cannot determine write shards for [%s]; likely its format is incorrect (maybe it contains illegal characters?)", resource));
+                }
+            } finally {
+                repository.close();
+            }
+        }
+
+        settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_SNAPSHOT_SHARD_NODES, StringUtils.concatenate(shardNodes, ","));
+        settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_SNAPSHOT_RESOURCE, settings.getResourceWrite());
+        settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_SNAPSHOT_TIME, String.valueOf(System.currentTimeMillis()));
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Created discovery snapshot for [%s]; primary shards at %s", resource, shardNodes));
+        }
+        return true;
+    }
+
+    // address of the node hosting each primary shard, in shard order
+    static List<String> shardNodes(Map<Shard, Node> targetShards) {
+        List<Shard> orderedShards = new ArrayList<Shard>(targetShards.keySet());
+        Collections.sort(orderedShards);
+
+        List<String> nodes = new ArrayList<String>(orderedShards.size());
+        for (Shard shard : orderedShards) {
+            Node node = targetShards.get(shard);
+            nodes.add(node.getIpAddress() + ":" + node.getHttpPort());
+        }
+        return nodes;
+    }
+
+    /**
+     * Indicates whether the given settings contain a snapshot that is still fresh (and created for the same resource).
+     *
+     * @param settings task settings
+     * @param log logger
+     * @return true if the snapshot can be used, false otherwise
+     */
+    public static boolean isAvailable(Settings settings, Log log) {
+        String time = settings.getProperty(InternalConfigurationOptions.INTERNAL_ES_SNAPSHOT_TIME);
+        if (!StringUtils.hasText(time) || !settings.getNodesDiscoverySnapshot()) {
+            return false;
+        }
+        if (!StringUtils.hasText(settings.getResourceWrite())
+                || !settings.getResourceWrite().equals(settings.getProperty(InternalConfigurationOptions.INTERNAL_ES_SNAPSHOT_RESOURCE))) {
+            return false;
+        }
+
+        long age = System.currentTimeMillis() - Long.parseLong(time);
+        if (age > settings.getNodesDiscoverySnapshotTtl()) {
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Discovery snapshot expired (created %sms ago); querying the cluster", age));
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the address of the nodes hosting the primary shards of the target index, in shard order. Empty if unknown (client nodes,
+     * index pattern or bulk load).
+     *
+     * @param settings task settings
+     * @return nodes hosting the primary shards
+     */
+    public static List<String> primaryShardNodes(Settings settings) {
+        return StringUtils.tokenize(settings.getProperty(InternalConfigurationOptions.INTERNAL_ES_SNAPSHOT_SHARD_NODES));
+    }
+}
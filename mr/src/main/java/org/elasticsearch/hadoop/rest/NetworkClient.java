@@ -49,7 +49,8 @@ public class NetworkClient implements StatsAware, Closeable {
     private final Stats stats = new Stats();
 
     public NetworkClient(Settings settings) {
-        this.settings = settings.copy();
+        // read-only; the selected node is passed to the transport directly (a snapshot is used as is)
+        this.settings = settings.snapshot();
         this.nodes = SettingsUtils.discoveredOrDeclaredNodes(settings);
         // shuffle the list of nodes so in case of failures, the fallback is spread
         Collections.shuffle(nodes);
@@ -82,7 +83,6 @@ public class NetworkClient implements StatsAware, Closeable {
 
         closeTransport();
         currentNode = nodes.get(nextClient++);
-        SettingsUtils.pinNode(settings, currentNode);
         currentTransport = new CommonsHttpTransport(settings, currentNode);
         return true;
     }
@@ -92,7 +92,8 @@ public class NetworkClient implements StatsAware, Closeable {
 
         boolean newNode;
         do {
-            SimpleRequest routedRequest = new SimpleRequest(request.method(), null, request.path(), request.params(), request.body());
+            SimpleRequest routedRequest = new SimpleRequest(request.method(), null, request.path(), request.params(), request.body(),
+                    request.contentType());
 
             newNode = false;
             try {
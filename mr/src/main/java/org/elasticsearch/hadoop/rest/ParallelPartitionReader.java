@@ -0,0 +1,245 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.commons.logging.Log;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.rest.RestService.PartitionDefinition;
+import org.elasticsearch.hadoop.rest.RestService.PartitionReader;
+import org.elasticsearch.hadoop.rest.stats.Stats;
+import org.elasticsearch.hadoop.rest.stats.StatsAware;
+
+/**
+ * Reads a set of partitions in parallel - one scroll per partition, through a small pool of threads - and merges their hits (in no
+ * particular order). Meant for environments without tasks to spread the partitions onto (such as Cascading local mode).
+ *
+ * The hits are handed over through a bounded queue so the readers can only get ahead of the consumer by a limited amount.
+ * Not thread-safe - meant to be used by a single consuming thread.
+ */
+public class ParallelPartitionReader implements Iterator<Object>, Closeable, StatsAware {
+
+    // marks the end of a partition
+    private static final Object[] EOF = new Object[0];
+    // how long to wait (overall) for the readers to stop - a reader blocked on the network cannot be interrupted
+    private static final long CLOSE_TIMEOUT = 2000;
+
+    private final ConcurrentLinkedQueue<PartitionDefinition> partitions;
+    private final BlockingQueue<Object[]> hits;
+    private final Log log;
+    private final Stats stats = new Stats();
+
+    private final int threadCount;
+    private Thread[] threads;
+
+    // partitions not yet consumed
+    private int remaining;
+    private Object[] current;
+    private volatile Throwable failure;
+    private volatile boolean closed = false;
+
+    ParallelPartitionReader(List<PartitionDefinition> partitions, int threads, int capacity, Log log) {
+        this.partitions = new ConcurrentLinkedQueue<PartitionDefinition>(partitions);
+        this.remaining = partitions.size();
+        this.threadCount = Math.max(1, Math.min(threads, partitions.size()));
+        this.hits = new ArrayBlockingQueue<Object[]>(Math.max(1, capacity));
+        this.log = log;
+    }
+
+    private void start() {
+        threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    readPartitions();
+                }
+            }, "es-hadoop-reader-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    private void readPartitions() {
+        PartitionDefinition partition;
+        while (!closed && (partition = partitions.poll()) != null) {
+            try {
+                read(partition);
+            } catch (InterruptedException ex) {
+                // closed
+                return;
+            } catch (Throwable th) {
+                if (failure == null) {
+                    failure = th;
+                }
+            }
+
+            try {
+                push(EOF);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the given partition, pushing its hits. Invoked by the reader threads.
+     *
+     * @param partition partition to read
+     * @throws InterruptedException if the reader is closed while waiting for the consumer
+     */
+    protected void read(PartitionDefinition partition) throws InterruptedException {
+        // each partition gets its own settings since the reader pins them to a node
+        Settings settings = partition.settings();
+        // the hits are consumed on another thread while this one parses the next page - decode them upfront
+        settings.setProperty(ConfigurationOptions.ES_READ_SOURCE_LAZY, Boolean.FALSE.toString());
+        PartitionReader reader = RestService.createReader(settings, partition, log);
+        ScrollQuery query = null;
+        try {
+            query = reader.scrollQuery();
+            while (!closed && query.hasNext()) {
+                push(query.next());
+            }
+        } finally {
+            synchronized (stats) {
+                if (query != null) {
+                    stats.aggregate(query.stats());
+                }
+                stats.aggregate(reader.client.stats());
+            }
+            reader.close();
+        }
+    }
+
+    /**
+     * Hands the given hit over to the consumer, waiting for room if needed.
+     *
+     * @param hit hit
+     * @throws InterruptedException if the reader is closed while waiting
+     */
+    protected void push(Object[] hit) throws InterruptedException {
+        hits.put(hit);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (current != null) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        if (threads == null) {
+            start();
+        }
+
+        while (remaining > 0) {
+            Object[] hit;
+            try {
+                hit = hits.take();
+            } catch (InterruptedException ex) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new EsHadoopIllegalStateException("Interrupted while reading partitions", ex);
+            }
+
+            if (hit == EOF) {
+                remaining--;
+                // the failure is set before the end of the partition is pushed
+                Throwable th = failure;
+                if (th != null) {
+                    close();
+                    if (th instanceof RuntimeException) {
+                        throw (RuntimeException) th;
+                    }
+                    throw new EsHadoopIllegalStateException("Cannot read partition", th);
+                }
+                continue;
+            }
+
+            current = hit;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Object[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more documents available");
+        }
+        Object[] hit = current;
+        current = null;
+        return hit;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("read-only operator");
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        current = null;
+
+        if (threads != null) {
+            // wake up the readers waiting for room
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT;
+            for (Thread thread : threads) {
+                long wait = deadline - System.currentTimeMillis();
+                try {
+                    if (wait > 0) {
+                        thread.join(wait);
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                // the (daemon) reader releases its resources once its current request returns
+                if (thread.isAlive() && log.isDebugEnabled()) {
+                    log.debug(String.format("Reader [%s] still busy after close; leaving it to finish in the background", thread.getName()));
+                }
+            }
+        }
+        hits.clear();
+    }
+
+    @Override
+    public Stats stats() {
+        synchronized (stats) {
+            return new Stats(stats);
+        }
+    }
+}
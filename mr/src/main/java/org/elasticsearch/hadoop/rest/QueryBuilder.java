@@ -20,12 +20,15 @@ package org.elasticsearch.hadoop.rest;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.codehaus.jackson.map.ObjectMapper;
 import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
+import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
 import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.serialization.ScrollReader;
 import org.elasticsearch.hadoop.util.Assert;
@@ -46,6 +49,8 @@ public class QueryBuilder {
 
     private TimeValue time = TimeValue.timeValueMinutes(10);
     private long size = 50;
+    // maximum number of hits returned (negative for all)
+    private long limit = -1;
     private String shard;
     private String node;
     private boolean onlyNode;
@@ -65,12 +70,18 @@ public class QueryBuilder {
             query = MATCH_ALL;
         }
         parseQuery(query.trim(), settings);
+
+        String filter = settings.getProperty(InternalConfigurationOptions.INTERNAL_ES_QUERY_FILTER);
+        if (StringUtils.hasText(filter)) {
+            applyFilter(filter);
+        }
     }
 
     public static QueryBuilder query(Settings settings) {
         return new QueryBuilder(settings).
                 time(settings.getScrollKeepAlive()).
-                size(settings.getScrollSize());
+                size(settings.getScrollSize()).
+                limit(settings.getScrollLimit());
     }
 
 
@@ -103,6 +114,36 @@ public class QueryBuilder {
         }
     }
 
+    // combines the (pushed down) filter with the user query - as a filtered query for query dsl
+    // or as a post filter for uri queries (since the query string cannot be combined with the body)
+    @SuppressWarnings("unchecked")
+    private void applyFilter(String filter) {
+        ObjectMapper mapper = new ObjectMapper();
+        try {
+            Object filterDsl = mapper.readValue(filter, Object.class);
+            Map<String, Object> body = new LinkedHashMap<String, Object>();
+
+            if (bodyQuery != null) {
+                Map<String, Object> original = mapper.readValue(bodyQuery.bytes(), 0, bodyQuery.length(), Map.class);
+                Object query = original.remove("query");
+                if (query == null) {
+                    query = Collections.singletonMap("match_all", Collections.emptyMap());
+                }
+                Map<String, Object> filtered = new LinkedHashMap<String, Object>();
+                filtered.put("query", query);
+                filtered.put("filter", filterDsl);
+                body.put("query", Collections.singletonMap("filtered", filtered));
+                body.putAll(original);
+            }
+            else {
+                body.put(IS_ES_10 ? "post_filter" : "filter", filterDsl);
+            }
+            bodyQuery = new BytesArray(mapper.writeValueAsBytes(body));
+        } catch (IOException ex) {
+            throw new EsHadoopIllegalArgumentException(String.format("Cannot combine query with filter [%s]", filter), ex);
+        }
+    }
+
     private Map<String, String> initUriQuery(String query) {
         // strip leading ?
         if (query.startsWith("?")) {
@@ -127,6 +168,17 @@ public class QueryBuilder {
         return this;
     }
 
+    /**
+     * Caps the number of hits returned by the scroll (and the size of its pages).
+     *
+     * @param limit maximum number of hits; negative for no limit
+     * @return this builder
+     */
+    public QueryBuilder limit(long limit) {
+        this.limit = limit;
+        return this;
+    }
+
     public QueryBuilder time(long timeInMillis) {
         Assert.isTrue(timeInMillis > 0, "Invalid time");
         this.time = TimeValue.timeValueMillis(timeInMillis);
@@ -160,7 +212,8 @@ public class QueryBuilder {
         // override infrastructure params
         uriQuery.put("search_type", "scan");
         uriQuery.put("scroll", String.valueOf(time.minutes()));
-        uriQuery.put("size", String.valueOf(size));
+        // no need to fetch pages bigger than the limit
+        uriQuery.put("size", String.valueOf(limit >= 0 ? Math.max(1, Math.min(size, limit)) : size));
         if (INCLUDE_VERSION) {
             uriQuery.put("version", "");
         }
@@ -196,8 +249,31 @@ public class QueryBuilder {
             uriQuery.put("preference", pref.toString());
         }
 
-        // append params
-        for (Iterator<Entry<String, String>> it = uriQuery.entrySet().iterator(); it.hasNext();) {
+        appendParams(sb, uriQuery);
+        return sb.toString();
+    }
+
+    // same query but returning only the number of hits
+    String assembleCount() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(StringUtils.encodePath(resource.index()));
+        sb.append("/");
+        sb.append(StringUtils.encodePath(resource.type()));
+        sb.append("/_search?");
+
+        Map<String, String> params = new LinkedHashMap<String, String>(uriQuery);
+        // remove the scroll params (if already assembled)
+        for (String param : new String[] { "scroll", "size", "version", "fields", "_source", "preference" }) {
+            params.remove(param);
+        }
+        params.put("search_type", "count");
+
+        appendParams(sb, params);
+        return sb.toString();
+    }
+
+    private static void appendParams(StringBuilder sb, Map<String, String> params) {
+        for (Iterator<Entry<String, String>> it = params.entrySet().iterator(); it.hasNext();) {
             Entry<String, String> entry = it.next();
             sb.append(entry.getKey());
             if (StringUtils.hasText(entry.getValue())) {
@@ -208,13 +284,25 @@ public class QueryBuilder {
                 sb.append("&");
             }
         }
-
-        return sb.toString();
     }
 
     public ScrollQuery build(RestRepository client, ScrollReader reader) {
         String scrollUri = assemble();
-        return client.scan(scrollUri, bodyQuery, reader);
+        return client.scan(scrollUri, bodyQuery, limit, reader);
+    }
+
+    /**
+     * Returns the number of documents matching the query (including any pushed down filter) across the whole resource.
+     *
+     * @param client repository
+     * @return number of matching documents
+     */
+    public long count(RestRepository client) {
+        return client.count(assembleCount(), bodyQuery);
+    }
+
+    BytesArray body() {
+        return bodyQuery;
     }
 
     @Override
@@ -36,4 +36,11 @@ public interface Request {
     CharSequence params();
 
     ByteSequence body();
+
+    /**
+     * Returns the content type of the body, if other than JSON.
+     *
+     * @return content type or null for JSON
+     */
+    String contentType();
 }
@@ -43,7 +43,7 @@ public class Resource {
         Assert.hasText(resource, errorMessage + resource);
 
         // add compatibility for now
-        if (resource.contains("?") || resource.contains("&")) {
+        if (isLegacy(resource)) {
             if (!StringUtils.hasText(settings.getQuery())) {
                 throw new EsHadoopIllegalArgumentException(String.format(
                         "Cannot specify a query in the target index and through %s", ConfigurationOptions.ES_QUERY));
@@ -83,6 +83,11 @@ public class Resource {
         refresh = (index.contains("{") ? "/_refresh" : index + "/_refresh");
     }
 
+    // legacy 'index/type?query' resources are rewritten (into the settings) when parsed
+    static boolean isLegacy(String resource) {
+        return (resource != null && (resource.contains("?") || resource.contains("&")));
+    }
+
     String bulk() {
         return bulk;
     }
@@ -40,9 +40,11 @@ import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.rest.Request.Method;
 import org.elasticsearch.hadoop.rest.stats.Stats;
 import org.elasticsearch.hadoop.rest.stats.StatsAware;
+import org.elasticsearch.hadoop.serialization.EsHadoopSerializationException;
 import org.elasticsearch.hadoop.serialization.ParsingUtils;
 import org.elasticsearch.hadoop.serialization.dto.Node;
 import org.elasticsearch.hadoop.serialization.json.JacksonJsonParser;
+import org.elasticsearch.hadoop.serialization.json.JacksonSmile;
 import org.elasticsearch.hadoop.serialization.json.JsonFactory;
 import org.elasticsearch.hadoop.serialization.json.ObjectReader;
 import org.elasticsearch.hadoop.util.ByteSequence;
@@ -62,6 +64,8 @@ public class RestClient implements Closeable, StatsAware {
     private final TimeValue scrollKeepAlive;
     private final boolean indexReadMissingAsEmpty;
     private final HttpRetryPolicy retryPolicy;
+    // content type of the bulk requests (null for JSON)
+    private final String bulkContentType;
 
     {
         mapper = new ObjectMapper();
@@ -92,6 +96,9 @@ public class RestClient implements Closeable, StatsAware {
         }
 
         retryPolicy = ObjectUtils.instantiate(retryPolicyName, settings);
+
+        // the bulk entries are encoded by the bulk commands based on the same setting
+        bulkContentType = (ConfigurationOptions.ES_NET_CONTENT_TYPE_SMILE.equals(settings.getNetContentType()) ? JacksonSmile.CONTENT_TYPE : null);
     }
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
@@ -118,13 +125,17 @@ public class RestClient implements Closeable, StatsAware {
         return parseContent(execute(GET, q), string);
     }
 
-    @SuppressWarnings("unchecked")
     private <T> T parseContent(InputStream content, String string) {
+        return parseContent(content, string, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T parseContent(InputStream content, String string, String contentType) {
         Map<String, Object> map = Collections.emptyMap();
 
         try {
             // create parser manually to lower Jackson requirements
-            JsonParser jsonParser = mapper.getJsonFactory().createJsonParser(content);
+            JsonParser jsonParser = parser(content, contentType);
             try {
                 map = mapper.readValue(jsonParser, Map.class);
             } finally {
@@ -138,6 +149,18 @@ public class RestClient implements Closeable, StatsAware {
     }
 
     public BitSet bulk(Resource resource, TrackingBytesArray data) {
+        return bulk(resource, data, true);
+    }
+
+    /**
+     * Writes the given entries, optionally retrying the rejected ones (as indicated by the retry policy).
+     *
+     * @param resource target resource
+     * @param data entries to write; the written ones are removed
+     * @param retryRejected whether to retry the rejected entries or return right away
+     * @return the positions of the entries that could not be written
+     */
+    BitSet bulk(Resource resource, TrackingBytesArray data, boolean retryRejected) {
         Retry retry = retryPolicy.init();
         int httpStatus = 0;
 
@@ -146,7 +169,7 @@ public class RestClient implements Closeable, StatsAware {
         do {
             // NB: dynamically get the stats since the transport can change
             long start = network.transportStats().netTotalTime;
-            Response response = execute(PUT, resource.bulk(), data);
+            Response response = execute(new SimpleRequest(PUT, null, resource.bulk(), null, data, bulkContentType), true);
             long spent = network.transportStats().netTotalTime - start;
 
             stats.bulkTotal++;
@@ -164,7 +187,7 @@ public class RestClient implements Closeable, StatsAware {
             isRetry = true;
 
             httpStatus = (retryFailedEntries(response.body(), data) ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK);
-        } while (data.length() > 0 && retry.retry(httpStatus));
+        } while (data.length() > 0 && retryRejected && retry.retry(httpStatus));
 
         return data.leftoversPosition();
     }
@@ -173,7 +196,8 @@ public class RestClient implements Closeable, StatsAware {
     private boolean retryFailedEntries(InputStream content, TrackingBytesArray data) {
         try {
             ObjectReader r = JsonFactory.objectReader(mapper, Map.class);
-            JsonParser parser = mapper.getJsonFactory().createJsonParser(content);
+            // the response uses the same content type as the request
+            JsonParser parser = parser(content, bulkContentType);
             try {
                 if (ParsingUtils.seek("items", new JacksonJsonParser(parser)) == null) {
                     // recorded bytes are ack here
@@ -216,6 +240,13 @@ public class RestClient implements Closeable, StatsAware {
         }
     }
 
+    private JsonParser parser(InputStream content, String contentType) throws IOException {
+        if (JacksonSmile.CONTENT_TYPE.equals(contentType)) {
+            return JacksonSmile.factory().createJsonParser(content);
+        }
+        return mapper.getJsonFactory().createJsonParser(content);
+    }
+
     private String prettify(String error) {
         String invalidFragment = ErrorUtils.extractInvalidXContent(error);
         String header = (invalidFragment != null ? "Invalid JSON fragment received[" + invalidFragment + "]" : "");
@@ -231,10 +262,52 @@ public class RestClient implements Closeable, StatsAware {
         execute(POST, resource.refresh());
     }
 
+    /**
+     * Returns the (flat) settings of the given index.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getIndexSettings(String index) {
+        Map<String, Object> response = get(index + "/_settings?flat_settings=true", null);
+        // keyed by the concrete index name
+        for (Object value : response.values()) {
+            Map<String, Object> settings = (Map<String, Object>) ((Map<String, Object>) value).get("settings");
+            if (settings != null) {
+                return settings;
+            }
+        }
+        return Collections.emptyMap();
+    }
+
+    public void updateIndexSettings(String index, Map<String, String> settings) {
+        try {
+            execute(PUT, index + "/_settings", new BytesArray(mapper.writeValueAsBytes(settings)));
+        } catch (IOException ex) {
+            throw new EsHadoopSerializationException(ex);
+        }
+    }
+
+    public void optimize(String index) {
+        execute(POST, index + "/_optimize");
+    }
+
     public void deleteIndex(String index) {
         execute(DELETE, index);
     }
 
+    /**
+     * Returns the (docs and store) stats of each shard copy of the given index, keyed by index name.
+     */
+    public Map<String, Object> shardStats(String index) {
+        return get(index + "/_stats/docs,store?level=shards", "indices");
+    }
+
+    /**
+     * Returns the (docs and store) stats of the given index, aggregated for all its primary and replica shards.
+     */
+    public Map<String, Object> indexStats(String index) {
+        return get(index + "/_stats/docs,store", "_all");
+    }
+
     public List<List<Map<String, Object>>> targetShards(String index) {
         List<List<Map<String, Object>>> shardsJson = null;
 
@@ -320,8 +393,12 @@ public class RestClient implements Closeable, StatsAware {
             String msg = null;
             // try to parse the answer
             try {
-                msg = parseContent(response.body(), "error");
-                msg = prettify(msg, request.body());
+                // Elasticsearch answers in the content type of the request
+                msg = parseContent(response.body(), "error", request.contentType());
+                // the fragment can be extracted only from textual content
+                if (request.contentType() == null) {
+                    msg = prettify(msg, request.body());
+                }
             } catch (Exception ex) {
                 // can't parse message, move on
             }
@@ -347,12 +424,28 @@ public class RestClient implements Closeable, StatsAware {
         return data;
     }
 
+    /**
+     * Returns the number of hits for the given search (executed as a count).
+     */
+    public long count(String query, BytesArray body) {
+        Map<String, Object> count = parseContent(execute(POST, query, body).body(), "hits");
+        return ((Number) count.get("total")).longValue();
+    }
+
     public InputStream scroll(String scrollId) {
+        return scroll(scrollId, false);
+    }
+
+    /**
+     * Returns the next page of the given scroll, optionally encoded as SMILE instead of JSON.
+     */
+    public InputStream scroll(String scrollId, boolean smile) {
         // NB: dynamically get the stats since the transport can change
         long start = network.transportStats().netTotalTime;
         try {
             // use post instead of get to avoid some weird encoding issues (caused by the long URL)
-            InputStream is = execute(POST, "_search/scroll?scroll=" + scrollKeepAlive.toString(),
+            String uri = "_search/scroll?scroll=" + scrollKeepAlive.toString() + (smile ? "&format=smile" : "");
+            InputStream is = execute(POST, uri,
                     new BytesArray(scrollId.getBytes(StringUtils.UTF_8))).body();
             stats.scrollTotal++;
             return is;
@@ -26,14 +26,17 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.elasticsearch.hadoop.EsHadoopException;
+import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
 import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
 import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
 import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.cfg.SettingsSnapshot;
 import org.elasticsearch.hadoop.rest.stats.Stats;
 import org.elasticsearch.hadoop.rest.stats.StatsAware;
 import org.elasticsearch.hadoop.serialization.ScrollReader;
@@ -43,6 +46,7 @@ import org.elasticsearch.hadoop.serialization.bulk.MetadataExtractor;
 import org.elasticsearch.hadoop.serialization.dto.Node;
 import org.elasticsearch.hadoop.serialization.dto.Shard;
 import org.elasticsearch.hadoop.serialization.dto.mapping.Field;
+import org.elasticsearch.hadoop.serialization.json.JacksonSmile;
 import org.elasticsearch.hadoop.util.Assert;
 import org.elasticsearch.hadoop.util.BytesArray;
 import org.elasticsearch.hadoop.util.BytesRef;
@@ -60,11 +64,12 @@ public class RestRepository implements Closeable, StatsAware {
 
     // serialization artifacts
     private int bufferEntriesThreshold;
+    private int bufferSize;
 
-    // raw data
-    private final BytesArray ba = new BytesArray(0);
+    // raw data (swapped with a free buffer when handed off to the shared processor)
+    private BytesArray ba = new BytesArray(0);
     // tracking array (backed by the BA above)
-    private final TrackingBytesArray data = new TrackingBytesArray(ba);
+    private TrackingBytesArray data = new TrackingBytesArray(ba);
     private int dataEntries = 0;
     private boolean requiresRefreshAfterBulk = false;
     private boolean executedBulkWrite = false;
@@ -81,14 +86,32 @@ public class RestRepository implements Closeable, StatsAware {
     private Resource resourceR;
     private Resource resourceW;
     private BulkCommand command;
+    // merges updates for the same document (optional)
+    private UpdateCoalescer coalescer;
+    // local disk spool for entries that cannot be written (optional)
+    private BulkSpool spool;
+    // JVM-wide bulk processor (optional)
+    private SharedBulkProcessor shared;
+    // hand-off to the shared processor (when flushing automatically)
+    private SharedBulkProcessor.Handle sharedHandle;
     // optional extractor passed lazily to BulkCommand
     private MetadataExtractor metaExtractor;
 
     private final Settings settings;
+    // settings as given - the serialization components (value writer, field extractors) are created from them since they
+    // can rely on properties outside the connector namespace, which are not part of the snapshot
+    private final Settings componentSettings;
     private final Stats stats = new Stats();
+    // whether the bulk and scroll content is encoded as SMILE
+    private final boolean binaryContent;
 
     public RestRepository(Settings settings) {
-        this.settings = settings;
+        // legacy 'index/type?query' resources are normalized into the settings - do that before taking the snapshot
+        // otherwise a given snapshot is used as is
+        if (settings instanceof SettingsSnapshot
+                && (Resource.isLegacy(settings.getResourceRead()) || Resource.isLegacy(settings.getResourceWrite()))) {
+            settings = settings.copy();
+        }
 
         if (StringUtils.hasText(settings.getResourceRead())) {
             this.resourceR = new Resource(settings, true);
@@ -98,8 +121,28 @@ public class RestRepository implements Closeable, StatsAware {
             this.resourceW = new Resource(settings, false);
         }
 
+        // settings are read on the hot path (and by the spool thread) - use an immutable copy, shared with the client
+        // (taking the snapshot of a snapshot is a no-op)
+        this.componentSettings = settings;
+        this.settings = settings.snapshot();
+        settings = this.settings;
+
         Assert.isTrue(resourceR != null || resourceW != null, "Invalid configuration - No read or write resource specified");
 
+        String contentType = settings.getNetContentType();
+        if (ConfigurationOptions.ES_NET_CONTENT_TYPE_SMILE.equals(contentType)) {
+            // fail fast if the codec is missing
+            JacksonSmile.factory();
+            binaryContent = true;
+        }
+        else if (ConfigurationOptions.ES_NET_CONTENT_TYPE_JSON.equals(contentType)) {
+            binaryContent = false;
+        }
+        else {
+            throw new EsHadoopIllegalArgumentException(String.format("Unknown content type [%s]; supported values are [%s, %s]",
+                    contentType, ConfigurationOptions.ES_NET_CONTENT_TYPE_JSON, ConfigurationOptions.ES_NET_CONTENT_TYPE_SMILE));
+        }
+
         this.client = new RestClient(settings);
     }
 
@@ -109,12 +152,29 @@ public class RestRepository implements Closeable, StatsAware {
             writeInitialized = true;
 
             autoFlush = !settings.getBatchFlushManual();
-            ba.bytes(new byte[settings.getBatchSizeInBytes()], 0);
+            bufferSize = settings.getBatchSizeInBytes();
+            ba.bytes(new byte[bufferSize], 0);
             trivialBytesRef = new BytesRef();
             bufferEntriesThreshold = settings.getBatchSizeInEntries();
-            requiresRefreshAfterBulk = settings.getBatchRefreshAfterWrite();
-
-            this.command = BulkCommands.create(settings, metaExtractor);
+            // bulk loads are refreshed once the job completes
+            requiresRefreshAfterBulk = settings.getBatchRefreshAfterWrite() && !settings.getIndexBulkLoad();
+
+            this.command = BulkCommands.create(componentSettings, metaExtractor);
+            this.coalescer = (UpdateCoalescer.isApplicable(settings) ? new UpdateCoalescer() : null);
+            if (settings.getBatchWriteShared()) {
+                if (settings.getBatchWriteSpool()) {
+                    log.warn(String.format("Shared bulk processor enabled; ignoring [%s]", ConfigurationOptions.ES_BATCH_WRITE_SPOOL));
+                }
+                this.shared = SharedBulkProcessor.acquire(settings, resourceW);
+                // batches flushed automatically are handed off; manual flushes wait for the outcome of their entries
+                if (autoFlush) {
+                    this.sharedHandle = shared.handle(bufferSize);
+                }
+            }
+            // spool only when flushing automatically - otherwise the caller handles the failed entries
+            else if (settings.getBatchWriteSpool() && autoFlush) {
+                this.spool = new BulkSpool(settings, resourceW);
+            }
         }
     }
 
@@ -126,16 +186,28 @@ public class RestRepository implements Closeable, StatsAware {
      * @return a scroll query
      */
     ScrollQuery scan(String query, BytesArray body, ScrollReader reader) {
+        return scan(query, body, -1, reader);
+    }
+
+    ScrollQuery scan(String query, BytesArray body, long limit, ScrollReader reader) {
         String[] scrollInfo = client.scan(query, body);
         String scrollId = scrollInfo[0];
         long totalSize = Long.parseLong(scrollInfo[1]);
-        return new ScrollQuery(this, scrollId, totalSize, reader);
+        return new ScrollQuery(this, scrollId, totalSize, limit, reader);
+    }
+
+    long count(String query, BytesArray body) {
+        return client.count(query, body);
     }
 
     public void addRuntimeFieldExtractor(MetadataExtractor metaExtractor) {
         this.metaExtractor = metaExtractor;
     }
 
+    public MetadataExtractor getRuntimeFieldExtractor() {
+        return metaExtractor;
+    }
+
     /**
      * Writes the objects to index.
      *
@@ -145,7 +217,39 @@ public class RestRepository implements Closeable, StatsAware {
         Assert.notNull(object, "no object data given");
 
         lazyInitWriting();
-        doWriteToIndex(command.write(object));
+
+        // serialize the entry straight into the bulk buffer
+        int start = ba.length();
+        boolean written = false;
+        try {
+            command.writeTo(object, ba);
+            written = true;
+        } finally {
+            if (!written) {
+                // discard any partial content
+                ba.size(start);
+            }
+        }
+
+        // entry overflows the buffer - roll it back, flush the buffer and move the entry to its beginning
+        if (start > 0 && ba.length() > bufferSize) {
+            int length = ba.length() - start;
+            ba.size(start);
+            // the buffer might be handed off (and replaced) by the flush
+            byte[] entry = ba.bytes();
+            if (autoFlush) {
+                flush();
+            }
+            else {
+                throw new EsHadoopIllegalStateException(
+                        String.format("Auto-flush disabled and bulk buffer full; disable manual flush or increase capacity [current size %s]; bailing out", bufferSize));
+            }
+            // the buffer has been reset however the entry bytes are still in place
+            ba.add(entry, start, length);
+            start = 0;
+        }
+
+        entryWritten(start);
     }
 
     /**
@@ -166,19 +270,33 @@ public class RestRepository implements Closeable, StatsAware {
 
     private void doWriteToIndex(BytesRef payload) {
         // check space first
-        if (payload.length() > ba.available()) {
+        if (payload.length() > bufferSize - ba.length()) {
             if (autoFlush) {
                 flush();
             }
             else {
                 throw new EsHadoopIllegalStateException(
-                        String.format("Auto-flush disabled and bulk buffer full; disable manual flush or increase capacity [current size %s]; bailing out", ba.capacity()));
+                        String.format("Auto-flush disabled and bulk buffer full; disable manual flush or increase capacity [current size %s]; bailing out", bufferSize));
             }
         }
 
-        data.copyFrom(payload);
+        int start = ba.length();
+        payload.copyTo(ba);
         payload.reset();
 
+        entryWritten(start);
+    }
+
+    // tracks the entry written in the buffer from the given position (unless it gets coalesced with an existing one)
+    private void entryWritten(int start) {
+        if (coalescer == null || !coalescer.coalesce(data, ba, start)) {
+            data.track(start);
+        }
+        entryAdded();
+    }
+
+    private void entryAdded() {
+        // counts every write (even the coalesced ones) so callers can map the flush result back to their writes
         dataEntries++;
         if (bufferEntriesThreshold > 0 && dataEntries >= bufferEntriesThreshold) {
             if (autoFlush) {
@@ -206,7 +324,7 @@ public class RestRepository implements Closeable, StatsAware {
         try {
             // double check data - it might be a false flush (called on clean-up)
             if (data.length() > 0) {
-                bulkResult = client.bulk(resourceW, data);
+                bulkResult = (shared != null ? shared.bulk(data, ba) : client.bulk(resourceW, data));
                 executedBulkWrite = true;
             }
         } catch (EsHadoopException ex) {
@@ -226,10 +344,93 @@ public class RestRepository implements Closeable, StatsAware {
     public void discard() {
         data.reset();
         dataEntries = 0;
+        if (coalescer != null) {
+            coalescer.reset();
+        }
+    }
+
+    /**
+     * Sends the batch or, if the cluster is unavailable or rejects (some of) its entries, spools them.
+     * To preserve the ordering, batches are spooled directly as long as the spool is not empty.
+     * The rejected entries are spooled right away, without going through the retry policy (the spool replays them, in the
+     * background, after the retry wait); an unavailable cluster is detected once all the nodes failed.
+     * Used only when flushing automatically - with manual flushing the caller handles the entries left (see {@link #tryFlush()}).
+     */
+    private BitSet flushOrSpool() {
+        spool.checkFailure();
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Sending batch of [%d] bytes/[%s] entries", data.length(), dataEntries));
+        }
+
+        EsHadoopTransportException transportError = null;
+        if (data.length() > 0 && spool.isEmpty()) {
+            try {
+                // no (blocking) retries - the rejected entries are spooled
+                client.bulk(resourceW, data, false);
+                executedBulkWrite = true;
+            } catch (EsHadoopTransportException ex) {
+                transportError = ex;
+                log.warn(String.format("Cannot send batch (%s); spooling it", ex.getMessage()));
+                // the client discards the unreachable nodes - use a new one once the cluster recovers
+                client.close();
+                stats.aggregate(client.stats());
+                client = new RestClient(settings);
+            } catch (EsHadoopException ex) {
+                hadWriteErrors = true;
+                throw ex;
+            }
+        }
+
+        BitSet leftovers = EMPTY;
+        // anything left (rejected or not sent) goes to the spool
+        if (data.length() > 0) {
+            if (spool.append(data, ba)) {
+                executedBulkWrite = true;
+            }
+            else {
+                hadWriteErrors = true;
+                if (transportError != null) {
+                    throw transportError;
+                }
+                leftovers = data.leftoversPosition();
+            }
+        }
+
+        discard();
+        return leftovers;
+    }
+
+    /**
+     * Hands the batch off to the shared processor and continues with a free buffer. Does not wait for the batch to be written;
+     * failures are reported by a later hand-off or on close.
+     */
+    private void handOff() {
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Handing off batch of [%d] bytes/[%s] entries", data.length(), dataEntries));
+        }
+
+        if (data.length() > 0) {
+            SharedBulkProcessor.Submission next;
+            try {
+                next = sharedHandle.handOff(data, ba);
+            } catch (EsHadoopException ex) {
+                hadWriteErrors = true;
+                throw ex;
+            }
+            executedBulkWrite = true;
+            ba = next.ba;
+            data = next.data;
+        }
+        discard();
     }
 
     public void flush() {
-        BitSet bulk = tryFlush();
+        if (sharedHandle != null) {
+            handOff();
+            return;
+        }
+        BitSet bulk = (spool != null ? flushOrSpool() : tryFlush());
         if (!bulk.isEmpty()) {
             throw new EsHadoopException(String.format("Could not write all entries [%s/%s] (maybe ES was overloaded?). Bailing out...", bulk.cardinality(), bulk.size()));
         }
@@ -241,12 +442,45 @@ public class RestRepository implements Closeable, StatsAware {
             log.debug("Closing repository and connection to Elasticsearch ...");
         }
 
-        if (!hadWriteErrors) {
-            flush();
+        try {
+            if (!hadWriteErrors) {
+                flush();
+                if (sharedHandle != null) {
+                    try {
+                        sharedHandle.await();
+                    } catch (EsHadoopException ex) {
+                        hadWriteErrors = true;
+                        throw ex;
+                    }
+                }
+            }
+            else {
+                if (log.isDebugEnabled()) {
+                    log.debug("Dirty close; ignoring last existing write batch...");
+                }
+            }
+        } finally {
+            if (shared != null) {
+                shared.release();
+                shared = null;
+                sharedHandle = null;
+            }
         }
-        else {
-            if (log.isDebugEnabled()) {
-                log.debug("Dirty close; ignoring last existing write batch...");
+
+        if (spool != null) {
+            try {
+                if (!hadWriteErrors) {
+                    long timeout = settings.getBatchWriteSpoolDrainTimeout();
+                    if (!spool.awaitDrain(timeout)) {
+                        hadWriteErrors = true;
+                        throw new EsHadoopException(String.format("Could not write [%s] spooled entries within [%s]ms (is ES available?). Bailing out...",
+                                spool.pendingEntries(), timeout));
+                    }
+                }
+            } finally {
+                spool.close();
+                stats.aggregate(spool.stats());
+                spool = null;
             }
         }
 
@@ -360,6 +594,65 @@ public class RestRepository implements Closeable, StatsAware {
         return result;
     }
 
+    /**
+     * Returns the size (number of documents and store size in bytes) of each shard of the read resource, per hosting node.
+     * The result is keyed by <tt>nodeId/shardId</tt> and aggregates the shards with the same id across all the target indices
+     * (as they are read together).
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, long[]> getReadShardSizes() {
+        Map<String, long[]> sizes = new LinkedHashMap<String, long[]>();
+        Map<String, Object> indices = client.shardStats(resourceR.index());
+        if (indices == null) {
+            return sizes;
+        }
+
+        for (Object index : indices.values()) {
+            Map<String, List<Map<String, Object>>> shards = (Map<String, List<Map<String, Object>>>) ((Map<String, Object>) index).get("shards");
+            if (shards == null) {
+                continue;
+            }
+            for (Entry<String, List<Map<String, Object>>> entry : shards.entrySet()) {
+                for (Map<String, Object> copy : entry.getValue()) {
+                    Map<String, Object> routing = (Map<String, Object>) copy.get("routing");
+                    Map<String, Object> docs = (Map<String, Object>) copy.get("docs");
+                    Map<String, Object> store = (Map<String, Object>) copy.get("store");
+                    if (routing == null) {
+                        continue;
+                    }
+                    String key = routing.get("node") + "/" + entry.getKey();
+                    long[] size = sizes.get(key);
+                    if (size == null) {
+                        size = new long[2];
+                        sizes.put(key, size);
+                    }
+                    size[0] += (docs != null ? ((Number) docs.get("count")).longValue() : 0);
+                    size[1] += (store != null ? ((Number) store.get("size_in_bytes")).longValue() : 0);
+                }
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Returns the size (number of documents and store size in bytes) of the primary shards of the read index (or indices).
+     */
+    @SuppressWarnings("unchecked")
+    public long[] getReadIndexSize() {
+        long[] size = new long[2];
+        Map<String, Object> all = client.indexStats(resourceR.index());
+        Map<String, Object> primaries = (all != null ? (Map<String, Object>) all.get("primaries") : null);
+        if (primaries == null) {
+            return size;
+        }
+
+        Map<String, Object> docs = (Map<String, Object>) primaries.get("docs");
+        Map<String, Object> store = (Map<String, Object>) primaries.get("store");
+        size[0] = (docs != null ? ((Number) docs.get("count")).longValue() : 0);
+        size[1] = (store != null ? ((Number) store.get("size_in_bytes")).longValue() : 0);
+        return size;
+    }
+
     public Map<Shard, Node> getWriteTargetPrimaryShards(boolean clientNodesOnly) {
         for (int retries = 0; retries < 3; retries++) {
             Map<Shard, Node> map = doGetWriteTargetPrimaryShards(clientNodesOnly);
@@ -398,9 +691,10 @@ public class RestRepository implements Closeable, StatsAware {
     }
 
     public List<Object[]> scroll(String scrollId, ScrollReader reader) throws IOException {
-        InputStream scroll = client.scroll(scrollId);
+        boolean smile = binaryContent && reader.supportsBinaryContent();
+        InputStream scroll = client.scroll(scrollId, smile);
         try {
-            return reader.read(scroll);
+            return reader.read(scroll, smile);
         } finally {
             if (scroll instanceof StatsAware) {
                 stats.aggregate(((StatsAware) scroll).stats());
@@ -5,6 +5,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -15,6 +16,7 @@ import org.apache.commons.logging.Log;
 import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
 import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
 import org.elasticsearch.hadoop.cfg.FieldPresenceValidation;
+import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
 import org.elasticsearch.hadoop.cfg.PropertiesSettings;
 import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.serialization.ScrollReader;
@@ -30,6 +32,7 @@ import org.elasticsearch.hadoop.util.ObjectUtils;
 import org.elasticsearch.hadoop.util.SettingsUtils;
 import org.elasticsearch.hadoop.util.StringUtils;
 import org.elasticsearch.hadoop.util.Version;
+import org.elasticsearch.hadoop.util.unit.Booleans;
 
 public abstract class RestService implements Serializable {
 
@@ -72,6 +75,28 @@ public abstract class RestService implements Serializable {
         }
     }
 
+    /**
+     * Partitions (shards) hosted on the same node, read together.
+     */
+    public static class PartitionGroup {
+        public final List<PartitionDefinition> partitions = new ArrayList<PartitionDefinition>();
+        public long docs;
+        public long bytes;
+
+        void add(PartitionDefinition partition, long[] size) {
+            partitions.add(partition);
+            if (size != null) {
+                docs += size[0];
+                bytes += size[1];
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("EsPartitionGroup [partitions=%s,docs=%s,bytes=%s]", partitions, docs, bytes);
+        }
+    }
+
     public static class PartitionReader implements Closeable {
         public final ScrollReader scrollReader;
         public final RestRepository client;
@@ -282,6 +307,59 @@ public abstract class RestService implements Serializable {
         return partitions;
     }
 
+    /**
+     * Groups the given partitions by their hosting node, each group being bounded by the configured number of documents and size.
+     */
+    public static List<PartitionGroup> groupPartitions(Settings settings, List<PartitionDefinition> partitions, Log log) {
+        if (partitions.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // partitions carry the settings used for discovery
+        RestRepository client = new RestRepository(partitions.get(0).settings());
+        Map<String, long[]> sizes;
+        try {
+            sizes = client.getReadShardSizes();
+        } finally {
+            client.close();
+        }
+
+        List<PartitionGroup> groups = groupPartitions(partitions, sizes, settings.getReadSplitCombineMaxDocs(), settings.getReadSplitCombineMaxSize());
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Combined [%s] partitions into [%s] groups %s", partitions.size(), groups.size(), groups));
+        }
+        return groups;
+    }
+
+    static List<PartitionGroup> groupPartitions(List<PartitionDefinition> partitions, Map<String, long[]> sizes, long maxDocs, long maxBytes) {
+        Map<String, List<PartitionDefinition>> byNode = new LinkedHashMap<String, List<PartitionDefinition>>();
+        for (PartitionDefinition partition : partitions) {
+            List<PartitionDefinition> list = byNode.get(partition.nodeId);
+            if (list == null) {
+                list = new ArrayList<PartitionDefinition>();
+                byNode.put(partition.nodeId, list);
+            }
+            list.add(partition);
+        }
+
+        List<PartitionGroup> groups = new ArrayList<PartitionGroup>();
+        for (List<PartitionDefinition> nodePartitions : byNode.values()) {
+            PartitionGroup group = null;
+            for (PartitionDefinition partition : nodePartitions) {
+                long[] size = sizes.get(partition.nodeId + "/" + partition.shardId);
+                long docs = (size != null ? size[0] : 0);
+                long bytes = (size != null ? size[1] : 0);
+                // a partition larger than the bounds gets its own group
+                if (group == null || group.docs + docs > maxDocs || group.bytes + bytes > maxBytes) {
+                    group = new PartitionGroup();
+                    groups.add(group);
+                }
+                group.add(partition, size);
+            }
+        }
+        return groups;
+    }
+
     public static PartitionReader createReader(Settings settings, PartitionDefinition partition, Log log) {
 
         if (!SettingsUtils.hasPinnedNode(settings)) {
@@ -304,7 +382,7 @@ public abstract class RestService implements Serializable {
             log.warn(String.format("No mapping found for [%s] - either no index exists or the partition configuration has been corrupted", partition));
         }
 
-        ScrollReader scrollReader = new ScrollReader(reader, fieldMapping, settings.getReadMetadata(), settings.getReadMetadataField(), settings.getOutputAsJson());
+        ScrollReader scrollReader = new ScrollReader(reader, fieldMapping, settings.getReadMetadata(), settings.getReadMetadataField(), settings.getOutputAsJson(), settings.getReadSourceLazy());
 
         // initialize REST client
         RestRepository client = new RestRepository(settings);
@@ -366,10 +444,30 @@ public abstract class RestService implements Serializable {
         return new MultiReaderIterator(definitions, settings, log);
     }
 
+    /**
+     * Returns a reader going through the given partitions in parallel (up to the configured number of local threads).
+     */
+    public static ParallelPartitionReader parallelReader(Settings settings, List<PartitionDefinition> definitions, Log log) {
+        int threads = settings.getReadLocalThreads();
+        // allow each reader to get ahead by (about) one scroll page
+        long capacity = Math.min(settings.getScrollSize() * threads, Integer.MAX_VALUE);
+        return new ParallelPartitionReader(definitions, threads, (int) capacity, log);
+    }
+
     public static PartitionWriter createWriter(Settings settings, int currentSplit, int totalSplits, Log log) {
 
-        InitializationUtils.discoverNodesIfNeeded(settings, log);
-        InitializationUtils.filterNonClientNodesIfNeeded(settings, log);
+        // bulk loads rely on the job setup/completion (index creation, refresh) performed by the Map/Reduce committer
+        if (settings.getIndexBulkLoad() && !Booleans.parseBoolean(settings.getProperty(InternalConfigurationOptions.INTERNAL_ES_BULK_LOAD_MANAGED))) {
+            log.warn(String.format("[%s] is only supported by the Map/Reduce committer; ignoring it", ConfigurationOptions.ES_INDEX_BULK_LOAD));
+            settings.setProperty(ConfigurationOptions.ES_INDEX_BULK_LOAD, Boolean.FALSE.toString());
+        }
+
+        // nodes already discovered (and filtered) when the job was planned
+        boolean snapshot = DiscoverySnapshot.isAvailable(settings, log);
+        if (!snapshot) {
+            InitializationUtils.discoverNodesIfNeeded(settings, log);
+            InitializationUtils.filterNonClientNodesIfNeeded(settings, log);
+        }
         InitializationUtils.discoverEsVersion(settings, log);
 
         List<String> nodes = SettingsUtils.discoveredOrDeclaredNodes(settings);
@@ -389,7 +487,13 @@ public abstract class RestService implements Serializable {
         IndexExtractor iformat = ObjectUtils.instantiate(settings.getMappingIndexExtractorClassName(), settings);
         iformat.compile(resource.toString());
 
-        RestRepository repository = (iformat.hasPattern() ? initMultiIndices(settings, currentSplit, resource, log) : initSingleIndex(settings, currentSplit, resource, log));
+        RestRepository repository;
+        if (iformat.hasPattern()) {
+            repository = initMultiIndices(settings, currentSplit, resource, log);
+        }
+        else {
+            repository = (snapshot ? initSingleIndexFromSnapshot(settings, currentSplit, resource, log) : initSingleIndex(settings, currentSplit, resource, log));
+        }
 
         return new PartitionWriter(settings, currentSplit, totalSplits, repository);
     }
@@ -400,8 +504,8 @@ public abstract class RestService implements Serializable {
         }
 
         RestRepository repository = new RestRepository(settings);
-        // create the index if needed
-        if (repository.touch()) {
+        // create the index if needed (bulk loads create it when the job is set up)
+        if (!settings.getIndexBulkLoad() && repository.touch()) {
             if (repository.waitForYellow()) {
                 log.warn(String.format("Timed out waiting for index [%s] to reach yellow health", resource));
             }
@@ -456,6 +560,33 @@ public abstract class RestService implements Serializable {
         return repository;
     }
 
+    private static RestRepository initSingleIndexFromSnapshot(Settings settings, int currentInstance, Resource resource, Log log) {
+        List<String> shardNodes = DiscoverySnapshot.primaryShardNodes(settings);
+
+        // the index has been created when the job was planned; client nodes are used as is
+        if (settings.getNodesClientOnly()) {
+            return new RestRepository(settings);
+        }
+        // layout not captured (bulk load) - resolve it live
+        if (shardNodes.isEmpty()) {
+            return initSingleIndex(settings, currentInstance, resource, log);
+        }
+
+        // same selection as for a live layout
+        if (currentInstance <= 0) {
+            currentInstance = new Random().nextInt(shardNodes.size()) + 1;
+        }
+        int bucket = currentInstance % shardNodes.size();
+        SettingsUtils.pinNode(settings, shardNodes.get(bucket));
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Partition writer instance [%s] assigned to primary shard [%s] at address [%s] (discovery snapshot)",
+                    currentInstance, bucket, SettingsUtils.getPinnedNode(settings)));
+        }
+
+        return new RestRepository(settings);
+    }
+
     private static RestRepository initMultiIndices(Settings settings, int currentInstance, Resource resource, Log log) {
         if (log.isDebugEnabled()) {
             log.debug(String.format("Resource [%s] resolves as an index pattern", resource));
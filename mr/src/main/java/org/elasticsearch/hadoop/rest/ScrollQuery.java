@@ -42,16 +42,25 @@ public class ScrollQuery implements Iterator<Object>, Closeable, StatsAware {
 
     private int batchIndex = 0;
     private long read = 0;
+    // hits returned so far
+    private long returned = 0;
     private long size;
+    // maximum number of hits returned (negative for all)
+    private final long limit;
 
     private final ScrollReader reader;
 
     private final Stats stats = new Stats();
 
     ScrollQuery(RestRepository client, String scrollId, long size, ScrollReader reader) {
+        this(client, scrollId, size, -1, reader);
+    }
+
+    ScrollQuery(RestRepository client, String scrollId, long size, long limit, ScrollReader reader) {
         this.repository = client;
         this.scrollId = scrollId;
-        this.size = size;
+        this.size = (limit >= 0 ? Math.min(size, limit) : size);
+        this.limit = limit;
         this.reader = reader;
     }
 
@@ -66,6 +75,11 @@ public class ScrollQuery implements Iterator<Object>, Closeable, StatsAware {
         if (finished)
             return false;
 
+        if (limit >= 0 && returned >= limit) {
+            finished = true;
+            return false;
+        }
+
         if (batch.isEmpty() || batchIndex >= batch.size()) {
             if (read >= size) {
                 finished = true;
@@ -104,6 +118,7 @@ public class ScrollQuery implements Iterator<Object>, Closeable, StatsAware {
         if (!hasNext()) {
             throw new NoSuchElementException("No more documents available");
         }
+        returned++;
         return batch.get(batchIndex++);
     }
 
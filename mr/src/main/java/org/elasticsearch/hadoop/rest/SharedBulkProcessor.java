@@ -0,0 +1,457 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.hadoop.EsHadoopException;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.SettingsUtils;
+import org.elasticsearch.hadoop.util.TrackingBytesArray;
+
+import static org.elasticsearch.hadoop.cfg.ConfigurationOptions.*;
+
+/**
+ * JVM-wide bulk processor shared by the writers targeting the same resource and cluster. The sender threads aggregate the pending batches
+ * into bulk requests (up to {@link Settings#getBatchWriteSharedSize()}) which reference the writers' buffers directly (the entries are
+ * not copied).
+ *
+ * Writers either hand off their batches through a {@link Handle}, without waiting for them to be written (failures are reported on the
+ * next hand-off or when the handle is awaited) or submit them through {@link #bulk(TrackingBytesArray, BytesArray)} and wait for the
+ * outcome of their own entries.
+ *
+ * Processors are reference counted; the last writer releasing a processor stops it.
+ */
+class SharedBulkProcessor {
+
+    private static Log log = LogFactory.getLog(SharedBulkProcessor.class);
+
+    private static final Map<String, SharedBulkProcessor> PROCESSORS = new HashMap<String, SharedBulkProcessor>();
+
+    // buffers per handle - one being filled while the other is sent
+    private static final int HANDLE_BUFFERS = 2;
+
+    static class Submission {
+        final TrackingBytesArray data;
+        final BytesArray ba;
+        // set for batches handed off (without waiting)
+        final Handle handle;
+        boolean done = false;
+        EsHadoopException error;
+
+        Submission(TrackingBytesArray data, BytesArray ba, Handle handle) {
+            this.data = data;
+            this.ba = ba;
+            this.handle = handle;
+        }
+    }
+
+    /**
+     * Writer handle for handing off batches without waiting for them to be written. The batch buffers are owned by the processor
+     * until sent and then recycled; a writer uses (at most) {@value #HANDLE_BUFFERS} buffers so it can fill a batch while the
+     * previous one is being sent.
+     *
+     * Meant to be used by a single writer (thread).
+     */
+    class Handle {
+        private final int capacity;
+        private int buffers = 1;
+        private int inFlight = 0;
+        private final LinkedList<Submission> sent = new LinkedList<Submission>();
+        private EsHadoopException error;
+
+        private Handle(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * Hands off the given batch and returns the (empty) buffer to fill next. Waits only if all the buffers of this handle are in
+         * flight.
+         *
+         * @param data entries to write
+         * @param ba buffer backing the entries
+         * @return the buffer to use for the next batch
+         * @throws EsHadoopException failure of a batch previously handed off
+         */
+        Submission handOff(TrackingBytesArray data, BytesArray ba) {
+            synchronized (SharedBulkProcessor.this) {
+                checkError();
+                submit(new Submission(data, ba, this));
+                inFlight++;
+
+                while (sent.isEmpty() && buffers >= HANDLE_BUFFERS) {
+                    waitForCompletion();
+                    checkError();
+                }
+
+                if (!sent.isEmpty()) {
+                    Submission free = sent.removeFirst();
+                    free.data.reset();
+                    return free;
+                }
+            }
+            buffers++;
+            BytesArray next = new BytesArray(capacity);
+            return new Submission(new TrackingBytesArray(next), next, this);
+        }
+
+        /**
+         * Waits for the batches handed off to be written.
+         *
+         * @throws EsHadoopException failure of a batch handed off
+         */
+        void await() {
+            synchronized (SharedBulkProcessor.this) {
+                while (inFlight > 0) {
+                    waitForCompletion();
+                }
+                checkError();
+            }
+        }
+
+        // called with the processor lock held
+        private void completed(Submission submission) {
+            inFlight--;
+            if (submission.error != null && error == null) {
+                error = submission.error;
+            }
+            sent.add(submission);
+        }
+
+        private void checkError() {
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        private void waitForCompletion() {
+            try {
+                SharedBulkProcessor.this.wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new EsHadoopException("Interrupted while waiting for bulk request", ex);
+            }
+        }
+    }
+
+    private final String key;
+    private final Settings settings;
+    private final Resource resource;
+    private final int threads;
+    private final int maxSize;
+
+    private final LinkedList<Submission> pending = new LinkedList<Submission>();
+    private final List<Thread> senders = new ArrayList<Thread>();
+    private int references = 0;
+    private int senderCount = 0;
+    private boolean stopped = false;
+
+    SharedBulkProcessor(String key, Settings settings, Resource resource) {
+        this.key = key;
+        this.settings = settings;
+        this.resource = resource;
+        this.threads = Math.max(1, settings.getBatchWriteSharedThreads());
+        this.maxSize = settings.getBatchWriteSharedSize();
+    }
+
+    /**
+     * Returns the processor for the given settings and resource, creating it if needed. Each call needs to be paired with
+     * {@link #release()}.
+     */
+    static SharedBulkProcessor acquire(Settings settings, Resource resource) {
+        String key = key(settings, resource);
+        synchronized (PROCESSORS) {
+            SharedBulkProcessor processor = PROCESSORS.get(key);
+            if (processor == null) {
+                processor = new SharedBulkProcessor(key, settings, resource);
+                PROCESSORS.put(key, processor);
+            }
+            processor.references++;
+            return processor;
+        }
+    }
+
+    // options configuring the client - writers can share a client only if they agree on all of them
+    private static final String[] CLIENT_OPTIONS = { ES_NET_CONTENT_TYPE, ES_HTTP_TIMEOUT, ES_HTTP_RETRIES,
+            ES_BATCH_WRITE_RETRY_COUNT, ES_BATCH_WRITE_RETRY_WAIT, ES_BATCH_WRITE_RETRY_POLICY,
+            ES_NET_HTTP_AUTH_USER, ES_NET_HTTP_AUTH_PASS,
+            ES_NET_USE_SSL, ES_NET_SSL_PROTOCOL, ES_NET_SSL_KEYSTORE_LOCATION, ES_NET_SSL_KEYSTORE_TYPE, ES_NET_SSL_KEYSTORE_PASS,
+            ES_NET_SSL_TRUST_STORE_LOCATION, ES_NET_SSL_TRUST_STORE_PASS, ES_NET_SSL_CERT_ALLOW_SELF_SIGNED,
+            ES_NET_PROXY_HTTP_HOST, ES_NET_PROXY_HTTP_PORT, ES_NET_PROXY_HTTP_USER, ES_NET_PROXY_HTTP_PASS, ES_NET_PROXY_HTTP_USE_SYSTEM_PROPS,
+            ES_NET_PROXY_SOCKS_HOST, ES_NET_PROXY_SOCKS_PORT, ES_NET_PROXY_SOCKS_USER, ES_NET_PROXY_SOCKS_PASS, ES_NET_PROXY_SOCKS_USE_SYSTEM_PROPS };
+
+    // batches can be aggregated if sent to the same endpoint, on the same cluster, with the same client configuration
+    static String key(Settings settings, Resource resource) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(resource.bulk()).append("|").append(SettingsUtils.discoveredOrDeclaredNodes(settings));
+        for (String option : CLIENT_OPTIONS) {
+            sb.append("|").append(settings.getProperty(option));
+        }
+        return sb.toString();
+    }
+
+    void release() {
+        synchronized (PROCESSORS) {
+            if (--references > 0) {
+                return;
+            }
+            PROCESSORS.remove(key);
+        }
+        stop();
+    }
+
+    /**
+     * Writes the tracked entries, waiting for the bulk request(s) containing them to complete. The successfully written entries are
+     * removed from the given array.
+     *
+     * @param data entries to write
+     * @param ba buffer backing the entries
+     * @return the positions of the entries that could not be written (as {@link TrackingBytesArray#leftoversPosition()})
+     */
+    BitSet bulk(TrackingBytesArray data, BytesArray ba) {
+        Submission submission = new Submission(data, ba, null);
+        synchronized (this) {
+            submit(submission);
+
+            while (!submission.done) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new EsHadoopException("Interrupted while waiting for bulk request", ex);
+                }
+            }
+        }
+
+        if (submission.error != null) {
+            throw submission.error;
+        }
+        return data.leftoversPosition();
+    }
+
+    /**
+     * Returns a handle for writing batches (of the given capacity) without waiting for each of them to complete.
+     *
+     * @param capacity batch buffer capacity
+     * @return writer handle
+     */
+    Handle handle(int capacity) {
+        return new Handle(capacity);
+    }
+
+    // called with the lock held
+    private void submit(Submission submission) {
+        if (stopped) {
+            throw new EsHadoopIllegalStateException("Shared bulk processor already stopped");
+        }
+        if (senders.size() < threads) {
+            startSender();
+        }
+        pending.add(submission);
+        notifyAll();
+    }
+
+    synchronized int pendingSubmissions() {
+        return pending.size();
+    }
+
+    private void startSender() {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                send();
+            }
+        }, "es-hadoop-shared-bulk-" + (senderCount++));
+        thread.setDaemon(true);
+        senders.add(thread);
+        thread.start();
+    }
+
+    private void send() {
+        RestClient client = null;
+        try {
+            while (true) {
+                List<Submission> batch;
+                synchronized (this) {
+                    while (pending.isEmpty() && !stopped) {
+                        wait();
+                    }
+                    if (pending.isEmpty()) {
+                        return;
+                    }
+                    batch = take();
+                }
+
+                if (client == null) {
+                    try {
+                        client = createClient();
+                    } catch (RuntimeException ex) {
+                        // report the failure to the waiting writers and try again with the next batch
+                        EsHadoopException error = (ex instanceof EsHadoopException ? (EsHadoopException) ex : new EsHadoopException(ex));
+                        log.error(String.format("Cannot create client for shared bulk request of [%s] writers", batch.size()), error);
+                        for (Submission submission : batch) {
+                            submission.error = error;
+                        }
+                        complete(batch);
+                        continue;
+                    }
+                }
+                EsHadoopException error = write(client, batch);
+                if (error instanceof EsHadoopTransportException) {
+                    // the client discards the unreachable nodes - start from scratch
+                    client.close();
+                    client = null;
+                }
+            }
+        } catch (InterruptedException ex) {
+            // stopped
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+            // allow a replacement to be started (should the thread die unexpectedly)
+            synchronized (this) {
+                senders.remove(Thread.currentThread());
+            }
+        }
+    }
+
+    // takes the pending submissions fitting in one bulk request (at least one)
+    private List<Submission> take() {
+        List<Submission> batch = new ArrayList<Submission>();
+        int size = 0;
+        while (!pending.isEmpty()) {
+            Submission next = pending.getFirst();
+            if (!batch.isEmpty() && size + next.data.length() > maxSize) {
+                break;
+            }
+            batch.add(pending.removeFirst());
+            size += next.data.length();
+        }
+        return batch;
+    }
+
+    /**
+     * Sends the given submissions as one bulk request. The request references the entries in the writers' buffers. A failure is reported
+     * only to the writers that still have entries left (as the others have been fully written).
+     *
+     * @return the failure, if any
+     */
+    private EsHadoopException write(RestClient client, List<Submission> batch) {
+        TrackingBytesArray merged = new TrackingBytesArray(new BytesArray(0));
+        for (Submission submission : batch) {
+            TrackingBytesArray data = submission.data;
+            for (int i = 0; i < data.entries(); i++) {
+                merged.track(submission.ba, data.offset(i), data.length(i));
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Sending shared batch of [%d] bytes/[%s] entries from [%s] writers", merged.length(), merged.entries(), batch.size()));
+        }
+
+        EsHadoopException error = null;
+        BitSet leftovers;
+        try {
+            leftovers = (merged.length() > 0 ? send(client, merged) : new BitSet());
+        } catch (EsHadoopException ex) {
+            error = ex;
+            leftovers = merged.leftoversPosition();
+        } catch (RuntimeException ex) {
+            error = new EsHadoopException(ex);
+            leftovers = merged.leftoversPosition();
+        }
+
+        // map the outcome back to each writer (merged entries are in submission order)
+        int base = 0;
+        for (Submission submission : batch) {
+            TrackingBytesArray data = submission.data;
+            int entries = data.entries();
+            if (submission.handle != null) {
+                // handed off - the writer is not waiting for the entries left, only for the failure
+                int left = leftovers.get(base, base + entries).cardinality();
+                if (left > 0) {
+                    submission.error = (error != null ? error : new EsHadoopException(String.format(
+                            "Could not write all entries [%s/%s] (maybe ES was overloaded?). Bailing out...", left, entries)));
+                }
+            }
+            else {
+                // remove the written entries - backwards to keep the indices stable
+                for (int i = entries - 1; i >= 0; i--) {
+                    if (!leftovers.get(base + i)) {
+                        data.remove(i);
+                    }
+                }
+                submission.error = (data.entries() > 0 ? error : null);
+            }
+            base += entries;
+        }
+
+        if (error != null) {
+            log.error(String.format("Shared bulk request for [%s] writers failed", batch.size()), error);
+        }
+        complete(batch);
+        return error;
+    }
+
+    protected RestClient createClient() {
+        return new RestClient(settings);
+    }
+
+    protected BitSet send(RestClient client, TrackingBytesArray merged) {
+        return client.bulk(resource, merged);
+    }
+
+    private synchronized void complete(List<Submission> batch) {
+        for (Submission submission : batch) {
+            submission.done = true;
+            if (submission.handle != null) {
+                submission.handle.completed(submission);
+            }
+        }
+        notifyAll();
+    }
+
+    private void stop() {
+        List<Thread> threads;
+        synchronized (this) {
+            stopped = true;
+            threads = new ArrayList<Thread>(senders);
+            notifyAll();
+        }
+
+        for (Thread thread : threads) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -28,6 +28,7 @@ public class SimpleRequest implements Request {
     private final CharSequence path;
     private final CharSequence params;
     private final ByteSequence body;
+    private final String contentType;
 
     public SimpleRequest(Method method, CharSequence uri, CharSequence path) {
         this(method, uri, path, null, null);
@@ -42,11 +43,16 @@ public class SimpleRequest implements Request {
     }
 
     public SimpleRequest(Method method, CharSequence uri, CharSequence path, CharSequence params, ByteSequence body) {
+        this(method, uri, path, params, body, null);
+    }
+
+    public SimpleRequest(Method method, CharSequence uri, CharSequence path, CharSequence params, ByteSequence body, String contentType) {
         this.method = method;
         this.uri = uri;
         this.path = path;
         this.params = params;
         this.body = body;
+        this.contentType = contentType;
     }
 
     @Override
@@ -74,6 +80,11 @@ public class SimpleRequest implements Request {
         return body;
     }
 
+    @Override
+    public String contentType() {
+        return contentType;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder(method.name());
@@ -0,0 +1,207 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.StringUtils;
+import org.elasticsearch.hadoop.util.TrackingBytesArray;
+
+/**
+ * Coalesces the (partial document) updates targeting the same document within a bulk buffer.
+ * Entries are identified by their action/metadata line; a later entry for the same document is folded into the buffered one only when
+ * the outcome is the same as sending both:
+ * <ul>
+ * <li>the entries are byte-identical - the new one is simply dropped</li>
+ * <li>the new entry fully overwrites the buffered one (it contains every field of it) and fits in its slot - it is copied over it</li>
+ * </ul>
+ * In all other cases the new entry is sent as is. The entries are neither merged nor re-serialized and the buffer never grows as a result
+ * of coalescing (no dead bytes are appended).
+ *
+ * Scripted updates are not coalesced since each invocation of the script matters.
+ */
+class UpdateCoalescer {
+
+    private static Log log = LogFactory.getLog(UpdateCoalescer.class);
+
+    private final JsonFactory factory = new JsonFactory();
+    // action/metadata line -> index of the buffered entry
+    private final Map<String, Integer> entries = new HashMap<String, Integer>();
+
+    static boolean isApplicable(Settings settings) {
+        if (!settings.getUpdateCoalesce()) {
+            return false;
+        }
+        String operation = settings.getOperation();
+        boolean update = ConfigurationOptions.ES_OPERATION_UPDATE.equals(operation) || ConfigurationOptions.ES_OPERATION_UPSERT.equals(operation);
+        if (update && settings.hasUpdateScript()) {
+            log.warn(String.format("Update script specified; ignoring [%s]", ConfigurationOptions.ES_UPDATE_COALESCE));
+            return false;
+        }
+        // the entries are compared as JSON lines
+        if (update && ConfigurationOptions.ES_NET_CONTENT_TYPE_SMILE.equals(settings.getNetContentType())) {
+            log.warn(String.format("SMILE content type specified; ignoring [%s]", ConfigurationOptions.ES_UPDATE_COALESCE));
+            return false;
+        }
+        return update;
+    }
+
+    /**
+     * Coalesces the entry located in the given array from the given offset to its end with the buffered entry for the same document, if any.
+     *
+     * @param data tracked entries
+     * @param ba bulk buffer backing the tracked entries
+     * @param start start of the entry
+     * @return true if the entry has been coalesced (and thus consumed), false if it needs to be tracked as a new entry
+     */
+    boolean coalesce(TrackingBytesArray data, BytesArray ba, int start) {
+        byte[] bytes = ba.bytes();
+        int end = ba.length();
+
+        int headerLength = -1;
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == '\n') {
+                headerLength = i - start;
+                break;
+            }
+        }
+        // not a regular entry - ignore it
+        if (headerLength < 0) {
+            return false;
+        }
+
+        String header = StringUtils.asUTFString(bytes, start, headerLength);
+        Integer index = entries.get(header);
+        // first entry for this document
+        if (index == null) {
+            entries.put(header, data.entries());
+            return false;
+        }
+
+        int offset = data.offset(index);
+        int length = data.length(index);
+        int newLength = end - start;
+
+        // same content - drop the new entry
+        if (newLength == length && equals(bytes, offset, start, length)) {
+            ba.size(start);
+            data.merge(index, offset, length);
+            return true;
+        }
+
+        // the new entry replaces the buffered one - copy it over (when it fits) and drop it
+        if (newLength <= length && overwrites(bytes, offset, length, start, newLength, headerLength + 1)) {
+            System.arraycopy(bytes, start, bytes, offset, newLength);
+            ba.size(start);
+            data.merge(index, offset, newLength);
+            return true;
+        }
+
+        // keep the entry as is (and use it for the subsequent entries to preserve the ordering)
+        entries.put(header, data.entries());
+        return false;
+    }
+
+    private static boolean equals(byte[] bytes, int offset, int otherOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (bytes[offset + i] != bytes[otherOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean overwrites(byte[] bytes, int offset, int length, int otherOffset, int otherLength, int bodyOffset) {
+        try {
+            Map<String, Object> existing = fields(bytes, offset + bodyOffset, length - bodyOffset);
+            Map<String, Object> update = fields(bytes, otherOffset + bodyOffset, otherLength - bodyOffset);
+            return (existing != null && update != null && overwrites(existing, update));
+        } catch (IOException ex) {
+            if (log.isDebugEnabled()) {
+                log.debug("Cannot read entry; sending it as is", ex);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Indicates whether applying the given update (as Elasticsearch does for partial documents) replaces every value of the existing
+     * document, that is every field of the existing document is present in the update and the nested objects are overwritten as well.
+     * Non-object values (including arrays) are replaced as a whole.
+     *
+     * @param existing field structure of the existing document
+     * @param update field structure of the update
+     * @return true if the update fully overwrites the existing document, false otherwise
+     */
+    @SuppressWarnings("unchecked")
+    static boolean overwrites(Map<String, Object> existing, Map<String, Object> update) {
+        for (Map.Entry<String, Object> entry : existing.entrySet()) {
+            if (!update.containsKey(entry.getKey())) {
+                return false;
+            }
+            Object value = update.get(entry.getKey());
+            // objects are merged, not replaced
+            if (entry.getValue() != null && value != null
+                    && !overwrites((Map<String, Object>) entry.getValue(), (Map<String, Object>) value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // reads the field structure of the given document: name -> nested structure (for objects) or null (for any other value)
+    private Map<String, Object> fields(byte[] bytes, int offset, int length) throws IOException {
+        JsonParser parser = factory.createJsonParser(bytes, offset, length);
+        try {
+            return (parser.nextToken() == JsonToken.START_OBJECT ? fields(parser) : null);
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static Map<String, Object> fields(JsonParser parser) throws IOException {
+        Map<String, Object> fields = new HashMap<String, Object>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                fields.put(name, fields(parser));
+            }
+            else {
+                // skip the value (without decoding it)
+                parser.skipChildren();
+                fields.put(name, null);
+            }
+        }
+        return fields;
+    }
+
+    void reset() {
+        entries.clear();
+    }
+}
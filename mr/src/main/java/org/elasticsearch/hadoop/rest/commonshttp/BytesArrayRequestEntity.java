@@ -30,9 +30,15 @@ import org.elasticsearch.hadoop.util.ByteSequence;
 class BytesArrayRequestEntity implements RequestEntity {
 
     private final ByteSequence bs;
+    private final String contentType;
 
     public BytesArrayRequestEntity(ByteSequence bs) {
+        this(bs, null);
+    }
+
+    public BytesArrayRequestEntity(ByteSequence bs, String contentType) {
         this.bs = bs;
+        this.contentType = (contentType != null ? contentType : "application/json; charset=UTF-8");
     }
 
     @Override
@@ -47,7 +53,7 @@ class BytesArrayRequestEntity implements RequestEntity {
 
     @Override
     public String getContentType() {
-        return "application/json; charset=UTF-8";
+        return contentType;
     }
 
     @Override
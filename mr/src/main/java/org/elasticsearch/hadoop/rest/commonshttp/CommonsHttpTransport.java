@@ -87,6 +87,8 @@ public class CommonsHttpTransport implements Transport, StatsAware {
     private String proxyInfo = "";
     private final String httpInfo;
     private final Settings settings;
+    // read on every request
+    private final boolean sslEnabled;
 
     private static class ResponseInputStream extends DelegatingInputStream implements ReusableInputStream {
 
@@ -142,6 +144,7 @@ public class CommonsHttpTransport implements Transport, StatsAware {
 
     public CommonsHttpTransport(Settings settings, String host) {
         this.settings = settings;
+        this.sslEnabled = settings.getNetworkSSLEnabled();
         httpInfo = host;
 
         HttpClientParams params = new HttpClientParams();
@@ -381,7 +384,7 @@ public class CommonsHttpTransport implements Transport, StatsAware {
 
         CharSequence uri = request.uri();
         if (StringUtils.hasText(uri)) {
-            http.setURI(new URI(escapeUri(uri.toString(), settings.getNetworkSSLEnabled()), false));
+            http.setURI(new URI(escapeUri(uri.toString(), sslEnabled), false));
         }
         // NB: initialize the path _after_ the URI otherwise the path gets reset to /
         http.setPath(prefixPath(request.path().toString()));
@@ -401,7 +404,7 @@ public class CommonsHttpTransport implements Transport, StatsAware {
         ByteSequence ba = request.body();
         if (ba != null && ba.length() > 0) {
             EntityEnclosingMethod entityMethod = (EntityEnclosingMethod) http;
-            entityMethod.setRequestEntity(new BytesArrayRequestEntity(ba));
+            entityMethod.setRequestEntity(new BytesArrayRequestEntity(ba, request.contentType()));
             entityMethod.setContentChunked(false);
         }
 
@@ -0,0 +1,332 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.serialization;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.elasticsearch.hadoop.util.BytesArray;
+
+/**
+ * {@link Map} view over the raw bytes of a hit (its <code>_source</code> or <code>fields</code>). The top-level fields are indexed
+ * (name plus byte range) in one pass by {@link ScrollReader} however their values are decoded only on first access.
+ * Entries added through {@link #put(Object, Object)} (such as the metadata) are kept as is.
+ *
+ * Just like the eager maps, instances are not thread-safe.
+ */
+class LazyDocument extends AbstractMap<Object, Object> {
+
+    private static final Object NOT_DECODED = new Object();
+
+    private final ScrollReader reader;
+    private final BytesArray content;
+
+    private Object[] keys = new Object[8];
+    private String[] names = new String[8];
+    // field i is located between positions[i * 2] and positions[i * 2 + 1]
+    private int[] positions = new int[16];
+    private Object[] values = new Object[8];
+    private int fields = 0;
+
+    // entries not backed by the raw content (metadata, matched queries, etc...)
+    private Map<Object, Object> extra;
+
+    private Set<Map.Entry<Object, Object>> entrySet;
+
+    LazyDocument(ScrollReader reader, BytesArray content) {
+        this.reader = reader;
+        this.content = content;
+    }
+
+    void addField(Object key, String name, int start, int stop) {
+        if (fields == keys.length) {
+            int newSize = fields << 1;
+            keys = copyOf(keys, newSize);
+            values = copyOf(values, newSize);
+            String[] newNames = new String[newSize];
+            System.arraycopy(names, 0, newNames, 0, fields);
+            names = newNames;
+            int[] newPositions = new int[newSize << 1];
+            System.arraycopy(positions, 0, newPositions, 0, fields << 1);
+            positions = newPositions;
+        }
+        keys[fields] = key;
+        names[fields] = name;
+        values[fields] = NOT_DECODED;
+        positions[fields << 1] = start;
+        positions[(fields << 1) + 1] = stop;
+        fields++;
+    }
+
+    private static Object[] copyOf(Object[] array, int newSize) {
+        Object[] copy = new Object[newSize];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private static boolean nullSafeEquals(Object o1, Object o2) {
+        return (o1 == o2 || (o1 != null && o1.equals(o2)));
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < fields; i++) {
+            if (nullSafeEquals(keys[i], key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Object value(int index) {
+        Object value = values[index];
+        if (value == NOT_DECODED) {
+            value = decode(index);
+            values[index] = value;
+        }
+        return value;
+    }
+
+    private Object decode(int index) {
+        byte[] bytes = content.bytes();
+        int start = content.offset() + positions[index << 1];
+        int stop = content.offset() + positions[(index << 1) + 1];
+
+        // the range starts with the field name (potentially preceded by the separator) - skip it
+        start = skipWhitespace(bytes, start, stop);
+        if (start < stop && bytes[start] == ',') {
+            start = skipWhitespace(bytes, start + 1, stop);
+        }
+        start = skipString(bytes, start, stop);
+        start = skipWhitespace(bytes, start, stop);
+        if (start >= stop || bytes[start] != ':') {
+            throw new EsHadoopSerializationException(String.format("Invalid content for field [%s] at position [%s]", names[index], start));
+        }
+        start = skipWhitespace(bytes, start + 1, stop);
+        // trim any trailing whitespace
+        while (stop > start && isWhitespace(bytes[stop - 1])) {
+            stop--;
+        }
+
+        return reader.readFragment(bytes, start, stop - start, names[index]);
+    }
+
+    private static int skipString(byte[] bytes, int index, int stop) {
+        if (index >= stop || bytes[index] != '"') {
+            throw new EsHadoopSerializationException(String.format("Expected field name at position [%s]", index));
+        }
+        for (index++; index < stop; index++) {
+            byte b = bytes[index];
+            if (b == '\\') {
+                index++;
+            }
+            else if (b == '"') {
+                return index + 1;
+            }
+        }
+        return index;
+    }
+
+    private static int skipWhitespace(byte[] bytes, int index, int stop) {
+        while (index < stop && isWhitespace(bytes[index])) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == 0x20 || b == 0x0d || b == 0x0a || b == 0x09;
+    }
+
+    // decode everything and switch to a regular map - used for structural changes
+    private Map<Object, Object> inflate() {
+        if (fields > 0) {
+            Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+            for (int i = 0; i < fields; i++) {
+                map.put(keys[i], value(i));
+            }
+            if (extra != null) {
+                map.putAll(extra);
+            }
+            extra = map;
+            discardFields();
+        }
+        else if (extra == null) {
+            extra = new LinkedHashMap<Object, Object>();
+        }
+        return extra;
+    }
+
+    @Override
+    public int size() {
+        return fields + (extra != null ? extra.size() : 0);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0 || (extra != null && extra.containsKey(key));
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            return value(index);
+        }
+        return (extra != null ? extra.get(key) : null);
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            Object old = value(index);
+            values[index] = value;
+            return old;
+        }
+        if (extra == null) {
+            extra = new LinkedHashMap<Object, Object>();
+        }
+        return extra.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (indexOf(key) >= 0) {
+            return inflate().remove(key);
+        }
+        return (extra != null ? extra.remove(key) : null);
+    }
+
+    @Override
+    public void clear() {
+        discardFields();
+        extra = null;
+    }
+
+    private void discardFields() {
+        for (int i = 0; i < fields; i++) {
+            keys[i] = null;
+            values[i] = null;
+        }
+        fields = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<Object, Object>> {
+        @Override
+        public int size() {
+            return LazyDocument.this.size();
+        }
+
+        @Override
+        public Iterator<Map.Entry<Object, Object>> iterator() {
+            return new EntryIterator();
+        }
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<Object, Object>> {
+        private int index = 0;
+        private Iterator<Map.Entry<Object, Object>> extraIterator;
+
+        @Override
+        public boolean hasNext() {
+            if (index < fields) {
+                return true;
+            }
+            if (extraIterator == null) {
+                extraIterator = (extra != null ? extra.entrySet().iterator() : null);
+            }
+            return extraIterator != null && extraIterator.hasNext();
+        }
+
+        @Override
+        public Map.Entry<Object, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (index < fields) {
+                return new FieldEntry(index++);
+            }
+            return extraIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Use Map#remove instead");
+        }
+    }
+
+    private class FieldEntry implements Map.Entry<Object, Object> {
+        private final int index;
+
+        FieldEntry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Object getKey() {
+            return keys[index];
+        }
+
+        @Override
+        public Object getValue() {
+            return value(index);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            Object old = value(index);
+            values[index] = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return nullSafeEquals(getKey(), e.getKey()) && nullSafeEquals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            Object key = getKey();
+            Object value = getValue();
+            return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
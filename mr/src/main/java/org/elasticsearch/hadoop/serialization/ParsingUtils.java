@@ -18,7 +18,6 @@
  */
 package org.elasticsearch.hadoop.serialization;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.elasticsearch.hadoop.serialization.Parser.Token;
@@ -102,142 +101,11 @@ public abstract class ParsingUtils {
         return null;
     }
 
-    private static class Matcher {
-        private final List<String> tokens;
-        private final String path;
-        private boolean matched = false;
-        private Object value;
-
-        Matcher(String path) {
-            this.path = path;
-            tokens = StringUtils.tokenize(path, ".");
-        }
-
-        // number of levels required for the matcher
-        int nesting() {
-            return tokens.size() - 1;
-        }
-
-        boolean matches(String key, int level) {
-            if (level < tokens.size()) {
-                return tokens.get(level).equals(key);
-            }
-            return false;
-        }
-
-        void value(Object value) {
-            matched = true;
-            this.value = value;
-        }
-
-        @Override
-        public String toString() {
-            return path;
-        }
-    }
-
     public static List<Object> values(Parser parser, String... paths) {
-        List<Matcher> matchers = new ArrayList<Matcher>(paths.length);
-        int maxNesting = 0;
-        for (String path : paths) {
-            Matcher matcher = new Matcher(path);
-            matchers.add(matcher);
-            if (matcher.nesting() > maxNesting) {
-                maxNesting = matcher.nesting();
-            }
-        }
-
-        doFind(parser, matchers, 0, maxNesting);
-
-        List<Object> matches = new ArrayList<Object>();
-        for (Matcher matcher : matchers) {
-            matches.add(matcher.matched ? matcher.value : NOT_FOUND);
-        }
-
-        return matches;
-    }
-
-    private static void doFind(Parser parser, List<Matcher> currentMatchers, int level, int maxNesting) {
-        String currentName;
-        Token token = parser.currentToken();
-
-        if (token == null) {
-            token = parser.nextToken();
-        }
-        List<Matcher> nextLevel = null;
-
-        while ((token = parser.nextToken()) != null) {
-            if (token == Token.START_OBJECT) {
-                if (level < maxNesting) {
-                    if (nextLevel != null) {
-                        doFind(parser, nextLevel, level + 1, maxNesting);
-                    }
-                    // first round - a bit exceptional
-                    else if (level == -1) {
-                        doFind(parser, currentMatchers, level + 1, maxNesting);
-                    }
-                    // no need to go deeper, there are no matchers
-                    else {
-                        parser.skipChildren();
-                    }
-                }
-                else {
-                    parser.skipChildren();
-                }
-            }
-            else if (token == Token.FIELD_NAME) {
-                currentName = parser.currentName();
-
-                Object value = null;
-                boolean valueRead = false;
-
-                for (Matcher matcher : currentMatchers) {
-                    if (matcher.matches(currentName, level)) {
-                        // found a match
-                        if (matcher.nesting() == level) {
-                            if (!valueRead) {
-                                valueRead = true;
-                                switch (parser.nextToken()) {
-                                case VALUE_NUMBER:
-                                    value = parser.numberValue();
-                                    break;
-                                case VALUE_BOOLEAN:
-                                    value = Boolean.valueOf(parser.booleanValue());
-                                    break;
-                                case VALUE_NULL:
-                                    value = null;
-                                    break;
-                                case VALUE_STRING:
-                                    value = parser.text();
-                                    break;
-                                default:
-                                    value = readValueAsString(parser);
-                                }
-                            }
-                            matcher.value(value);
-                        }
-                        // partial match - keep it for the next level
-                        else {
-                            if (nextLevel == null) {
-                                nextLevel = new ArrayList<Matcher>(currentMatchers.size());
-                            }
-                            nextLevel.add(matcher);
-                        }
-                    }
-                }
-            }
-            else if (token == Token.END_OBJECT) {
-                // end current block
-            }
-            // arrays are not handled; simply ignore
-            else if (token == Token.START_ARRAY) {
-                parser.skipChildren();
-            }
-            // ignore other tokens
-        }
+        return new PathMatcher(paths).values(parser);
     }
 
-    private static String readValueAsString(Parser parser) {
+    static String readValueAsString(Parser parser) {
         FastByteArrayOutputStream out = new FastByteArrayOutputStream(256);
         JacksonJsonGenerator generator = new JacksonJsonGenerator(out);
         traverse(parser, generator);
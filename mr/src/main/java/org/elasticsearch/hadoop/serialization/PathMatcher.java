@@ -0,0 +1,217 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.serialization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.elasticsearch.hadoop.serialization.Parser.Token;
+import org.elasticsearch.hadoop.serialization.json.JacksonJsonParser;
+import org.elasticsearch.hadoop.util.StringUtils;
+
+/**
+ * Matches a set of (dot-separated) paths against a document in one pass. The paths are compiled once into a tree of field names;
+ * the document is then streamed and the subtrees that none of the paths can match are skipped.
+ * Parsing stops as soon as all the paths have been found.
+ *
+ * Arrays are not traversed (their content being returned as is when matched). Once compiled, instances are immutable and thus thread-safe.
+ */
+public class PathMatcher {
+
+    private static class Node {
+        private String[] names = new String[0];
+        private Node[] children = new Node[0];
+        // the slots (path indices) that end in this node
+        private int[] slots;
+
+        Node child(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(String name) {
+            Node node = child(name);
+            if (node == null) {
+                node = new Node();
+                int length = names.length;
+                names = Arrays.copyOf(names, length + 1);
+                children = Arrays.copyOf(children, length + 1);
+                names[length] = name;
+                children[length] = node;
+            }
+            return node;
+        }
+
+        void addSlot(int slot) {
+            slots = (slots == null ? new int[1] : Arrays.copyOf(slots, slots.length + 1));
+            slots[slots.length - 1] = slot;
+        }
+
+        boolean hasChildren() {
+            return names.length > 0;
+        }
+    }
+
+    private final String[] paths;
+    private final Node root = new Node();
+    // number of paths that can actually match
+    private final int matchable;
+
+    public PathMatcher(String... paths) {
+        this.paths = paths;
+
+        int count = 0;
+        for (int slot = 0; slot < paths.length; slot++) {
+            List<String> tokens = StringUtils.tokenize(paths[slot], ".");
+            if (tokens.isEmpty()) {
+                continue;
+            }
+            Node node = root;
+            for (String token : tokens) {
+                node = node.addChild(token);
+            }
+            node.addSlot(slot);
+            count++;
+        }
+        matchable = count;
+    }
+
+    public String[] paths() {
+        return paths;
+    }
+
+    /**
+     * Returns the values found for each path (in the order of the paths) or {@link ParsingUtils#NOT_FOUND}.
+     *
+     * @param parser parser positioned before or on the document start
+     * @return the values associated with each path
+     */
+    public List<Object> values(Parser parser) {
+        Object[] values = new Object[paths.length];
+        values(parser, values);
+        return new ArrayList<Object>(Arrays.asList(values));
+    }
+
+    /**
+     * Stores the values found for each path (or {@link ParsingUtils#NOT_FOUND}) in the given array.
+     *
+     * @param parser parser positioned before or on the document start
+     * @param values array (of at least the number of paths) in which the values are stored
+     */
+    public void values(Parser parser, Object[] values) {
+        Arrays.fill(values, 0, paths.length, ParsingUtils.NOT_FOUND);
+        if (matchable == 0) {
+            return;
+        }
+
+        Token token = parser.currentToken();
+        if (token == null) {
+            token = parser.nextToken();
+        }
+        if (token == Token.START_OBJECT) {
+            match(parser, root, values, new int[] { matchable });
+        }
+    }
+
+    // parser is positioned on the START_OBJECT of the given node; returns true if all paths were matched
+    // (in which case the parser is left inside the document)
+    private boolean match(Parser parser, Node node, Object[] values, int[] remaining) {
+        Token token = parser.nextToken();
+
+        while (token == Token.FIELD_NAME) {
+            Node child = node.child(parser.currentName());
+            // move to the value
+            token = parser.nextToken();
+
+            if (child == null) {
+                parser.skipChildren();
+                token = parser.nextToken();
+                continue;
+            }
+
+            // leaf (and not found already - first match wins)
+            if (child.slots != null && values[child.slots[0]] == ParsingUtils.NOT_FOUND) {
+                Object value;
+                boolean advanced = false;
+                switch (token) {
+                case VALUE_NUMBER:
+                    value = parser.numberValue();
+                    break;
+                case VALUE_BOOLEAN:
+                    value = Boolean.valueOf(parser.booleanValue());
+                    break;
+                case VALUE_NULL:
+                    value = null;
+                    break;
+                case VALUE_STRING:
+                    value = parser.text();
+                    break;
+                default:
+                    // reading the value as string moves the parser past it
+                    value = ParsingUtils.readValueAsString(parser);
+                    advanced = true;
+                }
+
+                for (int slot : child.slots) {
+                    values[slot] = value;
+                }
+                remaining[0] -= child.slots.length;
+
+                // the object is needed both as a whole and for its children - reparse it
+                if (child.hasChildren() && token == Token.START_OBJECT) {
+                    Parser nested = new JacksonJsonParser(StringUtils.toUTF(value.toString()));
+                    try {
+                        nested.nextToken();
+                        match(nested, child, values, remaining);
+                    } finally {
+                        nested.close();
+                    }
+                }
+
+                if (remaining[0] <= 0) {
+                    return true;
+                }
+                token = (advanced ? parser.currentToken() : parser.nextToken());
+                continue;
+            }
+
+            if (child.hasChildren() && token == Token.START_OBJECT) {
+                if (match(parser, child, values, remaining)) {
+                    return true;
+                }
+            }
+            else {
+                parser.skipChildren();
+            }
+            token = parser.nextToken();
+        }
+
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(paths);
+    }
+}
@@ -29,9 +29,12 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.elasticsearch.hadoop.serialization.Parser.NumberType;
 import org.elasticsearch.hadoop.serialization.Parser.Token;
+import org.elasticsearch.hadoop.serialization.builder.JdkValueReader;
+import org.elasticsearch.hadoop.serialization.builder.RecyclingValueReader;
 import org.elasticsearch.hadoop.serialization.builder.ValueReader;
 import org.elasticsearch.hadoop.serialization.dto.mapping.Field;
 import org.elasticsearch.hadoop.serialization.json.JacksonJsonParser;
+import org.elasticsearch.hadoop.serialization.json.JacksonSmile;
 import org.elasticsearch.hadoop.util.Assert;
 import org.elasticsearch.hadoop.util.BytesArray;
 import org.elasticsearch.hadoop.util.BytesUtils;
@@ -132,6 +135,12 @@ public class ScrollReader {
     private final boolean readMetadata;
     private final String metadataField;
     private final boolean returnRawJson;
+    private final boolean lazySource;
+    // reader recycling its objects (if supported)
+    private final RecyclingValueReader recycling;
+
+    // content of the current page (available only when needed)
+    private BytesArray content;
 
     private static final String[] HITS = new String[] { "hits" };
     private static final String[] ID = new String[] { "_id" };
@@ -140,31 +149,80 @@ public class ScrollReader {
     private static final String[] TOTAL = new String[] { "hits", "total" };
 
     public ScrollReader(ValueReader reader, Field rootField, boolean readMetadata, String metadataName, boolean returnRawJson) {
+        this(reader, rootField, readMetadata, metadataName, returnRawJson, false);
+    }
+
+    /**
+     * Creates a new reader. When <code>lazySource</code> is enabled and the given reader is a plain {@link JdkValueReader} (whose maps
+     * are handed to the caller as-is), each hit is returned as a view over the response bytes which decodes its fields only on access.
+     * Subclasses converting the hits (such as Writables) copy every field anyway and thus keep the eager path.
+     */
+    public ScrollReader(ValueReader reader, Field rootField, boolean readMetadata, String metadataName, boolean returnRawJson, boolean lazySource) {
         this.reader = reader;
         this.esMapping = Field.toLookupMap(rootField);
         this.readMetadata = readMetadata;
         this.metadataField = metadataName;
         this.returnRawJson = returnRawJson;
+        this.lazySource = lazySource && !returnRawJson && reader != null && reader.getClass() == JdkValueReader.class;
+        this.recycling = (reader instanceof RecyclingValueReader ? (RecyclingValueReader) reader : null);
+    }
+
+    /**
+     * Creates a new reader with the same configuration (value reader, mapping and options) as the given one. Meant for subclasses
+     * customizing the conversion; since the lazy path bypasses {@link #map(String)}, such readers always decode the source eagerly.
+     */
+    protected ScrollReader(ScrollReader other) {
+        this.reader = other.reader;
+        this.esMapping = other.esMapping;
+        this.readMetadata = other.readMetadata;
+        this.metadataField = other.metadataField;
+        this.returnRawJson = other.returnRawJson;
+        this.lazySource = false;
+        this.recycling = other.recycling;
+    }
+
+    /**
+     * Indicates whether the reader can parse binary (SMILE) content. Returning the raw JSON or lazily decoding the source
+     * relies on the textual offsets within the content and thus requires JSON.
+     *
+     * @return true if binary content is supported, false otherwise
+     */
+    public boolean supportsBinaryContent() {
+        return !(returnRawJson || lazySource);
     }
 
     public List<Object[]> read(InputStream content) throws IOException {
+        return read(content, false);
+    }
+
+    public List<Object[]> read(InputStream content, boolean smile) throws IOException {
         Assert.notNull(content);
+        Assert.isTrue(!smile || supportsBinaryContent(), "Binary content cannot be used when returning raw JSON or lazy documents");
+
+        // the documents of the previous page are not used anymore
+        if (recycling != null) {
+            recycling.recycle();
+        }
 
         BytesArray copy = null;
 
-        if (log.isTraceEnabled() || returnRawJson) {
+        if (log.isTraceEnabled() || returnRawJson || lazySource) {
             //copy content
             copy = IOUtils.asBytes(content);
             content = new FastByteArrayInputStream(copy);
-            log.trace("About to parse scroll content " + copy);
+            if (trace) {
+                log.trace("About to parse scroll content " + copy);
+            }
         }
 
-        this.parser = new JacksonJsonParser(content);
+        this.parser = (smile ? JacksonSmile.parser(content) : new JacksonJsonParser(content));
+        this.content = copy;
 
         try {
             return read(copy);
         } finally {
             parser.close();
+            this.content = null;
         }
     }
 
@@ -313,7 +371,7 @@ public class ScrollReader {
                         id = value;
                     }
 
-                    reader.addToMap(metadata, reader.wrapString(name), value);
+                    reader.addToMap(metadata, fieldName(name), value);
                 }
                 else {
                     // if = no _source or field found, else select START_OBJECT
@@ -336,15 +394,15 @@ public class ScrollReader {
         Object data = Collections.emptyMap();
 
         if (t != null) {
-            data = read(t, null);
+            data = (lazySource ? lazyMap() : read(t, null));
             if (readMetadata) {
-                reader.addToMap(data, reader.wrapString(metadataField), metadata);
+                reader.addToMap(data, fieldName(metadataField), metadata);
             }
         }
         else {
             if (readMetadata) {
                 data = reader.createMap();
-                reader.addToMap(data, reader.wrapString(metadataField), metadata);
+                reader.addToMap(data, fieldName(metadataField), metadata);
             }
         }
 
@@ -354,7 +412,7 @@ public class ScrollReader {
         while (parser.currentToken() == Token.FIELD_NAME) {
             String name = parser.currentName();
             if (readMetadata) {
-                reader.addToMap(data, reader.wrapString(name), read(parser.nextToken(), null));
+                reader.addToMap(data, fieldName(name), read(parser.nextToken(), null));
             }
             else {
                 parser.nextToken();
@@ -483,6 +541,72 @@ public class ScrollReader {
 
     }
 
+    // index the top-level fields of the current object (their name and position) without decoding them
+    private Object lazyMap() {
+        Token t = parser.currentToken();
+        Assert.isTrue(t == Token.START_OBJECT, "expected object, found " + t);
+
+        LazyDocument doc = new LazyDocument(this, content);
+
+        for (t = parser.nextToken(); t == Token.FIELD_NAME;) {
+            String name = parser.currentName();
+            // the position points to the field name (and its separator if there's any)
+            int start = parser.tokenCharOffset();
+            parser.nextToken();
+            parser.skipChildren();
+            t = parser.nextToken();
+            doc.addField(reader.readValue(parser, name, FieldType.STRING), name, start, parser.tokenCharOffset());
+        }
+
+        // eliminate END_OBJECT
+        parser.nextToken();
+        return doc;
+    }
+
+    // decodes the given value (as raw bytes) - used by lazy documents
+    // the fragment gets its own parser so the one of the page (if any) is never touched
+    // note the positions reported by the (UTF-8 stream) parser are byte based
+    Object readFragment(byte[] bytes, int offset, int length, String fieldMapping) {
+        Parser fragment = new JacksonJsonParser(bytes, offset, length);
+        try {
+            return readFragment(fragment, fragment.nextToken(), fieldMapping);
+        } finally {
+            fragment.close();
+        }
+    }
+
+    private Object readFragment(Parser fragment, Token t, String fieldMapping) {
+        if (t == Token.START_OBJECT) {
+            Object map = reader.createMap();
+            for (fragment.nextToken(); fragment.currentToken() != Token.END_OBJECT;) {
+                String name = fragment.currentName();
+                Object fieldName = (recycling != null ? recycling.fieldName(name) : reader.readValue(fragment, name, FieldType.STRING));
+                reader.addToMap(map, fieldName, readFragment(fragment, fragment.nextToken(), fieldMapping + "." + name));
+            }
+            // eliminate END_OBJECT
+            fragment.nextToken();
+            return map;
+        }
+        if (t == Token.START_ARRAY) {
+            Object array = reader.createArray(mapping(fragment, fieldMapping));
+            List<Object> content = new ArrayList<Object>(1);
+            for (fragment.nextToken(); fragment.currentToken() != Token.END_ARRAY;) {
+                content.add(readFragment(fragment, fragment.currentToken(), fieldMapping));
+            }
+            // eliminate END_ARRAY
+            fragment.nextToken();
+            return reader.addToArray(array, content);
+        }
+        return (t.isValue() ? parseValue(fragment, mapping(fragment, fieldMapping)) : null);
+    }
+
+    /**
+     * Returns the parser of the content currently read.
+     */
+    protected Parser parser() {
+        return parser;
+    }
+
     private void skipCurrentBlock() {
         int open = 1;
 
@@ -507,6 +631,10 @@ public class ScrollReader {
         }
     }
 
+    private Object fieldName(String name) {
+        return (recycling != null ? recycling.fieldName(name) : reader.wrapString(name));
+    }
+
     private long hits() {
         ParsingUtils.seek(parser, TOTAL);
         long hits = parser.longValue();
@@ -525,12 +653,12 @@ public class ScrollReader {
         FieldType esType = mapping(fieldMapping);
 
         if (t.isValue()) {
-            return parseValue(esType);
+            return parseValue(parser, esType);
         }
         return null;
     }
 
-    private Object parseValue(FieldType esType) {
+    private Object parseValue(Parser parser, FieldType esType) {
         Object obj;
         // special case of handing null (as text() will return "null")
         if (parser.currentToken() == Token.VALUE_NULL) {
@@ -591,7 +719,7 @@ public class ScrollReader {
             }
 
             // Must point to field name
-            Object fieldName = reader.readValue(parser, currentName, FieldType.STRING);
+            Object fieldName = (recycling != null ? recycling.fieldName(currentName) : reader.readValue(parser, currentName, FieldType.STRING));
             // And then the value...
             reader.addToMap(map, fieldName, read(parser.nextToken(), nodeMapping));
         }
@@ -602,7 +730,11 @@ public class ScrollReader {
         return map;
     }
 
-    private FieldType mapping(String fieldMapping) {
+    protected FieldType mapping(String fieldMapping) {
+        return mapping(parser, fieldMapping);
+    }
+
+    private FieldType mapping(Parser parser, String fieldMapping) {
         FieldType esType = esMapping.get(fieldMapping);
 
         if (esType != null) {
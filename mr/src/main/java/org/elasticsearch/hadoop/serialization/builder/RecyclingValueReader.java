@@ -0,0 +1,38 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.serialization.builder;
+
+/**
+ * {@link ValueReader} that can recycle the objects it creates across pages of results.
+ */
+public interface RecyclingValueReader extends ValueReader {
+
+    /**
+     * Converts the given field name. When objects are reused, the returned object is typically cached and thus shared across documents.
+     *
+     * @param name field name
+     * @return converted field name
+     */
+    Object fieldName(String name);
+
+    /**
+     * Indicates a new page of results is about to be read; objects created for the previous page can be reused.
+     */
+    void recycle();
+}
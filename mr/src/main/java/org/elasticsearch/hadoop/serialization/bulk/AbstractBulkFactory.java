@@ -26,6 +26,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
 import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.cfg.SettingsSnapshot;
 import org.elasticsearch.hadoop.rest.Resource;
 import org.elasticsearch.hadoop.serialization.builder.ValueWriter;
 import org.elasticsearch.hadoop.serialization.bulk.MetadataExtractor.Metadata;
@@ -80,6 +81,10 @@ public abstract class AbstractBulkFactory implements BulkFactory {
 
     private final ValueWriter valueWriter;
 
+    // generator used for the (non-primitive) metadata values - reused across fields and documents
+    private final FastByteArrayOutputStream fieldOutput = new FastByteArrayOutputStream(0);
+    private JacksonJsonGenerator fieldGenerator;
+
     class FieldWriter {
         final FieldExtractor extractor;
         final BytesArrayPool pool = new BytesArrayPool();
@@ -121,15 +126,30 @@ public abstract class AbstractBulkFactory implements BulkFactory {
                 pool.get().bytes(valueString);
             }
             else if (value instanceof RawJson) {
-                pool.get().bytes(((RawJson) value).json());
+                // copy since the encoded json can be shared across documents while the pooled arrays are reused
+                BytesArray ba = pool.get();
+                ba.reset();
+                ba.add(((RawJson) value).json());
             }
             // library specific type - use the value writer (a bit overkill but handles collections/arrays properly)
             else {
-                BytesArray ba = pool.get();
-                JacksonJsonGenerator generator = new JacksonJsonGenerator(new FastByteArrayOutputStream(ba));
-                valueWriter.write(value, generator);
-                generator.flush();
-                generator.close();
+                if (fieldGenerator == null) {
+                    fieldGenerator = new JacksonJsonGenerator(fieldOutput, true);
+                }
+                fieldOutput.setBytes(pool.get());
+                boolean written = false;
+                try {
+                    valueWriter.write(value, fieldGenerator);
+                    fieldGenerator.flush();
+                    written = true;
+                } finally {
+                    if (written) {
+                        fieldGenerator.reset();
+                    }
+                    else {
+                        fieldGenerator = null;
+                    }
+                }
             }
         }
 
@@ -171,7 +191,8 @@ public abstract class AbstractBulkFactory implements BulkFactory {
 
         jsonInput = settings.getInputAsJson();
         isStatic = metaExtractor == null;
-        initExtractorsFromSettings(settings);
+        // the extractors are configured through the settings - a snapshot is read-only so use a (modifiable) copy of it
+        initExtractorsFromSettings(settings instanceof SettingsSnapshot ? settings.copy() : settings);
     }
 
     private void initExtractorsFromSettings(final Settings settings) {
@@ -192,34 +213,40 @@ public abstract class AbstractBulkFactory implements BulkFactory {
             paramsExtractor = jsonExtractors.params();
         }
         else {
-            // init extractors (if needed)
-            if (settings.getMappingId() != null) {
-                settings.setProperty(ConstantFieldExtractor.PROPERTY, settings.getMappingId());
+            // init extractors (if needed) - each mapping option is read once
+            String id = settings.getMappingId();
+            if (id != null) {
+                settings.setProperty(ConstantFieldExtractor.PROPERTY, id);
                 idExtractor = ObjectUtils.<FieldExtractor> instantiate(settings.getMappingIdExtractorClassName(),
                         settings);
             }
-            if (settings.getMappingParent() != null) {
-                settings.setProperty(ConstantFieldExtractor.PROPERTY, settings.getMappingParent());
+            String parent = settings.getMappingParent();
+            if (parent != null) {
+                settings.setProperty(ConstantFieldExtractor.PROPERTY, parent);
                 parentExtractor = ObjectUtils.<FieldExtractor> instantiate(
                         settings.getMappingParentExtractorClassName(), settings);
             }
-            if (settings.getMappingRouting() != null) {
-                settings.setProperty(ConstantFieldExtractor.PROPERTY, settings.getMappingRouting());
+            String routing = settings.getMappingRouting();
+            if (routing != null) {
+                settings.setProperty(ConstantFieldExtractor.PROPERTY, routing);
                 routingExtractor = ObjectUtils.<FieldExtractor> instantiate(
                         settings.getMappingRoutingExtractorClassName(), settings);
             }
-            if (settings.getMappingTtl() != null) {
-                settings.setProperty(ConstantFieldExtractor.PROPERTY, settings.getMappingTtl());
+            String ttl = settings.getMappingTtl();
+            if (ttl != null) {
+                settings.setProperty(ConstantFieldExtractor.PROPERTY, ttl);
                 ttlExtractor = ObjectUtils.<FieldExtractor> instantiate(settings.getMappingTtlExtractorClassName(),
                         settings);
             }
-            if (settings.getMappingVersion() != null) {
-                settings.setProperty(ConstantFieldExtractor.PROPERTY, settings.getMappingVersion());
+            String version = settings.getMappingVersion();
+            if (version != null) {
+                settings.setProperty(ConstantFieldExtractor.PROPERTY, version);
                 versionExtractor = ObjectUtils.<FieldExtractor> instantiate(
                         settings.getMappingVersionExtractorClassName(), settings);
             }
-            if (settings.getMappingTimestamp() != null) {
-                settings.setProperty(ConstantFieldExtractor.PROPERTY, settings.getMappingTimestamp());
+            String timestamp = settings.getMappingTimestamp();
+            if (timestamp != null) {
+                settings.setProperty(ConstantFieldExtractor.PROPERTY, timestamp);
                 timestampExtractor = ObjectUtils.<FieldExtractor> instantiate(
                         settings.getMappingTimestampExtractorClassName(), settings);
             }
@@ -265,10 +292,12 @@ public abstract class AbstractBulkFactory implements BulkFactory {
 
         // json params override other extractors
         if (settings.hasUpdateScriptParamsJson()) {
+            // same for all documents - read it once
+            final RawJson paramsJson = new RawJson(settings.getUpdateScriptParamsJson().trim());
             paramsExtractor = new FieldExtractor() {
                 @Override
                 public Object field(Object target) {
-                    return new RawJson(settings.getUpdateScriptParamsJson().trim());
+                    return paramsJson;
                 }
             };
         }
@@ -314,7 +343,7 @@ public abstract class AbstractBulkFactory implements BulkFactory {
         if (isScriptUpdate) {
             return new ScriptTemplateBulk(settings, before, after, valueWriter);
         }
-        return new TemplatedBulk(before, after, valueWriter);
+        return new TemplatedBulk(before, after, valueWriter, TemplatedBulk.isSmile(settings));
     }
 
     // write action & metadata header
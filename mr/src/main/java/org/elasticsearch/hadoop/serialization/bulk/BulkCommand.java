@@ -18,6 +18,7 @@
  */
 package org.elasticsearch.hadoop.serialization.bulk;
 
+import org.elasticsearch.hadoop.util.BytesArray;
 import org.elasticsearch.hadoop.util.BytesRef;
 
 
@@ -36,4 +37,13 @@ public interface BulkCommand {
      * @return
      */
     BytesRef write(Object object);
+
+    /**
+     * Serializes the given object directly into the given {@link BytesArray} (appending to its existing content).
+     * Avoids the intermediate copy performed by {@link #write(Object)}.
+     *
+     * @param object
+     * @param target
+     */
+    void writeTo(Object object, BytesArray target);
 }
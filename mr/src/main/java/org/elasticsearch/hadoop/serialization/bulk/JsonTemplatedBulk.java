@@ -44,7 +44,7 @@ class JsonTemplatedBulk extends TemplatedBulk {
 
     public JsonTemplatedBulk(Collection<Object> beforeObject, Collection<Object> afterObject,
             JsonFieldExtractors jsonExtractors, Settings settings) {
-        super(beforeObject, afterObject, new NoOpValueWriter());
+        super(beforeObject, afterObject, new NoOpValueWriter(), isSmile(settings));
         this.jsonExtractors = jsonExtractors;
         this.jsonWriter = ObjectUtils.instantiate(settings.getSerializerBytesConverterClassName(), settings);
         this.settings = settings;
@@ -65,6 +65,12 @@ class JsonTemplatedBulk extends TemplatedBulk {
         return storage;
     }
 
+    @Override
+    protected boolean hasObject() {
+        // part of the pre-processed content
+        return false;
+    }
+
     @Override
     protected void doWriteObject(Object object, BytesArray storage, ValueWriter<?> writer) {
         // no-op - the object has been already serialized to storage
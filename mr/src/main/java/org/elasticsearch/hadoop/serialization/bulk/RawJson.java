@@ -25,13 +25,20 @@ import org.elasticsearch.hadoop.util.StringUtils;
 // which might contain raw json (constants or JSON extracts) or raw objects (when doing extraction)
 public class RawJson {
     private final String source;
+    // encoded lazily; instances can be reused across documents (such as the index header) so encode only once
+    private byte[] json;
 
     public RawJson(String source) {
         this.source = source;
     }
 
     public byte[] json() {
-        return StringUtils.toUTF(source);
+        byte[] bytes = json;
+        if (bytes == null) {
+            bytes = StringUtils.toUTF(source);
+            json = bytes;
+        }
+        return bytes;
     }
 
     @Override
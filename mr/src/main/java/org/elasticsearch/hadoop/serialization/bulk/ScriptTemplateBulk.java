@@ -31,13 +31,18 @@ class ScriptTemplateBulk extends TemplatedBulk {
 
     ScriptTemplateBulk(Settings settings, Collection<Object> beforeObject, Collection<Object> afterObject,
             ValueWriter<?> valueWriter) {
-        super(beforeObject, afterObject, valueWriter);
+        super(beforeObject, afterObject, valueWriter, isSmile(settings));
         this.settings = settings;
     }
 
+    @Override
+    protected boolean hasObject() {
+        return ConfigurationOptions.ES_OPERATION_UPSERT.equals(settings.getOperation());
+    }
+
     @Override
     protected void doWriteObject(Object object, BytesArray storage, ValueWriter<?> writer) {
-        if (ConfigurationOptions.ES_OPERATION_UPSERT.equals(settings.getOperation())) {
+        if (hasObject()) {
             super.doWriteObject(object, storage, writer);
         }
     }
@@ -18,20 +18,38 @@
  */
 package org.elasticsearch.hadoop.serialization.bulk;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.serialization.EsHadoopSerializationException;
 import org.elasticsearch.hadoop.serialization.builder.ContentBuilder;
 import org.elasticsearch.hadoop.serialization.builder.ValueWriter;
 import org.elasticsearch.hadoop.serialization.bulk.AbstractBulkFactory.DynamicContentRef;
 import org.elasticsearch.hadoop.serialization.bulk.AbstractBulkFactory.FieldWriter;
+import org.elasticsearch.hadoop.serialization.json.JacksonJsonGenerator;
+import org.elasticsearch.hadoop.serialization.json.JacksonSmile;
 import org.elasticsearch.hadoop.util.BytesArray;
 import org.elasticsearch.hadoop.util.BytesRef;
 import org.elasticsearch.hadoop.util.FastByteArrayOutputStream;
 
+/**
+ * Bulk command filling the action/metadata template around each document. The entries are encoded either as JSON (new line
+ * terminated lines) or as SMILE (documents followed by the SMILE stream separator), as indicated by <tt>es.net.content.type</tt>.
+ */
 class TemplatedBulk implements BulkCommand {
 
+    private static final JsonFactory JSON = new JsonFactory();
+    // marks the place of the document inside the (JSON) template when encoding to SMILE
+    private static final byte[] PLACEHOLDER = "null".getBytes();
+
     private final Collection<Object> beforeObject;
     private final Collection<Object> afterObject;
 
@@ -40,14 +58,51 @@ class TemplatedBulk implements BulkCommand {
 
     private final ValueWriter valueWriter;
 
-    TemplatedBulk(Collection<Object> beforeObject, Collection<Object> afterObject, ValueWriter<?> valueWriter) {
+    // serialization machinery - reused across documents
+    private final FastByteArrayOutputStream out = new FastByteArrayOutputStream(scratchPad);
+    private JacksonJsonGenerator generator;
+    private ContentBuilder builder;
+    private ValueWriter<?> builderWriter;
+
+    // SMILE encoding (optional)
+    private final JsonFactory smile;
+    private final BytesArray template;
+    private final BytesArray smileEntry;
+    private final FastByteArrayOutputStream smileOut;
+
+    TemplatedBulk(Collection<Object> beforeObject, Collection<Object> afterObject, ValueWriter<?> valueWriter, boolean smile) {
         this.beforeObject = beforeObject;
         this.afterObject = afterObject;
         this.valueWriter = valueWriter;
+
+        if (smile) {
+            this.smile = JacksonSmile.factory();
+            this.template = new BytesArray(256);
+            this.smileEntry = new BytesArray(1024);
+            this.smileOut = new FastByteArrayOutputStream(smileEntry);
+        }
+        else {
+            this.smile = null;
+            this.template = null;
+            this.smileEntry = null;
+            this.smileOut = null;
+        }
+    }
+
+    static boolean isSmile(Settings settings) {
+        return ConfigurationOptions.ES_NET_CONTENT_TYPE_SMILE.equals(settings.getNetContentType());
     }
 
     @Override
     public BytesRef write(Object object) {
+        if (smile != null) {
+            ref.reset();
+            smileEntry.reset();
+            writeSmile(object, smileEntry);
+            ref.add(smileEntry);
+            return ref;
+        }
+
         ref.reset();
         scratchPad.reset();
 
@@ -62,13 +117,155 @@ class TemplatedBulk implements BulkCommand {
         return ref;
     }
 
+    @Override
+    public void writeTo(Object object, BytesArray target) {
+        if (smile != null) {
+            writeSmile(object, target);
+            return;
+        }
+
+        ref.reset();
+        scratchPad.reset();
+
+        Object processed = preProcess(object, scratchPad);
+        // write before object
+        writeTemplate(beforeObject, processed);
+        // followed by the pre-processed content (if any)
+        ref.add(scratchPad);
+        ref.copyTo(target);
+        ref.reset();
+        // write object
+        doWriteObject(processed, target, valueWriter);
+        // writer after object
+        writeTemplate(afterObject, processed);
+        ref.copyTo(target);
+        ref.reset();
+    }
+
     protected Object preProcess(Object object, BytesArray storage) {
         return object;
     }
 
     protected void doWriteObject(Object object, BytesArray storage, ValueWriter<?> writer) {
-        FastByteArrayOutputStream bos = new FastByteArrayOutputStream(storage);
-        ContentBuilder.generate(bos, writer).value(object).flush().close();
+        if (builder == null || builderWriter != writer) {
+            generator = new JacksonJsonGenerator(out, true);
+            builder = ContentBuilder.generate(generator, writer);
+            builderWriter = writer;
+        }
+
+        out.setBytes(storage);
+        boolean written = false;
+        try {
+            builder.value(object).flush();
+            written = true;
+        } finally {
+            if (written) {
+                generator.reset();
+            }
+            else {
+                // the generator state is undefined - start fresh on the next document
+                builder = null;
+            }
+        }
+    }
+
+    /**
+     * Indicates whether the document is written through {@link #doWriteObject(Object, BytesArray, ValueWriter)} or not (if it is
+     * part of the pre-processed content or not sent at all).
+     *
+     * @return whether the document is written after the pre-processed content
+     */
+    protected boolean hasObject() {
+        return true;
+    }
+
+    // the metadata (and any pre-processed content) come from the JSON templates and are converted to SMILE as they are parsed while
+    // the document is written straight through the SMILE generator - each line becomes a SMILE document
+    private void writeSmile(Object object, BytesArray target) {
+        ref.reset();
+        scratchPad.reset();
+        template.reset();
+
+        Object processed = preProcess(object, scratchPad);
+        writeTemplate(beforeObject, processed);
+        ref.add(scratchPad);
+        ref.copyTo(template);
+        ref.reset();
+
+        if (hasObject()) {
+            template.add(PLACEHOLDER);
+        }
+
+        writeTemplate(afterObject, processed);
+        ref.copyTo(template);
+        ref.reset();
+
+        smileOut.setBytes(target);
+        try {
+            // the placeholder is the last value of the template (only closing markers follow)
+            int slot = (hasObject() ? countValues() - 1 : -1);
+            int values = 0;
+
+            JsonParser parser = JSON.createJsonParser(template.bytes(), 0, template.length());
+            JsonGenerator generator = null;
+            int depth = 0;
+            try {
+                for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+                    if (generator == null) {
+                        generator = smile.createJsonGenerator(smileOut);
+                    }
+
+                    if (token.isScalarValue() && values++ == slot) {
+                        ContentBuilder.generate(new JacksonJsonGenerator(generator, smileOut), valueWriter).value(processed);
+                    }
+                    else {
+                        copy(parser, generator);
+                        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                            depth++;
+                        }
+                        else if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                            depth--;
+                        }
+                    }
+
+                    // end of line
+                    if (depth == 0) {
+                        generator.close();
+                        generator = null;
+                        target.add(JacksonSmile.STREAM_SEPARATOR);
+                    }
+                }
+            } finally {
+                parser.close();
+            }
+        } catch (IOException ex) {
+            throw new EsHadoopSerializationException("Cannot encode bulk entry as SMILE", ex);
+        }
+    }
+
+    private int countValues() throws IOException {
+        JsonParser parser = JSON.createJsonParser(template.bytes(), 0, template.length());
+        int values = 0;
+        try {
+            for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+                if (token.isScalarValue()) {
+                    values++;
+                }
+            }
+        } finally {
+            parser.close();
+        }
+        return values;
+    }
+
+    private static void copy(JsonParser parser, JsonGenerator generator) throws IOException {
+        // floating point numbers are read as doubles by default - keep the long ones exact
+        if (parser.getCurrentToken() == JsonToken.VALUE_NUMBER_FLOAT && parser.getTextLength() > 15) {
+            generator.writeNumber(parser.getDecimalValue());
+        }
+        else {
+            generator.copyCurrentEvent(parser);
+        }
     }
 
     private void writeTemplate(Collection<Object> template, Object object) {
@@ -19,6 +19,7 @@
 package org.elasticsearch.hadoop.serialization.field;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
@@ -36,6 +37,19 @@ public abstract class AbstractIndexExtractor implements IndexExtractor, Settings
     protected boolean hasPattern = false;
     protected List<Object> index;
     protected List<Object> type;
+    private int dynamicFields = 0;
+    // header of the last document - reused as long as the pattern resolves to the same values
+    private volatile Header last;
+
+    private static class Header {
+        final String[] values;
+        final RawJson json;
+
+        Header(String[] values, RawJson json) {
+            this.values = values;
+            this.json = json;
+        }
+    }
 
     @Override
     public void setSettings(Settings settings) {
@@ -54,6 +68,18 @@ public abstract class AbstractIndexExtractor implements IndexExtractor, Settings
         hasPattern = pattern.contains("{") && pattern.contains("}");
         index = parse(split[0].trim());
         type = parse(split[1].trim());
+        dynamicFields = countFields(index) + countFields(type);
+        last = null;
+    }
+
+    private static int countFields(List<Object> list) {
+        int count = 0;
+        for (Object object : list) {
+            if (object instanceof FieldExtractor) {
+                count++;
+            }
+        }
+        return count;
     }
 
     protected List<Object> parse(String string) {
@@ -106,34 +132,48 @@ public abstract class AbstractIndexExtractor implements IndexExtractor, Settings
         };
     }
 
-    private void append(StringBuilder sb, List<Object> list, Object target) {
+    private int extract(String[] values, int position, List<Object> list, Object target) {
         for (Object object : list) {
             if (object instanceof FieldExtractor) {
                 Object field = ((FieldExtractor) object).field(target);
                 if (field == NOT_FOUND) {
                     throw new EsHadoopIllegalArgumentException(String.format("Cannot find match for %s", pattern));
                 }
-                else {
-                    sb.append(StringUtils.jsonEncoding(field.toString()));
-                }
-            }
-            else {
-                sb.append(StringUtils.jsonEncoding(object.toString()));
+                values[position++] = field.toString();
             }
         }
+        return position;
+    }
+
+    private int append(StringBuilder sb, List<Object> list, String[] values, int position) {
+        for (Object object : list) {
+            String value = (object instanceof FieldExtractor ? values[position++] : object.toString());
+            sb.append(StringUtils.jsonEncoding(value));
+        }
+        return position;
     }
 
     @Override
     public Object field(Object target) {
+        String[] values = new String[dynamicFields];
+        extract(values, extract(values, 0, index, target), type, target);
+
+        Header header = last;
+        if (header != null && Arrays.equals(header.values, values)) {
+            return header.json;
+        }
+
         StringBuilder sb = new StringBuilder();
         sb.append("\"_index\":\"");
-        append(sb, index, target);
+        int position = append(sb, index, values, 0);
         sb.append("\",");
         sb.append("\"_type\":\"");
-        append(sb, type, target);
+        append(sb, type, values, position);
         sb.append("\"");
 
-        return new RawJson(sb.toString());
+        header = new Header(values, new RawJson(sb.toString()));
+        last = header;
+        return header.json;
     }
 
     @Override
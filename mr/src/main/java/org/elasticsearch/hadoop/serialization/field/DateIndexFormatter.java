@@ -20,6 +20,9 @@ package org.elasticsearch.hadoop.serialization.field;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
 
 import javax.xml.bind.DatatypeConverter;
 
@@ -27,16 +30,117 @@ import org.elasticsearch.hadoop.util.Constants;
 import org.elasticsearch.hadoop.util.StringUtils;
 
 
+/**
+ * Formats ISO-8601 dates into index names (for time-based indices).
+ *
+ * Since the same index is typically computed for a lot of consecutive documents, ISO values are parsed without a {@link Calendar}
+ * and bucketed based on the smallest unit used by the format; the rendered index names are then cached per bucket.
+ * Values that cannot be handled this way (non-ISO or formats with a timezone) fall back to the JDK parsing/formatting.
+ *
+ * The class is thread-safe.
+ */
 public class DateIndexFormatter implements IndexFormatter {
 
+    private static final long SECOND = 1000L;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    // time-series data is mostly ordered so only a handful of buckets are active at once
+    private static final int CACHE_SIZE = 16;
+
+    // returned when a value cannot be parsed through the fast path
+    private static final long NO_TIME = Long.MIN_VALUE;
+
     private String format;
     private SimpleDateFormat dateFormat;
+    private TimeZone timeZone;
+    // size (in millis) of the time bucket yielding the same result; 0 if the results cannot be cached
+    private long resolution;
+    private Map<Long, String> cache;
+    private volatile Bucket last;
+
+    private static class Bucket {
+        final long id;
+        final String value;
+
+        Bucket(long id, String value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
 
     @Override
     public void configure(String format) {
         this.format = format;
         format = fixDateForJdk(format);
         this.dateFormat = new SimpleDateFormat(format);
+        this.timeZone = dateFormat.getTimeZone();
+        this.resolution = resolution(format);
+        this.cache = new LinkedHashMap<Long, String>(CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+        this.last = null;
+    }
+
+    /**
+     * Returns the smallest time unit used by the given format or 0 if the result depends on more than the local time (such as the timezone).
+     */
+    static long resolution(String format) {
+        long min = DAY;
+        boolean quoted = false;
+        for (int i = 0; i < format.length(); i++) {
+            char c = format.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+                continue;
+            }
+            if (quoted || !((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+                continue;
+            }
+
+            long unit;
+            switch (c) {
+            case 'S':
+                unit = 1;
+                break;
+            case 's':
+                unit = SECOND;
+                break;
+            case 'm':
+                unit = MINUTE;
+                break;
+            case 'H':
+            case 'k':
+            case 'K':
+            case 'h':
+            case 'a':
+                unit = HOUR;
+                break;
+            case 'G':
+            case 'y':
+            case 'Y':
+            case 'M':
+            case 'L':
+            case 'w':
+            case 'W':
+            case 'D':
+            case 'd':
+            case 'F':
+            case 'E':
+            case 'u':
+                unit = DAY;
+                break;
+            default:
+                // timezone or unknown letter
+                return 0;
+            }
+            min = Math.min(min, unit);
+        }
+        return min;
     }
 
     /**
@@ -70,7 +174,159 @@ public class DateIndexFormatter implements IndexFormatter {
             return null;
         }
 
+        if (resolution > 0) {
+            long time = localTime(value);
+            if (time != NO_TIME) {
+                long id = floorDiv(time, resolution);
+                Bucket bucket = last;
+                if (bucket != null && bucket.id == id) {
+                    return bucket.value;
+                }
+                String result;
+                synchronized (this) {
+                    result = cache.get(id);
+                    if (result == null) {
+                        result = doFormat(value);
+                        cache.put(id, result);
+                    }
+                }
+                last = new Bucket(id, result);
+                return result;
+            }
+        }
+
+        synchronized (this) {
+            return doFormat(value);
+        }
+    }
+
+    // SimpleDateFormat is not thread-safe - callers need to hold the lock
+    private String doFormat(String value) {
         Calendar calendar = DatatypeConverter.parseDateTime(value);
         return dateFormat.format(calendar.getTime());
     }
+
+    /**
+     * Parses the given ISO-8601 value (<code>yyyy-MM-dd['T'HH:mm:ss[.SSS]][Z|(+|-)HH:mm]</code>) and returns the local time
+     * (in the formatter timezone) as millis since epoch or {@link #NO_TIME} if the value is not in the expected format.
+     */
+    long localTime(String value) {
+        int length = value.length();
+        // yyyy-MM-dd
+        if (length < 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return NO_TIME;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        // dates before the Gregorian cutover are left to the JDK
+        if (year < 1583 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return NO_TIME;
+        }
+
+        long time = daysFromCivil(year, month, day) * DAY;
+
+        int index = 10;
+        if (index < length && value.charAt(index) == 'T') {
+            // HH:mm:ss
+            if (length < index + 9 || value.charAt(index + 3) != ':' || value.charAt(index + 6) != ':') {
+                return NO_TIME;
+            }
+            int hour = digits(value, index + 1, 2);
+            int minute = digits(value, index + 4, 2);
+            int second = digits(value, index + 7, 2);
+            index += 9;
+            int millis = 0;
+            // .SSS (anything past millis is ignored)
+            if (index < length && value.charAt(index) == '.') {
+                index++;
+                int start = index;
+                int scale = 100;
+                for (; index < length && Character.isDigit(value.charAt(index)); index++) {
+                    millis += (value.charAt(index) - '0') * scale;
+                    scale /= 10;
+                }
+                if (index == start) {
+                    return NO_TIME;
+                }
+            }
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+                return NO_TIME;
+            }
+            time += hour * HOUR + minute * MINUTE + second * SECOND + millis;
+        }
+
+        // no timezone means local time already
+        if (index == length) {
+            return time;
+        }
+
+        long offset;
+        char c = value.charAt(index);
+        if (c == 'Z' && index + 1 == length) {
+            offset = 0;
+        }
+        else if ((c == '+' || c == '-') && index + 6 == length && value.charAt(index + 3) == ':') {
+            int hours = digits(value, index + 1, 2);
+            int minutes = digits(value, index + 4, 2);
+            if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59) {
+                return NO_TIME;
+            }
+            offset = hours * HOUR + minutes * MINUTE;
+            if (c == '-') {
+                offset = -offset;
+            }
+        }
+        else {
+            return NO_TIME;
+        }
+
+        long utc = time - offset;
+        return utc + timeZone.getOffset(utc);
+    }
+
+    // returns the number represented by the given digits or -1 if there are non-digit chars
+    private static int digits(String value, int start, int count) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+        case 2:
+            return ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0) ? 29 : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    // days since epoch for the given (proleptic Gregorian) date
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = (month <= 2 ? year - 1 : year);
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;
+        long doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long r = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            r--;
+        }
+        return r;
+    }
 }
@@ -19,17 +19,17 @@
 package org.elasticsearch.hadoop.serialization.field;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.rest.Resource;
+import org.elasticsearch.hadoop.serialization.Parser;
 import org.elasticsearch.hadoop.serialization.ParsingUtils;
+import org.elasticsearch.hadoop.serialization.PathMatcher;
 import org.elasticsearch.hadoop.serialization.json.JacksonJsonParser;
 import org.elasticsearch.hadoop.util.BytesArray;
-import org.elasticsearch.hadoop.util.ObjectUtils;
 import org.elasticsearch.hadoop.util.StringUtils;
 
 /**
@@ -41,8 +41,8 @@ public class JsonFieldExtractors {
 
     private final Settings settings;
 
-    private final List<Object> results = new ArrayList<Object>(6);
-    private String[] paths;
+    private Object[] results;
+    private PathMatcher matcher;
 
     private FieldExtractor id, parent, routing, ttl, version, timestamp;
     private AbstractIndexExtractor indexExtractor;
@@ -62,7 +62,7 @@ public class JsonFieldExtractors {
 
         @Override
         public Object field(Object target) {
-            Object result = results.get(slot);
+            Object result = results[slot];
             if (result == ParsingUtils.NOT_FOUND) {
                 return FieldExtractor.NOT_FOUND;
             }
@@ -129,7 +129,10 @@ public class JsonFieldExtractors {
             params.setSettings(settings);
         }
 
-        paths = jsonPaths.toArray(new String[jsonPaths.size()]);
+        if (!jsonPaths.isEmpty()) {
+            matcher = new PathMatcher(jsonPaths.toArray(new String[jsonPaths.size()]));
+            results = new Object[jsonPaths.size()];
+        }
     }
 
     private FieldExtractor init(String fieldName, List<String> pathList) {
@@ -188,17 +191,20 @@ public class JsonFieldExtractors {
 
     public void process(BytesArray storage) {
         // no extractors, no lookups
-        if (ObjectUtils.isEmpty(paths)) {
+        if (matcher == null) {
             return;
         }
 
-        results.clear();
-
         if (log.isTraceEnabled()) {
-            log.trace(String.format("About to look for paths [%s] in doc [%s]", Arrays.toString(paths), storage));
+            log.trace(String.format("About to look for paths [%s] in doc [%s]", matcher, storage));
         }
 
-        results.addAll(ParsingUtils.values(new JacksonJsonParser(storage.bytes(), 0, storage.length()), paths));
+        Parser parser = new JacksonJsonParser(storage.bytes(), storage.offset(), storage.length());
+        try {
+            matcher.values(parser, results);
+        } finally {
+            parser.close();
+        }
     }
 
     public FieldExtractor params() {
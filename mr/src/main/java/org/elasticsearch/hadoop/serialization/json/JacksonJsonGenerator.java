@@ -27,7 +27,9 @@ import java.util.LinkedList;
 import org.apache.commons.logging.LogFactory;
 import org.codehaus.jackson.JsonEncoding;
 import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerationException;
 import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.PrettyPrinter;
 import org.elasticsearch.hadoop.serialization.EsHadoopSerializationException;
 import org.elasticsearch.hadoop.serialization.Generator;
 import org.elasticsearch.hadoop.util.StringUtils;
@@ -59,16 +61,104 @@ public class JacksonJsonGenerator implements Generator {
         JSON_FACTORY.configure(JsonGenerator.Feature.QUOTE_FIELD_NAMES, true);
     }
 
+    // minimal printer (no whitespace) which doesn't separate root values
+    private static final PrettyPrinter NO_ROOT_SEPARATOR = new PrettyPrinter() {
+
+        @Override
+        public void writeRootValueSeparator(JsonGenerator jg) throws IOException, JsonGenerationException {
+            // no-op
+        }
+
+        @Override
+        public void writeStartObject(JsonGenerator jg) throws IOException, JsonGenerationException {
+            jg.writeRaw('{');
+        }
+
+        @Override
+        public void beforeObjectEntries(JsonGenerator jg) throws IOException, JsonGenerationException {
+            // no-op
+        }
+
+        @Override
+        public void writeObjectFieldValueSeparator(JsonGenerator jg) throws IOException, JsonGenerationException {
+            jg.writeRaw(':');
+        }
+
+        @Override
+        public void writeObjectEntrySeparator(JsonGenerator jg) throws IOException, JsonGenerationException {
+            jg.writeRaw(',');
+        }
+
+        @Override
+        public void writeEndObject(JsonGenerator jg, int nrOfEntries) throws IOException, JsonGenerationException {
+            jg.writeRaw('}');
+        }
+
+        @Override
+        public void writeStartArray(JsonGenerator jg) throws IOException, JsonGenerationException {
+            jg.writeRaw('[');
+        }
+
+        @Override
+        public void beforeArrayValues(JsonGenerator jg) throws IOException, JsonGenerationException {
+            // no-op
+        }
+
+        @Override
+        public void writeArrayValueSeparator(JsonGenerator jg) throws IOException, JsonGenerationException {
+            jg.writeRaw(',');
+        }
+
+        @Override
+        public void writeEndArray(JsonGenerator jg, int nrOfValues) throws IOException, JsonGenerationException {
+            jg.writeRaw(']');
+        }
+    };
+
     public JacksonJsonGenerator(OutputStream out) {
+        this(out, false);
+    }
+
+    /**
+     * Creates a new generator. A <code>reusable</code> generator does not write any separator between root values, meaning
+     * it can be used for serializing multiple, independent documents: write the document, {@link #flush()} then {@link #reset()}.
+     *
+     * @param out output stream
+     * @param reusable whether the generator is used for multiple documents or not
+     */
+    public JacksonJsonGenerator(OutputStream out, boolean reusable) {
         try {
             this.out = out;
             // use dedicated method to lower Jackson requirement
             this.generator = JSON_FACTORY.createJsonGenerator(out, JsonEncoding.UTF8);
+            if (reusable) {
+                generator.setPrettyPrinter(NO_ROOT_SEPARATOR);
+            }
         } catch (IOException ex) {
             throw new EsHadoopSerializationException(ex);
         }
     }
 
+    /**
+     * Creates a new instance around the given (Jackson) generator, such as a SMILE one.
+     *
+     * @param generator Jackson generator
+     * @param out output stream used by the generator
+     */
+    public JacksonJsonGenerator(JsonGenerator generator, OutputStream out) {
+        this.out = out;
+        this.generator = generator;
+    }
+
+    /**
+     * Clears the path tracking so that a new (root) document can be written.
+     */
+    public void reset() {
+        currentPath.clear();
+        currentPathCached = null;
+        currentName = null;
+    }
+
     public void usePrettyPrint() {
         generator.useDefaultPrettyPrinter();
     }
@@ -0,0 +1,82 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.serialization.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.codehaus.jackson.smile.SmileGenerator;
+import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.serialization.EsHadoopSerializationException;
+import org.elasticsearch.hadoop.serialization.Parser;
+import org.elasticsearch.hadoop.util.ObjectUtils;
+
+/**
+ * SMILE (binary JSON) support. The Jackson SMILE codec is an optional dependency so its classes are accessed only when SMILE is used.
+ */
+public abstract class JacksonSmile {
+
+    private static final boolean HAS_SMILE = ObjectUtils.isClassPresent("org.codehaus.jackson.smile.SmileFactory",
+            JacksonSmile.class.getClassLoader());
+
+    /** Content type of SMILE requests */
+    public static final String CONTENT_TYPE = "application/smile";
+    /** Marks the end of a SMILE document within a stream (such as a bulk request) */
+    public static final byte STREAM_SEPARATOR = (byte) 0xFF;
+
+    private static class Smile {
+        private static final SmileFactory FACTORY = new SmileFactory();
+
+        static {
+            FACTORY.configure(SmileGenerator.Feature.WRITE_HEADER, true);
+            FACTORY.configure(SmileGenerator.Feature.WRITE_END_MARKER, false);
+            FACTORY.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        }
+    }
+
+    public static boolean isAvailable() {
+        return HAS_SMILE;
+    }
+
+    /**
+     * Returns the SMILE factory.
+     *
+     * @return SMILE factory
+     * @throws EsHadoopIllegalArgumentException if the SMILE codec is not available
+     */
+    public static JsonFactory factory() {
+        if (!HAS_SMILE) {
+            throw new EsHadoopIllegalArgumentException(String.format(
+                    "Content type [%s] requires the Jackson SMILE codec (jackson-smile) in the classpath", ConfigurationOptions.ES_NET_CONTENT_TYPE_SMILE));
+        }
+        return Smile.FACTORY;
+    }
+
+    public static Parser parser(InputStream in) {
+        try {
+            return new JacksonJsonParser(factory().createJsonParser(in));
+        } catch (IOException ex) {
+            throw new EsHadoopSerializationException(ex);
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.elasticsearch.hadoop.util;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -151,6 +152,22 @@ public class BytesArray implements ByteSequence {
         size = newcount;
     }
 
+    /**
+     * Appends the given number of bytes read from the given buffer (from its current position).
+     *
+     * @param buffer buffer to read from
+     * @param len number of bytes
+     */
+    public void add(ByteBuffer buffer, int len) {
+        if (len == 0) {
+            return;
+        }
+        int newcount = size + len;
+        checkSize(newcount);
+        buffer.get(bytes, size, len);
+        size = newcount;
+    }
+
     public void add(String string) {
         if (string == null) {
             return;
@@ -102,6 +102,15 @@ public class FastByteArrayOutputStream extends OutputStream {
         this.data.bytes(data, size);
     }
 
+    /**
+     * Redirects the stream to the given array. Subsequent writes are appended to it.
+     *
+     * @param data the new target
+     */
+    public void setBytes(BytesArray data) {
+        this.data = data;
+    }
+
     /**
      * Returns the current size of the buffer.
      *
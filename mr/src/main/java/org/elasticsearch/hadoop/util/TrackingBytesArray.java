@@ -32,11 +32,16 @@ import java.util.List;
 public class TrackingBytesArray implements ByteSequence {
 
     private static class Entry {
-        final int offset;
-        final int length;
+        // array holding the entry content (typically the backing one)
+        BytesArray array;
+        int offset;
+        int length;
         final int initialPosition;
+        // positions of the additions merged into this entry (if any)
+        int[] mergedPositions;
 
-        Entry(int offset, int length, int initialPosition) {
+        Entry(BytesArray array, int offset, int length, int initialPosition) {
+            this.array = array;
             this.offset = offset;
             this.length = length;
             this.initialPosition = initialPosition;
@@ -71,6 +76,8 @@ public class TrackingBytesArray implements ByteSequence {
     private final BytesArray data;
     private int maxEntries = 0;
     private int size = 0;
+    // number of additions (including the merged ones)
+    private int positions = 0;
     private List<Entry> entries = new LinkedList<TrackingBytesArray.Entry>();
 
     public TrackingBytesArray(BytesArray data) {
@@ -87,6 +94,67 @@ public class TrackingBytesArray implements ByteSequence {
         from.copyTo(data);
     }
 
+    /**
+     * Tracks the content written directly to the backing array, from the given offset to its end, as a new entry.
+     *
+     * @param offset start of the entry
+     */
+    public void track(int offset) {
+        addEntry(offset, data.size - offset);
+    }
+
+    /**
+     * Tracks the content located at the given offset and length in another array as a new entry, without copying it. The content
+     * needs to stay unchanged as long as the entry is used.
+     *
+     * @param array array holding the entry
+     * @param offset start of the entry
+     * @param length length of the entry
+     */
+    public void track(BytesArray array, int offset, int length) {
+        addEntry(array, offset, length);
+    }
+
+    /**
+     * Replaces the content of the entry at the given index with the one located at the given offset and length in the backing array.
+     * The replacement counts as an addition merged into the existing entry: its position is reported (in {@link #leftoversPosition()})
+     * along with the entry's own.
+     *
+     * @param index index of the entry to replace
+     * @param offset start of the new content
+     * @param length length of the new content
+     */
+    public void merge(int index, int offset, int length) {
+        Entry entry = entries.get(index);
+        size += length - entry.length;
+        entry.array = data;
+        entry.offset = offset;
+        entry.length = length;
+
+        int[] merged = entry.mergedPositions;
+        if (merged == null) {
+            merged = new int[1];
+        }
+        else {
+            int[] copy = new int[merged.length + 1];
+            System.arraycopy(merged, 0, copy, 0, merged.length);
+            merged = copy;
+        }
+        merged[merged.length - 1] = positions++;
+        entry.mergedPositions = merged;
+        maxEntries = positions;
+    }
+
+    /**
+     * Returns the offset of the entry at the given index in its array (the backing one, unless tracked from another array).
+     *
+     * @param index entry index
+     * @return entry offset
+     */
+    public int offset(int index) {
+        return entries.get(index).offset;
+    }
+
     public int length() {
         return size;
     }
@@ -99,6 +167,11 @@ public class TrackingBytesArray implements ByteSequence {
         BitSet bitSet = new BitSet(maxEntries);
         for (Entry entry : entries) {
             bitSet.set(entry.initialPosition);
+            if (entry.mergedPositions != null) {
+                for (int position : entry.mergedPositions) {
+                    bitSet.set(position);
+                }
+            }
         }
 
         return bitSet;
@@ -106,9 +179,17 @@ public class TrackingBytesArray implements ByteSequence {
 
     private void addEntry(int length) {
         // implied offset - data.size
-        entries.add(new Entry(data.size, length, entries.size()));
+        addEntry(data.size, length);
+    }
+
+    private void addEntry(int offset, int length) {
+        addEntry(data, offset, length);
+    }
+
+    private void addEntry(BytesArray array, int offset, int length) {
+        entries.add(new Entry(array, offset, length, positions++));
         size += length;
-        maxEntries = size;
+        maxEntries = positions;
     }
 
     public void remove(int index) {
@@ -126,7 +207,7 @@ public class TrackingBytesArray implements ByteSequence {
         }
 
         for (Entry entry : entries) {
-            out.write(data.bytes, entry.offset, entry.length);
+            out.write(entry.array.bytes, entry.offset, entry.length);
         }
         out.flush();
     }
@@ -134,6 +215,7 @@ public class TrackingBytesArray implements ByteSequence {
     public void reset() {
         size = 0;
         maxEntries = 0;
+        positions = 0;
         entries.clear();
         data.reset();
     }
@@ -142,7 +224,7 @@ public class TrackingBytesArray implements ByteSequence {
     public String toString() {
         StringBuilder sb = new StringBuilder((int) length());
         for (Entry entry : entries) {
-            sb.append(new String(data.bytes, entry.offset, entry.length, StringUtils.UTF_8));
+            sb.append(new String(entry.array.bytes, entry.offset, entry.length, StringUtils.UTF_8));
         }
         return sb.toString();
     }
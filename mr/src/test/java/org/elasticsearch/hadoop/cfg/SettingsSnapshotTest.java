@@ -0,0 +1,125 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.cfg;
+
+import org.apache.hadoop.conf.Configuration;
+import org.elasticsearch.hadoop.rest.RestClient;
+import org.elasticsearch.hadoop.rest.RestRepository;
+import org.elasticsearch.hadoop.util.SettingsUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SettingsSnapshotTest {
+
+    @Test
+    public void testSnapshotIsIsolated() {
+        Settings settings = new PropertiesSettings();
+        settings.setProperty(ConfigurationOptions.ES_BATCH_SIZE_ENTRIES, "500");
+
+        Settings snapshot = settings.snapshot();
+        settings.setProperty(ConfigurationOptions.ES_BATCH_SIZE_ENTRIES, "10");
+        settings.setProperty(ConfigurationOptions.ES_MAPPING_ID, "id");
+
+        assertEquals(500, snapshot.getBatchSizeInEntries());
+        assertNull(snapshot.getMappingId());
+        assertSame(snapshot, snapshot.snapshot());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotIsReadOnly() {
+        new PropertiesSettings().snapshot().setProperty(ConfigurationOptions.ES_MAPPING_ID, "id");
+    }
+
+    @Test
+    public void testCopyIsModifiable() {
+        Settings snapshot = new PropertiesSettings().snapshot();
+        Settings copy = snapshot.copy();
+        copy.setProperty(ConfigurationOptions.ES_MAPPING_ID, "id");
+        assertEquals("id", copy.getMappingId());
+        assertNull(snapshot.getMappingId());
+    }
+
+    @Test
+    public void testClientFromSnapshot() {
+        // the client passes the selected node to the transport; the snapshot is used as is
+        Settings snapshot = new PropertiesSettings().snapshot();
+        new RestClient(snapshot).close();
+        assertFalse(SettingsUtils.hasPinnedNode(snapshot));
+    }
+
+    @Test
+    public void testHadoopVariablesResolved() {
+        Configuration cfg = new Configuration(false);
+        cfg.set("my.port", "9500");
+        cfg.set(ConfigurationOptions.ES_PORT, "${my.port}");
+        Settings snapshot = new HadoopSettings(cfg).snapshot();
+        assertEquals(9500, snapshot.getPort());
+    }
+
+    @Test
+    public void testOnlyConnectorPropertiesCaptured() {
+        Configuration cfg = new Configuration(false);
+        cfg.set("my.property", "value");
+        cfg.set(ConfigurationOptions.ES_MAPPING_ID, "id");
+        Settings snapshot = new HadoopSettings(cfg).snapshot();
+        assertEquals("id", snapshot.getMappingId());
+        assertNull(snapshot.getProperty("my.property"));
+    }
+
+    @Test
+    public void testRepositoryUsesGivenSnapshot() {
+        Settings settings = new PropertiesSettings();
+        settings.setProperty(ConfigurationOptions.ES_RESOURCE, "foo/bar");
+        Settings snapshot = settings.snapshot();
+        RestRepository repository = new RestRepository(snapshot);
+        assertSame(snapshot, repository.getSettings());
+        repository.close();
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testLazyValidation() {
+        Settings settings = new PropertiesSettings();
+        settings.setProperty(ConfigurationOptions.ES_BATCH_SIZE_ENTRIES, "many");
+        // invalid values are reported only when used
+        Settings snapshot = settings.snapshot();
+        snapshot.getBatchSizeInEntries();
+    }
+
+    @Test
+    public void testTypedValuesCached() {
+        Settings settings = new PropertiesSettings();
+        settings.setProperty(ConfigurationOptions.ES_BATCH_SIZE_BYTES, "2kb");
+        Settings snapshot = settings.snapshot();
+        assertEquals(2048, snapshot.getBatchSizeInBytes());
+        assertEquals(2048, snapshot.getBatchSizeInBytes());
+        assertFalse(snapshot.getNetworkSSLEnabled());
+    }
+
+    @Test
+    public void testRepositoryWithLegacyResource() {
+        Settings settings = new PropertiesSettings();
+        settings.setProperty(ConfigurationOptions.ES_RESOURCE, "foo/bar/_search?q=name:bucket");
+        settings.setQuery("?q=name:other");
+        // the resource is normalized on a copy - the given snapshot is read-only
+        Settings snapshot = settings.snapshot();
+        new RestRepository(snapshot).close();
+        assertEquals("foo/bar/_search?q=name:bucket", snapshot.getResourceRead());
+    }
+}
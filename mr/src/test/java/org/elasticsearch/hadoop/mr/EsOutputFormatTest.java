@@ -0,0 +1,39 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.mr;
+
+import org.apache.hadoop.conf.Configuration;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.HadoopSettingsManager;
+import org.junit.Test;
+
+public class EsOutputFormatTest {
+
+    @Test(expected = EsHadoopIllegalStateException.class)
+    public void testBulkLoadSetupInsideTask() throws Exception {
+        Configuration cfg = new Configuration(false);
+        cfg.set(ConfigurationOptions.ES_RESOURCE_WRITE, "foo/bar");
+        cfg.set(ConfigurationOptions.ES_INDEX_BULK_LOAD, "true");
+        // MR1 runs the job setup as a task
+        cfg.set("mapred.task.id", "attempt_201501011200_0001_m_000001_0");
+        // fails before contacting the cluster
+        EsOutputFormat.setupBulkLoad(cfg, HadoopSettingsManager.loadFrom(cfg));
+    }
+}
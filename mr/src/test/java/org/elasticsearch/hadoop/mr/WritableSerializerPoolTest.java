@@ -0,0 +1,73 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.mr;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.Text;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.rest.InitializationUtils;
+import org.elasticsearch.hadoop.rest.RestRepository;
+import org.elasticsearch.hadoop.serialization.field.MapWritableFieldExtractor;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.TestSettings;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WritableSerializerPoolTest {
+
+    @Test
+    public void testReusedRecord() throws Exception {
+        Settings settings = new TestSettings();
+        settings.setResourceWrite("foo/bar");
+        InitializationUtils.setValueWriterIfNotSet(settings, WritableValueWriter.class, null);
+        InitializationUtils.setBytesConverterIfNeeded(settings, WritableBytesConverter.class, null);
+        InitializationUtils.setFieldExtractorIfNotSet(settings, MapWritableFieldExtractor.class, null);
+
+        final List<String> entries = new ArrayList<String>();
+        RestRepository repository = new RestRepository(settings);
+        WritableSerializerPool pool = new WritableSerializerPool(settings, repository, 2, new Configuration(false)) {
+            @Override
+            protected void write(BytesArray entry) {
+                entries.add(entry.toString());
+            }
+        };
+
+        // Hadoop style - the same instance for all records
+        MapWritable record = new MapWritable();
+        int count = 500;
+        for (int i = 0; i < count; i++) {
+            record.clear();
+            record.put(new Text("id"), new IntWritable(i));
+            pool.write(record);
+        }
+        pool.close();
+        repository.close();
+
+        assertEquals(count, entries.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals("{\"index\":{}}\n{\"id\":" + i + "}\n", entries.get(i));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.util.Map;
+
+import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.util.TestSettings;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BulkLoadTest {
+
+    @Test
+    public void testIndex() {
+        assertEquals("foo", BulkLoad.index(settings("foo/bar")));
+        assertNull(BulkLoad.index(settings("foo-{date}/bar")));
+    }
+
+    @Test
+    public void testOriginalSettings() {
+        Settings settings = settings("foo/bar");
+        settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_BULK_LOAD_REFRESH_INTERVAL, "30s");
+        settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_BULK_LOAD_REPLICAS, "2");
+
+        Map<String, String> original = BulkLoad.originalSettings(settings);
+        assertEquals("30s", original.get(BulkLoad.REFRESH_INTERVAL));
+        assertEquals("2", original.get(BulkLoad.REPLICAS));
+    }
+
+    @Test
+    public void testOriginalSettingsUnavailable() {
+        assertNull(BulkLoad.originalSettings(settings("foo/bar")));
+
+        Settings settings = settings("foo/bar");
+        settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_BULK_LOAD_REFRESH_INTERVAL, "30s");
+        assertNull(BulkLoad.originalSettings(settings));
+    }
+
+    private Settings settings(String resource) {
+        Settings settings = new TestSettings();
+        settings.setResourceWrite(resource);
+        return settings;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.serialization.JdkBytesConverter;
+import org.elasticsearch.hadoop.serialization.MapFieldExtractor;
+import org.elasticsearch.hadoop.serialization.builder.JdkValueWriter;
+import org.elasticsearch.hadoop.serialization.bulk.MetadataExtractor;
+import org.elasticsearch.hadoop.serialization.field.FieldExtractor;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.TestSettings;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BulkSerializerPoolTest {
+
+    private Settings settings;
+
+    private static class RecordingPool extends BulkSerializerPool {
+        final List<String> entries = new ArrayList<String>();
+
+        RecordingPool(Settings settings, int threads, int slots) {
+            this(settings, null, threads, slots);
+        }
+
+        RecordingPool(Settings settings, MetadataExtractor metaExtractor, int threads, int slots) {
+            super(settings, null, metaExtractor, threads, slots);
+        }
+
+        @Override
+        protected void write(BytesArray entry) {
+            entries.add(entry.toString());
+        }
+    }
+
+    @Before
+    public void before() {
+        settings = new TestSettings();
+        InitializationUtils.setValueWriterIfNotSet(settings, JdkValueWriter.class, null);
+        InitializationUtils.setFieldExtractorIfNotSet(settings, MapFieldExtractor.class, null);
+        InitializationUtils.setBytesConverterIfNeeded(settings, JdkBytesConverter.class, null);
+        settings.setResourceWrite("foo/bar");
+    }
+
+    @Test
+    public void testEntriesWrittenInOrder() {
+        RecordingPool pool = new RecordingPool(settings, 3, 8);
+        int count = 1000;
+        for (int i = 0; i < count; i++) {
+            pool.write(doc(i));
+        }
+        pool.close();
+
+        assertEquals(count, pool.entries.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals("{\"index\":{}}\n{\"id\":" + i + "}\n", pool.entries.get(i));
+        }
+    }
+
+    @Test
+    public void testDrain() {
+        RecordingPool pool = new RecordingPool(settings, 2, 4);
+        pool.write(doc(1));
+        pool.write(doc(2));
+        pool.drain();
+        assertEquals(2, pool.entries.size());
+        pool.close();
+        assertEquals(2, pool.entries.size());
+    }
+
+    @Test(expected = EsHadoopIllegalStateException.class)
+    public void testWriteAfterClose() {
+        RecordingPool pool = new RecordingPool(settings, 1, 1);
+        pool.close();
+        pool.write(Collections.emptyMap());
+    }
+
+    @Test
+    public void testMetadataExtractor() {
+        MetadataExtractor metaExtractor = new MetadataExtractor() {
+            @Override
+            public FieldExtractor get(Metadata metadata) {
+                if (metadata != Metadata.ID) {
+                    return null;
+                }
+                return new FieldExtractor() {
+                    @Override
+                    public Object field(Object target) {
+                        return ((Map<?, ?>) target).get("id");
+                    }
+                };
+            }
+        };
+        RecordingPool pool = new RecordingPool(settings, metaExtractor, 2, 4);
+        pool.write(doc(7));
+        pool.close();
+        assertEquals(1, pool.entries.size());
+        assertTrue(pool.entries.get(0), pool.entries.get(0).startsWith("{\"index\":{\"_id\":"));
+    }
+
+    @Test(timeout = 5000)
+    public void testThreadsStoppedOnFailure() throws Exception {
+        RecordingPool pool = new RecordingPool(settings, 2, 1) {
+            @Override
+            protected Object takeOver(Object handle, int slot) {
+                throw new EsHadoopIllegalStateException("cannot serialize");
+            }
+        };
+        try {
+            pool.write(doc(1));
+            pool.write(doc(2));
+            fail("expected the serialization failure");
+        } catch (EsHadoopIllegalStateException ex) {
+            assertEquals("cannot serialize", ex.getMessage());
+        }
+        // no close() - the threads are stopped nevertheless
+        while (serializerThreads() > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static int serializerThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("es-hadoop-serializer-") && thread.isAlive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Map<String, Object> doc(int id) {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("id", id);
+        return map;
+    }
+}
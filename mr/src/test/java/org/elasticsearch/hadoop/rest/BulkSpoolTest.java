@@ -0,0 +1,179 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.elasticsearch.hadoop.EsHadoopException;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.TestSettings;
+import org.elasticsearch.hadoop.util.TrackingBytesArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BulkSpoolTest {
+
+    private File dir;
+    private Settings settings;
+    private RecordingSpool spool;
+    private BytesArray ba;
+
+    private static class RecordingSpool extends BulkSpool {
+        final List<String> batches = Collections.synchronizedList(new ArrayList<String>());
+        volatile int failures = 0;
+        volatile RuntimeException error;
+        // blocks the replay (ignoring interrupts) until reset
+        volatile boolean stuck = false;
+        volatile boolean sending = false;
+
+        RecordingSpool(Settings settings, int segmentSize) {
+            super(settings, new Resource(settings, false), segmentSize);
+        }
+
+        @Override
+        protected boolean send(TrackingBytesArray batch) throws InterruptedException {
+            if (error != null) {
+                throw error;
+            }
+            sending = true;
+            while (stuck) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException ex) {
+                    // ignore
+                }
+            }
+            while (failures > 0) {
+                failures--;
+                // simulate the retry wait
+                Thread.sleep(10);
+            }
+            batches.add(batch.toString());
+            return true;
+        }
+    }
+
+    @Before
+    public void before() throws Exception {
+        dir = File.createTempFile("spool-test", "");
+        dir.delete();
+        dir.mkdirs();
+
+        settings = new TestSettings();
+        settings.setResourceWrite("foo/bar");
+        settings.setProperty(ConfigurationOptions.ES_BATCH_WRITE_SPOOL_DIR, dir.getAbsolutePath());
+        settings.setProperty(ConfigurationOptions.ES_BATCH_SIZE_ENTRIES, "2");
+        spool = new RecordingSpool(settings, 16);
+    }
+
+    @After
+    public void after() {
+        spool.failures = 0;
+        spool.close();
+        assertEquals(0, dir.list().length);
+        dir.delete();
+    }
+
+    @Test
+    public void testReplayInOrder() throws Exception {
+        spool.failures = 2;
+        assertTrue(spool.append(entries("a", "bb", "ccc"), ba));
+        assertTrue(spool.append(entries("dddd", "e"), ba));
+
+        assertTrue(spool.awaitDrain(5000));
+        assertTrue(spool.isEmpty());
+        // batches are limited to 2 entries
+        assertEquals("[abb, cccdddd, e]", spool.batches.toString());
+    }
+
+    @Test
+    public void testEntryLargerThanSegment() throws Exception {
+        String large = "0123456789012345678901234567890123456789";
+        assertTrue(spool.append(entries("a", large, "b"), ba));
+        assertTrue(spool.awaitDrain(5000));
+        assertEquals("[a" + large + ", b]", spool.batches.toString());
+    }
+
+    @Test
+    public void testSegmentUnmapped() throws Exception {
+        File file = new File(dir, "segment");
+        BulkSpool.Segment segment = new BulkSpool.Segment(file, 16);
+        segment.write("abc".getBytes(), 0, 3);
+        // supported by the JDKs the tests run on (through the buffer cleaner or Unsafe#invokeCleaner)
+        assertTrue(segment.unmap());
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testFull() throws Exception {
+        settings.setProperty(ConfigurationOptions.ES_BATCH_WRITE_SPOOL_SIZE, "10b");
+        spool.close();
+        spool = new RecordingSpool(settings, 16);
+        spool.failures = Integer.MAX_VALUE;
+        // 4 bytes prefix per entry
+        assertTrue(spool.append(entries("a"), ba));
+        assertFalse(spool.append(entries("bb"), ba));
+        assertEquals(1, spool.pendingEntries());
+    }
+
+    @Test(expected = EsHadoopException.class)
+    public void testReplayFailure() throws Exception {
+        spool.error = new EsHadoopInvalidRequest("bad entry");
+        spool.append(entries("a"), ba);
+        spool.awaitDrain(5000);
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseWhileReplaying() throws Exception {
+        settings.setProperty(ConfigurationOptions.ES_BATCH_WRITE_RETRY_WAIT, "10ms");
+        spool.close();
+        spool = new RecordingSpool(settings, 16);
+        spool.stuck = true;
+        assertTrue(spool.append(entries("a", "bb", "ccc"), ba));
+        while (!spool.sending) {
+            Thread.sleep(10);
+        }
+
+        // the replayer is stuck in a request - the segments are released only once it is done
+        spool.close();
+        assertTrue(dir.list().length > 0);
+        spool.stuck = false;
+        while (dir.list().length > 0) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, spool.pendingEntries());
+    }
+
+    private TrackingBytesArray entries(String... entries) {
+        ba = new BytesArray(64);
+        TrackingBytesArray data = new TrackingBytesArray(ba);
+        for (String entry : entries) {
+            data.copyFrom(new BytesArray(entry));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.serialization.dto.Node;
+import org.elasticsearch.hadoop.serialization.dto.Shard;
+import org.elasticsearch.hadoop.util.TestSettings;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DiscoverySnapshotTest {
+
+    private static final Log log = LogFactory.getLog(DiscoverySnapshotTest.class);
+
+    private Settings settings;
+
+    @Before
+    public void before() {
+        settings = new TestSettings();
+        settings.setResourceWrite("foo/bar");
+        settings.setProperty(ConfigurationOptions.ES_NODES_DISCOVERY_SNAPSHOT, "true");
+        settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_SNAPSHOT_RESOURCE, "foo/bar");
+        settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_SNAPSHOT_SHARD_NODES, "10.0.0.1:9200,10.0.0.2:9201");
+        settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_SNAPSHOT_TIME, String.valueOf(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void testAvailable() {
+        assertTrue(DiscoverySnapshot.isAvailable(settings, log));
+        assertEquals(Arrays.asList("10.0.0.1:9200", "10.0.0.2:9201"), DiscoverySnapshot.primaryShardNodes(settings));
+    }
+
+    @Test
+    public void testDisabled() {
+        settings.setProperty(ConfigurationOptions.ES_NODES_DISCOVERY_SNAPSHOT, "false");
+        assertFalse(DiscoverySnapshot.isAvailable(settings, log));
+    }
+
+    @Test
+    public void testExpired() {
+        settings.setProperty(ConfigurationOptions.ES_NODES_DISCOVERY_SNAPSHOT_TTL, "1m");
+        settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_SNAPSHOT_TIME, String.valueOf(System.currentTimeMillis() - 2 * 60 * 1000));
+        assertFalse(DiscoverySnapshot.isAvailable(settings, log));
+    }
+
+    @Test
+    public void testDifferentResource() {
+        settings.setResourceWrite("foo/baz");
+        assertFalse(DiscoverySnapshot.isAvailable(settings, log));
+    }
+
+    @Test
+    public void testBulkLoadSkipsShardNodes() {
+        Settings job = new TestSettings();
+        job.setResourceWrite("foo/bar");
+        job.setProperty(ConfigurationOptions.ES_NODES_DISCOVERY_SNAPSHOT, "true");
+        job.setProperty(ConfigurationOptions.ES_NODES_DISCOVERY, "false");
+        job.setProperty(ConfigurationOptions.ES_INDEX_BULK_LOAD, "true");
+        job.setProperty(InternalConfigurationOptions.INTERNAL_ES_VERSION, "1.4.0");
+
+        // the index does not exist yet (created when the job is set up) so the cluster is not queried
+        assertTrue(DiscoverySnapshot.createIfNeeded(job, log));
+        assertTrue(DiscoverySnapshot.isAvailable(job, log));
+        assertTrue(DiscoverySnapshot.primaryShardNodes(job).isEmpty());
+    }
+
+    @Test
+    public void testShardNodesOrdered() {
+        Map<Shard, Node> shards = new LinkedHashMap<Shard, Node>();
+        shards.put(shard(1), node("10.0.0.2", 9201));
+        shards.put(shard(0), node("10.0.0.1", 9200));
+        assertEquals(Arrays.asList("10.0.0.1:9200", "10.0.0.2:9201"), DiscoverySnapshot.shardNodes(shards));
+    }
+
+    private Shard shard(int id) {
+        Map<String, Object> data = new LinkedHashMap<String, Object>();
+        data.put("state", "STARTED");
+        data.put("shard", id);
+        data.put("index", "foo");
+        data.put("node", "node-" + id);
+        data.put("primary", Boolean.TRUE);
+        return new Shard(data);
+    }
+
+    private Node node(String ip, int port) {
+        Map<String, Object> data = new LinkedHashMap<String, Object>();
+        data.put("name", ip);
+        data.put("http_address", "inet[/" + ip + ":" + port + "]");
+        return new Node(ip, data);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.rest.RestService.PartitionDefinition;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ParallelPartitionReaderTest {
+
+    private static class TestReader extends ParallelPartitionReader {
+        private final int hitsPerPartition;
+        private final String failingShard;
+
+        TestReader(int partitions, int threads, int capacity, int hitsPerPartition, String failingShard) {
+            super(partitions(partitions), threads, capacity, LogFactory.getLog(ParallelPartitionReaderTest.class));
+            this.hitsPerPartition = hitsPerPartition;
+            this.failingShard = failingShard;
+        }
+
+        @Override
+        protected void read(PartitionDefinition partition) throws InterruptedException {
+            if (partition.shardId.equals(failingShard)) {
+                throw new EsHadoopIllegalStateException("shard " + failingShard + " failed");
+            }
+            for (int i = 0; i < hitsPerPartition; i++) {
+                push(new Object[] { partition.shardId + "-" + i, null });
+            }
+        }
+    }
+
+    private static List<PartitionDefinition> partitions(int count) {
+        List<PartitionDefinition> partitions = new ArrayList<PartitionDefinition>();
+        for (int i = 0; i < count; i++) {
+            partitions.add(new PartitionDefinition("127.0.0.1", 9200, "node", "id", String.valueOf(i), true, null, null));
+        }
+        return partitions;
+    }
+
+    @Test
+    public void testReadAllPartitions() throws Exception {
+        TestReader reader = new TestReader(5, 2, 3, 10, null);
+        Set<Object> ids = new HashSet<Object>();
+        while (reader.hasNext()) {
+            assertTrue(ids.add(reader.next()[0]));
+        }
+        reader.close();
+
+        assertEquals(50, ids.size());
+        assertTrue(ids.contains("4-9"));
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void testNoPartitions() throws Exception {
+        TestReader reader = new TestReader(0, 4, 10, 10, null);
+        assertFalse(reader.hasNext());
+        reader.close();
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        TestReader reader = new TestReader(3, 1, 100, 1, "1");
+        try {
+            while (reader.hasNext()) {
+                reader.next();
+            }
+            fail("expected the partition failure");
+        } catch (EsHadoopIllegalStateException ex) {
+            assertEquals("shard 1 failed", ex.getMessage());
+        }
+        assertFalse(reader.hasNext());
+    }
+
+    @Test(timeout = 5000)
+    public void testCloseWithBlockedReaders() throws Exception {
+        TestReader reader = new TestReader(4, 4, 1, 1000, null);
+        assertTrue(reader.hasNext());
+        reader.next();
+        // the readers are waiting for room in the queue
+        reader.close();
+        assertFalse(reader.hasNext());
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseWithStuckReader() throws Exception {
+        ParallelPartitionReader reader = new ParallelPartitionReader(partitions(1), 1, 1, LogFactory.getLog(ParallelPartitionReaderTest.class)) {
+            @Override
+            protected void read(PartitionDefinition partition) throws InterruptedException {
+                push(new Object[] { "0", null });
+                // simulates a reader blocked on the network (which ignores interrupts)
+                long end = System.currentTimeMillis() + 8000;
+                while (System.currentTimeMillis() < end) {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException ex) {
+                        // ignore
+                    }
+                }
+            }
+        };
+        assertTrue(reader.hasNext());
+        long start = System.currentTimeMillis();
+        reader.close();
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+}
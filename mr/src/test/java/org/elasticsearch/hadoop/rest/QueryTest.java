@@ -18,11 +18,13 @@
  */
 package org.elasticsearch.hadoop.rest;
 
+import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
 import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.util.TestSettings;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class QueryTest {
@@ -40,4 +42,41 @@ public class QueryTest {
         cfg.setQuery("?q=name:bucket");
         assertTrue(QueryBuilder.query(cfg).toString().contains("foo/bar/_search?q=name:bucket&"));
     }
+
+    @Test
+    public void testFilterWithQueryDsl() {
+        cfg.setResourceRead("foo/bar");
+        cfg.setQuery("{ \"query\" : { \"term\" : { \"user\" : \"costinl\" } }, \"min_score\" : 1 }");
+        cfg.setProperty(InternalConfigurationOptions.INTERNAL_ES_QUERY_FILTER, "{\"range\":{\"age\":{\"gt\":21}}}");
+        assertEquals("{\"query\":{\"filtered\":{\"query\":{\"term\":{\"user\":\"costinl\"}},\"filter\":{\"range\":{\"age\":{\"gt\":21}}}}},\"min_score\":1}",
+                QueryBuilder.query(cfg).body().toString());
+    }
+
+    @Test
+    public void testFilterWithMatchAll() {
+        cfg.setResourceRead("foo/bar");
+        cfg.setProperty(InternalConfigurationOptions.INTERNAL_ES_QUERY_FILTER, "{\"missing\":{\"field\":\"age\"}}");
+        assertEquals("{\"query\":{\"filtered\":{\"query\":{\"match_all\":{}},\"filter\":{\"missing\":{\"field\":\"age\"}}}}}",
+                QueryBuilder.query(cfg).body().toString());
+    }
+
+    @Test
+    public void testFilterWithUriQuery() {
+        cfg.setResourceRead("foo/bar");
+        cfg.setQuery("?q=name:bucket");
+        cfg.setProperty(InternalConfigurationOptions.INTERNAL_ES_QUERY_FILTER, "{\"term\":{\"age\":21}}");
+        QueryBuilder query = QueryBuilder.query(cfg);
+        assertTrue(query.toString().contains("foo/bar/_search?q=name:bucket&"));
+        assertEquals("{\"post_filter\":{\"term\":{\"age\":21}}}", query.body().toString());
+    }
+
+    @Test
+    public void testCountQuery() {
+        cfg.setResourceRead("foo/bar");
+        cfg.setQuery("?q=name:bucket");
+        QueryBuilder query = QueryBuilder.query(cfg).shard("1").fields("name");
+        // scroll params are dropped even once assembled
+        query.toString();
+        assertEquals("foo/bar/_search?q=name:bucket&search_type=count", query.assembleCount());
+    }
 }
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.elasticsearch.hadoop.rest.RestService.PartitionDefinition;
+import org.elasticsearch.hadoop.rest.RestService.PartitionGroup;
 import org.elasticsearch.hadoop.serialization.dto.Node;
 import org.elasticsearch.hadoop.serialization.dto.Shard;
 import org.junit.Before;
@@ -167,4 +168,44 @@ public class RestServiceTest {
         List<PartitionDefinition> results = RestService.assignPartitions(pds, 6, 7);
         assertThat(results.size(), is(0));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGroupPartitionsByNode() throws Exception {
+        List<PartitionDefinition> parts = Arrays.asList(partition("a", "0"), partition("b", "1"), partition("a", "2"), partition("b", "3"));
+        Map<String, long[]> sizes = new LinkedHashMap<String, long[]>();
+        sizes.put("a/0", new long[] { 10, 100 });
+        sizes.put("a/2", new long[] { 20, 200 });
+
+        List<PartitionGroup> groups = RestService.groupPartitions(parts, sizes, 100, 1000);
+        assertThat(groups.size(), is(2));
+        assertEquals(Arrays.asList(parts.get(0), parts.get(2)), groups.get(0).partitions);
+        assertThat(groups.get(0).docs, is(30L));
+        assertThat(groups.get(0).bytes, is(300L));
+        assertEquals(Arrays.asList(parts.get(1), parts.get(3)), groups.get(1).partitions);
+    }
+
+    @Test
+    public void testGroupPartitionsBounded() throws Exception {
+        List<PartitionDefinition> parts = Arrays.asList(partition("a", "0"), partition("a", "1"), partition("a", "2"), partition("a", "3"));
+        Map<String, long[]> sizes = new LinkedHashMap<String, long[]>();
+        sizes.put("a/0", new long[] { 60, 10 });
+        sizes.put("a/1", new long[] { 30, 10 });
+        // larger than the bound
+        sizes.put("a/2", new long[] { 150, 10 });
+        sizes.put("a/3", new long[] { 10, 10 });
+
+        List<PartitionGroup> groups = RestService.groupPartitions(parts, sizes, 100, 1000);
+        assertThat(groups.size(), is(3));
+        assertEquals(Arrays.asList(parts.get(0), parts.get(1)), groups.get(0).partitions);
+        assertEquals(Arrays.asList(parts.get(2)), groups.get(1).partitions);
+        assertEquals(Arrays.asList(parts.get(3)), groups.get(2).partitions);
+
+        // bounded by size
+        groups = RestService.groupPartitions(parts, sizes, 1000, 25);
+        assertThat(groups.size(), is(2));
+    }
+
+    private PartitionDefinition partition(String node, String shard) {
+        return new PartitionDefinition("localhost", 9200, node, node, shard, true, null, null);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.serialization.ScrollReader;
+import org.elasticsearch.hadoop.util.TestSettings;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ScrollQueryTest {
+
+    private int pages = 0;
+
+    @Test
+    public void testNoLimit() {
+        assertEquals(12, count(new ScrollQuery(repository(), "id", 12, null)));
+        assertEquals(3, pages);
+    }
+
+    @Test
+    public void testLimit() {
+        ScrollQuery query = new ScrollQuery(repository(), "id", 12, 5, null);
+        assertEquals(5, query.getSize());
+        assertEquals(5, count(query));
+        // the rest of the pages are not fetched
+        assertEquals(2, pages);
+    }
+
+    @Test
+    public void testSizeCappedByLimit() {
+        Settings settings = new TestSettings();
+        settings.setResourceRead("foo/bar");
+        settings.setProperty("es.scroll.limit", "10");
+        assertTrue(QueryBuilder.query(settings).toString().contains("size=10"));
+    }
+
+    private static int count(ScrollQuery query) {
+        int count = 0;
+        while (query.hasNext()) {
+            query.next();
+            count++;
+        }
+        return count;
+    }
+
+    // returns pages of 4 hits
+    private RestRepository repository() {
+        Settings settings = new TestSettings();
+        settings.setResourceRead("foo/bar");
+        return new RestRepository(settings) {
+            @Override
+            public List<Object[]> scroll(String scrollId, ScrollReader reader) {
+                pages++;
+                List<Object[]> page = new ArrayList<Object[]>();
+                for (int i = 0; i < 4; i++) {
+                    page.add(new Object[] { String.valueOf(i), null });
+                }
+                return page;
+            }
+        };
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.mr.WritableValueReader;
+import org.elasticsearch.hadoop.serialization.ScrollReader;
+import org.elasticsearch.hadoop.util.TestSettings;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ScrollReaderReuseTest {
+
+    @Test
+    public void testSameContentWithReuse() throws Exception {
+        assertEquals(toStrings(read(false)), toStrings(read(true)));
+    }
+
+    @Test
+    public void testFieldNamesShared() throws Exception {
+        List<Object[]> hits = read(true);
+        // both contain the 'links' field
+        Map<?, ?> first = (Map<?, ?>) hits.get(1)[1];
+        Map<?, ?> second = (Map<?, ?>) hits.get(2)[1];
+        Text name = (Text) first.keySet().iterator().next();
+        assertSame(name, findKey(second, name));
+    }
+
+    @Test
+    public void testObjectsRecycledAcrossPages() throws Exception {
+        WritableValueReader valueReader = valueReader(true);
+        ScrollReader reader = new ScrollReader(valueReader, null, false, "_metadata", false);
+
+        List<Object[]> page = reader.read(getClass().getResourceAsStream("scroll-source.json"));
+        Object map = page.get(0)[1];
+        Object id = page.get(0)[0];
+        String content = map.toString();
+
+        page = reader.read(getClass().getResourceAsStream("scroll-source.json"));
+        assertSame(map, page.get(0)[1]);
+        assertSame(id, page.get(0)[0]);
+        assertEquals(content, page.get(0)[1].toString());
+    }
+
+    @Test
+    public void testNoReuseByDefault() throws Exception {
+        WritableValueReader valueReader = valueReader(false);
+        ScrollReader reader = new ScrollReader(valueReader, null, false, "_metadata", false);
+
+        Object map = reader.read(getClass().getResourceAsStream("scroll-source.json")).get(0)[1];
+        assertNotSame(map, reader.read(getClass().getResourceAsStream("scroll-source.json")).get(0)[1]);
+    }
+
+    private List<Object[]> read(boolean reuse) throws Exception {
+        ScrollReader reader = new ScrollReader(valueReader(reuse), null, false, "_metadata", false);
+        return reader.read(getClass().getResourceAsStream("scroll-source.json"));
+    }
+
+    private WritableValueReader valueReader(boolean reuse) {
+        Settings settings = new TestSettings();
+        settings.setProperty(ConfigurationOptions.ES_READ_OBJECT_REUSE, Boolean.toString(reuse));
+        WritableValueReader reader = new WritableValueReader();
+        reader.setSettings(settings);
+        return reader;
+    }
+
+    private static Object findKey(Map<?, ?> map, Object key) {
+        for (Object k : map.keySet()) {
+            if (k.equals(key)) {
+                return k;
+            }
+        }
+        return null;
+    }
+
+    private static List<String> toStrings(List<Object[]> hits) {
+        List<String> list = new ArrayList<String>();
+        for (Object[] hit : hits) {
+            list.add(hit[0] + "=" + ((Writable) hit[1]));
+        }
+        return list;
+    }
+}
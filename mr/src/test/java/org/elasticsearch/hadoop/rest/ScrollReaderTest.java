@@ -25,10 +25,20 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.elasticsearch.hadoop.mr.WritableValueReader;
 import org.elasticsearch.hadoop.serialization.ScrollReader;
 import org.elasticsearch.hadoop.serialization.builder.JdkValueReader;
 import org.elasticsearch.hadoop.serialization.dto.mapping.Field;
+import org.elasticsearch.hadoop.serialization.json.JacksonSmile;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.FastByteArrayInputStream;
+import org.elasticsearch.hadoop.util.FastByteArrayOutputStream;
+import org.elasticsearch.hadoop.util.IOUtils;
+import org.elasticsearch.hadoop.util.StringUtils;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -36,7 +46,9 @@ import org.junit.runners.Parameterized.Parameters;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
 
 @RunWith(Parameterized.class)
 public class ScrollReaderTest {
@@ -44,15 +56,17 @@ public class ScrollReaderTest {
     private boolean readMetadata = false;
     private String metadataField;
     private boolean readAsJson = false;
+    private boolean lazySource = false;
 
-    public ScrollReaderTest(boolean readMetadata, String metadataField) {
+    public ScrollReaderTest(boolean readMetadata, String metadataField, boolean lazySource) {
         this.readMetadata = readMetadata;
         this.metadataField = metadataField;
+        this.lazySource = lazySource;
     }
 
     @Test
     public void testScrollWithFields() throws IOException {
-        ScrollReader reader = new ScrollReader(new JdkValueReader(), null, readMetadata, metadataField, readAsJson);
+        ScrollReader reader = new ScrollReader(new JdkValueReader(), null, readMetadata, metadataField, readAsJson, lazySource);
         InputStream stream = getClass().getResourceAsStream("scroll-fields.json");
         List<Object[]> read = reader.read(stream);
         assertEquals(3, read.size());
@@ -62,7 +76,7 @@ public class ScrollReaderTest {
 
     @Test
     public void testScrollWithMatchedQueries() throws IOException {
-        ScrollReader reader = new ScrollReader(new JdkValueReader(), null, readMetadata, metadataField, readAsJson);
+        ScrollReader reader = new ScrollReader(new JdkValueReader(), null, readMetadata, metadataField, readAsJson, lazySource);
         InputStream stream = getClass().getResourceAsStream("scroll-matched-queries.json");
         List<Object[]> read = reader.read(stream);
         assertEquals(3, read.size());
@@ -74,7 +88,7 @@ public class ScrollReaderTest {
     public void testScrollWithNestedFields() throws IOException {
         InputStream stream = getClass().getResourceAsStream("scroll-source-mapping.json");
         Field fl = Field.parseField(new ObjectMapper().readValue(stream, Map.class));
-        ScrollReader reader = new ScrollReader(new JdkValueReader(), fl, readMetadata, metadataField, readAsJson);
+        ScrollReader reader = new ScrollReader(new JdkValueReader(), fl, readMetadata, metadataField, readAsJson, lazySource);
         stream = getClass().getResourceAsStream("scroll-source.json");
 
         List<Object[]> read = reader.read(stream);
@@ -92,7 +106,7 @@ public class ScrollReaderTest {
 
     @Test
     public void testScrollWithSource() throws IOException {
-        ScrollReader reader = new ScrollReader(new JdkValueReader(), null, readMetadata, metadataField, readAsJson);
+        ScrollReader reader = new ScrollReader(new JdkValueReader(), null, readMetadata, metadataField, readAsJson, lazySource);
         InputStream stream = getClass().getResourceAsStream("scroll-source.json");
         List<Object[]> read = reader.read(stream);
         assertEquals(3, read.size());
@@ -100,9 +114,31 @@ public class ScrollReaderTest {
         assertTrue(((Map) objects[1]).containsKey("source"));
     }
 
+    @Test
+    public void testScrollWithSourceAsSmile() throws IOException {
+        // lazy documents rely on the JSON offsets
+        assumeFalse(lazySource);
+        ScrollReader reader = new ScrollReader(new JdkValueReader(), null, readMetadata, metadataField, readAsJson, lazySource);
+        assertTrue(reader.supportsBinaryContent());
+        BytesArray json = IOUtils.asBytes(getClass().getResourceAsStream("scroll-source.json"));
+        BytesArray smile = new BytesArray(json.length());
+        JsonParser parser = new JsonFactory().createJsonParser(json.bytes(), 0, json.length());
+        JsonGenerator generator = JacksonSmile.factory().createJsonGenerator(new FastByteArrayOutputStream(smile));
+        parser.nextToken();
+        generator.copyCurrentStructure(parser);
+        generator.close();
+
+        List<Object[]> expected = reader.read(new FastByteArrayInputStream(json));
+        List<Object[]> read = reader.read(new FastByteArrayInputStream(smile), true);
+        assertEquals(3, read.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(Arrays.asList(expected.get(i)), Arrays.asList(read.get(i)));
+        }
+    }
+
     @Test
     public void testScrollWithoutSource() throws IOException {
-        ScrollReader reader = new ScrollReader(new JdkValueReader(), null, readMetadata, metadataField, readAsJson);
+        ScrollReader reader = new ScrollReader(new JdkValueReader(), null, readMetadata, metadataField, readAsJson, lazySource);
         InputStream stream = getClass().getResourceAsStream("empty-source.json");
         List<Object[]> read = reader.read(stream);
         assertEquals(2, read.size());
@@ -117,7 +153,7 @@ public class ScrollReaderTest {
 
     @Test
     public void testScrollMultiValueList() throws IOException {
-        ScrollReader reader = new ScrollReader(new JdkValueReader(), null, readMetadata, metadataField, readAsJson);
+        ScrollReader reader = new ScrollReader(new JdkValueReader(), null, readMetadata, metadataField, readAsJson, lazySource);
         InputStream stream = getClass().getResourceAsStream("list-with-null.json");
         List<Object[]> read = reader.read(stream);
         assertEquals(1, read.size());
@@ -127,13 +163,64 @@ public class ScrollReaderTest {
         assertTrue(links.contains(null));
     }
 
+    @Test
+    public void testScrollLazyMatchesEager() throws IOException {
+        ScrollReader lazy = new ScrollReader(new JdkValueReader(), null, readMetadata, metadataField, readAsJson, true);
+        ScrollReader eager = new ScrollReader(new JdkValueReader(), null, readMetadata, metadataField, readAsJson, false);
+
+        List<Object[]> lazyRead = lazy.read(getClass().getResourceAsStream("scroll-source-lazy.json"));
+        List<Object[]> eagerRead = eager.read(getClass().getResourceAsStream("scroll-source-lazy.json"));
+        assertEquals(2, lazyRead.size());
+
+        Map doc = (Map) lazyRead.get(0)[1];
+        assertEquals("\u00dcn\u00efc\u00f6d\u00e9 \"quoted\"", doc.get("name"));
+        assertEquals(Arrays.asList("a", null, "b"), doc.get("tags"));
+        assertEquals(Boolean.TRUE, doc.get("esc\"aped"));
+        assertTrue(doc.containsKey("missing"));
+        assertNull(doc.get("missing"));
+        assertEquals(Double.valueOf(3.5), ((Map) ((Map) doc.get("nested")).get("inner")).get("value"));
+
+        for (int i = 0; i < lazyRead.size(); i++) {
+            assertEquals(eagerRead.get(i)[0], lazyRead.get(i)[0]);
+            assertEquals(eagerRead.get(i)[1], lazyRead.get(i)[1]);
+            assertEquals(((Map) eagerRead.get(i)[1]).keySet().toString(), ((Map) lazyRead.get(i)[1]).keySet().toString());
+        }
+
+        // readers converting the hits (such as Writables) copy every field anyway hence stay eager
+        assertTrue(new ScrollReader(new WritableValueReader(), null, readMetadata, metadataField, readAsJson, true).supportsBinaryContent());
+    }
+
+    @Test
+    public void testScrollLazyDecodesOnAccess() throws IOException {
+        ScrollReader reader = new ScrollReader(new JdkValueReader(), null, readMetadata, metadataField, readAsJson, true);
+
+        // the stream buffer is used as is - changing it after the read shows whether the fields are decoded on access or not
+        BytesArray page = IOUtils.asBytes(getClass().getResourceAsStream("scroll-source-lazy.json"));
+        List<Object[]> read = reader.read(new FastByteArrayInputStream(page));
+        assertEquals(2, read.size());
+
+        String content = page.toString();
+        // byte (not char) position
+        int plain = content.substring(0, content.indexOf("\"plain\"") + 1).getBytes(StringUtils.UTF_8).length;
+        System.arraycopy("PLAIN".getBytes(StringUtils.UTF_8), 0, page.bytes(), page.offset() + plain, 5);
+
+        // the reader moves on to another page before the fields are accessed
+        assertEquals(2, reader.read(getClass().getResourceAsStream("scroll-source-lazy.json")).size());
+
+        Map doc = (Map) read.get(1)[1];
+        assertEquals("PLAIN", doc.get("name"));
+        // decoded values are cached
+        System.arraycopy("plain".getBytes(StringUtils.UTF_8), 0, page.bytes(), page.offset() + plain, 5);
+        assertEquals("PLAIN", doc.get("name"));
+        assertEquals(Integer.valueOf(125), ((Map) read.get(0)[1]).get("count"));
+    }
 
     @Parameters
     public static Collection<Object[]> data() {
         return Arrays.asList(new Object[][] {
-                { Boolean.TRUE, "_metabutu" },
-                { Boolean.FALSE, "" },
-                { Boolean.TRUE, "_metabutu" },
-                { Boolean.FALSE, "" } });
+                { Boolean.TRUE, "_metabutu", Boolean.FALSE },
+                { Boolean.FALSE, "", Boolean.FALSE },
+                { Boolean.TRUE, "_metabutu", Boolean.TRUE },
+                { Boolean.FALSE, "", Boolean.TRUE } });
     }
 }
\ No newline at end of file
@@ -0,0 +1,275 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.elasticsearch.hadoop.EsHadoopException;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.TestSettings;
+import org.elasticsearch.hadoop.util.TrackingBytesArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SharedBulkProcessorTest {
+
+    private RecordingProcessor processor;
+
+    private static class RecordingProcessor extends SharedBulkProcessor {
+        final List<String> bulks = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch sending = new CountDownLatch(1);
+        volatile CountDownLatch gate;
+        // entry rejected (but retryable) by the cluster
+        volatile String rejected;
+        // entry failing the bulk request
+        volatile String invalid;
+        // failure when creating the client
+        volatile RuntimeException clientError;
+
+        RecordingProcessor(Settings settings) {
+            super("test", settings, new Resource(settings, false));
+        }
+
+        @Override
+        protected RestClient createClient() {
+            RuntimeException error = clientError;
+            if (error != null) {
+                clientError = null;
+                throw error;
+            }
+            return super.createClient();
+        }
+
+        @Override
+        protected BitSet send(RestClient client, TrackingBytesArray merged) {
+            sending.countDown();
+            try {
+                if (gate != null) {
+                    gate.await();
+                }
+            } catch (InterruptedException ex) {
+                throw new EsHadoopException(ex);
+            }
+            bulks.add(merged.toString());
+            // mimic the bulk response processing - written entries are removed in order
+            for (int i = 0; i < merged.entries();) {
+                String entry = merged.toString().substring(offset(merged, i), offset(merged, i) + merged.length(i));
+                if (entry.equals(invalid)) {
+                    throw new EsHadoopInvalidRequest("invalid entry " + entry);
+                }
+                if (entry.equals(rejected)) {
+                    i++;
+                }
+                else {
+                    merged.remove(i);
+                }
+            }
+            return merged.leftoversPosition();
+        }
+
+        private int offset(TrackingBytesArray merged, int index) {
+            int offset = 0;
+            for (int i = 0; i < index; i++) {
+                offset += merged.length(i);
+            }
+            return offset;
+        }
+    }
+
+    private static class Writer extends Thread {
+        final SharedBulkProcessor processor;
+        final BytesArray ba = new BytesArray(64);
+        final TrackingBytesArray data = new TrackingBytesArray(ba);
+        BitSet result;
+
+        Writer(SharedBulkProcessor processor, String... entries) {
+            this.processor = processor;
+            for (String entry : entries) {
+                data.copyFrom(new BytesArray(entry));
+            }
+        }
+
+        @Override
+        public void run() {
+            result = processor.bulk(data, ba);
+        }
+    }
+
+    @Before
+    public void before() {
+        Settings settings = new TestSettings();
+        settings.setResourceWrite("foo/bar");
+        settings.setProperty(ConfigurationOptions.ES_BATCH_WRITE_SHARED_THREADS, "1");
+        processor = new RecordingProcessor(settings);
+    }
+
+    @After
+    public void after() {
+        processor.release();
+    }
+
+    @Test
+    public void testConcurrentWritersAggregated() throws Exception {
+        // hold the sender so that the following submissions pile up
+        processor.gate = new CountDownLatch(1);
+        Writer first = new Writer(processor, "a", "b");
+        first.start();
+        processor.sending.await();
+
+        Writer second = new Writer(processor, "c");
+        Writer third = new Writer(processor, "d", "e");
+        second.start();
+        third.start();
+        while (processor.pendingSubmissions() < 2) {
+            Thread.sleep(5);
+        }
+        processor.gate.countDown();
+
+        first.join(5000);
+        second.join(5000);
+        third.join(5000);
+
+        assertTrue(first.result.isEmpty());
+        assertTrue(second.result.isEmpty());
+        assertTrue(third.result.isEmpty());
+        assertEquals(2, processor.bulks.size());
+        assertEquals("ab", processor.bulks.get(0));
+        // the second and third writers share one bulk
+        assertEquals(3, processor.bulks.get(1).length());
+    }
+
+    @Test
+    public void testLeftoversAttributedToWriter() throws Exception {
+        processor.rejected = "c";
+        Writer writer = new Writer(processor, "a", "b");
+        writer.run();
+        assertTrue(writer.result.isEmpty());
+        assertEquals(0, writer.data.entries());
+
+        writer = new Writer(processor, "c", "d");
+        writer.run();
+        assertEquals(1, writer.result.cardinality());
+        assertTrue(writer.result.get(0));
+    }
+
+    @Test
+    public void testFailureAttributedToWriter() throws Exception {
+        processor.invalid = "c";
+        try {
+            new Writer(processor, "c").run();
+            fail("expected failure");
+        } catch (EsHadoopInvalidRequest ex) {
+            // expected
+        }
+
+        processor.invalid = null;
+        Writer writer = new Writer(processor, "d");
+        writer.run();
+        assertTrue(writer.result.isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void testClientFailureAttributedToWriter() throws Exception {
+        processor.clientError = new EsHadoopIllegalStateException("cannot create client");
+        try {
+            new Writer(processor, "a").run();
+            fail("expected failure");
+        } catch (EsHadoopIllegalStateException ex) {
+            assertEquals("cannot create client", ex.getMessage());
+        }
+
+        // the sender survives the failure
+        Writer writer = new Writer(processor, "b");
+        writer.run();
+        assertTrue(writer.result.isEmpty());
+        assertEquals(Collections.singletonList("b"), processor.bulks);
+    }
+
+    @Test(timeout = 5000)
+    public void testHandOffDoesNotWait() throws Exception {
+        // hold the sender - the hand-off returns regardless
+        processor.gate = new CountDownLatch(1);
+        SharedBulkProcessor.Handle handle = processor.handle(64);
+
+        Writer writer = new Writer(processor, "a", "b");
+        SharedBulkProcessor.Submission next = handle.handOff(writer.data, writer.ba);
+        assertNotSame(writer.ba, next.ba);
+        assertEquals(0, next.data.entries());
+        assertEquals(64, next.ba.capacity());
+
+        processor.sending.await();
+        processor.gate.countDown();
+        handle.await();
+        assertEquals(Collections.singletonList("ab"), processor.bulks);
+
+        // the written buffer is recycled
+        next.data.copyFrom(new BytesArray("c"));
+        assertSame(writer.ba, handle.handOff(next.data, next.ba).ba);
+        handle.await();
+        assertEquals("c", processor.bulks.get(1));
+    }
+
+    @Test(timeout = 5000)
+    public void testHandOffFailureReportedLater() throws Exception {
+        processor.rejected = "c";
+        SharedBulkProcessor.Handle handle = processor.handle(64);
+
+        Writer writer = new Writer(processor, "b", "c");
+        handle.handOff(writer.data, writer.ba);
+        try {
+            handle.await();
+            fail("expected failure");
+        } catch (EsHadoopException ex) {
+            assertTrue(ex.getMessage().contains("[1/2]"));
+        }
+
+        try {
+            writer = new Writer(processor, "d");
+            handle.handOff(writer.data, writer.ba);
+            fail("expected failure");
+        } catch (EsHadoopException ex) {
+            // still reported
+        }
+    }
+
+    @Test
+    public void testKeyIncludesClientOptions() throws Exception {
+        Settings settings = new TestSettings();
+        settings.setResourceWrite("foo/bar");
+        Resource resource = new Resource(settings, false);
+        String key = SharedBulkProcessor.key(settings, resource);
+
+        Settings other = new TestSettings();
+        other.setResourceWrite("foo/bar");
+        assertEquals(key, SharedBulkProcessor.key(other, resource));
+
+        other.setProperty(ConfigurationOptions.ES_NET_HTTP_AUTH_USER, "user");
+        assertFalse(key.equals(SharedBulkProcessor.key(other, resource)));
+    }
+}
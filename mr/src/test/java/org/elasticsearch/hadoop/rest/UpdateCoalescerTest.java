@@ -0,0 +1,225 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.serialization.JdkBytesConverter;
+import org.elasticsearch.hadoop.serialization.MapFieldExtractor;
+import org.elasticsearch.hadoop.serialization.builder.JdkValueWriter;
+import org.elasticsearch.hadoop.serialization.bulk.BulkCommand;
+import org.elasticsearch.hadoop.serialization.bulk.BulkCommands;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.TestSettings;
+import org.elasticsearch.hadoop.util.TrackingBytesArray;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class UpdateCoalescerTest {
+
+    private BytesArray ba;
+    private TrackingBytesArray data;
+    private UpdateCoalescer coalescer;
+    private BulkCommand command;
+
+    @Before
+    public void before() {
+        ba = new BytesArray(1024);
+        data = new TrackingBytesArray(ba);
+        coalescer = new UpdateCoalescer();
+        command = BulkCommands.create(settings(ConfigurationOptions.ES_OPERATION_UPSERT), null);
+    }
+
+    @Test
+    public void testApplicable() {
+        assertFalse(UpdateCoalescer.isApplicable(new TestSettings()));
+        assertTrue(UpdateCoalescer.isApplicable(settings(ConfigurationOptions.ES_OPERATION_UPDATE)));
+        assertFalse(UpdateCoalescer.isApplicable(settings(ConfigurationOptions.ES_OPERATION_INDEX)));
+
+        Settings scripted = settings(ConfigurationOptions.ES_OPERATION_UPSERT);
+        scripted.setProperty(ConfigurationOptions.ES_UPDATE_SCRIPT, "counter += 1");
+        assertFalse(UpdateCoalescer.isApplicable(scripted));
+    }
+
+    @Test
+    public void testCoalesceSameId() {
+        write(doc(1, "a", 1));
+        write(doc(2, "b", 1));
+        write(doc(1, "c", 2));
+
+        assertEquals(2, data.entries());
+        assertEquals(
+                "{\"update\":{\"_id\":1}}\n{\"doc_as_upsert\":true,\"doc\":{\"id\":1,\"name\":\"c\",\"count\":2}}\n" +
+                "{\"update\":{\"_id\":2}}\n{\"doc_as_upsert\":true,\"doc\":{\"id\":2,\"name\":\"b\",\"count\":1}}\n", data.toString());
+    }
+
+    @Test
+    public void testIdenticalEntryDropped() {
+        write(doc(1, "a", 1));
+        int length = ba.length();
+        write(doc(1, "a", 1));
+
+        assertEquals(1, data.entries());
+        assertEquals(length, ba.length());
+        assertEquals("{\"update\":{\"_id\":1}}\n{\"doc_as_upsert\":true,\"doc\":{\"id\":1,\"name\":\"a\",\"count\":1}}\n", data.toString());
+    }
+
+    @Test
+    public void testPartialDocumentsNotMerged() {
+        Map<String, Object> nested = new LinkedHashMap<String, Object>();
+        nested.put("x", 1);
+        Map<String, Object> first = doc(1, "a", 1);
+        first.put("nested", nested);
+        write(first);
+
+        // the nested object is merged by Elasticsearch (not replaced) so both entries are needed
+        Map<String, Object> second = doc(1, "b", 2);
+        nested = new LinkedHashMap<String, Object>();
+        nested.put("y", 2);
+        second.put("nested", nested);
+        write(second);
+
+        // missing fields
+        Map<String, Object> third = new LinkedHashMap<String, Object>();
+        third.put("id", 1);
+        third.put("name", "c");
+        write(third);
+
+        assertEquals(3, data.entries());
+    }
+
+    @Test
+    public void testNestedOverwrite() {
+        Map<String, Object> nested = new LinkedHashMap<String, Object>();
+        nested.put("x", 1);
+        nested.put("y", "[1,2]");
+        Map<String, Object> first = doc(1, "a", 1);
+        first.put("nested", nested);
+        write(first);
+        int length = ba.length();
+
+        Map<String, Object> second = doc(1, "b", 2);
+        nested = new LinkedHashMap<String, Object>();
+        nested.put("y", 3);
+        nested.put("x", 4);
+        second.put("nested", nested);
+        write(second);
+
+        assertEquals(1, data.entries());
+        // the new entry is copied over the buffered one; the buffer does not grow
+        assertEquals(length, ba.length());
+        assertEquals("{\"update\":{\"_id\":1}}\n{\"doc_as_upsert\":true,\"doc\":{\"id\":1,\"name\":\"b\",\"count\":2,"
+                + "\"nested\":{\"y\":3,\"x\":4}}}\n", data.toString());
+    }
+
+    @Test
+    public void testNumbersPreserved() {
+        // entries as written by the integrations serializing the documents themselves
+        writeRaw("{\"update\":{\"_id\":1}}\n{\"doc\":{\"price\":19.90,\"ratio\":0.1000000000000000055511151231257827}}\n");
+        writeRaw("{\"update\":{\"_id\":1}}\n{\"doc\":{\"ratio\":0.10,\"price\":1.50}}\n");
+
+        assertEquals(1, data.entries());
+        assertEquals("{\"update\":{\"_id\":1}}\n{\"doc\":{\"ratio\":0.10,\"price\":1.50}}\n", data.toString());
+    }
+
+    @Test
+    public void testLongerEntryKeptSeparate() {
+        write(doc(1, "a", 1));
+        write(doc(2, "b", 1));
+        write(doc(1, "a-much-longer-name-than-before", 1));
+        assertEquals(3, data.entries());
+        // the buffered entry is left untouched and the new one kept as written
+        assertTrue(data.toString().startsWith("{\"update\":{\"_id\":1}}\n{\"doc_as_upsert\":true,\"doc\":{\"id\":1,\"name\":\"a\","));
+
+        // subsequent updates are coalesced with the latest entry
+        int length = ba.length();
+        write(doc(1, "c", 2));
+        assertEquals(3, data.entries());
+        assertEquals(length, ba.length());
+        assertTrue(data.toString().endsWith("{\"update\":{\"_id\":1}}\n{\"doc_as_upsert\":true,\"doc\":{\"id\":1,\"name\":\"c\",\"count\":2}}\n"));
+    }
+
+    @Test
+    public void testLeftoversCoverMergedWrites() {
+        write(doc(1, "a", 1));
+        write(doc(2, "b", 1));
+        write(doc(1, "c", 2));
+        write(doc(3, "d", 1));
+
+        // first entry (id 1) is successfully written
+        data.remove(0);
+        BitSet leftovers = data.leftoversPosition();
+        assertEquals(2, leftovers.cardinality());
+        assertTrue(leftovers.get(1));
+        assertTrue(leftovers.get(3));
+    }
+
+    @Test
+    public void testReset() {
+        write(doc(1, "a", 1));
+        coalescer.reset();
+        data.reset();
+        write(doc(1, "b", 2));
+        assertEquals(1, data.entries());
+        assertTrue(data.toString().contains("\"b\""));
+    }
+
+    private void write(Object object) {
+        int start = ba.length();
+        command.writeTo(object, ba);
+        if (!coalescer.coalesce(data, ba, start)) {
+            data.track(start);
+        }
+    }
+
+    private void writeRaw(String entry) {
+        int start = ba.length();
+        ba.add(entry);
+        if (!coalescer.coalesce(data, ba, start)) {
+            data.track(start);
+        }
+    }
+
+    private Map<String, Object> doc(int id, String name, int count) {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("id", id);
+        map.put("name", name);
+        map.put("count", count);
+        return map;
+    }
+
+    private Settings settings(String operation) {
+        Settings set = new TestSettings();
+        InitializationUtils.setValueWriterIfNotSet(set, JdkValueWriter.class, null);
+        InitializationUtils.setFieldExtractorIfNotSet(set, MapFieldExtractor.class, null);
+        InitializationUtils.setBytesConverterIfNeeded(set, JdkBytesConverter.class, null);
+
+        set.setProperty(ConfigurationOptions.ES_WRITE_OPERATION, operation);
+        set.setProperty(ConfigurationOptions.ES_UPDATE_COALESCE, "true");
+        set.setProperty(ConfigurationOptions.ES_MAPPING_ID, "id");
+        set.setResourceWrite("foo/bar");
+        return set;
+    }
+}
@@ -175,6 +175,52 @@ public class CommandTest {
         assertEquals(result, ba.toString());
     }
 
+    @Test
+    public void testIdPatternAcrossDocuments() throws Exception {
+        assumeFalse(jsonInput);
+        Settings settings = settings();
+        settings.setResourceWrite("foo-{s}/{n}");
+
+        BulkCommand command = create(settings);
+        String[] indices = { "v", "v", "w", "v" };
+        for (String index : indices) {
+            ((Map) data).put("s", index);
+            ba.reset();
+            command.write(data).copyTo(ba);
+            String result = "{\"" + operation + "\":{\"_index\":\"foo-" + index + "\",\"_type\":\"1\"" + (isUpdateOp() ? ",\"_id\":2" : "") + "}}";
+            assertEquals(result, ba.toString().substring(0, result.length()));
+        }
+    }
+
+    @Test
+    public void testMultipleDocumentsWithSameCommand() throws Exception {
+        Settings settings = settings();
+        settings.setProperty(ConfigurationOptions.ES_MAPPING_ROUTING, "s");
+
+        BulkCommand command = create(settings);
+        String result = prefix() + "\"_routing\":\"v\"}}" + map();
+
+        for (int i = 0; i < 3; i++) {
+            ba.reset();
+            command.write(data).copyTo(ba);
+            assertEquals(result, ba.toString());
+        }
+    }
+
+    @Test
+    public void testWriteToTarget() throws Exception {
+        Settings settings = settings();
+        settings.setProperty(ConfigurationOptions.ES_MAPPING_ROUTING, "s");
+
+        BulkCommand command = create(settings);
+        String result = prefix() + "\"_routing\":\"v\"}}" + map();
+
+        ba.add("[");
+        command.writeTo(data, ba);
+        command.writeTo(data, ba);
+        assertEquals("[" + result + result, ba.toString());
+    }
+
     @Test(expected = EsHadoopIllegalArgumentException.class)
     public void testIdMandatory() throws Exception {
         assumeTrue(ConfigurationOptions.ES_OPERATION_UPDATE.equals(operation));
@@ -104,4 +104,42 @@ public class JsonValuePathTest {
         assertEquals(1, vals.size());
         assertThat(vals.get(0).toString(), containsString("CA"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testObjectAndNestedField() throws Exception {
+        List<Object> vals = ParsingUtils.values(parser, "address.building", "address.building.floors", "small-object.nested.foo");
+        assertEquals(3, vals.size());
+        assertThat(vals.get(0).toString(), containsString("tall"));
+        assertEquals(10, vals.get(1));
+        assertEquals("nested-bar", vals.get(2));
+    }
+
+    @Test
+    public void testSamePathInMultipleSlots() throws Exception {
+        List<Object> vals = ParsingUtils.values(parser, "address.state", "age", "address.state");
+        assertEquals(3, vals.size());
+        assertEquals("NY", vals.get(0));
+        assertEquals(25, vals.get(1));
+        assertEquals("NY", vals.get(2));
+    }
+
+    @Test
+    public void testStopOnceAllPathsAreFound() throws Exception {
+        PathMatcher matcher = new PathMatcher("lastName", "trap.building.floors");
+        Object[] vals = new Object[2];
+        matcher.values(parser, vals);
+        assertEquals("Smith", vals[0]);
+        assertEquals(0, vals[1]);
+        // the parser is left right after the last match, inside the trap object
+        assertEquals(Parser.Token.FIELD_NAME, parser.nextToken());
+        assertEquals("flats", parser.currentName());
+    }
+
+    @Test
+    public void testArraysAreNotTraversed() throws Exception {
+        List<Object> vals = ParsingUtils.values(parser, "phoneNumbers.type", "small-array", "state");
+        assertSame(ParsingUtils.NOT_FOUND, vals.get(0));
+        assertEquals("[\"foo\",\"bar\"]", vals.get(1));
+        assertEquals("CA", vals.get(2));
+    }
+}
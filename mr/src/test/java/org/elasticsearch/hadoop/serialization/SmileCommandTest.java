@@ -0,0 +1,165 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.serialization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.rest.InitializationUtils;
+import org.elasticsearch.hadoop.serialization.builder.JdkValueWriter;
+import org.elasticsearch.hadoop.serialization.bulk.BulkCommand;
+import org.elasticsearch.hadoop.serialization.bulk.BulkCommands;
+import org.elasticsearch.hadoop.serialization.json.JacksonSmile;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.StringUtils;
+import org.elasticsearch.hadoop.util.TestSettings;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class SmileCommandTest {
+
+    private final String operation;
+    private final boolean jsonInput;
+    private final boolean script;
+
+    @Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {
+                { ConfigurationOptions.ES_OPERATION_INDEX, false, false },
+                { ConfigurationOptions.ES_OPERATION_CREATE, false, false },
+                { ConfigurationOptions.ES_OPERATION_UPDATE, false, false },
+                { ConfigurationOptions.ES_OPERATION_UPSERT, false, false },
+                { ConfigurationOptions.ES_OPERATION_UPDATE, false, true },
+                { ConfigurationOptions.ES_OPERATION_UPSERT, false, true },
+                { ConfigurationOptions.ES_OPERATION_INDEX, true, false },
+                { ConfigurationOptions.ES_OPERATION_UPDATE, true, false },
+                { ConfigurationOptions.ES_OPERATION_UPSERT, true, true },
+        });
+    }
+
+    public SmileCommandTest(String operation, boolean jsonInput, boolean script) {
+        this.operation = operation;
+        this.jsonInput = jsonInput;
+        this.script = script;
+    }
+
+    @Test
+    public void testSameContentAsJson() throws Exception {
+        BytesArray json = new BytesArray(1024);
+        BulkCommands.create(settings(false), null).writeTo(document(), json);
+
+        BytesArray smile = new BytesArray(1024);
+        BulkCommands.create(settings(true), null).writeTo(document(), smile);
+
+        List<String> lines = StringUtils.tokenize(json.toString(), "\n");
+        List<JsonNode> expected = new ArrayList<JsonNode>();
+        ObjectMapper mapper = mapper(new ObjectMapper());
+        for (String line : lines) {
+            expected.add(mapper.readTree(line));
+        }
+        assertEquals(expected, decode(smile));
+    }
+
+    @Test
+    public void testMultipleDocuments() throws Exception {
+        BytesArray smile = new BytesArray(1024);
+        BulkCommand command = BulkCommands.create(settings(true), null);
+        command.writeTo(document(), smile);
+        int length = smile.length();
+        command.writeTo(document(), smile);
+
+        assertEquals(2 * length, smile.length());
+        List<JsonNode> lines = decode(smile);
+        assertEquals(lines.subList(0, lines.size() / 2), lines.subList(lines.size() / 2, lines.size()));
+    }
+
+    // splits the entries on the stream separator and decodes each SMILE document
+    private static List<JsonNode> decode(BytesArray smile) throws Exception {
+        ObjectMapper mapper = mapper(new ObjectMapper(JacksonSmile.factory()));
+        List<JsonNode> lines = new ArrayList<JsonNode>();
+        byte[] bytes = smile.bytes();
+        int start = 0;
+        for (int i = 0; i < smile.length(); i++) {
+            if (bytes[i] == JacksonSmile.STREAM_SEPARATOR) {
+                // each line is a standalone SMILE document
+                assertEquals(':', bytes[start]);
+                assertEquals(')', bytes[start + 1]);
+                lines.add(mapper.readTree(mapper.getJsonFactory().createJsonParser(bytes, start, i - start)));
+                start = i + 1;
+            }
+        }
+        assertEquals("trailing content", smile.length(), start);
+        return lines;
+    }
+
+    // compare the decimals exactly
+    private static ObjectMapper mapper(ObjectMapper mapper) {
+        mapper.configure(DeserializationConfig.Feature.USE_BIG_DECIMAL_FOR_FLOATS, true);
+        return mapper;
+    }
+
+    private Object document() {
+        if (jsonInput) {
+            return "{\"n\":1,\"s\":\"v\",\"d\":0.12345678901234567890,\"o\":{\"t\":[true,null]}}";
+        }
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("n", 1);
+        map.put("s", "v");
+        map.put("d", 1.5d);
+        map.put("o", Arrays.asList("x", "y"));
+        return map;
+    }
+
+    private Settings settings(boolean smile) {
+        Settings set = new TestSettings();
+
+        set.setProperty(ConfigurationOptions.ES_INPUT_JSON, Boolean.toString(jsonInput));
+        InitializationUtils.setValueWriterIfNotSet(set, JdkValueWriter.class, null);
+        InitializationUtils.setFieldExtractorIfNotSet(set, MapFieldExtractor.class, null);
+        InitializationUtils.setBytesConverterIfNeeded(set, JdkBytesConverter.class, null);
+
+        set.setProperty(ConfigurationOptions.ES_WRITE_OPERATION, operation);
+        set.setProperty(ConfigurationOptions.ES_NET_CONTENT_TYPE, (smile ? ConfigurationOptions.ES_NET_CONTENT_TYPE_SMILE
+                : ConfigurationOptions.ES_NET_CONTENT_TYPE_JSON));
+        set.setResourceWrite("foo/bar");
+        set.setProperty(ConfigurationOptions.ES_MAPPING_ROUTING, "s");
+        if (!ConfigurationOptions.ES_OPERATION_INDEX.equals(operation) && !ConfigurationOptions.ES_OPERATION_CREATE.equals(operation)) {
+            set.setProperty(ConfigurationOptions.ES_MAPPING_ID, "n");
+        }
+        if (script) {
+            set.setProperty(ConfigurationOptions.ES_UPDATE_SCRIPT, "counter += param1");
+            set.setProperty(ConfigurationOptions.ES_UPDATE_SCRIPT_PARAMS, "param1:n");
+        }
+        return set;
+    }
+}
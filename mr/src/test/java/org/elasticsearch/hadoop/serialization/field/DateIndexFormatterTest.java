@@ -18,6 +18,12 @@
  */
 package org.elasticsearch.hadoop.serialization.field;
 
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import javax.xml.bind.DatatypeConverter;
+
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -45,4 +51,51 @@ public class DateIndexFormatterTest {
         formatter.configure("MM-dd");
         assertThat(formatter.format("1969-08-20"), is("08-20"));
     }
+
+    @Test
+    public void testTimezoneOffsets() {
+        formatter.configure("YYYY.MM.dd.HH");
+        assertThat(formatter.format("2014-10-06T19:20:25+02:00"), is(jdkFormat("YYYY.MM.dd.HH", "2014-10-06T19:20:25+02:00")));
+        assertThat(formatter.format("2014-10-06T19:20:25-05:30"), is(jdkFormat("YYYY.MM.dd.HH", "2014-10-06T19:20:25-05:30")));
+        assertThat(formatter.format("2014-10-06T23:59:59.999Z"), is(jdkFormat("YYYY.MM.dd.HH", "2014-10-06T23:59:59.999Z")));
+    }
+
+    @Test
+    public void testNonIsoFallback() {
+        formatter.configure("YYYY.MM");
+        // year with more than 4 digits is not handled by the fast path
+        assertThat(formatter.format("12014-10-06"), is(jdkFormat("YYYY.MM", "12014-10-06")));
+        assertThat(formatter.format("2014-10-06T19:20:25.123456+01:00"), is(jdkFormat("YYYY.MM", "2014-10-06T19:20:25.123456+01:00")));
+    }
+
+    @Test
+    public void testCachedBucketsMatchJdk() {
+        String[] formats = { "YYYY.MM.dd", "yyyy-MM-dd-HH", "YYYY.ww", "yyyy-MM-dd'T'HH:mm", "yyyy-MM-dd-HH-z" };
+        for (String format : formats) {
+            formatter = new DateIndexFormatter();
+            formatter.configure(format);
+            // walk over a couple of days, going back and forth across bucket boundaries
+            Calendar calendar = DatatypeConverter.parseDateTime("2014-12-30T21:00:00Z");
+            for (int i = 0; i < 200; i++) {
+                calendar.add(Calendar.MINUTE, (i % 2 == 0 ? 47 : -13));
+                String value = DatatypeConverter.printDateTime(calendar);
+                assertThat(value, formatter.format(value), is(jdkFormat(format, value)));
+            }
+        }
+    }
+
+    @Test
+    public void testResolution() {
+        assertThat(DateIndexFormatter.resolution("YYYY.MM.dd"), is(24 * 60 * 60 * 1000L));
+        assertThat(DateIndexFormatter.resolution("YYYY.MM.dd-HH"), is(60 * 60 * 1000L));
+        assertThat(DateIndexFormatter.resolution("YYYY-MM-dd'T'mm"), is(60 * 1000L));
+        assertThat(DateIndexFormatter.resolution("'zone'-YYYY"), is(24 * 60 * 60 * 1000L));
+        assertThat(DateIndexFormatter.resolution("YYYY-Z"), is(0L));
+    }
+
+    private static String jdkFormat(String format, String value) {
+        SimpleDateFormat sdf = new SimpleDateFormat(format);
+        sdf.setTimeZone(TimeZone.getDefault());
+        return sdf.format(DatatypeConverter.parseDateTime(value).getTime());
+    }
 }
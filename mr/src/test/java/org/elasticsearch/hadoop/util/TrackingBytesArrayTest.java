@@ -19,6 +19,7 @@
 package org.elasticsearch.hadoop.util;
 
 import java.io.ByteArrayOutputStream;
+import java.util.BitSet;
 
 import org.junit.After;
 import org.junit.Before;
@@ -85,6 +86,68 @@ public class TrackingBytesArrayTest {
         assertEquals("abb", out.toString());
     }
 
+    @Test
+    public void testTrackDirectWrites() throws Exception {
+        BytesArray ba = new BytesArray(16);
+        data = new TrackingBytesArray(ba);
+        data.copyFrom(new BytesArray("a"));
+        int start = ba.length();
+        ba.add("bb");
+        data.track(start);
+        data.copyFrom(new BytesArray("ccc"));
+        assertEquals(3, data.entries());
+        assertEquals(2, data.length(1));
+
+        data.remove(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        data.writeTo(out);
+        assertEquals("bbccc", out.toString());
+    }
+
+    @Test
+    public void testTrackOtherArrays() throws Exception {
+        BytesArray first = new BytesArray("abc");
+        BytesArray second = new BytesArray("dd");
+        data = new TrackingBytesArray(new BytesArray(0));
+        data.track(first, 1, 2);
+        data.track(second, 0, 2);
+        assertEquals(2, data.entries());
+        assertEquals(4, data.length());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        data.writeTo(out);
+        assertEquals("bcdd", out.toString());
+
+        // the content is referenced, not copied
+        first.bytes()[1] = 'x';
+        data.remove(1);
+        assertEquals("xc", data.toString());
+    }
+
+    @Test
+    public void testMergedEntriesReportAllPositions() throws Exception {
+        BytesArray ba = new BytesArray(16);
+        data = new TrackingBytesArray(ba);
+        data.copyFrom(new BytesArray("a"));
+        data.copyFrom(new BytesArray("bb"));
+        // third addition, merged into the first entry
+        int start = ba.length();
+        ba.add("xyz");
+        data.merge(0, start, 3);
+        data.copyFrom(new BytesArray("c"));
+
+        assertEquals(3, data.entries());
+        assertEquals(6, data.length());
+        assertEquals("xyzbbc", data.toString());
+
+        data.remove(1);
+        BitSet leftovers = data.leftoversPosition();
+        assertEquals(3, leftovers.cardinality());
+        assertTrue(leftovers.get(0));
+        assertTrue(leftovers.get(2));
+        assertTrue(leftovers.get(3));
+    }
+
     @Test
     public void testWriteAfterRemoving() throws Exception {
         data.copyFrom(new BytesArray("a"));
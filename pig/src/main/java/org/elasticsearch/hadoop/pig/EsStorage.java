@@ -20,6 +20,7 @@ package org.elasticsearch.hadoop.pig;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -50,16 +51,23 @@ import org.apache.pig.data.Tuple;
 import org.apache.pig.data.TupleFactory;
 import org.apache.pig.impl.logicalLayer.FrontendException;
 import org.apache.pig.impl.util.UDFContext;
+import org.elasticsearch.hadoop.EsHadoopException;
 import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
 import org.elasticsearch.hadoop.cfg.HadoopSettingsManager;
 import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
 import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.mr.EsOutputFormat;
 import org.elasticsearch.hadoop.rest.InitializationUtils;
+import org.elasticsearch.hadoop.rest.QueryBuilder;
+import org.elasticsearch.hadoop.rest.RestRepository;
+import org.elasticsearch.hadoop.serialization.dto.mapping.Field;
 import org.elasticsearch.hadoop.util.IOUtils;
 import org.elasticsearch.hadoop.util.ObjectUtils;
 import org.elasticsearch.hadoop.util.SettingsUtils;
 import org.elasticsearch.hadoop.util.StringUtils;
+import org.elasticsearch.hadoop.util.unit.Booleans;
 
 /**
  * Pig storage for reading and writing data into an ElasticSearch index.
@@ -91,7 +99,14 @@ public class EsStorage extends LoadFunc implements LoadMetadata, LoadPushDown, S
     private RecordWriter<Object, Object> writer;
     private PigTuple pigTuple;
 
-    private List<String> aliasesTupleNames;
+    private final TupleFactory tupleFactory = TupleFactory.getInstance();
+    // keys leading to each projected field
+    private String[][] aliasesTuplePaths;
+    private boolean reuseTuple;
+    private Tuple reusedTuple;
+    private PigFilterTranslator filterTranslator;
+    // part of the pushed filter that could not be translated
+    private PigLocalFilter localFilter;
     private boolean IS_ES_10;
 
     public EsStorage() {
@@ -225,12 +240,33 @@ public class EsStorage extends LoadFunc implements LoadMetadata, LoadPushDown, S
     // LoadFunc
     //
     public void setLocation(String location, Job job) throws IOException {
-        init(location, job, true);
-
         Configuration cfg = job.getConfiguration();
 
+        // remember the (job) limit given by the user, before it gets overridden by the loads within the job
+        if (cfg.get(PigUtils.USER_LIMIT) == null) {
+            cfg.set(PigUtils.USER_LIMIT, cfg.get(ConfigurationOptions.ES_SCROLL_LIMIT, ConfigurationOptions.ES_SCROLL_LIMIT_DEFAULT));
+        }
+
+        init(location, job, true);
+
         Settings settings = HadoopSettingsManager.loadFrom(cfg);
         IS_ES_10 = SettingsUtils.isEs10(settings);
+        reuseTuple = Booleans.parseBoolean(settings.getProperty(PigUtils.REUSE_TUPLE), PigUtils.REUSE_TUPLE_DEFAULT);
+
+        // filter and limit pushed down by Pig - the configuration is shared by all the loads within the job so clear any
+        // filter or limit left over by a different load
+        String filter = getUDFProperties().getProperty(InternalConfigurationOptions.INTERNAL_ES_QUERY_FILTER);
+        cfg.set(InternalConfigurationOptions.INTERNAL_ES_QUERY_FILTER, (filter != null ? filter : ""));
+        // documents discarded by the local filter would count against the limit so leave it to Pig in that case
+        long limit = (getUDFProperties().getProperty(PigUtils.LOCAL_FILTER) != null ? -1 : PigUtils.inputLimit(cfg, signature));
+        if (limit < 0) {
+            // the limit of this load (if any) otherwise the one of the job
+            String userLimit = properties.getProperty(ConfigurationOptions.ES_SCROLL_LIMIT);
+            cfg.set(ConfigurationOptions.ES_SCROLL_LIMIT, (userLimit != null ? userLimit : cfg.get(PigUtils.USER_LIMIT)));
+        }
+        else {
+            cfg.set(ConfigurationOptions.ES_SCROLL_LIMIT, String.valueOf(limit));
+        }
 
         if (settings.getScrollFields() != null) {
             return;
@@ -256,47 +292,59 @@ public class EsStorage extends LoadFunc implements LoadMetadata, LoadPushDown, S
     @Override
     public void prepareToRead(RecordReader reader, PigSplit split) throws IOException {
         this.reader = reader;
-        aliasesTupleNames = StringUtils.tokenize(getUDFProperties().getProperty(
+        List<String> aliasesTupleNames = StringUtils.tokenize(getUDFProperties().getProperty(
                 InternalConfigurationOptions.INTERNAL_ES_TARGET_FIELDS));
+
+        // split the (multi-level) aliases once instead of for each record
+        aliasesTuplePaths = new String[aliasesTupleNames.size()][];
+        for (int i = 0; i < aliasesTuplePaths.length; i++) {
+            String name = aliasesTupleNames.get(i);
+            if (IS_ES_10) {
+                List<String> levels = StringUtils.tokenize(name, ".");
+                aliasesTuplePaths[i] = levels.toArray(new String[levels.size()]);
+            }
+            // ES 0.90.x / fields
+            else {
+                aliasesTuplePaths[i] = new String[] { name };
+            }
+        }
+
+        String filter = getUDFProperties().getProperty(PigUtils.LOCAL_FILTER);
+        localFilter = (filter != null ? IOUtils.<PigLocalFilter> deserializeFromBase64(filter) : null);
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
     @Override
     public Tuple getNext() throws IOException {
         try {
-            if (!reader.nextKeyValue()) {
-                return null;
-            }
-
-            Map dataMap = reader.getCurrentValue();
-            Tuple tuple = TupleFactory.getInstance().newTuple(dataMap.size());
-
-            if (dataMap.isEmpty()) {
-                return tuple;
-            }
-
-            if (!aliasesTupleNames.isEmpty()) {
-                for (int i = 0; i < aliasesTupleNames.size(); i++) {
-                    if (IS_ES_10) {
-                        Object result = dataMap;
-                        // check for multi-level alias
-                        for (String level : StringUtils.tokenize(aliasesTupleNames.get(i), ".")) {
-                            if (result instanceof Map) {
-                                result = ((Map) result).get(level);
-                                if (result == null) {
-                                    break;
-                                }
-                            }
+            Map dataMap;
+            do {
+                if (!reader.nextKeyValue()) {
+                    return null;
+                }
+                dataMap = reader.getCurrentValue();
+            } while (localFilter != null && !localFilter.matches(dataMap));
+
+            Tuple tuple;
+            // the projected fields are always returned (as null if missing) to keep their position
+            if (aliasesTuplePaths.length > 0) {
+                tuple = newTuple(aliasesTuplePaths.length);
+                for (int i = 0; i < aliasesTuplePaths.length; i++) {
+                    Object result = dataMap;
+                    for (String level : aliasesTuplePaths[i]) {
+                        result = (result instanceof Map ? ((Map) result).get(level) : null);
+                        if (result == null) {
+                            break;
                         }
-                        tuple.set(i, result);
-                    }
-                    // ES 0.90.x / fields
-                    else {
-                        tuple.set(i, dataMap.get(aliasesTupleNames.get(i)));
                     }
+                    tuple.set(i, result);
                 }
             }
+            else if (dataMap.isEmpty()) {
+                return tupleFactory.newTuple(0);
+            }
             else {
+                tuple = newTuple(dataMap.size());
                 int i = 0;
                 Set<Entry<?, ?>> entrySet = dataMap.entrySet();
                 for (Map.Entry entry : entrySet) {
@@ -314,6 +362,17 @@ public class EsStorage extends LoadFunc implements LoadMetadata, LoadPushDown, S
         }
     }
 
+    private Tuple newTuple(int size) {
+        if (!reuseTuple) {
+            return tupleFactory.newTuple(size);
+        }
+        // all the slots are overwritten for each record
+        if (reusedTuple == null || reusedTuple.size() != size) {
+            reusedTuple = tupleFactory.newTuple(size);
+        }
+        return reusedTuple;
+    }
+
     //
     // LoadPushDown
     //
@@ -339,17 +398,96 @@ public class EsStorage extends LoadFunc implements LoadMetadata, LoadPushDown, S
 
     @Override
     public ResourceStatistics getStatistics(String location, Job job) throws IOException {
-        return null;
+        Settings settings = HadoopSettingsManager.loadFrom(job.getConfiguration()).merge(properties).copy();
+        settings.setResourceRead(location);
+        // count only the documents matching the pushed down filter (if any)
+        String filter = getUDFProperties().getProperty(InternalConfigurationOptions.INTERNAL_ES_QUERY_FILTER);
+        if (filter != null) {
+            settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_QUERY_FILTER, filter);
+        }
+
+        RestRepository repository = null;
+        try {
+            InitializationUtils.discoverEsVersion(settings, log);
+            repository = new RestRepository(settings);
+            long rows = QueryBuilder.query(settings).count(repository);
+            // estimate the size based on the average document size
+            long[] size = repository.getReadIndexSize();
+            long avgSize = (size[0] > 0 ? size[1] / size[0] : 0);
+
+            ResourceStatistics stats = new ResourceStatistics();
+            stats.setNumRecords(rows);
+            stats.setSizeInBytes(avgSize * rows);
+
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Estimated [%s] records and [%s] bytes for resource [%s]", rows, stats.getSizeInBytes(), location));
+            }
+            return stats;
+        } catch (EsHadoopException ex) {
+            // statistics are not worth failing the script
+            log.warn(String.format("Cannot compute the statistics of resource [%s]", location), ex);
+            return null;
+        } finally {
+            if (repository != null) {
+                repository.close();
+            }
+        }
     }
 
+    // the filter push down relies on partitions since it is available on all Pig versions (unlike LoadPredicatePushdown)
     @Override
     public String[] getPartitionKeys(String location, Job job) throws IOException {
-        return null;
+        Settings settings = HadoopSettingsManager.loadFrom(job.getConfiguration()).merge(properties).setResourceRead(location);
+        if (!settings.getReadPushdown()) {
+            return null;
+        }
+
+        Field mapping = null;
+        RestRepository repository = new RestRepository(settings);
+        try {
+            mapping = repository.getMapping();
+        } catch (EsHadoopException ex) {
+            log.warn(String.format("Cannot read the mapping of [%s]; filters will not be pushed down", location), ex);
+            return null;
+        } finally {
+            repository.close();
+        }
+
+        filterTranslator = new PigFilterTranslator(settings, Field.toLookupMap(mapping != null ? mapping.skipHeaders() : null));
+        List<String> keys = filterTranslator.partitionKeys();
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Fields %s can be filtered by Elasticsearch", keys));
+        }
+        return (keys.isEmpty() ? null : keys.toArray(new String[keys.size()]));
     }
 
     @Override
     public void setPartitionFilter(Expression partitionFilter) throws IOException {
-        //
+        if (filterTranslator == null) {
+            throw new EsHadoopIllegalStateException("Partition filter given without any partition keys");
+        }
+        // Pig removes the filter from the script - push down what can be translated exactly and evaluate the rest while reading
+        List<Expression> pushed = new ArrayList<Expression>();
+        List<Expression> local = new ArrayList<Expression>();
+        for (Expression conjunct : PigFilterTranslator.conjuncts(partitionFilter)) {
+            (filterTranslator.canTranslate(conjunct) ? pushed : local).add(conjunct);
+        }
+
+        Properties props = getUDFProperties();
+        if (!pushed.isEmpty()) {
+            String filter = filterTranslator.toQueryDsl(PigFilterTranslator.and(pushed));
+            props.setProperty(InternalConfigurationOptions.INTERNAL_ES_QUERY_FILTER, filter);
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Given partition filter [%s]; pushing down filter [%s]", partitionFilter, filter));
+            }
+        }
+        if (!local.isEmpty()) {
+            Expression filter = PigFilterTranslator.and(local);
+            props.setProperty(PigUtils.LOCAL_FILTER, IOUtils.serializeToBase64(PigLocalFilter.from(filter, filterTranslator)));
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Given partition filter [%s]; evaluating [%s] while reading", partitionFilter, filter));
+            }
+        }
     }
 
     @Override
@@ -365,6 +503,14 @@ public class EsStorage extends LoadFunc implements LoadMetadata, LoadPushDown, S
                 log.debug(String.format("Found field project [%s] in UDF properties", fields));
             }
 
+            // the fields used only by the local filter are not part of the projection
+            String filter = getUDFProperties().getProperty(PigUtils.LOCAL_FILTER);
+            if (filter != null) {
+                List<String> targetFields = StringUtils.tokenizeAndUriDecode(fields, ",");
+                IOUtils.<PigLocalFilter> deserializeFromBase64(filter).fields(targetFields);
+                fields = StringUtils.concatenateAndUriEncode(targetFields, ",");
+            }
+
             cfg.set(InternalConfigurationOptions.INTERNAL_ES_TARGET_FIELDS, fields);
             return;
         }
@@ -0,0 +1,347 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.pig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.pig.Expression;
+import org.apache.pig.Expression.BinaryExpression;
+import org.apache.pig.Expression.Column;
+import org.apache.pig.Expression.Const;
+import org.apache.pig.Expression.OpType;
+import org.apache.pig.Expression.UnaryExpression;
+import org.apache.pig.data.DataByteArray;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.serialization.FieldType;
+import org.elasticsearch.hadoop.util.FieldAlias;
+import org.elasticsearch.hadoop.util.SettingsUtils;
+
+/**
+ * Translates Pig filters into Elasticsearch filters (query dsl).
+ *
+ * Filters reach the loader through the partition filter mechanism (see {@link org.apache.pig.LoadMetadata}) which, unlike the
+ * predicate push down, is available in all Pig versions. However Pig removes the pushed filter from the script so the translation
+ * has to be exact; thus only the fields whose type can be matched exactly are declared as partition keys - numbers, booleans and
+ * dates and, in strict mode, strings (which are then expected to be <tt>not_analyzed</tt>). The parts of a filter that cannot be
+ * translated (see {@link #canTranslate(Expression)}) are evaluated by the loader through {@link PigLocalFilter}.
+ */
+class PigFilterTranslator {
+
+    private final FieldAlias alias;
+    // Pig name -> Elasticsearch field
+    private final Map<String, String> keys = new LinkedHashMap<String, String>();
+
+    /**
+     * Creates a translator for the given index mapping.
+     *
+     * @param settings settings
+     * @param fields mapped fields (by their full name) and their type
+     */
+    PigFilterTranslator(Settings settings, Map<String, FieldType> fields) {
+        this.alias = PigUtils.alias(settings);
+
+        boolean strict = settings.getReadPushdownStrict();
+        Map<String, String> aliases = SettingsUtils.aliases(settings.getProperty(PigUtils.MAPPING_NAMES));
+
+        for (Entry<String, FieldType> entry : fields.entrySet()) {
+            if (!isExact(entry.getValue(), strict)) {
+                continue;
+            }
+            String field = entry.getKey();
+            boolean aliased = false;
+            for (Entry<String, String> pigAlias : aliases.entrySet()) {
+                if (field.equals(pigAlias.getValue())) {
+                    keys.put(pigAlias.getKey(), field);
+                    aliased = true;
+                }
+            }
+            // Pig names cannot contain dots
+            if (!aliased && field.indexOf('.') < 0) {
+                keys.put(field, field);
+            }
+        }
+    }
+
+    private static boolean isExact(FieldType type, boolean strict) {
+        switch (type) {
+        case BOOLEAN:
+        case BYTE:
+        case SHORT:
+        case INTEGER:
+        case LONG:
+        case FLOAT:
+        case DOUBLE:
+        case DATE:
+            return true;
+        case STRING:
+            return strict;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Returns the (Pig) names of the fields that can be filtered by Elasticsearch.
+     *
+     * @return partition keys
+     */
+    List<String> partitionKeys() {
+        return new ArrayList<String>(keys.keySet());
+    }
+
+    /**
+     * Splits the given filter into its (top-level) conjunctions.
+     *
+     * @param filter Pig filter
+     * @return conjunctions
+     */
+    static List<Expression> conjuncts(Expression filter) {
+        List<Expression> conjuncts = new ArrayList<Expression>();
+        addConjuncts(filter, conjuncts);
+        return conjuncts;
+    }
+
+    private static void addConjuncts(Expression filter, List<Expression> conjuncts) {
+        if (filter.getOpType() == OpType.OP_AND) {
+            BinaryExpression be = (BinaryExpression) filter;
+            addConjuncts(be.getLhs(), conjuncts);
+            addConjuncts(be.getRhs(), conjuncts);
+        }
+        else {
+            conjuncts.add(filter);
+        }
+    }
+
+    /**
+     * Combines the given filters through a conjunction.
+     *
+     * @param filters Pig filters
+     * @return conjunction of the given filters (or null if there are none)
+     */
+    static Expression and(List<Expression> filters) {
+        Expression result = null;
+        for (Expression filter : filters) {
+            result = (result == null ? filter : new BinaryExpression(result, filter, OpType.OP_AND));
+        }
+        return result;
+    }
+
+    /**
+     * Indicates whether the given filter can be translated exactly.
+     *
+     * @param filter Pig filter
+     * @return true if the filter can be translated, false otherwise
+     */
+    boolean canTranslate(Expression filter) {
+        try {
+            translate(filter, false);
+            return true;
+        } catch (EsHadoopIllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the Elasticsearch field for the given Pig column.
+     *
+     * @param name Pig column name
+     * @return Elasticsearch field
+     */
+    String field(String name) {
+        String field = keys.get(name);
+        return (field != null ? field : alias.toES(name));
+    }
+
+    /**
+     * Returns the Elasticsearch filter (as JSON) for the given Pig filter.
+     *
+     * @param filter Pig filter (over the partition keys)
+     * @return filter as JSON
+     * @throws EsHadoopIllegalArgumentException if the filter cannot be translated exactly
+     */
+    String toQueryDsl(Expression filter) {
+        Map<String, Object> translated = translate(filter, false);
+        try {
+            return new ObjectMapper().writeValueAsString(translated);
+        } catch (IOException ex) {
+            throw new EsHadoopIllegalStateException(String.format("Cannot serialize pushed down filter [%s]", translated), ex);
+        }
+    }
+
+    private Map<String, Object> translate(Expression expr, boolean negate) {
+        OpType op = expr.getOpType();
+
+        switch (op) {
+        case OP_AND:
+        case OP_OR:
+            BinaryExpression be = (BinaryExpression) expr;
+            // De Morgan
+            boolean and = (op == OpType.OP_AND) != negate;
+            List<Object> filters = Arrays.<Object> asList(translate(be.getLhs(), negate), translate(be.getRhs(), negate));
+            return bool(and ? "must" : "should", filters);
+        case OP_NOT:
+            return translate(((UnaryExpression) expr).getExpression(), !negate);
+        case OP_NULL:
+            String field = field(((UnaryExpression) expr).getExpression(), expr);
+            return clause(negate ? "exists" : "missing", Collections.singletonMap("field", field));
+        case OP_EQ:
+        case OP_NE:
+        case OP_GT:
+        case OP_GE:
+        case OP_LT:
+        case OP_LE:
+            return comparison((BinaryExpression) expr, negate);
+        default:
+            throw unsupported(expr);
+        }
+    }
+
+    private Map<String, Object> comparison(BinaryExpression expr, boolean negate) {
+        Expression lhs = expr.getLhs();
+        Expression rhs = expr.getRhs();
+        OpType op = expr.getOpType();
+
+        // normalize to <column> <op> <constant>
+        if (lhs instanceof Const && rhs instanceof Column) {
+            Expression tmp = lhs;
+            lhs = rhs;
+            rhs = tmp;
+            op = flip(op);
+        }
+        if (!(rhs instanceof Const)) {
+            throw unsupported(expr);
+        }
+
+        String field = field(lhs, expr);
+        Object value = value(((Const) rhs).getValue(), expr);
+
+        if (negate) {
+            op = negate(op);
+        }
+
+        switch (op) {
+        case OP_EQ:
+            return term(field, value);
+        case OP_NE:
+            // documents without the field do not match in Pig (null)
+            Map<String, Object> bool = new LinkedHashMap<String, Object>();
+            bool.put("must", clause("exists", Collections.singletonMap("field", field)));
+            bool.put("must_not", term(field, value));
+            return clause("bool", bool);
+        case OP_GT:
+            return range(field, "gt", value);
+        case OP_GE:
+            return range(field, "gte", value);
+        case OP_LT:
+            return range(field, "lt", value);
+        case OP_LE:
+            return range(field, "lte", value);
+        default:
+            throw unsupported(expr);
+        }
+    }
+
+    private static OpType flip(OpType op) {
+        switch (op) {
+        case OP_GT:
+            return OpType.OP_LT;
+        case OP_GE:
+            return OpType.OP_LE;
+        case OP_LT:
+            return OpType.OP_GT;
+        case OP_LE:
+            return OpType.OP_GE;
+        default:
+            return op;
+        }
+    }
+
+    private static OpType negate(OpType op) {
+        switch (op) {
+        case OP_EQ:
+            return OpType.OP_NE;
+        case OP_NE:
+            return OpType.OP_EQ;
+        case OP_GT:
+            return OpType.OP_LE;
+        case OP_GE:
+            return OpType.OP_LT;
+        case OP_LT:
+            return OpType.OP_GE;
+        case OP_LE:
+            return OpType.OP_GT;
+        default:
+            return op;
+        }
+    }
+
+    private String field(Expression expr, Expression filter) {
+        if (!(expr instanceof Column)) {
+            throw unsupported(filter);
+        }
+        return field(((Column) expr).getName());
+    }
+
+    private static Object value(Object value, Expression filter) {
+        if (value == null) {
+            throw unsupported(filter);
+        }
+        if (value instanceof Number || value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof DataByteArray) {
+            return value.toString();
+        }
+        // date/time
+        return PigUtils.convertDateToES(value);
+    }
+
+    private static EsHadoopIllegalArgumentException unsupported(Expression filter) {
+        return new EsHadoopIllegalArgumentException(String.format(
+                "Cannot translate filter [%s] into query dsl; consider disabling the push down through '%s=false'", filter,
+                ConfigurationOptions.ES_READ_PUSHDOWN));
+    }
+
+    private static Map<String, Object> term(String field, Object value) {
+        return clause("term", Collections.singletonMap(field, value));
+    }
+
+    private static Map<String, Object> range(String field, String bound, Object value) {
+        return clause("range", Collections.singletonMap(field, Collections.singletonMap(bound, value)));
+    }
+
+    private static Map<String, Object> bool(String occur, Object filters) {
+        return clause("bool", Collections.singletonMap(occur, filters));
+    }
+
+    private static Map<String, Object> clause(String name, Object body) {
+        return Collections.<String, Object> singletonMap(name, body);
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.pig;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.pig.Expression;
+import org.apache.pig.Expression.BinaryExpression;
+import org.apache.pig.Expression.Column;
+import org.apache.pig.Expression.Const;
+import org.apache.pig.Expression.UnaryExpression;
+import org.apache.pig.data.DataByteArray;
+import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+
+/**
+ * Pig (partition) filter evaluated by the loader itself, against each document, for the parts that cannot be translated exactly
+ * into query dsl (such as regular expressions, arithmetic or comparisons between fields). Since Pig removes the pushed filter from
+ * the script, the evaluation follows the Pig semantics - in particular, any operation involving <tt>null</tt> yields <tt>null</tt>
+ * which does not match.
+ *
+ * Unlike {@link Expression}, the filter is serializable so it can be passed over to the backend.
+ */
+class PigLocalFilter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Set<String> OPERATIONS = new HashSet<String>(Arrays.asList("TERM_COL", "TERM_CONST", "OP_NULL", "OP_NOT",
+            "OP_AND", "OP_OR", "OP_MATCH", "OP_PLUS", "OP_MINUS", "OP_TIMES", "OP_DIV", "OP_MOD", "OP_EQ", "OP_NE", "OP_GT", "OP_GE",
+            "OP_LT", "OP_LE"));
+
+    // operation (by name, to be independent of the OpType constants available in each Pig version)
+    private final String op;
+    private final PigLocalFilter[] args;
+    // Elasticsearch field (for columns)
+    private final String field;
+    private final String[] path;
+    // constant value (or compiled regex)
+    private final Object value;
+
+    private PigLocalFilter(String op, String field, Object value, PigLocalFilter... args) {
+        this.op = op;
+        this.field = field;
+        this.path = (field != null ? field.split("\\.") : null);
+        this.value = value;
+        this.args = args;
+    }
+
+    /**
+     * Converts the given Pig filter.
+     *
+     * @param filter Pig filter
+     * @param translator translator used for resolving the columns to Elasticsearch fields
+     * @return the equivalent local filter
+     */
+    static PigLocalFilter from(Expression filter, PigFilterTranslator translator) {
+        String op = filter.getOpType().name();
+        if (!OPERATIONS.contains(op)) {
+            throw unsupported(filter);
+        }
+        if (filter instanceof Column) {
+            return new PigLocalFilter(op, translator.field(((Column) filter).getName()), null);
+        }
+        if (filter instanceof Const) {
+            return new PigLocalFilter(op, null, ((Const) filter).getValue());
+        }
+        if (filter instanceof UnaryExpression) {
+            return new PigLocalFilter(op, null, null, from(((UnaryExpression) filter).getExpression(), translator));
+        }
+        if (filter instanceof BinaryExpression) {
+            BinaryExpression be = (BinaryExpression) filter;
+            PigLocalFilter rhs = from(be.getRhs(), translator);
+            // compile the regex upfront
+            if ("OP_MATCH".equals(op) && rhs.value != null) {
+                rhs = new PigLocalFilter(rhs.op, null, Pattern.compile(rhs.value.toString()));
+            }
+            return new PigLocalFilter(op, null, null, from(be.getLhs(), translator), rhs);
+        }
+        throw unsupported(filter);
+    }
+
+    private static EsHadoopIllegalArgumentException unsupported(Expression filter) {
+        return new EsHadoopIllegalArgumentException(String.format(
+                "Cannot evaluate filter [%s]; consider disabling the push down through '%s=false'", filter,
+                ConfigurationOptions.ES_READ_PUSHDOWN));
+    }
+
+    /**
+     * Collects the Elasticsearch fields used by this filter.
+     *
+     * @param fields collection of fields
+     */
+    void fields(Collection<String> fields) {
+        if (field != null && !fields.contains(field)) {
+            fields.add(field);
+        }
+        for (PigLocalFilter arg : args) {
+            arg.fields(fields);
+        }
+    }
+
+    /**
+     * Indicates whether the given document matches the filter.
+     *
+     * @param document document
+     * @return true if the document matches, false otherwise
+     */
+    boolean matches(Map<?, ?> document) {
+        return Boolean.TRUE.equals(eval(document));
+    }
+
+    private Object eval(Map<?, ?> document) {
+        if ("TERM_COL".equals(op)) {
+            return lookup(document);
+        }
+        if ("TERM_CONST".equals(op)) {
+            return value;
+        }
+
+        Object lhs = args[0].eval(document);
+
+        if ("OP_NULL".equals(op)) {
+            return Boolean.valueOf(lhs == null);
+        }
+        if ("OP_NOT".equals(op)) {
+            return (lhs == null ? null : Boolean.valueOf(!((Boolean) lhs)));
+        }
+        // three-valued logic
+        if ("OP_AND".equals(op)) {
+            if (Boolean.FALSE.equals(lhs)) {
+                return Boolean.FALSE;
+            }
+            Object rhs = args[1].eval(document);
+            if (Boolean.FALSE.equals(rhs)) {
+                return Boolean.FALSE;
+            }
+            return (lhs == null || rhs == null ? null : Boolean.TRUE);
+        }
+        if ("OP_OR".equals(op)) {
+            if (Boolean.TRUE.equals(lhs)) {
+                return Boolean.TRUE;
+            }
+            Object rhs = args[1].eval(document);
+            if (Boolean.TRUE.equals(rhs)) {
+                return Boolean.TRUE;
+            }
+            return (lhs == null || rhs == null ? null : Boolean.FALSE);
+        }
+
+        Object rhs = args[1].eval(document);
+        if (lhs == null || rhs == null) {
+            return null;
+        }
+
+        if ("OP_MATCH".equals(op)) {
+            Pattern pattern = (rhs instanceof Pattern ? (Pattern) rhs : Pattern.compile(rhs.toString()));
+            return Boolean.valueOf(pattern.matcher(lhs.toString()).matches());
+        }
+        if ("OP_PLUS".equals(op) || "OP_MINUS".equals(op) || "OP_TIMES".equals(op) || "OP_DIV".equals(op) || "OP_MOD".equals(op)) {
+            return arithmetic(op, lhs, rhs);
+        }
+
+        Integer cmp = compare(lhs, rhs);
+        if (cmp == null) {
+            return null;
+        }
+        int c = cmp.intValue();
+        if ("OP_EQ".equals(op)) {
+            return Boolean.valueOf(c == 0);
+        }
+        if ("OP_NE".equals(op)) {
+            return Boolean.valueOf(c != 0);
+        }
+        if ("OP_GT".equals(op)) {
+            return Boolean.valueOf(c > 0);
+        }
+        if ("OP_GE".equals(op)) {
+            return Boolean.valueOf(c >= 0);
+        }
+        if ("OP_LT".equals(op)) {
+            return Boolean.valueOf(c < 0);
+        }
+        if ("OP_LE".equals(op)) {
+            return Boolean.valueOf(c <= 0);
+        }
+        throw new EsHadoopIllegalArgumentException(String.format("Cannot evaluate filter operation [%s]", op));
+    }
+
+    private Object lookup(Map<?, ?> document) {
+        // flat names (fields)
+        Object result = document.get(field);
+        if (result != null || path.length == 1) {
+            return result;
+        }
+        result = document;
+        for (String level : path) {
+            if (!(result instanceof Map)) {
+                return null;
+            }
+            result = ((Map<?, ?>) result).get(level);
+        }
+        return result;
+    }
+
+    private static Object arithmetic(String op, Object lhs, Object rhs) {
+        Number l = number(lhs);
+        Number r = number(rhs);
+        if (l == null || r == null) {
+            return null;
+        }
+
+        if (isIntegral(l) && isIntegral(r)) {
+            long a = l.longValue(), b = r.longValue();
+            if (("OP_DIV".equals(op) || "OP_MOD".equals(op)) && b == 0) {
+                // Pig returns null on division by zero
+                return null;
+            }
+            if ("OP_PLUS".equals(op)) {
+                return a + b;
+            }
+            if ("OP_MINUS".equals(op)) {
+                return a - b;
+            }
+            if ("OP_TIMES".equals(op)) {
+                return a * b;
+            }
+            if ("OP_DIV".equals(op)) {
+                return a / b;
+            }
+            return a % b;
+        }
+
+        double a = l.doubleValue(), b = r.doubleValue();
+        if ("OP_PLUS".equals(op)) {
+            return a + b;
+        }
+        if ("OP_MINUS".equals(op)) {
+            return a - b;
+        }
+        if ("OP_TIMES".equals(op)) {
+            return a * b;
+        }
+        if ("OP_DIV".equals(op)) {
+            return (b == 0 ? null : Double.valueOf(a / b));
+        }
+        return (b == 0 ? null : Double.valueOf(a % b));
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Integer compare(Object lhs, Object rhs) {
+        if (lhs instanceof Number || rhs instanceof Number) {
+            Number l = number(lhs);
+            Number r = number(rhs);
+            if (l == null || r == null) {
+                return null;
+            }
+            if (isIntegral(l) && isIntegral(r)) {
+                long a = l.longValue(), b = r.longValue();
+                return Integer.valueOf(a < b ? -1 : (a == b ? 0 : 1));
+            }
+            if (!isFinite(l) || !isFinite(r)) {
+                return Integer.valueOf(Double.compare(l.doubleValue(), r.doubleValue()));
+            }
+            return Integer.valueOf(decimal(l).compareTo(decimal(r)));
+        }
+
+        if (lhs instanceof DataByteArray || rhs instanceof DataByteArray || lhs instanceof String || rhs instanceof String) {
+            return Integer.valueOf(lhs.toString().compareTo(rhs.toString()));
+        }
+        if (lhs.getClass() == rhs.getClass() && lhs instanceof Comparable) {
+            return Integer.valueOf(((Comparable) lhs).compareTo(rhs));
+        }
+        return null;
+    }
+
+    private static boolean isIntegral(Number number) {
+        return (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte);
+    }
+
+    private static boolean isFinite(Number number) {
+        double d = number.doubleValue();
+        return !(Double.isNaN(d) || Double.isInfinite(d)) || number instanceof BigDecimal || number instanceof BigInteger;
+    }
+
+    private static BigDecimal decimal(Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger) number);
+        }
+        if (isIntegral(number)) {
+            return BigDecimal.valueOf(number.longValue());
+        }
+        return new BigDecimal(number.doubleValue());
+    }
+
+    private static Number number(Object value) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        if (value instanceof DataByteArray || value instanceof String) {
+            try {
+                return new BigDecimal(value.toString().trim());
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.elasticsearch.hadoop.pig;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
@@ -26,12 +27,14 @@ import java.util.Properties;
 import javax.xml.bind.DatatypeConverter;
 
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.pig.LoadPushDown.RequiredField;
 import org.apache.pig.LoadPushDown.RequiredFieldList;
 import org.apache.pig.ResourceSchema.ResourceFieldSchema;
 import org.apache.pig.data.DataType;
 import org.apache.pig.impl.logicalLayer.schema.Schema;
 import org.apache.pig.impl.logicalLayer.schema.Schema.FieldSchema;
+import org.apache.pig.impl.util.ObjectSerializer;
 import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
 import org.elasticsearch.hadoop.cfg.PropertiesSettings;
 import org.elasticsearch.hadoop.cfg.Settings;
@@ -48,6 +51,16 @@ class PigUtils {
     static final String MAPPING_NAMES = "es.mapping.names";
     static final String NAMED_TUPLE = "es.mapping.pig.tuple.use.field.names";
     static final boolean NAMED_TUPLE_DEFAULT = false;
+    static final String REUSE_TUPLE = "es.pig.tuple.reuse";
+    static final boolean REUSE_TUPLE_DEFAULT = false;
+    // (part of the) pushed down filter evaluated by the loader
+    static final String LOCAL_FILTER = "es.internal.pig.filter.local";
+    // scroll limit set by the user for the job
+    static final String USER_LIMIT = "es.internal.pig.scroll.limit";
+
+    // see PigInputFormat
+    static final String INPUT_SIGNATURES = "pig.inpSignatures";
+    static final String INPUT_LIMITS = "pig.inpLimits";
 
     private final static boolean pig11Available;
 
@@ -167,6 +180,35 @@ class PigUtils {
         }
     }
 
+    /**
+     * Returns the limit Pig applies to the given input (a <tt>LIMIT</tt> directly following the <tt>LOAD</tt>), as recorded
+     * by Pig in the job configuration.
+     *
+     * @param cfg job configuration
+     * @param signature loader signature
+     * @return limit or -1 if there is none
+     */
+    @SuppressWarnings("unchecked")
+    static long inputLimit(Configuration cfg, String signature) {
+        String signatures = cfg.get(INPUT_SIGNATURES);
+        String limits = cfg.get(INPUT_LIMITS);
+        if (signature == null || !StringUtils.hasText(signatures) || !StringUtils.hasText(limits)) {
+            return -1;
+        }
+
+        try {
+            List<String> sigs = (List<String>) ObjectSerializer.deserialize(signatures);
+            List<Long> lims = (List<Long>) ObjectSerializer.deserialize(limits);
+            int index = (sigs != null ? sigs.indexOf(signature) : -1);
+            if (index >= 0 && lims != null && index < lims.size() && lims.get(index) != null) {
+                return lims.get(index).longValue();
+            }
+        } catch (IOException ex) {
+            LogFactory.getLog(EsStorage.class).debug("Cannot read the Pig input limits", ex);
+        }
+        return -1;
+    }
+
     static boolean isComplexType(ResourceFieldSchema fieldSchema) {
         return (fieldSchema != null && fieldSchema.getType() >= 100);
     }
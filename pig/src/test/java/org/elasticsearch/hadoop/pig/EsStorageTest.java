@@ -0,0 +1,186 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.pig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.pig.Expression.BinaryExpression;
+import org.apache.pig.Expression.Column;
+import org.apache.pig.Expression.Const;
+import org.apache.pig.Expression.OpType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.impl.util.ObjectSerializer;
+import org.apache.pig.impl.util.UDFContext;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.PropertiesSettings;
+import org.elasticsearch.hadoop.serialization.FieldType;
+import org.elasticsearch.hadoop.util.IOUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EsStorageTest {
+
+    private static class DocumentReader extends RecordReader<String, Map<?, ?>> {
+        private final Iterator<Map<?, ?>> documents;
+        private Map<?, ?> current;
+
+        DocumentReader(List<Map<?, ?>> documents) {
+            this.documents = documents.iterator();
+        }
+
+        @Override
+        public void initialize(InputSplit split, TaskAttemptContext context) {}
+
+        @Override
+        public boolean nextKeyValue() {
+            if (!documents.hasNext()) {
+                return false;
+            }
+            current = documents.next();
+            return true;
+        }
+
+        @Override
+        public String getCurrentKey() {
+            return null;
+        }
+
+        @Override
+        public Map<?, ?> getCurrentValue() {
+            return current;
+        }
+
+        @Override
+        public float getProgress() {
+            return 0;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    @Test
+    public void testMultiLevelAliasAndMissingField() throws Exception {
+        EsStorage storage = storage("multi-level", false, "name,address.city,age", doc("John", "London"), doc("Mary", null),
+                Collections.singletonMap("address", "not-an-object"));
+
+        Tuple tuple = storage.getNext();
+        assertEquals(Arrays.<Object> asList("John", "London", null), tuple.getAll());
+        // missing leaf
+        tuple = storage.getNext();
+        assertEquals(Arrays.<Object> asList("Mary", null, null), tuple.getAll());
+        // path through a non-object and no projected field present - the positions are kept nevertheless
+        tuple = storage.getNext();
+        assertEquals(Arrays.<Object> asList(null, null, null), tuple.getAll());
+        assertNull(storage.getNext());
+    }
+
+    @Test
+    public void testNoTupleReuse() throws Exception {
+        EsStorage storage = storage("no-reuse", false, "name", doc("John", "London"), doc("Mary", "Paris"));
+
+        Tuple first = storage.getNext();
+        Tuple second = storage.getNext();
+        assertNotSame(first, second);
+        // the tuples can be held on to
+        assertEquals("John", first.get(0));
+        assertEquals("Mary", second.get(0));
+    }
+
+    @Test
+    public void testTupleReuse() throws Exception {
+        EsStorage storage = storage("reuse", true, "name,address.city", doc("John", "London"), doc("Mary", null));
+
+        Tuple first = storage.getNext();
+        assertEquals(Arrays.<Object> asList("John", "London"), first.getAll());
+        Tuple second = storage.getNext();
+        assertSame(first, second);
+        // all the slots are overwritten
+        assertEquals(Arrays.<Object> asList("Mary", null), second.getAll());
+    }
+
+    @Test
+    public void testLimitPushedDown() throws Exception {
+        Job job = limitedJob("limit", 10);
+        EsStorage storage = new EsStorage();
+        storage.setUDFContextSignature("limit");
+        storage.setLocation("foo/bar", job);
+        assertEquals("10", job.getConfiguration().get(ConfigurationOptions.ES_SCROLL_LIMIT));
+    }
+
+    @Test
+    public void testLimitNotPushedDownWithLocalFilter() throws Exception {
+        // FILTER A BY age > 20 AND name MATCHES 'J.*'; LIMIT 10 - only the first conjunct is executed by Elasticsearch
+        Map<String, FieldType> fields = new LinkedHashMap<String, FieldType>();
+        fields.put("name", FieldType.STRING);
+        fields.put("age", FieldType.INTEGER);
+        PigFilterTranslator translator = new PigFilterTranslator(new PropertiesSettings(new Properties()), fields);
+        PigLocalFilter local = PigLocalFilter.from(new BinaryExpression(new Column("name"), new Const("J.*"), OpType.OP_MATCH), translator);
+        UDFContext.getUDFContext().getUDFProperties(EsStorage.class, new String[] { "local-limit" })
+                .setProperty(PigUtils.LOCAL_FILTER, IOUtils.serializeToBase64(local));
+
+        Job job = limitedJob("local-limit", 10);
+        EsStorage storage = new EsStorage();
+        storage.setUDFContextSignature("local-limit");
+        storage.setLocation("foo/bar", job);
+        // the hits discarded by the local filter would otherwise count against the limit
+        assertEquals(ConfigurationOptions.ES_SCROLL_LIMIT_DEFAULT, job.getConfiguration().get(ConfigurationOptions.ES_SCROLL_LIMIT));
+    }
+
+    private static Job limitedJob(String signature, long limit) throws Exception {
+        Configuration cfg = new Configuration(false);
+        cfg.set(PigUtils.INPUT_SIGNATURES, ObjectSerializer.serialize(new ArrayList<String>(Arrays.asList(signature))));
+        cfg.set(PigUtils.INPUT_LIMITS, ObjectSerializer.serialize(new ArrayList<Long>(Arrays.asList(limit))));
+        return new Job(cfg);
+    }
+
+    private static EsStorage storage(String signature, boolean reuse, String projection, Map<?, ?>... documents) throws Exception {
+        EsStorage storage = new EsStorage(PigUtils.REUSE_TUPLE + "=" + reuse);
+        storage.setUDFContextSignature(signature);
+        UDFContext.getUDFContext().getUDFProperties(EsStorage.class, new String[] { signature })
+                .setProperty(InternalConfigurationOptions.INTERNAL_ES_TARGET_FIELDS, projection);
+
+        storage.setLocation("foo/bar", new Job(new Configuration(false)));
+        storage.prepareToRead(new DocumentReader(Arrays.<Map<?, ?>> asList(documents)), null);
+        return storage;
+    }
+
+    private static Map<String, Object> doc(String name, String city) {
+        Map<String, Object> doc = new LinkedHashMap<String, Object>();
+        doc.put("name", name);
+        if (city != null) {
+            doc.put("address", Collections.singletonMap("city", city));
+        }
+        return doc;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.pig;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.pig.Expression;
+import org.apache.pig.Expression.BinaryExpression;
+import org.apache.pig.Expression.Column;
+import org.apache.pig.Expression.Const;
+import org.apache.pig.Expression.OpType;
+import org.apache.pig.Expression.UnaryExpression;
+import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.PropertiesSettings;
+import org.elasticsearch.hadoop.serialization.FieldType;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PigFilterTranslatorTest {
+
+    @Test
+    public void testPartitionKeys() throws Exception {
+        assertEquals(Arrays.asList("age", "city_id"), translator(false).partitionKeys());
+        assertEquals(Arrays.asList("name", "age", "city_id"), translator(true).partitionKeys());
+    }
+
+    @Test
+    public void testComparison() throws Exception {
+        Expression filter = new BinaryExpression(new Const(21), new Column("age"), OpType.OP_LT);
+        assertEquals("{\"range\":{\"age\":{\"gt\":21}}}", translator(false).toQueryDsl(filter));
+    }
+
+    @Test
+    public void testNegationAndAlias() throws Exception {
+        Expression eq = new BinaryExpression(new Column("city_id"), new Const(3), OpType.OP_EQ);
+        Expression notNull = new UnaryExpression(new UnaryExpression(new Column("age"), OpType.OP_NULL), OpType.OP_NOT);
+        Expression filter = new UnaryExpression(new BinaryExpression(eq, notNull, OpType.OP_AND), OpType.OP_NOT);
+
+        assertEquals("{\"bool\":{\"should\":["
+                + "{\"bool\":{\"must\":{\"exists\":{\"field\":\"address.city\"}},\"must_not\":{\"term\":{\"address.city\":3}}}},"
+                + "{\"missing\":{\"field\":\"age\"}}]}}", translator(false).toQueryDsl(filter));
+    }
+
+    @Test(expected = EsHadoopIllegalArgumentException.class)
+    public void testColumnComparison() throws Exception {
+        translator(false).toQueryDsl(new BinaryExpression(new Column("age"), new Column("city_id"), OpType.OP_EQ));
+    }
+
+    private static PigFilterTranslator translator(boolean strict) {
+        Properties props = new Properties();
+        props.setProperty(PigUtils.MAPPING_NAMES, "city_id:address.city");
+        props.setProperty(ConfigurationOptions.ES_READ_PUSHDOWN_STRICT, String.valueOf(strict));
+
+        Map<String, FieldType> fields = new LinkedHashMap<String, FieldType>();
+        fields.put("name", FieldType.STRING);
+        fields.put("age", FieldType.INTEGER);
+        fields.put("address", FieldType.OBJECT);
+        fields.put("address.city", FieldType.LONG);
+        fields.put("address.zip", FieldType.LONG);
+        return new PigFilterTranslator(new PropertiesSettings(props), fields);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.pig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.pig.Expression;
+import org.apache.pig.Expression.BinaryExpression;
+import org.apache.pig.Expression.Column;
+import org.apache.pig.Expression.Const;
+import org.apache.pig.Expression.OpType;
+import org.apache.pig.Expression.UnaryExpression;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.PropertiesSettings;
+import org.elasticsearch.hadoop.serialization.FieldType;
+import org.elasticsearch.hadoop.util.IOUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PigLocalFilterTest {
+
+    private final PigFilterTranslator translator = translator();
+
+    @Test
+    public void testSplitFilter() throws Exception {
+        // age > 21 AND name MATCHES 'J.*' AND age + 1 == city_id
+        Expression range = new BinaryExpression(new Column("age"), new Const(21), OpType.OP_GT);
+        Expression match = new BinaryExpression(new Column("name"), new Const("J.*"), OpType.OP_MATCH);
+        Expression arithmetic = new BinaryExpression(new BinaryExpression(new Column("age"), new Const(1), OpType.OP_PLUS),
+                new Column("city_id"), OpType.OP_EQ);
+        Expression filter = new BinaryExpression(new BinaryExpression(range, match, OpType.OP_AND), arithmetic, OpType.OP_AND);
+
+        List<Expression> conjuncts = PigFilterTranslator.conjuncts(filter);
+        assertEquals(Arrays.asList(range, match, arithmetic), conjuncts);
+        assertTrue(translator.canTranslate(range));
+        assertFalse(translator.canTranslate(match));
+        assertFalse(translator.canTranslate(arithmetic));
+        // a disjunction with an untranslatable branch is evaluated as a whole
+        assertFalse(translator.canTranslate(new BinaryExpression(range, match, OpType.OP_OR)));
+    }
+
+    @Test
+    public void testMatch() throws Exception {
+        PigLocalFilter filter = filter(new BinaryExpression(new Column("name"), new Const("J.*n"), OpType.OP_MATCH));
+        assertTrue(filter.matches(doc("John", 30, 31L)));
+        assertFalse(filter.matches(doc("Mary", 30, 31L)));
+        // partial matches do not count
+        assertFalse(filter.matches(doc("Johnny", 30, 31L)));
+        assertFalse(filter.matches(doc(null, 30, 31L)));
+    }
+
+    @Test
+    public void testArithmeticAndColumnComparison() throws Exception {
+        Expression plus = new BinaryExpression(new Column("age"), new Const(1), OpType.OP_PLUS);
+        PigLocalFilter filter = filter(new BinaryExpression(plus, new Column("city_id"), OpType.OP_EQ));
+        assertTrue(filter.matches(doc("John", 30, 31L)));
+        assertFalse(filter.matches(doc("John", 30, 30L)));
+        // null propagates
+        assertFalse(filter.matches(doc("John", null, 31L)));
+
+        PigLocalFilter div = filter(new BinaryExpression(new BinaryExpression(new Column("age"), new Const(0), OpType.OP_DIV),
+                new Const(1), OpType.OP_LT));
+        assertFalse(div.matches(doc("John", 30, 31L)));
+    }
+
+    @Test
+    public void testNullLogic() throws Exception {
+        Expression gt = new BinaryExpression(new Column("age"), new Column("city_id"), OpType.OP_GT);
+        PigLocalFilter not = filter(new UnaryExpression(gt, OpType.OP_NOT));
+        assertTrue(not.matches(doc("John", 30, 31L)));
+        // NOT null is still null
+        assertFalse(not.matches(doc("John", null, 31L)));
+
+        Expression isNull = new UnaryExpression(new Column("age"), OpType.OP_NULL);
+        PigLocalFilter or = filter(new BinaryExpression(gt, isNull, OpType.OP_OR));
+        assertTrue(or.matches(doc("John", null, 31L)));
+        assertFalse(or.matches(doc("John", 30, 31L)));
+    }
+
+    @Test
+    public void testSerializedFilterAndFields() throws Exception {
+        Expression match = new BinaryExpression(new Column("name"), new Const("M.*"), OpType.OP_MATCH);
+        Expression cmp = new BinaryExpression(new Column("city_id"), new Column("age"), OpType.OP_GT);
+        PigLocalFilter filter = IOUtils.deserializeFromBase64(IOUtils.serializeToBase64(
+                filter(new BinaryExpression(match, cmp, OpType.OP_AND))));
+
+        assertTrue(filter.matches(doc("Mary", 30, 31L)));
+        assertFalse(filter.matches(doc("Mary", 32, 31L)));
+
+        List<String> fields = new ArrayList<String>(Arrays.asList("name"));
+        filter.fields(fields);
+        assertEquals(Arrays.asList("name", "address.city", "age"), fields);
+    }
+
+    private PigLocalFilter filter(Expression expression) {
+        return PigLocalFilter.from(expression, translator);
+    }
+
+    private static Map<String, Object> doc(String name, Integer age, Long city) {
+        Map<String, Object> address = new LinkedHashMap<String, Object>();
+        address.put("city", city);
+        Map<String, Object> doc = new LinkedHashMap<String, Object>();
+        doc.put("name", name);
+        doc.put("age", age);
+        doc.put("address", address);
+        return doc;
+    }
+
+    private static PigFilterTranslator translator() {
+        Properties props = new Properties();
+        props.setProperty(PigUtils.MAPPING_NAMES, "city_id:address.city");
+        props.setProperty(ConfigurationOptions.ES_READ_PUSHDOWN_STRICT, "true");
+
+        Map<String, FieldType> fields = new LinkedHashMap<String, FieldType>();
+        fields.put("name", FieldType.STRING);
+        fields.put("age", FieldType.INTEGER);
+        fields.put("address", FieldType.OBJECT);
+        fields.put("address.city", FieldType.LONG);
+        return new PigFilterTranslator(new PropertiesSettings(props), fields);
+    }
+}
@@ -10,6 +10,7 @@ import org.elasticsearch.hadoop.cfg.ConfigurationOptions.ES_QUERY
 import org.elasticsearch.hadoop.cfg.ConfigurationOptions.ES_RESOURCE_READ
 import org.elasticsearch.hadoop.cfg.ConfigurationOptions.ES_RESOURCE_WRITE
 import org.elasticsearch.hadoop.cfg.PropertiesSettings
+import org.elasticsearch.hadoop.rest.DiscoverySnapshot
 import org.elasticsearch.spark.cfg.SparkSettingsManager
 import java.util.EnumMap
 import scala.reflect.ClassTag
@@ -50,6 +51,7 @@ object EsSpark {
     val sparkCfg = new SparkSettingsManager().load(rdd.sparkContext.getConf)
     val config = new PropertiesSettings().load(sparkCfg.save())
     config.merge(cfg.asJava)
+    DiscoverySnapshot.createIfNeeded(config, LogFactory.getLog("org.elasticsearch.spark.rdd.EsSpark"))
 
     rdd.sparkContext.runJob(rdd, new EsRDDWriter(config.save()).write _)
   }
@@ -65,6 +67,7 @@ object EsSpark {
     val sparkCfg = new SparkSettingsManager().load(rdd.sparkContext.getConf)
     val config = new PropertiesSettings().load(sparkCfg.save())
     config.merge(cfg.asJava)
+    DiscoverySnapshot.createIfNeeded(config, LogFactory.getLog("org.elasticsearch.spark.rdd.EsSpark"))
 
     rdd.sparkContext.runJob(rdd, new EsRDDWriter(config.save(), true).write _)
   }
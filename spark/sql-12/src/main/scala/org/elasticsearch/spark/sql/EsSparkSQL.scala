@@ -3,6 +3,7 @@ package org.elasticsearch.spark.sql
 import scala.collection.JavaConverters.mapAsJavaMapConverter
 import scala.collection.Map
 
+import org.apache.commons.logging.LogFactory
 import org.apache.spark.annotation.AlphaComponent
 import org.apache.spark.annotation.DeveloperApi
 import org.apache.spark.api.java.JavaRDD.fromRDD
@@ -15,6 +16,7 @@ import org.elasticsearch.hadoop.cfg.ConfigurationOptions.ES_QUERY
 import org.elasticsearch.hadoop.cfg.ConfigurationOptions.ES_RESOURCE_READ
 import org.elasticsearch.hadoop.cfg.ConfigurationOptions.ES_RESOURCE_WRITE
 import org.elasticsearch.hadoop.cfg.PropertiesSettings
+import org.elasticsearch.hadoop.rest.DiscoverySnapshot
 import org.elasticsearch.spark.cfg.SparkSettingsManager
 
 object EsSparkSQL {
@@ -48,6 +50,7 @@ object EsSparkSQL {
     val esCfg = new PropertiesSettings().load(sparkCfg.save())
     esCfg.merge(cfg.asJava)
     
+    DiscoverySnapshot.createIfNeeded(esCfg, LogFactory.getLog("org.elasticsearch.spark.sql.EsSparkSQL"))
     srdd.sparkContext.runJob(srdd, new EsSchemaRDDWriter(srdd.schema, esCfg.save()).write _)
   }
 }
\ No newline at end of file